@@ -0,0 +1,59 @@
+package com.shootoff.camera;
+
+import java.util.Optional;
+
+import org.opencv.core.Size;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.gui.CanvasManager;
+import com.shootoff.plugins.TrainingExerciseBase;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Sets up ShootOFF the same way the shot detection tests do, but without
+ * starting a camera. Benchmarks drive the detector directly.
+ */
+public final class BenchmarkEnvironment {
+	private BenchmarkEnvironment() {}
+
+	public static Configuration setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+		TrainingExerciseBase.silence(true);
+
+		nu.pattern.OpenCV.loadShared();
+
+		// Logging would be measured along with detection
+		final Logger rootLogger = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		rootLogger.detachAndStopAllAppenders();
+
+		final Configuration config = new Configuration(new String[0]);
+		config.setDebugMode(false);
+
+		return config;
+	}
+
+	/**
+	 * @return a camera manager with every shot sector on whose feed has the
+	 *         given resolution. The manager's camera is never started.
+	 */
+	public static CameraManager createCameraManager(CanvasManager canvasManager, Size resolution) {
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+
+		for (int y = 0; y < JavaShotDetector.SECTOR_ROWS; y++) {
+			for (int x = 0; x < JavaShotDetector.SECTOR_COLUMNS; x++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+
+		final CameraManager cameraManager = new MockCameraManager(new MockCamera(), canvasManager, sectorStatuses,
+				Optional.empty(), null);
+		cameraManager.setFeedResolution((int) resolution.width, (int) resolution.height);
+
+		return cameraManager;
+	}
+}
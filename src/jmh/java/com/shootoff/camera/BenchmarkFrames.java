@@ -0,0 +1,172 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import com.shootoff.camera.cameratypes.Camera;
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+/**
+ * Frames for the shot detection benchmarks. Every frame is decoded or
+ * generated and scaled to the benchmarked resolution before measurement
+ * starts, thus benchmarks only time shot detection.
+ */
+public final class BenchmarkFrames {
+	public enum Workload {
+		/**
+		 * Frames decoded from one of the shotsearcher test clips.
+		 */
+		CLIP,
+		/**
+		 * Noise that changes every pixel on every frame, e.g. the camera being
+		 * bumped.
+		 */
+		FULL_FRAME_MOTION,
+		/**
+		 * A dark frame where thousands of pixels in small spots light up on
+		 * every other frame.
+		 */
+		THRESHOLD_PIXELS
+	}
+
+	// Mats are native memory, which isn't bounded by the benchmark's heap
+	private static final int MAXIMUM_CLIP_FRAMES = 90;
+	private static final int SYNTHETIC_FRAMES = 30;
+
+	private static final int THRESHOLD_SPOTS = 250;
+	private static final int THRESHOLD_SPOT_SIZE = 4;
+	private static final int DARK_BACKGROUND = 20;
+
+	// Synthetic frames are the same on every run so results can be compared
+	private static final long SEED = 42;
+
+	private BenchmarkFrames() {}
+
+	/**
+	 * @param resolution
+	 *            a resolution formatted as <tt>widthxheight</tt>, e.g.
+	 *            <tt>640x480</tt>
+	 */
+	public static Size parseResolution(String resolution) {
+		final String[] dimensions = resolution.split("x");
+
+		if (dimensions.length != 2) throw new IllegalArgumentException("Invalid resolution: " + resolution);
+
+		return new Size(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+	}
+
+	/**
+	 * @param clip
+	 *            the test resource decoded for {@link Workload#CLIP}
+	 */
+	public static List<Mat> load(Workload workload, String clip, Size resolution) {
+		switch (workload) {
+		case CLIP:
+			return decodeClip(clip, resolution);
+		case FULL_FRAME_MOTION:
+			return fullFrameMotion(resolution);
+		case THRESHOLD_PIXELS:
+			return thresholdPixels(resolution);
+		default:
+			throw new IllegalArgumentException("Unknown workload: " + workload);
+		}
+	}
+
+	public static List<Mat> decodeClip(String clip, Size resolution) {
+		final List<Mat> frames = new ArrayList<>();
+
+		final IMediaReader reader = ToolFactory
+				.makeReader(new File(BenchmarkFrames.class.getResource(clip).getFile()).getAbsolutePath());
+		reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
+		reader.addListener(new MediaListenerAdapter() {
+			@Override
+			public void onVideoPicture(IVideoPictureEvent event) {
+				if (frames.size() < MAXIMUM_CLIP_FRAMES)
+					frames.add(scale(Camera.bufferedImageToMat(event.getImage()), resolution));
+			}
+		});
+
+		while (frames.size() < MAXIMUM_CLIP_FRAMES && reader.readPacket() == null)
+			;
+
+		reader.close();
+
+		if (frames.isEmpty()) throw new IllegalArgumentException("No frames decoded from " + clip);
+
+		return frames;
+	}
+
+	private static Mat scale(Mat frame, Size resolution) {
+		if (frame.size().equals(resolution)) return frame;
+
+		final Mat scaled = new Mat();
+		Imgproc.resize(frame, scaled, resolution);
+
+		return scaled;
+	}
+
+	private static List<Mat> fullFrameMotion(Size resolution) {
+		final Random random = new Random(SEED);
+		final List<Mat> frames = new ArrayList<>();
+		final byte[] pixels = new byte[(int) (resolution.width * resolution.height) * 3];
+
+		for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+			random.nextBytes(pixels);
+
+			final Mat frame = new Mat(resolution, CvType.CV_8UC3);
+			frame.put(0, 0, pixels);
+			frames.add(frame);
+		}
+
+		return frames;
+	}
+
+	private static List<Mat> thresholdPixels(Size resolution) {
+		final Random random = new Random(SEED);
+		final List<Mat> frames = new ArrayList<>();
+		final int width = (int) resolution.width;
+		final int height = (int) resolution.height;
+		final byte[] pixels = new byte[width * height * 3];
+
+		for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+			Arrays.fill(pixels, (byte) DARK_BACKGROUND);
+
+			// Alternate frames are left dark so the spots are brighter than
+			// the moving average every time they appear
+			if (i % 2 == 1) {
+				for (int spot = 0; spot < THRESHOLD_SPOTS; spot++) {
+					final int spotX = random.nextInt(width - THRESHOLD_SPOT_SIZE);
+					final int spotY = random.nextInt(height - THRESHOLD_SPOT_SIZE);
+
+					for (int y = spotY; y < spotY + THRESHOLD_SPOT_SIZE; y++) {
+						for (int x = spotX; x < spotX + THRESHOLD_SPOT_SIZE; x++) {
+							final int offset = (y * width + x) * 3;
+							// Mostly green, like a green laser
+							pixels[offset] = (byte) 200;
+							pixels[offset + 1] = (byte) 255;
+							pixels[offset + 2] = (byte) 200;
+						}
+					}
+				}
+			}
+
+			final Mat frame = new Mat(height, width, CvType.CV_8UC3);
+			frame.put(0, 0, pixels);
+			frames.add(frame);
+		}
+
+		return frames;
+	}
+}
@@ -0,0 +1,85 @@
+package com.shootoff.camera;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.camera.processors.DeduplicationProcessor;
+
+/**
+ * Times deduplicating one detected shot. Every other shot lands next to the
+ * shot before it a frame later, thus half of the shots are duplicates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeduplicationProcessorBenchmark {
+	private static final int SHOTS = 1024;
+	private static final int MARKER_RADIUS = 2;
+	private static final long SEED = 42;
+
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String resolution;
+
+	private DeduplicationProcessor deduplicationProcessor;
+	private final Shot[] shots = new Shot[SHOTS];
+	private int nextShot = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Size frameSize = BenchmarkFrames.parseResolution(resolution);
+
+		final CameraManager cameraManager = new MockCameraManager();
+		cameraManager.feedWidth = (int) frameSize.width;
+		cameraManager.feedHeight = (int) frameSize.height;
+
+		deduplicationProcessor = new DeduplicationProcessor(cameraManager);
+
+		final Random random = new Random(SEED);
+		int frame = 0;
+
+		for (int i = 0; i < SHOTS; i++) {
+			final double x;
+			final double y;
+
+			if (i % 2 == 1) {
+				x = shots[i - 1].getX() + random.nextInt(3) - 1;
+				y = shots[i - 1].getY() + random.nextInt(3) - 1;
+				frame++;
+			} else {
+				x = random.nextInt((int) frameSize.width);
+				y = random.nextInt((int) frameSize.height);
+				frame += 30;
+			}
+
+			shots[i] = new Shot(ShotColor.GREEN, x, y, frame * 33L, frame, MARKER_RADIUS);
+		}
+	}
+
+	@Benchmark
+	public boolean processShot() {
+		// The first shot must not be compared to a shot from the future
+		if (nextShot == 0) deduplicationProcessor.reset();
+
+		final Shot shot = shots[nextShot];
+		if (++nextShot == SHOTS) nextShot = 0;
+
+		return deduplicationProcessor.processShot(shot);
+	}
+}
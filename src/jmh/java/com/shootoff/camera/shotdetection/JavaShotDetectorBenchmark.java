@@ -0,0 +1,99 @@
+package com.shootoff.camera.shotdetection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.camera.BenchmarkEnvironment;
+import com.shootoff.camera.BenchmarkFrames;
+import com.shootoff.camera.BenchmarkFrames.Workload;
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.Frame;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.gui.MockCanvasManager;
+
+/**
+ * Times {@link JavaShotDetector#processFrame(Frame, boolean)} for one frame,
+ * i.e. the whole detection stage: the sieve that finds threshold pixels and
+ * updates the filters, clustering, color classification and deduplication.
+ * The other benchmarks in this package time those stages on their own, thus
+ * the sieve's cost is what is left over. Thousands of threshold pixels trip
+ * the detector's excessive motion check, so for {@link Workload#THRESHOLD_PIXELS}
+ * this measures the sieve and motion rejection while
+ * {@link PixelClusterManagerBenchmark} measures clustering that many pixels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaShotDetectorBenchmark {
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String resolution;
+
+	@Param({ "CLIP", "FULL_FRAME_MOTION", "THRESHOLD_PIXELS" })
+	public Workload workload;
+
+	@Param({ "/shotsearcher/lifecam-indoor-green.mp4" })
+	public String clip;
+
+	private MockCanvasManager canvasManager;
+	private JavaShotDetector detector;
+	private final List<Frame> frames = new ArrayList<>();
+	private int nextFrame = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws ConfigurationException {
+		canvasManager = new MockCanvasManager(BenchmarkEnvironment.setUp());
+
+		final Size frameSize = BenchmarkFrames.parseResolution(resolution);
+		final CameraManager cameraManager = BenchmarkEnvironment.createCameraManager(canvasManager, frameSize);
+
+		detector = new JavaShotDetector(cameraManager, canvasManager);
+
+		long timestamp = 0;
+		for (final Mat mat : BenchmarkFrames.load(workload, clip, frameSize)) {
+			frames.add(new Frame(mat, timestamp));
+			timestamp += 33;
+		}
+
+		// Initialize the filters so every measured frame detects shots
+		for (final Frame frame : frames)
+			detector.processFrame(frame, true);
+	}
+
+	@TearDown(Level.Iteration)
+	public void clearShots() {
+		canvasManager.getShots().clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (final Frame frame : frames)
+			frame.getOriginalMat().release();
+	}
+
+	@Benchmark
+	public void processFrame() {
+		detector.processFrame(frames.get(nextFrame), true);
+
+		if (++nextFrame == frames.size()) nextFrame = 0;
+	}
+}
@@ -0,0 +1,104 @@
+package com.shootoff.camera.shotdetection;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.camera.BenchmarkFrames;
+import com.shootoff.camera.ShotColor;
+
+/**
+ * Times classifying the color of one shot-sized cluster in an HSV frame
+ * decoded from a test clip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelClusterBenchmark {
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String resolution;
+
+	@Param({ "/shotsearcher/lifecam-indoor-green.mp4" })
+	public String clip;
+
+	@Param({ "3", "8" })
+	public int clusterRadius;
+
+	private final Mat frameHSV = new Mat();
+	private PixelFilterState filterState;
+	private PixelCluster cluster;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		nu.pattern.OpenCV.loadShared();
+
+		final Size frameSize = BenchmarkFrames.parseResolution(resolution);
+
+		final List<Mat> frames = BenchmarkFrames.decodeClip(clip, frameSize);
+		Imgproc.cvtColor(frames.get(frames.size() / 2), frameHSV, Imgproc.COLOR_BGR2HSV);
+		for (final Mat frame : frames)
+			frame.release();
+
+		filterState = new PixelFilterState((int) frameSize.width, (int) frameSize.height);
+		// Allocate the lazily created color filter before measuring
+		filterState.colorDistanceFromRed();
+
+		cluster = createDisc((int) frameSize.width / 2, (int) frameSize.height / 2);
+	}
+
+	private PixelCluster createDisc(int centerX, int centerY) {
+		final PixelCluster disc = new PixelCluster();
+		final int radiusSquared = clusterRadius * clusterRadius;
+
+		for (int y = centerY - clusterRadius; y <= centerY + clusterRadius; y++) {
+			for (int x = centerX - clusterRadius; x <= centerX + clusterRadius; x++) {
+				final int dx = x - centerX;
+				final int dy = y - centerY;
+
+				if (dx * dx + dy * dy > radiusSquared) continue;
+
+				final Pixel pixel = new Pixel(x, y);
+				final boolean isInterior = (Math.abs(dx) + 1) * (Math.abs(dx) + 1) + dy * dy <= radiusSquared
+						&& dx * dx + (Math.abs(dy) + 1) * (Math.abs(dy) + 1) <= radiusSquared;
+				pixel.setConnectedness(isInterior ? 8 : 3);
+
+				disc.add(pixel);
+			}
+		}
+
+		disc.centerPixelX = centerX;
+		disc.centerPixelY = centerY;
+
+		return disc;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		frameHSV.release();
+	}
+
+	@Benchmark
+	public Optional<ShotColor> getColor() {
+		return cluster.getColor(frameHSV, filterState);
+	}
+}
@@ -0,0 +1,79 @@
+package com.shootoff.camera.shotdetection;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.camera.BenchmarkFrames;
+
+/**
+ * Times clustering one frame's threshold pixels. The pixels are small discs
+ * scattered over the frame, like a frame with many laser-sized bright spots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelClusterManagerBenchmark {
+	private static final int DISC_RADIUS = 2;
+	private static final long SEED = 42;
+
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String resolution;
+
+	@Param({ "500", "5000" })
+	public int thresholdPixels;
+
+	private PixelClusterManager pixelClusterManager;
+	private final PackedPixelBuffer pixels = new PackedPixelBuffer();
+	private int minimumShotDimension;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Size frameSize = BenchmarkFrames.parseResolution(resolution);
+		final int width = (int) frameSize.width;
+		final int height = (int) frameSize.height;
+
+		pixelClusterManager = new PixelClusterManager(width, height);
+		minimumShotDimension = (int) (width * height * .000025);
+
+		final Random random = new Random(SEED);
+
+		while (pixels.size() < thresholdPixels) {
+			addDisc(random.nextInt(width - DISC_RADIUS * 2) + DISC_RADIUS,
+					random.nextInt(height - DISC_RADIUS * 2) + DISC_RADIUS);
+		}
+	}
+
+	private void addDisc(int centerX, int centerY) {
+		for (int y = centerY - DISC_RADIUS; y <= centerY + DISC_RADIUS; y++) {
+			for (int x = centerX - DISC_RADIUS; x <= centerX + DISC_RADIUS; x++) {
+				final int dx = x - centerX;
+				final int dy = y - centerY;
+
+				if (dx * dx + dy * dy <= DISC_RADIUS * DISC_RADIUS) pixels.add(x, y);
+			}
+		}
+	}
+
+	@Benchmark
+	public Set<PixelCluster> clusterPixels() {
+		return pixelClusterManager.clusterPixels(pixels, minimumShotDimension);
+	}
+}
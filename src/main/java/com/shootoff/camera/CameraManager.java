@@ -20,23 +20,30 @@ package com.shootoff.camera;
 
 import java.awt.Dimension;
 import java.awt.Point;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opencv.core.CvException;
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.shootoff.ObservableCloseable;
+import com.shootoff.camera.FrameRing.DropPolicy;
+import com.shootoff.camera.PipelineLatencies.Stage;
 import com.shootoff.camera.ShotColor;
 import com.shootoff.camera.autocalibration.AutoCalibrationManager;
 import com.shootoff.camera.cameratypes.Camera;
@@ -45,6 +52,10 @@ import com.shootoff.camera.cameratypes.CameraEventListener;
 import com.shootoff.camera.cameratypes.PS3EyeCamera;
 import com.shootoff.camera.cameratypes.SarxosCaptureCamera;
 import com.shootoff.camera.processors.DeduplicationProcessor;
+import com.shootoff.camera.processors.ShotProcessor;
+import com.shootoff.camera.recorders.EncoderService;
+import com.shootoff.camera.recorders.EncodingStream;
+import com.shootoff.camera.recorders.MediaWriterEncoder;
 import com.shootoff.camera.recorders.RollingRecorder;
 import com.shootoff.camera.recorders.ShotRecorder;
 import com.shootoff.camera.shotdetection.CameraStateListener;
@@ -57,12 +68,9 @@ import com.shootoff.util.TimerPool;
 import com.xuggle.mediatool.IMediaWriter;
 import com.xuggle.mediatool.ToolFactory;
 import com.xuggle.xuggler.ICodec;
-import com.xuggle.xuggler.IPixelFormat;
-import com.xuggle.xuggler.IVideoPicture;
-import com.xuggle.xuggler.video.ConverterFactory;
-import com.xuggle.xuggler.video.IConverter;
 
 import com.shootoff.util.SwingFXUtils;
+import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.Dimension2D;
 import javafx.scene.control.Label;
@@ -82,9 +90,23 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 	public static final int DEFAULT_FEED_WIDTH = 640;
 	public static final int DEFAULT_FEED_HEIGHT = 480;
 	public static final int MIN_SHOT_DETECTION_FPS = 5;
+	private static final int DEFAULT_FRAME_QUEUE_CAPACITY = 3;
+	private static final int DEFAULT_ENCODER_QUEUE_CAPACITY = 30;
 
-	protected int feedWidth = DEFAULT_FEED_WIDTH;
-	protected int feedHeight = DEFAULT_FEED_HEIGHT;
+	// How long closing waits for each pipeline stage to finish its frame
+	private static final long PIPELINE_STOP_TIMEOUT = 2000; // ms
+
+	// Read by every stage, but only changed by the detection stage once the
+	// pipeline is running
+	protected volatile int feedWidth = DEFAULT_FEED_WIDTH;
+	protected volatile int feedHeight = DEFAULT_FEED_HEIGHT;
+
+	// The resolution the camera was asked to switch to while streaming. It
+	// takes effect when the first frame at that resolution reaches detection.
+	private final AtomicReference<Dimension> pendingFeedResolution = new AtomicReference<>();
+
+	// Picks the feed resolution from measured detection throughput, if enabled
+	private final Optional<ResolutionPolicy> resolutionPolicy;
 
 	protected final static int DIAGNOSTIC_MESSAGE_DURATION = 1000; // ms
 
@@ -112,15 +134,30 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 	protected Optional<Integer> minimumShotDimension = Optional.empty();
 
-	protected boolean recordingStream = false;
-	protected boolean isFirstStreamFrame = true;
-	protected IMediaWriter videoWriterStream;
-	protected long recordingStartTime;
+	// Recordings are encoded off the frame pipeline so that a slow encoder
+	// drops recorded frames instead of frames to detect shots in
+	private final EncoderService encoderService = new EncoderService(
+			config != null ? config.getEncoderQueueCapacity() : DEFAULT_ENCODER_QUEUE_CAPACITY,
+			config != null ? config.getEncoderDropPolicy() : DropPolicy.DROP_OLDEST);
+
+	protected volatile boolean recordingStream = false;
+	private volatile EncodingStream streamEncoder;
 
-	protected boolean recordingShots = false;
+	protected volatile boolean recordingShots = false;
 	protected RollingRecorder rollingRecorder;
+	private volatile EncodingStream shotEncoder;
 	protected Map<Shot, ShotRecorder> shotRecorders = new ConcurrentHashMap<>();
 
+	// Recordings keep the feed resolution they started at, thus frames
+	// captured after a resolution change are scaled back to it
+	private volatile Optional<Dimension> recordingResolution = Optional.empty();
+
+	// Holds the frames handed off to the stream and shot encoders until they
+	// are converted: one being filled, and one being encoded and the queue
+	// for each encoder
+	private final FramePool recordingFramePool = new FramePool(
+			2 * ((config != null ? config.getEncoderQueueCapacity() : DEFAULT_ENCODER_QUEUE_CAPACITY) + 1) + 1);
+
 	protected boolean[][] sectorStatuses;
 
 	private boolean showedFPSWarning = false;
@@ -133,6 +170,66 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 	private CameraCalibrationListener cameraCalibrationListener;
 
+	private final DetectionMaskManager detectionMaskManager = new DetectionMaskManager(this);
+
+	// Frames flow from the camera's thread, which only captures them, to the
+	// detection stage and then to the output stage, which records and displays
+	// them. Each stage has its own thread and the stages are joined by bounded
+	// rings so that a slow stage drops frames instead of stalling the stages
+	// before it.
+	private final FrameRing<CapturedFrame> detectionQueue = new FrameRing<>(
+			config != null ? config.getFrameQueueCapacity() : DEFAULT_FRAME_QUEUE_CAPACITY,
+			config != null ? config.getFrameDropPolicy() : DropPolicy.DROP_OLDEST);
+	private final FrameRing<Frame> outputQueue = new FrameRing<>(
+			config != null ? config.getFrameQueueCapacity() : DEFAULT_FRAME_QUEUE_CAPACITY,
+			config != null ? config.getFrameDropPolicy() : DropPolicy.DROP_OLDEST);
+	private volatile Thread detectionThread = null;
+	private Thread outputThread = null;
+
+	// Frames can be held by the camera, both queues, and both stages at once
+	private final FramePool framePool = new FramePool(
+			2 * (config != null ? config.getFrameQueueCapacity() : DEFAULT_FRAME_QUEUE_CAPACITY) + 3);
+
+	// Shot detection runs on a worker pool shared with the other cameras. A
+	// camera that isn't managed by a CamerasSupervisor gets a pool of its own.
+	private final DetectionWorkerPool detectionWorkerPool;
+	private final boolean ownsDetectionWorkerPool;
+	private final DetectionWorkerPool.Workload detectionWorkload;
+
+	// Sheds work that detection can do without when processing can't keep up
+	// with the camera
+	private final DetectionLoadController loadController;
+
+	// How long each stage of the pipeline takes
+	private final PipelineLatencies pipelineLatencies;
+
+	// How long this camera's shots take from capture to the screen
+	private final ShotLatencyStats shotLatencies;
+
+	// When the frame in the detection stage was captured, thus shots found in
+	// it can be traced back to the capture
+	private static final long NO_FRAME = Long.MIN_VALUE;
+	private volatile long frameCaptureTime = NO_FRAME;
+
+	// Counters for management clients
+	private volatile long firstFrameTime = NO_FRAME;
+	private volatile long lastFrameTime = NO_FRAME;
+	private final AtomicLong motionWarningCount = new AtomicLong();
+	private final AtomicLong brightnessWarningCount = new AtomicLong();
+	private final Map<String, AtomicLong> shotsAccepted = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> shotsRejected = new ConcurrentHashMap<>();
+
+	private static final class CapturedFrame {
+		private final Frame frame;
+		private final boolean shouldDedistort;
+		private final long capturedTime = System.nanoTime();
+
+		private CapturedFrame(Frame frame, boolean shouldDedistort) {
+			this.frame = frame;
+			this.shouldDedistort = shouldDedistort;
+		}
+	}
+
 	public void setCalibrationManager(CameraCalibrationListener calibrationManager) {
 		cameraCalibrationListener = calibrationManager;
 	}
@@ -146,12 +243,52 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		cameraErrorView = Optional.empty();
 		cameraView = null;
 		shotDetector = null;
+		detectionWorkerPool = null;
+		ownsDetectionWorkerPool = false;
+		detectionWorkload = null;
+		loadController = new DetectionLoadController("Camera");
+		pipelineLatencies = new PipelineLatencies("Camera");
+		shotLatencies = new ShotLatencyStats("Camera");
+		resolutionPolicy = Optional.empty();
 	}
 
 	public CameraManager(Camera cameraInterface, CameraErrorView cameraErrorView, CameraView view) {
+		this(cameraInterface, cameraErrorView, view, null);
+	}
+
+	/**
+	 * @param detectionWorkerPool
+	 *            the pool to run shot detection on, or <code>null</code> to
+	 *            give this camera a pool of its own
+	 */
+	public CameraManager(Camera cameraInterface, CameraErrorView cameraErrorView, CameraView view,
+			DetectionWorkerPool detectionWorkerPool) {
 
 		camera = cameraInterface;
 
+		if (detectionWorkerPool != null) {
+			this.detectionWorkerPool = detectionWorkerPool;
+			ownsDetectionWorkerPool = false;
+		} else {
+			this.detectionWorkerPool = new DetectionWorkerPool(camera.getName() + " Shot Detection",
+					config != null ? config.getDetectionWorkers() : 0);
+			ownsDetectionWorkerPool = true;
+		}
+
+		// The detector picks up its workload when it is created below
+		detectionWorkload = this.detectionWorkerPool.register(camera.getName(), DetectionWorkerPool.DEFAULT_PRIORITY);
+		loadController = new DetectionLoadController(camera.getName());
+		pipelineLatencies = new PipelineLatencies(camera.getName());
+		shotLatencies = new ShotLatencyStats("Camera " + camera.getName());
+
+		final int detectionTargetFPS = config != null ? config.getDetectionTargetFPS() : 0;
+		if (detectionTargetFPS > 0) {
+			resolutionPolicy = Optional.of(new ResolutionPolicy(camera.getName(), ResolutionPolicy.DEFAULT_RESOLUTIONS,
+					detectionTargetFPS));
+		} else {
+			resolutionPolicy = Optional.empty();
+		}
+
 		this.cameraErrorView = Optional.ofNullable(cameraErrorView);
 		cameraView = view;
 
@@ -181,6 +318,12 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 		synchronized (camera) {
 			if (!camera.isOpen()) {
+				if (resolutionPolicy.isPresent() && !resolutionPolicy.get().isSettled()) {
+					final Dimension startingResolution = resolutionPolicy.get().getStartingResolution();
+					feedWidth = startingResolution.width;
+					feedHeight = startingResolution.height;
+				}
+
 				camera.setViewSize(new Dimension(getFeedWidth(), getFeedHeight()));
 
 				if (!camera.open()) {
@@ -211,6 +354,8 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 				}
 			}
 
+			startPipeline();
+
 			if (logger.isDebugEnabled()) logger.debug("starting camera thread {}", camera.getName());
 			final String threadName = String.format("Camera %s %s", camera.getName(),
 					shotDetector.getClass().getSimpleName());
@@ -225,6 +370,282 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 	}
 
+	private void startPipeline() {
+		if (detectionThread != null) return;
+
+		detectionThread = new Thread(this::runDetectionStage, String.format("Camera %s Detection", camera.getName()));
+		detectionThread.setDaemon(true);
+		detectionThread.start();
+
+		outputThread = new Thread(this::runOutputStage, String.format("Camera %s Output", camera.getName()));
+		outputThread.setDaemon(true);
+		outputThread.start();
+	}
+
+	private void runDetectionStage() {
+		try {
+			CapturedFrame capturedFrame;
+
+			while ((capturedFrame = detectionQueue.take()) != null) {
+				final Frame frame = capturedFrame.frame;
+
+				try {
+					applyPendingFeedResolution(frame);
+
+					final long processingStart = System.nanoTime();
+					pipelineLatencies.record(Stage.CAPTURE_HANDOFF, processingStart - capturedFrame.capturedTime);
+
+					frameCaptureTime = capturedFrame.capturedTime;
+
+					final Frame outputFrame;
+					try {
+						outputFrame = processFrame(frame, capturedFrame.shouldDedistort);
+					} finally {
+						frameCaptureTime = NO_FRAME;
+					}
+
+					final long processingTime = System.nanoTime() - processingStart;
+					pipelineLatencies.record(Stage.PROCESSING, processingTime);
+
+					if (outputFrame != frame) frame.release();
+
+					if (resolutionPolicy.isPresent() && !resolutionPolicy.get().isSettled()) {
+						// Load is only shed once the resolution is settled,
+						// otherwise the shedding would skew the measurement
+						final Optional<Dimension> newResolution = resolutionPolicy.get().recordFrame(feedWidth,
+								feedHeight, processingTime);
+
+						if (newResolution.isPresent()
+								&& !changeFeedResolution(newResolution.get().width, newResolution.get().height)) {
+							resolutionPolicy.get().settle("the camera can't change resolution while it is open");
+						}
+					} else if (detectionQueue.getDropPolicy() != DropPolicy.BLOCK
+							&& loadController.recordFrame(processingTime, getFPS())) {
+						// Frames from a source that isn't live wait for
+						// detection rather than being dropped, thus there is no
+						// load to shed
+						applyLoadLevel();
+					}
+
+					final Frame droppedFrame = outputQueue.offer(outputFrame);
+					if (droppedFrame != null) droppedFrame.release();
+				} catch (final Exception e) {
+					logger.error("Failed to process frame from camera " + getName(), e);
+					frame.release();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void runOutputStage() {
+		try {
+			Frame frame;
+
+			while ((frame = outputQueue.take()) != null) {
+				try {
+					final long outputStart = System.nanoTime();
+					outputFrame(frame);
+
+					// Shedding the display shortens this stage when it is
+					// slower than detection
+					loadController.recordOutputTime(System.nanoTime() - outputStart);
+				} catch (final Exception e) {
+					logger.error("Failed to record or display frame from camera " + getName(), e);
+				} finally {
+					frame.release();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the queue of captured frames waiting for shot detection
+	 */
+	public FrameRing<?> getDetectionQueue() {
+		return detectionQueue;
+	}
+
+	/**
+	 * @return the queue of processed frames waiting to be recorded and
+	 *         displayed
+	 */
+	public FrameRing<?> getOutputQueue() {
+		return outputQueue;
+	}
+
+	/**
+	 * @return this camera's share of the shot detection worker pool, or
+	 *         <code>null</code> if this manager has no camera
+	 */
+	public DetectionWorkerPool.Workload getDetectionWorkload() {
+		return detectionWorkload;
+	}
+
+	/**
+	 * Set how this camera's shot detection is prioritized against other
+	 * cameras sharing its worker pool. Higher priorities are served first.
+	 */
+	public void setDetectionPriority(int priority) {
+		if (detectionWorkload != null) detectionWorkload.setPriority(priority);
+	}
+
+	public DetectionLoadController getLoadController() {
+		return loadController;
+	}
+
+	public PipelineLatencies getPipelineLatencies() {
+		return pipelineLatencies;
+	}
+
+	public ShotLatencyStats getShotLatencies() {
+		return shotLatencies;
+	}
+
+	/**
+	 * @return the rate frames were delivered at between the first and the
+	 *         latest frame, or 0 before there are two frames
+	 */
+	public double getAverageFPS() {
+		final long first = firstFrameTime;
+		final long last = lastFrameTime;
+		final long frames = detectionQueue.getOfferedCount();
+
+		if (first == NO_FRAME || frames < 2 || last <= first) return 0;
+
+		return (frames - 1) * 1e9 / (last - first);
+	}
+
+	/**
+	 * @return the number of frames dropped by either stage of the pipeline
+	 *         because it fell behind
+	 */
+	public long getDroppedFrameCount() {
+		return detectionQueue.getDroppedCount() + outputQueue.getDroppedCount();
+	}
+
+	public EncoderService getEncoderService() {
+		return encoderService;
+	}
+
+	/**
+	 * @return the number of recorders currently recording a shot
+	 */
+	public int getActiveShotRecorderCount() {
+		return shotRecorders.size();
+	}
+
+	public long getMotionWarningCount() {
+		return motionWarningCount.get();
+	}
+
+	public long getBrightnessWarningCount() {
+		return brightnessWarningCount.get();
+	}
+
+	/**
+	 * @return the detector's threshold pixel count for the last frame, or -1
+	 *         if the detector doesn't count them
+	 */
+	public int getThresholdPixelCount() {
+		if (shotDetector instanceof FrameProcessingShotDetector)
+			return ((FrameProcessingShotDetector) shotDetector).getThresholdPixelCount();
+
+		return -1;
+	}
+
+	/**
+	 * @return the detector's moving average threshold pixel count, or -1 if
+	 *         the detector doesn't keep one
+	 */
+	public int getAverageThresholdPixelCount() {
+		if (shotDetector instanceof FrameProcessingShotDetector)
+			return ((FrameProcessingShotDetector) shotDetector).getAverageThresholdPixelCount();
+
+		return -1;
+	}
+
+	/**
+	 * Count a shot from this camera that <code>processor</code> accepted or
+	 * rejected.
+	 */
+	public void recordProcessedShot(ShotProcessor processor, boolean accepted) {
+		(accepted ? shotsAccepted : shotsRejected)
+				.computeIfAbsent(processor.getClass().getSimpleName(), (name) -> new AtomicLong()).incrementAndGet();
+	}
+
+	/**
+	 * @return the number of shots accepted by each shot processor, by the
+	 *         processor's class name
+	 */
+	public Map<String, Long> getShotsAccepted() {
+		return countsByProcessor(shotsAccepted);
+	}
+
+	/**
+	 * @return the number of shots rejected by each shot processor, by the
+	 *         processor's class name
+	 */
+	public Map<String, Long> getShotsRejected() {
+		return countsByProcessor(shotsRejected);
+	}
+
+	private static Map<String, Long> countsByProcessor(Map<String, AtomicLong> counts) {
+		final Map<String, Long> snapshot = new HashMap<>();
+
+		for (final Entry<String, AtomicLong> count : counts.entrySet())
+			snapshot.put(count.getKey(), count.getValue().get());
+
+		return snapshot;
+	}
+
+	/**
+	 * @return when the frame that shot detection is working on was captured
+	 *         in {@link System#nanoTime()} time, or empty if detection isn't
+	 *         working on a frame from the pipeline (e.g. for an injected
+	 *         shot)
+	 */
+	public OptionalLong getFrameCaptureTime() {
+		final long captureTime = frameCaptureTime;
+
+		return captureTime == NO_FRAME ? OptionalLong.empty() : OptionalLong.of(captureTime);
+	}
+
+	private void applyLoadLevel() {
+		detectionMaskManager.setLimitingToArena(loadController.isShedding(DetectionLoadController.Level.LIMIT_REGION));
+
+		if (shotDetector instanceof FrameProcessingShotDetector) {
+			((FrameProcessingShotDetector) shotDetector).setFilterUpdateInterval(
+					loadController.isShedding(DetectionLoadController.Level.SKIP_FILTER_UPDATES) ? 2 : 1);
+		}
+	}
+
+	@Override
+	public FramePool getFramePool() {
+		return framePool;
+	}
+
+	public void setFrameDropPolicy(DropPolicy dropPolicy) {
+		detectionQueue.setDropPolicy(dropPolicy);
+		outputQueue.setDropPolicy(dropPolicy);
+
+		if (dropPolicy == DropPolicy.BLOCK && loadController.reset()) applyLoadLevel();
+	}
+
+	/**
+	 * Wait until every frame delivered by the camera so far has been through
+	 * every stage of the pipeline.
+	 */
+	protected void awaitPipelineIdle() throws InterruptedException {
+		if (detectionThread == null) return;
+
+		detectionQueue.awaitIdle();
+		outputQueue.awaitIdle();
+	}
+
 	public boolean isSectorOn(int x, int y) {
 		return sectorStatuses[y][x];
 	}
@@ -247,13 +668,106 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		return feedHeight;
 	}
 
-	// TODO: This doesn't handle potential side effects of modifying the feed
-	// resolution on the fly.
+	/**
+	 * Set the resolution of the frames the camera delivers. Everything sized to
+	 * the feed is resized, and calibration bounds are scaled to the new
+	 * resolution. Cameras call this from their capture threads, thus while the
+	 * pipeline is running the change is handed to the detection stage, which
+	 * applies it with the first frame at the new resolution so that the
+	 * detector is never resized in the middle of a frame.
+	 */
 	@Override
 	public void setFeedResolution(int width, int height) {
+		if (detectionThread != null && Thread.currentThread() != detectionThread) {
+			pendingFeedResolution.set(new Dimension(width, height));
+			return;
+		}
+
+		applyFeedResolution(width, height);
+	}
+
+	private void applyFeedResolution(int width, int height) {
+		final int previousWidth = feedWidth;
+		final int previousHeight = feedHeight;
+
 		feedWidth = width;
 		feedHeight = height;
 		shotDetector.setFrameSize(width, height);
+		deduplicationProcessor.setDistanceThreshold();
+
+		if (previousWidth != width || previousHeight != height) {
+			scaleCalibration((double) width / previousWidth, (double) height / previousHeight);
+		}
+
+		detectionMaskManager.refresh();
+	}
+
+	private void scaleCalibration(double scaleX, double scaleY) {
+		synchronized (projectionBoundsLock) {
+			if (projectionBounds.isPresent()) {
+				final Bounds b = projectionBounds.get();
+				projectionBounds = Optional.of(new BoundingBox(b.getMinX() * scaleX, b.getMinY() * scaleY,
+						b.getWidth() * scaleX, b.getHeight() * scaleY));
+			}
+		}
+
+		if (acm != null) acm.scale(scaleX, scaleY);
+	}
+
+	/**
+	 * Ask the camera to switch to a new resolution while it is streaming.
+	 * Frames already in the pipeline finish at the old resolution. Detection,
+	 * calibration, and recording switch over with the first frame at the new
+	 * resolution. Cameras may pick the closest resolution they support.
+	 * 
+	 * @return <code>true</code> if the camera accepted a resolution that
+	 *         differs from the current one
+	 */
+	public boolean changeFeedResolution(int width, int height) {
+		final Dimension resolution;
+
+		synchronized (camera) {
+			if (!camera.isOpen()) {
+				// Takes effect when the camera is opened
+				feedWidth = width;
+				feedHeight = height;
+				return true;
+			}
+
+			camera.setViewSize(new Dimension(width, height));
+			resolution = camera.getViewSize();
+		}
+
+		if (resolution.width <= 0 || resolution.height <= 0
+				|| (resolution.width == feedWidth && resolution.height == feedHeight)) {
+			if (logger.isInfoEnabled()) logger.info("Camera {} did not switch from {}x{} to {}x{}", getName(),
+					feedWidth, feedHeight, width, height);
+
+			return false;
+		}
+
+		if (logger.isInfoEnabled()) logger.info("Camera {} switching from {}x{} to {}x{}", getName(), feedWidth,
+				feedHeight, resolution.width, resolution.height);
+
+		pendingFeedResolution.set(resolution);
+
+		return true;
+	}
+
+	private boolean isPendingFeedResolution(Frame frame) {
+		final Dimension pending = pendingFeedResolution.get();
+
+		return pending != null && frame.getOriginalMat().cols() == pending.width
+				&& frame.getOriginalMat().rows() == pending.height;
+	}
+
+	// Runs on the detection stage so that the detector is never resized in
+	// the middle of a frame
+	private void applyPendingFeedResolution(Frame frame) {
+		if (!isPendingFeedResolution(frame)) return;
+
+		final Dimension resolution = pendingFeedResolution.getAndSet(null);
+		applyFeedResolution(resolution.width, resolution.height);
 	}
 
 	// Used by click-to-shoot and tests to inject a shot via the shot detector
@@ -289,6 +803,20 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 		camera.setCameraEventListener(null);
 
+		// Frames still queued go back to the pool instead of being lost with
+		// the queues
+		for (final CapturedFrame capturedFrame : detectionQueue.close())
+			capturedFrame.frame.release();
+		for (final Frame frame : outputQueue.close())
+			frame.release();
+
+		// The stages stop once their queues are closed, but they may still be
+		// using the encoders, detector, or detection workers closed below
+		joinStage(detectionThread);
+		joinStage(outputThread);
+
+		framePool.close();
+
 		setCameraState(CameraState.CLOSED);
 
 		if (recordingStream) stopRecordingStream();
@@ -296,10 +824,34 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		TimerPool.cancelTimer(motionDiagnosticFuture);
 
 		if (recordingCalibratedArea) stopRecordingCalibratedArea();
+		encoderService.close();
+		recordingFramePool.close();
+		calibratedAreaFramePool.close();
+
+		detectionMaskManager.close();
+		if (shotDetector != null) shotDetector.close();
+
+		if (detectionWorkerPool != null) {
+			detectionWorkerPool.unregister(detectionWorkload);
+			if (ownsDetectionWorkerPool) detectionWorkerPool.shutdown();
+		}
 
 		if (closeListener.isPresent()) closeListener.get().closing();
 	}
 
+	private void joinStage(Thread stage) {
+		// A stage can close its own camera manager
+		if (stage == null || stage == Thread.currentThread()) return;
+
+		try {
+			stage.join(PIPELINE_STOP_TIMEOUT);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (stage.isAlive()) logger.warn("{} did not stop within {} ms", stage.getName(), PIPELINE_STOP_TIMEOUT);
+	}
+
 	public void setStreaming(boolean isStreaming) {
 		this.isStreaming.set(isStreaming);
 	}
@@ -363,14 +915,18 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		synchronized (projectionBoundsLock) {
 			this.projectionBounds = Optional.ofNullable(projectionBounds);
 		}
+
+		detectionMaskManager.refresh();
 	}
 
 	public void setCropFeedToProjection(final boolean cropFeed) {
 		cropFeedToProjection = cropFeed;
+		detectionMaskManager.refresh();
 	}
 
 	public void setLimitDetectProjection(final boolean limitDetection) {
 		limitDetectProjection = limitDetection;
+		detectionMaskManager.refresh();
 	}
 
 	public boolean isCroppingFeedToProjection() {
@@ -385,19 +941,47 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		return projectionBounds;
 	}
 
+	public DetectionMaskManager getDetectionMaskManager() {
+		return detectionMaskManager;
+	}
+
+	/**
+	 * @return the resolution frames are recorded at. This is the feed
+	 *         resolution when the first active recording started.
+	 */
+	public Dimension getRecordingResolution() {
+		return recordingResolution.orElse(new Dimension(getFeedWidth(), getFeedHeight()));
+	}
+
+	private void startedRecording() {
+		if (!recordingResolution.isPresent()) recordingResolution = Optional.of(getRecordingResolution());
+	}
+
+	private void stoppedRecording() {
+		if (!recordingStream && !recordingShots) recordingResolution = Optional.empty();
+	}
+
 	public void startRecordingStream(File videoFile) {
 		if (logger.isDebugEnabled()) logger.debug("Writing Video Feed To: {}", videoFile.getAbsoluteFile());
-		videoWriterStream = ToolFactory.makeWriter(videoFile.getName());
-		videoWriterStream.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, getFeedWidth(), getFeedHeight());
-		recordingStartTime = System.currentTimeMillis();
-		isFirstStreamFrame = true;
+		startedRecording();
+		final IMediaWriter videoWriterStream = ToolFactory.makeWriter(videoFile.getName());
+		videoWriterStream.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, getRecordingResolution().width,
+				getRecordingResolution().height);
+		streamEncoder = encoderService.open(getName() + " Stream Recording",
+				new MediaWriterEncoder(videoWriterStream));
 
 		recordingStream = true;
 	}
 
 	public void stopRecordingStream() {
 		recordingStream = false;
-		videoWriterStream.close();
+
+		final EncodingStream streamEncoder = this.streamEncoder;
+		if (streamEncoder == null) return;
+
+		this.streamEncoder = null;
+		encoderService.close(streamEncoder);
+		stoppedRecording();
 	}
 
 	public void notifyShot(final Shot shot) {
@@ -433,19 +1017,22 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 		setDetecting(false);
 
+		startedRecording();
 		rollingRecorder = new RollingRecorder(ICodec.ID.CODEC_ID_MPEG4, ".mp4", sessionName, cameraName, this);
+		shotEncoder = encoderService.open(getName() + " Shot Recording", rollingRecorder);
 		recordingShots = true;
 	}
 
 	public void stopRecordingShots() {
 		recordingShots = false;
-		for (final ShotRecorder r : shotRecorders.values())
-			r.close();
 		shotRecorders.clear();
-		if (rollingRecorder != null) {
-			rollingRecorder.close();
+		if (shotEncoder != null) {
+			// Finishes the rolling recorder and its shot videos
+			encoderService.close(shotEncoder);
+			shotEncoder = null;
 			rollingRecorder = null;
 		}
+		stoppedRecording();
 
 		setDetecting(true);
 	}
@@ -483,24 +1070,34 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 	private ScheduledFuture<?> motionDiagnosticFuture = null;
 
 	private boolean recordCalibratedArea = false;
-	private IMediaWriter videoWriterCalibratedArea;
-	private long recordingCalibratedAreaStartTime;
-	private boolean isFirstCalibratedAreaFrame;
-	private boolean recordingCalibratedArea;
+	private volatile EncodingStream calibratedAreaEncoder;
+	private volatile boolean recordingCalibratedArea;
+	private Size calibratedAreaRecordingSize;
+
+	// Holds the calibrated areas handed off to the encoder until they are
+	// converted: one being filled, one being encoded, and the queue
+	private final FramePool calibratedAreaFramePool = new FramePool(
+			(config != null ? config.getEncoderQueueCapacity() : DEFAULT_ENCODER_QUEUE_CAPACITY) + 2);
 
 	public void startRecordingCalibratedArea(File videoFile, int width, int height) {
 		if (logger.isDebugEnabled()) logger.debug("Writing Video Feed To: {}", videoFile.getAbsoluteFile());
-		videoWriterCalibratedArea = ToolFactory.makeWriter(videoFile.getName());
+		calibratedAreaRecordingSize = new Size(width, height);
+		final IMediaWriter videoWriterCalibratedArea = ToolFactory.makeWriter(videoFile.getName());
 		videoWriterCalibratedArea.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, width, height);
-		recordingCalibratedAreaStartTime = System.currentTimeMillis();
-		isFirstCalibratedAreaFrame = true;
+		calibratedAreaEncoder = encoderService.open(getName() + " Calibrated Area Recording",
+				new MediaWriterEncoder(videoWriterCalibratedArea));
 
 		recordingCalibratedArea = true;
 	}
 
 	public void stopRecordingCalibratedArea() {
 		recordingCalibratedArea = false;
-		videoWriterCalibratedArea.close();
+
+		final EncodingStream calibratedAreaEncoder = this.calibratedAreaEncoder;
+		if (calibratedAreaEncoder == null) return;
+
+		this.calibratedAreaEncoder = null;
+		encoderService.close(calibratedAreaEncoder);
 	}
 
 	@Override
@@ -508,14 +1105,35 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 		newFrame(frame, true);
 	}
 
+	/**
+	 * Capture stage of the frame pipeline. This runs on the camera's thread,
+	 * thus it only validates the frame and queues it for detection.
+	 */
 	@Override
 	public void newFrame(Frame frame, boolean shouldDedistort) {
-		if (!handleFrame(frame, shouldDedistort)) logger.warn("Invalid frame yielded from {}", camera.getName());
+		if (!isValidFrame(frame)) {
+			logger.warn("Invalid frame yielded from {}", camera.getName());
+			if (frame != null) frame.release();
+			return;
+		}
+
+		final CapturedFrame capturedFrame = new CapturedFrame(frame, shouldDedistort);
+		if (firstFrameTime == NO_FRAME) firstFrameTime = capturedFrame.capturedTime;
+		lastFrameTime = capturedFrame.capturedTime;
+
+		final CapturedFrame droppedFrame = detectionQueue.offer(capturedFrame);
+
+		if (droppedFrame != null) {
+			droppedFrame.frame.release();
+
+			if (logger.isTraceEnabled()) logger.trace("Dropped frame from {}, {} dropped so far", getName(),
+					detectionQueue.getDroppedCount());
+		}
 	}
 
 	private int consecutiveCameraErrors = 0;
 
-	private boolean handleFrame(Frame currentFrame, boolean shouldDedistort) {
+	private boolean isValidFrame(Frame currentFrame) {
 		boolean cameraError = false;
 
 		if (currentFrame == null && !camera.isOpen()) {
@@ -529,7 +1147,7 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 			cameraError = true;
 		} else if (currentFrame != null
 				&& (currentFrame.size().height != feedHeight || currentFrame.size().width != feedWidth)
-				&& camera.isOpen()) {
+				&& !isPendingFeedResolution(currentFrame) && camera.isOpen()) {
 			// Camera appears to be open but got an invalid size frame
 			logger.warn("Invalid frame size from camera: {} gave {} expecting {},{}", camera.getName(),
 					currentFrame.size(), feedWidth, feedHeight);
@@ -549,8 +1167,14 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 			consecutiveCameraErrors = 0;
 		}
 
-		BufferedImage currentImage = processFrame(currentFrame, shouldDedistort);
+		return true;
+	}
 
+	/**
+	 * Output stage of the frame pipeline: record and display a frame that has
+	 * been through shot detection.
+	 */
+	private void outputFrame(Frame currentFrame) {
 		Bounds b;
 
 		synchronized (projectionBoundsLock) {
@@ -561,56 +1185,109 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 			}
 		}
 
+		Mat currentMat = currentFrame.getOriginalMat();
+
 		if (cropFeedToProjection && b != null) {
-			currentImage = currentImage.getSubimage((int) b.getMinX(), (int) b.getMinY(), (int) b.getWidth(),
-					(int) b.getHeight());
+			final int minX = (int) b.getMinX();
+			final int minY = (int) b.getMinY();
+			currentMat = currentMat.submat(minY, minY + (int) b.getHeight(), minX, minX + (int) b.getWidth());
+		}
+
+		final EncodingStream shotEncoder = recordingShots ? this.shotEncoder : null;
+		final EncodingStream streamEncoder = recordingStream ? this.streamEncoder : null;
+
+		// Only copy the frame here, the encoders' threads convert it to an
+		// image. Both encoders share the copy, whose time is counted towards
+		// the first encoder.
+		Frame recordedFrame = null;
+		long copyTime = 0;
+
+		if (shotEncoder != null || streamEncoder != null) {
+			final long copyStart = System.nanoTime();
+
+			final Dimension resolution = getRecordingResolution();
+			final Mat originalMat = currentFrame.getOriginalMat();
+			final double scaleX = resolution.getWidth() / originalMat.cols();
+			final double scaleY = resolution.getHeight() / originalMat.rows();
+			final Size recordingSize = new Size(Math.round(currentMat.cols() * scaleX),
+					Math.round(currentMat.rows() * scaleY));
+
+			final Mat recordedMat = recordingFramePool.borrow((int) recordingSize.height, (int) recordingSize.width,
+					currentMat.type());
+			if (fitToRecording(currentMat, recordingSize, recordedMat) == currentMat) currentMat.copyTo(recordedMat);
+
+			recordedFrame = recordingFramePool.createFrame(recordedMat, currentFrame.getTimestamp());
+
+			// Each encoder releases its own reference, which must be taken
+			// before the first encoder can release the frame
+			if (shotEncoder != null && streamEncoder != null) recordedFrame.retain();
+
+			copyTime = System.nanoTime() - copyStart;
 		}
 
-		if (recordingShots) {
-			rollingRecorder.recordFrame(currentImage);
+		if (shotEncoder != null) {
+			final long recordingStart = System.nanoTime();
+
+			// The rolling recorder encodes the frame, then feeds and closes
+			// the shot recorders on the encoder's thread. These entries are
+			// only kept so the shot's recorder can be looked up until it is
+			// closed.
+			shotEncoder.offer(recordedFrame);
 
 			final List<Shot> removeKeys = new ArrayList<>();
 			for (final Entry<Shot, ShotRecorder> r : shotRecorders.entrySet()) {
-				if (r.getValue().isComplete()) {
-					r.getValue().close();
-					removeKeys.add(r.getKey());
-				} else {
-					r.getValue().recordFrame(currentImage);
-				}
+				if (r.getValue().isComplete()) removeKeys.add(r.getKey());
 			}
 
 			for (final Shot s : removeKeys)
 				shotRecorders.remove(s);
+
+			pipelineLatencies.record(Stage.RECORDING, copyTime + System.nanoTime() - recordingStart);
 		}
 
-		if (recordingStream) {
-			final BufferedImage image = ConverterFactory.convertToType(currentImage, BufferedImage.TYPE_3BYTE_BGR);
-			final IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
+		if (streamEncoder != null) {
+			final long encodingStart = System.nanoTime();
 
-			final IVideoPicture frame = converter.toPicture(image,
-					(System.currentTimeMillis() - recordingStartTime) * 1000);
-			frame.setKeyFrame(isFirstStreamFrame);
-			frame.setQuality(0);
-			isFirstStreamFrame = false;
+			streamEncoder.offer(recordedFrame);
 
-			videoWriterStream.encodeVideo(0, frame);
+			pipelineLatencies.record(Stage.STREAM_ENCODING,
+					(shotEncoder == null ? copyTime : 0) + System.nanoTime() - encodingStart);
 		}
 
-		if (!config.isHeadless()) {
+		if (!config.isHeadless() && !loadController.isShedding(DetectionLoadController.Level.SKIP_DISPLAY)) {
+			final long displayStart = System.nanoTime();
+
+			// The view scales the Mat itself, which saves converting the frame
+			// to a BufferedImage just to show it
 			if (cropFeedToProjection && projectionBounds.isPresent()) {
-				cameraView.updateBackground(currentImage, projectionBounds);
+				cameraView.updateBackground(currentMat, projectionBounds);
 			} else {
-				cameraView.updateBackground(currentImage, Optional.empty());
+				cameraView.updateBackground(currentMat, Optional.empty());
 			}
+
+			pipelineLatencies.record(Stage.DISPLAY, System.nanoTime() - displayStart);
 		}
+	}
 
-		return true;
+	// Recorders can't change resolution, thus after the feed resolution
+	// changes frames are scaled to the size their recording started with
+	private Mat fitToRecording(Mat mat, Size recordingSize, Mat scaledMat) {
+		if (mat.cols() == (int) recordingSize.width && mat.rows() == (int) recordingSize.height) return mat;
+
+		Imgproc.resize(mat, scaledMat, recordingSize, 0, 0, Imgproc.INTER_AREA);
+
+		return scaledMat;
 	}
 
-	protected BufferedImage processFrame(Frame currentFrame, boolean shouldDedistort) {
+	/**
+	 * Detection stage of the frame pipeline.
+	 * 
+	 * @return the frame to record and display
+	 */
+	protected Frame processFrame(Frame currentFrame, boolean shouldDedistort) {
 		if (isAutoCalibrating.get()) {
 			acm.processFrame(currentFrame);
-			return currentFrame.getOriginalBufferedImage();
+			return currentFrame;
 		}
 
 		Mat submatFrameBGR = null;
@@ -627,10 +1304,16 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 
 		if (cameraAutoCalibrated && projectionBounds != null) {
 			if (shouldDedistort && acm != null) {
+				final long undistortStart = System.nanoTime();
+
 				// MUST BE IN BGR pixel format.
 				currentFrame = acm.undistortFrame(currentFrame);
+
+				pipelineLatencies.record(Stage.UNDISTORT, System.nanoTime() - undistortStart);
 			}
 
+			final long submatStart = System.nanoTime();
+
 			try {
 				submatFrameBGR = currentFrame.getOriginalMat().submat((int) projectionBounds.getMinY(),
 						(int) projectionBounds.getMaxY(), (int) projectionBounds.getMinX(),
@@ -640,28 +1323,36 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 						+ projectionBounds.toString() + ", frameSize = "
 						+ currentFrame.getOriginalMat().size().toString(), e);
 			}
-			
-			if (recordingCalibratedArea) {
-				final BufferedImage image = ConverterFactory.convertToType(Camera.matToBufferedImage(submatFrameBGR),
-						BufferedImage.TYPE_3BYTE_BGR);
-				final IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
-
-				final IVideoPicture frame = converter.toPicture(image,
-						(System.currentTimeMillis() - recordingCalibratedAreaStartTime) * 1000);
-				frame.setKeyFrame(isFirstCalibratedAreaFrame);
-				frame.setQuality(0);
-				isFirstCalibratedAreaFrame = false;
-
-				videoWriterCalibratedArea.encodeVideo(0, frame);
+
+			pipelineLatencies.record(Stage.SUBMAT, System.nanoTime() - submatStart);
+
+			final EncodingStream calibratedAreaEncoder = this.calibratedAreaEncoder;
+
+			if (recordingCalibratedArea && calibratedAreaEncoder != null && submatFrameBGR != null) {
+				final long recordingStart = System.nanoTime();
+
+				// Only copy the calibrated area here, the encoder's thread
+				// converts it to an image
+				final Mat recordedMat = calibratedAreaFramePool.borrow((int) calibratedAreaRecordingSize.height,
+						(int) calibratedAreaRecordingSize.width, submatFrameBGR.type());
+				if (fitToRecording(submatFrameBGR, calibratedAreaRecordingSize, recordedMat) == submatFrameBGR)
+					submatFrameBGR.copyTo(recordedMat);
+
+				calibratedAreaEncoder
+						.offer(calibratedAreaFramePool.createFrame(recordedMat, currentFrame.getTimestamp()));
+
+				pipelineLatencies.record(Stage.CALIBRATED_AREA_RECORDING, System.nanoTime() - recordingStart);
 			}
 
-			if (debuggerListener.isPresent()) {
+			if (debuggerListener.isPresent() && submatFrameBGR != null) {
 				debuggerListener.get().updateDebugView(Camera.matToBufferedImage(submatFrameBGR));
 			}
 		}
 
 		if ((isLimitingDetectionToProjection() || isCroppingFeedToProjection()) && projectionBounds != null) {
 			if (submatFrameBGR == null) {
+				final long submatStart = System.nanoTime();
+
 				try {
 					submatFrameBGR = currentFrame.getOriginalMat().submat((int) projectionBounds.getMinY(),
 							(int) projectionBounds.getMaxY(), (int) projectionBounds.getMinX(),
@@ -671,8 +1362,12 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 							+ projectionBounds.toString() + ", frameSize = "
 							+ currentFrame.getOriginalMat().size().toString(), e);
 				}
+
+				pipelineLatencies.record(Stage.SUBMAT, System.nanoTime() - submatStart);
 			}
 
+			final long detectionStart = System.nanoTime();
+
 			if (shotDetector instanceof FrameProcessingShotDetector) {
 				if (submatFrameBGR != null) {
 					((FrameProcessingShotDetector) shotDetector)
@@ -682,14 +1377,33 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 					((FrameProcessingShotDetector) shotDetector).processFrame(currentFrame, isDetecting.get());
 				}
 			}
+
+			pipelineLatencies.record(Stage.DETECTION, System.nanoTime() - detectionStart);
 		} else {
+			final long detectionStart = System.nanoTime();
+
 			if (shotDetector instanceof FrameProcessingShotDetector)
 				((FrameProcessingShotDetector) shotDetector).processFrame(currentFrame, isDetecting.get());
+
+			pipelineLatencies.record(Stage.DETECTION, System.nanoTime() - detectionStart);
+		}
+
+		// Only frames that will be shown or recorded need the colored pixels
+		// for brightness and motion
+		if (!config.isHeadless() && !loadController.isShedding(DetectionLoadController.Level.SKIP_OVERLAY)
+				&& (!loadController.isShedding(DetectionLoadController.Level.SKIP_DISPLAY) || recordingShots
+						|| recordingStream)
+				&& shotDetector instanceof FrameProcessingShotDetector) {
+			final long overlayStart = System.nanoTime();
+
+			((FrameProcessingShotDetector) shotDetector).paintDiagnosticOverlay();
+
+			pipelineLatencies.record(Stage.OVERLAY, System.nanoTime() - overlayStart);
 		}
 
 		// currentFrame is showing the colored pixels for brightness and motion,
-		// hence why we need to return the converted version
-		return currentFrame.getOriginalBufferedImage();
+		// hence why we need to return it instead of the frame we were given
+		return currentFrame;
 	}
 
 	private void checkIfMinimumFPS(double cameraFPS) {
@@ -704,6 +1418,8 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 	private Label brightnessDiagnosticWarning = null;
 
 	public void showBrightnessWarning() {
+		brightnessWarningCount.incrementAndGet();
+
 		if (!TimerPool.isWaiting(brightnessDiagnosticFuture)) {
 			brightnessDiagnosticWarning = cameraView.addDiagnosticMessage("Warning: Excessive brightness", Color.RED);
 		} else {
@@ -726,6 +1442,8 @@ public class CameraManager implements ObservableCloseable, CameraEventListener,
 	private Label motionDiagnosticWarning = null;
 
 	public void showMotionWarning() {
+		motionWarningCount.incrementAndGet();
+
 		if (!TimerPool.isWaiting(motionDiagnosticFuture)) {
 			motionDiagnosticWarning = cameraView.addDiagnosticMessage(
 					"Warning: Excessive motion -- Try reducing the camera exposure setting", Color.RED);
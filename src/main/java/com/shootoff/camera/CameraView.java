@@ -2,8 +2,11 @@ package com.shootoff.camera;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
+import org.opencv.core.Mat;
+
 import com.shootoff.Closeable;
 import com.shootoff.targets.Target;
 
@@ -34,6 +37,8 @@ public interface CameraView extends Closeable {
 
 	public Target addTarget(Target newTarget);
 
+	public List<Target> getTargets();
+
 	public Label addDiagnosticMessage(String message, Color backgroundColor);
 
 	public void clearShots();
@@ -50,4 +55,27 @@ public interface CameraView extends Closeable {
 	public void setCameraManager(CameraManager cameraManager);
 
 	public void updateBackground(BufferedImage frame, Optional<Bounds> projectionBounds);
+
+	/**
+	 * Show a camera frame as the background of this view without converting
+	 * it to a <tt>BufferedImage</tt> first. The frame is only read during this
+	 * call, thus the caller may reuse it afterwards.
+	 * 
+	 * @param frame
+	 *            a BGR or greyscale frame, or <code>null</code> to clear the
+	 *            background
+	 * @param projectionBounds
+	 *            where to show the frame if it only covers the projection
+	 */
+	public void updateBackground(Mat frame, Optional<Bounds> projectionBounds);
+
+	/**
+	 * Translate bounds in the coordinates of this view (e.g. a target's
+	 * bounds) to the coordinates of the camera feed.
+	 * 
+	 * @param bounds
+	 *            bounds in the coordinates of this view
+	 * @return <code>bounds</code> in camera feed coordinates
+	 */
+	public Bounds translateCanvasToCamera(Bounds bounds);
 }
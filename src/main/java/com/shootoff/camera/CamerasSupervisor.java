@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.shootoff.camera.cameratypes.Camera;
 import com.shootoff.camera.processors.ShotProcessor;
 import com.shootoff.config.Configuration;
+import com.shootoff.management.CameraManagerMetrics;
 
 public class CamerasSupervisor {
 	private final Configuration config;
@@ -32,16 +33,25 @@ public class CamerasSupervisor {
 
 	private final AtomicBoolean allDetecting = new AtomicBoolean(true);
 
+	// Every camera's shot detection shares these workers so that adding
+	// cameras doesn't multiply the number of threads competing for the CPU
+	private final DetectionWorkerPool detectionWorkerPool;
+
 	public CamerasSupervisor(Configuration config) {
 		this.config = config;
+
+		detectionWorkerPool = new DetectionWorkerPool("Shot Detection",
+				config != null ? config.getDetectionWorkers() : 0);
 	}
 
 	public CameraManager addCameraManager(Camera cameraInterface, CameraErrorView cameraErrorView,
 			CameraView cameraView) {
-		final CameraManager manager = new CameraManager(cameraInterface, cameraErrorView, cameraView);
+		final CameraManager manager = new CameraManager(cameraInterface, cameraErrorView, cameraView,
+				detectionWorkerPool);
 		managers.add(manager);
 		allDetecting.set(true);
 		manager.start();
+		CameraManagerMetrics.register(manager);
 		return manager;
 	}
 
@@ -51,6 +61,7 @@ public class CamerasSupervisor {
 		allDetecting.set(false);
 
 		for (final CameraManager manager : managers) {
+			CameraManagerMetrics.unregister(manager);
 			manager.close();
 		}
 
@@ -58,6 +69,7 @@ public class CamerasSupervisor {
 	}
 
 	public void clearManager(CameraManager manager) {
+		CameraManagerMetrics.unregister(manager);
 		manager.close();
 		managers.remove(manager);
 	}
@@ -96,12 +108,19 @@ public class CamerasSupervisor {
 		return allDetecting.get();
 	}
 
+	public DetectionWorkerPool getDetectionWorkerPool() {
+		return detectionWorkerPool;
+	}
+
 	public void closeAll() {
 		for (final CameraManager manager : managers) {
+			CameraManagerMetrics.unregister(manager);
 			manager.close();
 		}
 
 		allDetecting.set(false);
+
+		detectionWorkerPool.shutdown();
 	}
 
 	public List<CameraManager> getCameraManagers() {
@@ -0,0 +1,244 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches how long a camera takes to process each frame compared to the time
+ * between the camera's frames. When processing falls behind, work that shot
+ * detection can live without is shed one {@link Level} at a time. Levels are
+ * restored one at a time once there is enough headroom again.
+ *
+ * The detection and output stages of the frame pipeline run on their own
+ * threads, thus whichever is slower limits the camera's frame rate. The time
+ * compared to the frame interval is the slower stage's time per frame, which
+ * is why both stages report their times.
+ *
+ * Each level includes the levels below it, e.g. at
+ * {@link Level#SKIP_OVERLAY} the display is also skipped.
+ */
+public final class DetectionLoadController {
+	private static final Logger logger = LoggerFactory.getLogger(DetectionLoadController.class);
+
+	/**
+	 * What is shed, cheapest loss first. {@link #SKIP_DISPLAY} sheds work from
+	 * the output stage, every other level sheds work from the detection
+	 * stage. Either stage can be the slower one, thus each level reduces a
+	 * time the controller measures.
+	 */
+	public enum Level {
+		/**
+		 * Nothing is shed.
+		 */
+		NORMAL,
+		/**
+		 * Frames are not shown on the camera's view. Excessive motion and
+		 * brightness are only painted onto frames that are recorded. This
+		 * shortens the output stage.
+		 */
+		SKIP_DISPLAY,
+		/**
+		 * Excessive motion and brightness are not painted onto frames.
+		 */
+		SKIP_OVERLAY,
+		/**
+		 * Detection is limited to the projection bounds unless a detection
+		 * mask already limits it.
+		 */
+		LIMIT_REGION,
+		/**
+		 * The detector's moving averages are only updated on every other
+		 * frame. Every frame is still searched for shots.
+		 */
+		SKIP_FILTER_UPDATES
+	}
+
+	// Weight of the newest frame in the smoothed processing time
+	private static final double SMOOTHING = 0.1;
+
+	// Consecutive frames over budget before shedding another level
+	private static final int SHED_FRAMES = 10;
+
+	// Consecutive frames with headroom before restoring a level
+	private static final int RESTORE_FRAMES = 60;
+
+	// A level is restored when processing takes less than this fraction of the
+	// frame interval, which leaves room for the restored work
+	private static final double RESTORE_FRACTION = 0.7;
+
+	private final String cameraName;
+
+	private volatile Level level = Level.NORMAL;
+	private double smoothedProcessingTime = -1; // ns
+	private double smoothedOutputTime = -1; // ns
+	private int framesOverBudget = 0;
+	private int framesWithHeadroom = 0;
+
+	private long transitionCount = 0;
+	private final Map<Level, Long> levelEntries = new EnumMap<>(Level.class);
+
+	public DetectionLoadController(String cameraName) {
+		this.cameraName = cameraName;
+	}
+
+	/**
+	 * Record how long the output stage took to record and display the last
+	 * frame. The level only changes when the next frame's processing time is
+	 * recorded.
+	 *
+	 * @param outputTime
+	 *            the time spent outputting the frame in nanoseconds
+	 */
+	public synchronized void recordOutputTime(long outputTime) {
+		smoothedOutputTime = smooth(smoothedOutputTime, outputTime);
+	}
+
+	/**
+	 * Record how long the detection stage took to process the last frame.
+	 *
+	 * @param processingTime
+	 *            the time spent processing the frame in nanoseconds
+	 * @param cameraFPS
+	 *            the rate the camera delivers frames at
+	 * @return <code>true</code> if the level changed
+	 */
+	public synchronized boolean recordFrame(long processingTime, double cameraFPS) {
+		if (cameraFPS <= 0) return false;
+
+		smoothedProcessingTime = smooth(smoothedProcessingTime, processingTime);
+
+		final double frameInterval = 1e9 / cameraFPS;
+		final double stageTime = getStageTime();
+
+		if (stageTime > frameInterval) {
+			framesWithHeadroom = 0;
+
+			if (++framesOverBudget >= SHED_FRAMES && level != Level.SKIP_FILTER_UPDATES) {
+				logTransition("raised", Level.values()[level.ordinal() + 1], frameInterval);
+				setLevel(Level.values()[level.ordinal() + 1]);
+				return true;
+			}
+		} else if (stageTime < frameInterval * RESTORE_FRACTION) {
+			framesOverBudget = 0;
+
+			if (++framesWithHeadroom >= RESTORE_FRAMES && level != Level.NORMAL) {
+				logTransition("lowered", Level.values()[level.ordinal() - 1], frameInterval);
+				setLevel(Level.values()[level.ordinal() - 1]);
+				return true;
+			}
+		} else {
+			framesOverBudget = 0;
+			framesWithHeadroom = 0;
+		}
+
+		return false;
+	}
+
+	private static double smooth(double smoothedTime, long time) {
+		if (smoothedTime < 0) return time;
+
+		return (SMOOTHING * time) + ((1 - SMOOTHING) * smoothedTime);
+	}
+
+	// The slower stage limits the frame rate
+	private double getStageTime() {
+		return Math.max(smoothedProcessingTime, smoothedOutputTime);
+	}
+
+	private void logTransition(String direction, Level newLevel, double frameInterval) {
+		if (logger.isInfoEnabled()) {
+			logger.info("Camera {} {} detection load level {} -> {}: {} ms detecting and {} ms outputting per frame, "
+					+ "{} ms between frames", cameraName, direction, level, newLevel,
+					String.format("%.1f", smoothedProcessingTime / 1e6),
+					String.format("%.1f", Math.max(0, smoothedOutputTime) / 1e6),
+					String.format("%.1f", frameInterval / 1e6));
+		}
+	}
+
+	private void setLevel(Level newLevel) {
+		level = newLevel;
+		framesOverBudget = 0;
+		framesWithHeadroom = 0;
+
+		transitionCount++;
+		levelEntries.merge(newLevel, 1L, Long::sum);
+	}
+
+	/**
+	 * Return to {@link Level#NORMAL}, e.g. because the frame source is not
+	 * live and thus can't be fallen behind.
+	 *
+	 * @return <code>true</code> if the level changed
+	 */
+	public synchronized boolean reset() {
+		smoothedProcessingTime = -1;
+		smoothedOutputTime = -1;
+
+		if (level == Level.NORMAL) return false;
+
+		logger.info("Camera {} reset detection load level {} -> {}", cameraName, level, Level.NORMAL);
+		setLevel(Level.NORMAL);
+		return true;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return <code>true</code> if work at <code>shedLevel</code> is
+	 *         currently being shed
+	 */
+	public boolean isShedding(Level shedLevel) {
+		return shedLevel != Level.NORMAL && level.ordinal() >= shedLevel.ordinal();
+	}
+
+	/**
+	 * @return the smoothed time spent processing each frame in nanoseconds
+	 */
+	public synchronized double getProcessingTime() {
+		return Math.max(0, smoothedProcessingTime);
+	}
+
+	/**
+	 * @return the smoothed time spent outputting each frame in nanoseconds
+	 */
+	public synchronized double getOutputTime() {
+		return Math.max(0, smoothedOutputTime);
+	}
+
+	/**
+	 * @return the number of times the level has changed in either direction
+	 */
+	public synchronized long getTransitionCount() {
+		return transitionCount;
+	}
+
+	/**
+	 * @return the number of times <code>level</code> has been entered
+	 */
+	public synchronized long getEntryCount(Level level) {
+		return levelEntries.getOrDefault(level, 0L);
+	}
+}
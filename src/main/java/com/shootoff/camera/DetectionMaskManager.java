@@ -0,0 +1,280 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.shotdetection.DetectionMask;
+import com.shootoff.targets.Target;
+import com.shootoff.util.TimerPool;
+
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+
+/**
+ * Maintains the detection mask for one camera. The mask limits shot detection
+ * to the parts of the frame where shots matter: the current targets (plus a
+ * margin), regions drawn by the user, or the calibrated projector arena.
+ *
+ * The mask is only rebuilt when its inputs change. Targets are moved on the
+ * JavaFX thread, thus their bounds are polled from that thread while targets
+ * are the mask source.
+ */
+public class DetectionMaskManager {
+	private static final Logger logger = LoggerFactory.getLogger(DetectionMaskManager.class);
+
+	public enum Source {
+		NONE, TARGETS, REGIONS, ARENA
+	}
+
+	// Margin around each target in camera pixels so that shots on a target's
+	// edge are still found
+	private static final int TARGET_MARGIN = 16;
+
+	private static final long TARGET_POLL_INTERVAL = 500; // ms
+
+	private final CameraManager cameraManager;
+
+	private volatile Source source = Source.NONE;
+	private volatile Optional<DetectionMask> mask = Optional.empty();
+
+	// Set while the camera is shedding load, in which case detection is
+	// limited to the arena if the user hasn't chosen a source
+	private boolean isLimitingToArena = false;
+
+	// Regions are in camera feed coordinates
+	private List<List<Point2D>> regions = Collections.emptyList();
+
+	// Target bounds in camera feed coordinates from the last poll
+	private List<Bounds> targetBounds = Collections.emptyList();
+
+	// Inputs used to build the current mask
+	private List<Object> maskInputs = null;
+
+	private ScheduledFuture<?> targetPollFuture = null;
+
+	public DetectionMaskManager(CameraManager cameraManager) {
+		this.cameraManager = cameraManager;
+	}
+
+	/**
+	 * @return the mask to apply to frames passed to the shot detector, in the
+	 *         coordinates of those frames, or empty if the whole frame should
+	 *         be examined
+	 */
+	public Optional<DetectionMask> getMask() {
+		return mask;
+	}
+
+	public Source getSource() {
+		return source;
+	}
+
+	public synchronized void setSource(Source source) {
+		this.source = source;
+
+		if (source == Source.TARGETS)
+			pollTargets();
+		else
+			TimerPool.cancelTimer(targetPollFuture);
+
+		refresh();
+	}
+
+	/**
+	 * Set the user drawn regions to detect shots in when the source is
+	 * {@link Source#REGIONS}. Each region is a polygon in camera feed
+	 * coordinates.
+	 */
+	public synchronized void setRegions(List<List<Point2D>> regions) {
+		final List<List<Point2D>> regionsCopy = new ArrayList<>();
+		for (final List<Point2D> region : regions)
+			regionsCopy.add(Collections.unmodifiableList(new ArrayList<>(region)));
+
+		this.regions = Collections.unmodifiableList(regionsCopy);
+
+		refresh();
+	}
+
+	public synchronized List<List<Point2D>> getRegions() {
+		return regions;
+	}
+
+	/**
+	 * Limit detection to the projector arena while the source is
+	 * {@link Source#NONE}. This does nothing if the camera isn't calibrated.
+	 */
+	public synchronized void setLimitingToArena(boolean isLimitingToArena) {
+		this.isLimitingToArena = isLimitingToArena;
+
+		refresh();
+	}
+
+	public synchronized void close() {
+		source = Source.NONE;
+		TimerPool.cancelTimer(targetPollFuture);
+	}
+
+	private void pollTargets() {
+		TimerPool.cancelTimer(targetPollFuture);
+
+		targetPollFuture = TimerPool.schedule(() -> {
+			Platform.runLater(() -> {
+				if (source != Source.TARGETS) return;
+
+				updateTargetBounds();
+
+				synchronized (this) {
+					if (source == Source.TARGETS) pollTargets();
+				}
+			});
+		}, TARGET_POLL_INTERVAL);
+	}
+
+	/**
+	 * Read the bounds of the camera view's visible targets and rebuild the mask
+	 * if they moved. This must be called on the JavaFX thread.
+	 */
+	void updateTargetBounds() {
+		final CameraView cameraView = cameraManager.getCameraView();
+
+		final List<Bounds> bounds = new ArrayList<>();
+		for (final Target target : cameraView.getTargets()) {
+			if (target.isVisible()) bounds.add(cameraView.translateCanvasToCamera(target.getBoundsInParent()));
+		}
+
+		synchronized (this) {
+			targetBounds = bounds;
+			refresh();
+		}
+	}
+
+	/**
+	 * Rebuild the mask if any of its inputs have changed. This must be called
+	 * when the feed resolution or projection bounds change.
+	 */
+	public synchronized void refresh() {
+		final Source currentSource = source == Source.NONE && isLimitingToArena ? Source.ARENA : source;
+
+		if (currentSource == Source.NONE) {
+			maskInputs = null;
+			mask = Optional.empty();
+			return;
+		}
+
+		// Frames are cropped to the arena when detection is limited to the
+		// projection, so the mask needs to be in the arena's coordinates
+		final Optional<Bounds> projectionBounds = cameraManager.getProjectionBounds();
+		final boolean isCropped = (cameraManager.isLimitingDetectionToProjection()
+				|| cameraManager.isCroppingFeedToProjection()) && projectionBounds.isPresent();
+
+		final int originX = isCropped ? (int) projectionBounds.get().getMinX() : 0;
+		final int originY = isCropped ? (int) projectionBounds.get().getMinY() : 0;
+		final int width = isCropped ? (int) projectionBounds.get().getMaxX() - originX : cameraManager.getFeedWidth();
+		final int height = isCropped ? (int) projectionBounds.get().getMaxY() - originY
+				: cameraManager.getFeedHeight();
+
+		final List<Object> inputs = new ArrayList<>();
+		inputs.add(currentSource);
+		inputs.add(originX);
+		inputs.add(originY);
+		inputs.add(width);
+		inputs.add(height);
+
+		switch (currentSource) {
+		case TARGETS:
+			inputs.addAll(targetBounds);
+			break;
+		case REGIONS:
+			inputs.addAll(regions);
+			break;
+		case ARENA:
+			inputs.add(projectionBounds);
+			break;
+		default:
+			break;
+		}
+
+		if (inputs.equals(maskInputs)) return;
+
+		maskInputs = inputs;
+
+		if (width <= 0 || height <= 0) {
+			mask = Optional.empty();
+			return;
+		}
+
+		final DetectionMask.Builder builder = new DetectionMask.Builder(width, height);
+
+		switch (currentSource) {
+		case TARGETS:
+			for (final Bounds b : targetBounds) {
+				builder.addRectangle((int) Math.floor(b.getMinX()) - originX - TARGET_MARGIN,
+						(int) Math.floor(b.getMinY()) - originY - TARGET_MARGIN,
+						(int) Math.ceil(b.getMaxX()) - originX + TARGET_MARGIN,
+						(int) Math.ceil(b.getMaxY()) - originY + TARGET_MARGIN);
+			}
+			break;
+
+		case REGIONS:
+			for (final List<Point2D> region : regions) {
+				final double[] xs = new double[region.size()];
+				final double[] ys = new double[region.size()];
+
+				for (int i = 0; i < region.size(); i++) {
+					xs[i] = region.get(i).getX() - originX;
+					ys[i] = region.get(i).getY() - originY;
+				}
+
+				builder.addPolygon(xs, ys);
+			}
+			break;
+
+		case ARENA:
+			if (projectionBounds.isPresent()) {
+				final Bounds b = projectionBounds.get();
+				builder.addRectangle((int) b.getMinX() - originX, (int) b.getMinY() - originY,
+						(int) b.getMaxX() - originX, (int) b.getMaxY() - originY);
+			} else {
+				// Not calibrated yet, so there is nothing to limit detection to
+				mask = Optional.empty();
+				return;
+			}
+			break;
+
+		default:
+			break;
+		}
+
+		final DetectionMask newMask = builder.build();
+
+		if (logger.isDebugEnabled()) logger.debug("Rebuilt {} detection mask for {}: {} of {} pixels", currentSource,
+				cameraManager.getName(), newMask.getPixelCount(), width * height);
+
+		mask = Optional.of(newMask);
+	}
+}
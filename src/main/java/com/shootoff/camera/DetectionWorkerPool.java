@@ -0,0 +1,361 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed set of worker threads that every camera's shot detection shares.
+ * Each camera registers a {@link Workload} and hands it the parallel parts of
+ * processing a frame (e.g. the bands of the detection sieve) as a batch of
+ * tasks.
+ *
+ * Workers take one task at a time. They serve the highest priority workload
+ * with tasks left, and rotate between workloads of equal priority so that a
+ * busy camera can't starve the others. The thread that submits a batch also
+ * works on it, thus every camera makes progress even while workers are busy
+ * with higher priority cameras.
+ */
+public final class DetectionWorkerPool {
+	private static final Logger logger = LoggerFactory.getLogger(DetectionWorkerPool.class);
+
+	public static final int DEFAULT_PRIORITY = 0;
+
+	// E.g. the camera pointed at the projector arena
+	public static final int ARENA_PRIORITY = 10;
+
+	public interface Task {
+		/**
+		 * Perform task <code>index</code> of the current batch. Tasks in the
+		 * same batch may run concurrently.
+		 */
+		void perform(int index);
+	}
+
+	private final Thread[] workers;
+
+	// Guards the workload list, the round robin cursor, and shutdown
+	private final Object lock = new Object();
+	private final List<Workload> workloads = new ArrayList<>();
+	private int nextWorkload = 0;
+	private boolean isShutdown = false;
+
+	/**
+	 * @param workerCount
+	 *            the number of worker threads, where 0 means one per
+	 *            processor
+	 */
+	public DetectionWorkerPool(String name, int workerCount) {
+		if (workerCount <= 0) workerCount = Runtime.getRuntime().availableProcessors();
+
+		workers = new Thread[workerCount];
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(this::work, name + " Worker " + (i + 1));
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	public Workload register(String cameraName, int priority) {
+		final Workload workload = new Workload(cameraName, priority);
+
+		synchronized (lock) {
+			workloads.add(workload);
+		}
+
+		return workload;
+	}
+
+	public void unregister(Workload workload) {
+		synchronized (lock) {
+			workloads.remove(workload);
+		}
+	}
+
+	public List<Workload> getWorkloads() {
+		synchronized (lock) {
+			return new ArrayList<>(workloads);
+		}
+	}
+
+	/**
+	 * Stop the workers. Batches submitted after this are run entirely by the
+	 * submitting thread.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			isShutdown = true;
+			lock.notifyAll();
+		}
+	}
+
+	public boolean isShutdown() {
+		synchronized (lock) {
+			return isShutdown;
+		}
+	}
+
+	private void workAvailable() {
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private void work() {
+		while (true) {
+			Workload workload;
+
+			synchronized (lock) {
+				while ((workload = nextWorkload()) == null) {
+					if (isShutdown) return;
+
+					try {
+						lock.wait();
+					} catch (final InterruptedException e) {
+						return;
+					}
+				}
+
+				if (isShutdown) return;
+			}
+
+			try {
+				workload.performNext();
+			} catch (final Exception e) {
+				logger.error("Shot detection task failed for camera " + workload.getCameraName(), e);
+			}
+		}
+	}
+
+	// Must be called with the lock held
+	private Workload nextWorkload() {
+		final int workloadCount = workloads.size();
+		Workload selected = null;
+		int selectedIndex = -1;
+
+		for (int i = 0; i < workloadCount; i++) {
+			final int index = (nextWorkload + i) % workloadCount;
+			final Workload workload = workloads.get(index);
+
+			if (workload.hasUnclaimedTasks() && (selected == null || workload.priority > selected.priority)) {
+				selected = workload;
+				selectedIndex = index;
+			}
+		}
+
+		if (selected != null) nextWorkload = (selectedIndex + 1) % workloadCount;
+
+		return selected;
+	}
+
+	/**
+	 * One camera's share of the pool.
+	 */
+	public final class Workload {
+		private final String cameraName;
+		private volatile int priority;
+
+		// The current batch, guarded by this workload
+		private Task task = null;
+		private int taskCount = 0;
+		private int nextTask = 0;
+		private int completedTasks = 0;
+
+		private final AtomicLong busyTime = new AtomicLong();
+		private final AtomicLong tasksPerformed = new AtomicLong();
+		private long batchCount = 0;
+		private final long registeredTime = System.nanoTime();
+		private long lastSampleTime = registeredTime;
+		private long lastSampleBusyTime = 0;
+
+		private Workload(String cameraName, int priority) {
+			this.cameraName = cameraName;
+			this.priority = priority;
+		}
+
+		public String getCameraName() {
+			return cameraName;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public void setPriority(int priority) {
+			this.priority = priority;
+		}
+
+		public DetectionWorkerPool getPool() {
+			return DetectionWorkerPool.this;
+		}
+
+		/**
+		 * Run tasks 0 to <code>taskCount - 1</code> on the pool and wait for
+		 * all of them to finish. The calling thread works on the batch too.
+		 * Only one batch per workload may run at a time.
+		 */
+		public void run(int taskCount, Task task) {
+			if (taskCount <= 0) return;
+
+			synchronized (this) {
+				this.task = task;
+				this.taskCount = taskCount;
+				nextTask = 0;
+				completedTasks = 0;
+				batchCount++;
+			}
+
+			if (taskCount > 1 && !isShutdown()) workAvailable();
+
+			boolean isFinished = false;
+
+			try {
+				while (performNext())
+					;
+
+				isFinished = true;
+			} finally {
+				synchronized (this) {
+					// A task failed on this thread, thus cancel the tasks
+					// nobody has claimed yet instead of waiting for them
+					if (!isFinished) {
+						completedTasks += this.taskCount - nextTask;
+						nextTask = this.taskCount;
+					}
+
+					// Workers may still be inside tasks they claimed and the
+					// caller may be about to use what those tasks write, thus
+					// an interrupt can't cut the wait short. It's kept for the
+					// caller instead.
+					boolean isInterrupted = false;
+
+					while (completedTasks < this.taskCount) {
+						try {
+							wait();
+						} catch (final InterruptedException e) {
+							isInterrupted = true;
+						}
+					}
+
+					this.task = null;
+
+					if (isInterrupted) Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		synchronized boolean hasUnclaimedTasks() {
+			return task != null && nextTask < taskCount;
+		}
+
+		/**
+		 * Perform the next unclaimed task of the current batch, if any.
+		 *
+		 * @return <code>true</code> if a task was performed
+		 */
+		boolean performNext() {
+			final Task currentTask;
+			final int index;
+
+			synchronized (this) {
+				if (task == null || nextTask >= taskCount) return false;
+
+				currentTask = task;
+				index = nextTask++;
+			}
+
+			final long start = System.nanoTime();
+
+			try {
+				currentTask.perform(index);
+			} finally {
+				busyTime.addAndGet(System.nanoTime() - start);
+				tasksPerformed.incrementAndGet();
+
+				synchronized (this) {
+					if (++completedTasks == taskCount) notifyAll();
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * @return the time spent performing this camera's tasks by the pool's
+		 *         workers and the camera's own thread in nanoseconds
+		 */
+		public long getBusyTime() {
+			return busyTime.get();
+		}
+
+		public long getTasksPerformed() {
+			return tasksPerformed.get();
+		}
+
+		public synchronized long getBatchCount() {
+			return batchCount;
+		}
+
+		/**
+		 * @return the share of the pool's capacity used by this camera since
+		 *         it was registered. Because the camera's own thread also works
+		 *         on its batches this can exceed 1 for a pool with few workers.
+		 */
+		public double getUtilization() {
+			return utilization(busyTime.get(), System.nanoTime() - registeredTime);
+		}
+
+		/**
+		 * @return the share of the pool's capacity used by this camera since
+		 *         the last call to this method
+		 */
+		public synchronized double sampleUtilization() {
+			final long now = System.nanoTime();
+			final long busy = busyTime.get();
+			final double utilization = utilization(busy - lastSampleBusyTime, now - lastSampleTime);
+
+			lastSampleTime = now;
+			lastSampleBusyTime = busy;
+
+			return utilization;
+		}
+
+		private double utilization(long busy, long elapsed) {
+			if (elapsed <= 0) return 0;
+
+			return (double) busy / ((double) elapsed * workers.length);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (priority %d, %.1f%% of %d workers)", cameraName, priority,
+					getUtilization() * 100, workers.length);
+		}
+	}
+}
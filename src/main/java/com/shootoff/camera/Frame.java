@@ -1,30 +1,85 @@
 package com.shootoff.camera;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 
 import com.shootoff.camera.cameratypes.Camera;
 
+/**
+ * A frame from a camera and the time it was captured. Frames created by a
+ * {@link FramePool} are reference counted: the frame starts with one reference
+ * held by whoever created it, consumers that keep the frame past the call that
+ * handed it to them {@link #retain()} it, and everyone {@link #release()}s their
+ * reference when they are done. The frame's Mat goes back to the pool when the
+ * last reference is released, thus the Mat must not be used after that.
+ * Frames that are not from a pool are counted the same way, but their Mats are
+ * left to the garbage collector.
+ */
 public class Frame {
 	protected Mat mat;
 	final protected long timestamp;
 
+	private final FramePool pool;
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+
 	public Frame(Mat mat, long timestamp) {
+		this(mat, timestamp, null);
+	}
+
+	Frame(Mat mat, long timestamp, FramePool pool) {
 		this.mat = mat;
 		this.timestamp = timestamp;
+		this.pool = pool;
 	}
 
 	public Frame(BufferedImage bimg, long timestamp) {
-		mat = Camera.bufferedImageToMat(bimg);
-		this.timestamp = timestamp;
+		this(Camera.bufferedImageToMat(bimg), timestamp, null);
 	}
 
 	public void setMat(Mat mat) {
+		// The replaced Mat is no longer reachable through this frame
+		if (pool != null && this.mat != mat) pool.recycle(this.mat);
+
 		this.mat = mat;
 	}
 
+	/**
+	 * Add a reference to this frame so that it stays valid until a matching
+	 * call to {@link #release()}.
+	 * 
+	 * @return this frame
+	 */
+	public Frame retain() {
+		if (referenceCount.getAndIncrement() <= 0) {
+			referenceCount.decrementAndGet();
+			throw new IllegalStateException("Cannot retain a frame that was already released");
+		}
+
+		return this;
+	}
+
+	/**
+	 * Drop a reference to this frame. The last release returns the frame's
+	 * Mat to its pool.
+	 */
+	public void release() {
+		final int remainingReferences = referenceCount.decrementAndGet();
+
+		if (remainingReferences == 0) {
+			if (pool != null) pool.recycle(mat);
+		} else if (remainingReferences < 0) {
+			referenceCount.incrementAndGet();
+			throw new IllegalStateException("Frame was released more times than it was retained");
+		}
+	}
+
+	public int getReferenceCount() {
+		return referenceCount.get();
+	}
+
 	public long getTimestamp() {
 		return timestamp;
 	}
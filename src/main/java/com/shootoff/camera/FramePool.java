@@ -0,0 +1,135 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.opencv.core.Mat;
+
+/**
+ * Recycles the native buffers behind camera frames. Without a pool every frame
+ * allocates a new Mat, whose native memory is only freed when the Mat is
+ * finalized. A camera borrows a Mat, fills it, and wraps it with
+ * {@link #createFrame(Mat, long)}. When the frame's last reference is released
+ * its Mat comes back here to be filled again.
+ *
+ * All free Mats have the same dimensions and type. Borrowing a Mat with
+ * different dimensions (e.g. after a resolution change) frees the others.
+ */
+public final class FramePool {
+	private final int maximumFreeMats;
+	private final Deque<Mat> freeMats = new ArrayDeque<>();
+
+	private int rows = -1;
+	private int cols = -1;
+	private int type = -1;
+
+	private boolean isClosed = false;
+
+	private long allocatedCount = 0;
+	private long reusedCount = 0;
+
+	/**
+	 * @param maximumFreeMats
+	 *            the number of released Mats to hold on to. This should cover
+	 *            the number of frames that can be in flight at once.
+	 */
+	public FramePool(int maximumFreeMats) {
+		this.maximumFreeMats = maximumFreeMats;
+	}
+
+	/**
+	 * @return a Mat with the requested dimensions and type. Its contents are
+	 *         undefined.
+	 */
+	public synchronized Mat borrow(int rows, int cols, int type) {
+		if (rows != this.rows || cols != this.cols || type != this.type) {
+			releaseFreeMats();
+
+			this.rows = rows;
+			this.cols = cols;
+			this.type = type;
+		}
+
+		final Mat mat = freeMats.pollFirst();
+
+		if (mat != null) {
+			reusedCount++;
+			return mat;
+		}
+
+		allocatedCount++;
+		return new Mat(rows, cols, type);
+	}
+
+	/**
+	 * @return a frame that returns <code>mat</code> to this pool when its last
+	 *         reference is released
+	 */
+	public Frame createFrame(Mat mat, long timestamp) {
+		return new Frame(mat, timestamp, this);
+	}
+
+	/**
+	 * Return a Mat that is no longer used. Mats that don't fit the pool are
+	 * freed immediately.
+	 */
+	public synchronized void recycle(Mat mat) {
+		if (isClosed || freeMats.size() >= maximumFreeMats || mat.rows() != rows || mat.cols() != cols
+				|| mat.type() != type) {
+			mat.release();
+			return;
+		}
+
+		freeMats.addFirst(mat);
+	}
+
+	/**
+	 * Free every Mat held by the pool. Mats recycled after this are freed
+	 * immediately.
+	 */
+	public synchronized void close() {
+		isClosed = true;
+		releaseFreeMats();
+	}
+
+	private void releaseFreeMats() {
+		for (final Mat mat : freeMats)
+			mat.release();
+
+		freeMats.clear();
+	}
+
+	public synchronized int getFreeCount() {
+		return freeMats.size();
+	}
+
+	/**
+	 * @return the number of Mats this pool had to allocate because none were
+	 *         free
+	 */
+	public synchronized long getAllocatedCount() {
+		return allocatedCount;
+	}
+
+	public synchronized long getReusedCount() {
+		return reusedCount;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded queue between two stages of the frame pipeline. The producing
+ * stage never waits on the consuming stage unless the policy is
+ * {@link DropPolicy#BLOCK}: when the ring is full a frame is dropped instead
+ * and counted. A ring has exactly one consumer.
+ *
+ * @param <T>
+ *            the type of item passed between the stages
+ */
+public final class FrameRing<T> {
+	public enum DropPolicy {
+		/**
+		 * Discard the oldest queued item to make room for a new one. This
+		 * keeps the consumer working on the most recent frames.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Discard new items while the ring is full. This keeps a continuous
+		 * run of frames at the cost of falling behind the camera.
+		 */
+		DROP_NEWEST,
+		/**
+		 * Make the producer wait for room. Nothing is dropped, thus this is
+		 * only suitable for sources that are not live (e.g. video files).
+		 */
+		BLOCK
+	}
+
+	private final Object[] items;
+	private int head = 0;
+	private int count = 0;
+
+	private volatile DropPolicy dropPolicy;
+
+	private boolean isClosed = false;
+	private boolean isConsumerWaiting = false;
+
+	private long offeredCount = 0;
+	private long droppedCount = 0;
+
+	public FrameRing(int capacity, DropPolicy dropPolicy) {
+		if (capacity < 1) throw new IllegalArgumentException("Frame ring capacity must be at least 1: " + capacity);
+
+		items = new Object[capacity];
+		this.dropPolicy = dropPolicy;
+	}
+
+	public DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+
+	public void setDropPolicy(DropPolicy dropPolicy) {
+		synchronized (this) {
+			this.dropPolicy = dropPolicy;
+
+			// Producers blocked under the old policy need to apply the new
+			// one
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Add an item to the ring, dropping an item if the ring is full.
+	 *
+	 * @return the item that was dropped to honor the drop policy, or
+	 *         <code>null</code> if nothing was dropped. If the ring is
+	 *         closed, <code>item</code> is returned.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T offer(T item) {
+		while (count == items.length && dropPolicy == DropPolicy.BLOCK && !isClosed) {
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		if (isClosed) return item;
+
+		offeredCount++;
+
+		T dropped = null;
+
+		if (count == items.length) {
+			droppedCount++;
+
+			if (dropPolicy == DropPolicy.DROP_NEWEST) return item;
+
+			// Dropping the oldest is also the fallback when a blocked
+			// producer is interrupted
+			dropped = (T) items[head];
+			items[head] = null;
+			head = (head + 1) % items.length;
+			count--;
+		}
+
+		items[(head + count) % items.length] = item;
+		count++;
+
+		notifyAll();
+
+		return dropped;
+	}
+
+	/**
+	 * Remove the oldest item from the ring, waiting for one if the ring is
+	 * empty. The consumer is considered idle while it waits here.
+	 *
+	 * @return the oldest item or <code>null</code> if the ring was closed
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T take() throws InterruptedException {
+		while (count == 0 && !isClosed) {
+			isConsumerWaiting = true;
+			notifyAll();
+
+			try {
+				wait();
+			} finally {
+				isConsumerWaiting = false;
+			}
+		}
+
+		if (isClosed) return null;
+
+		final T item = (T) items[head];
+		items[head] = null;
+		head = (head + 1) % items.length;
+		count--;
+
+		notifyAll();
+
+		return item;
+	}
+
+	/**
+	 * Wait until every item offered so far has been taken and the consumer is
+	 * waiting for more.
+	 */
+	public synchronized void awaitIdle() throws InterruptedException {
+		while (!isClosed && (count > 0 || !isConsumerWaiting)) {
+			wait();
+		}
+	}
+
+	/**
+	 * Stop the ring. A waiting consumer is released and later offers are
+	 * rejected.
+	 *
+	 * @return the items that were still queued, oldest first, which now
+	 *         belong to the caller (e.g. to release pooled frames)
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized List<T> close() {
+		isClosed = true;
+
+		final List<T> remaining = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			final int index = (head + i) % items.length;
+
+			remaining.add((T) items[index]);
+			items[index] = null;
+		}
+		count = 0;
+
+		notifyAll();
+
+		return remaining;
+	}
+
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+
+	public int getCapacity() {
+		return items.length;
+	}
+
+	/**
+	 * @return the number of items waiting to be consumed
+	 */
+	public synchronized int getDepth() {
+		return count;
+	}
+
+	/**
+	 * @return the number of items offered to the ring while it was open,
+	 *         including those that were dropped
+	 */
+	public synchronized long getOfferedCount() {
+		return offeredCount;
+	}
+
+	/**
+	 * @return the number of items dropped because the ring was full
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+}
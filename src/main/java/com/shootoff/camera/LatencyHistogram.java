@@ -0,0 +1,214 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts latencies in fixed buckets over a sliding window, e.g. the last
+ * minute, so that percentiles reflect how a camera is doing now rather than
+ * since it started.
+ *
+ * All buckets are allocated up front and recording a latency only updates
+ * atomic counters, thus a pipeline stage can record every frame without
+ * allocating or locking. Each power of two is split into
+ * {@value #SUB_BUCKETS} buckets, which bounds the error of a percentile to
+ * 1/{@value #SUB_BUCKETS} of its value.
+ *
+ * The window is divided into slots. When the clock moves into a slot that
+ * still holds counts from an earlier pass through the window, the first
+ * latency recorded into it clears it. A latency recorded by another thread at
+ * that exact moment can be lost, which is fine for diagnostics.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Latencies are counted in microseconds up to 2^MAX_EXPONENT us (~67 s).
+	// Longer latencies are counted in the last bucket.
+	private static final int MAX_EXPONENT = 26;
+	private static final long MAX_MICROSECONDS = (1L << (MAX_EXPONENT + 1)) - 1;
+	static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private static final long NO_EPOCH = Long.MIN_VALUE;
+
+	private final LongSupplier clock;
+	private final long slotDuration; // ns
+	private final int slotCount;
+
+	private final AtomicLongArray counts;
+	private final AtomicLongArray maxima;
+	private final AtomicLongArray slotEpochs;
+
+	/**
+	 * @param window
+	 *            how far back latencies are counted in nanoseconds
+	 * @param slotCount
+	 *            how many slots the window is divided into. Latencies leave
+	 *            the window one slot at a time.
+	 */
+	public LatencyHistogram(long window, int slotCount) {
+		this(window, slotCount, System::nanoTime);
+	}
+
+	LatencyHistogram(long window, int slotCount, LongSupplier clock) {
+		if (slotCount < 1) throw new IllegalArgumentException("slotCount must be at least 1");
+
+		this.clock = clock;
+		this.slotDuration = Math.max(1, window / slotCount);
+		this.slotCount = slotCount;
+
+		counts = new AtomicLongArray(slotCount * BUCKET_COUNT);
+		maxima = new AtomicLongArray(slotCount);
+		slotEpochs = new AtomicLongArray(slotCount);
+
+		for (int i = 0; i < slotCount; i++)
+			slotEpochs.set(i, NO_EPOCH);
+	}
+
+	/**
+	 * @param latency
+	 *            the latency to count in nanoseconds
+	 */
+	public void record(long latency) {
+		if (latency < 0) latency = 0;
+
+		final long epoch = Math.floorDiv(clock.getAsLong(), slotDuration);
+		final int slot = (int) Math.floorMod(epoch, (long) slotCount);
+
+		if (slotEpochs.get(slot) != epoch) claimSlot(slot, epoch);
+
+		counts.incrementAndGet(slot * BUCKET_COUNT + bucketIndex(latency / 1000));
+
+		long max;
+		while (latency > (max = maxima.get(slot))) {
+			if (maxima.compareAndSet(slot, max, latency)) break;
+		}
+	}
+
+	private void claimSlot(int slot, long epoch) {
+		final long staleEpoch = slotEpochs.get(slot);
+
+		// Another thread already cleared the slot
+		if (staleEpoch == epoch || !slotEpochs.compareAndSet(slot, staleEpoch, epoch)) return;
+
+		final int base = slot * BUCKET_COUNT;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			counts.set(base + i, 0);
+
+		maxima.set(slot, 0);
+	}
+
+	static int bucketIndex(long microseconds) {
+		if (microseconds < SUB_BUCKETS) return (int) microseconds;
+		if (microseconds > MAX_MICROSECONDS) microseconds = MAX_MICROSECONDS;
+
+		final int exponent = 63 - Long.numberOfLeadingZeros(microseconds);
+		final int subBucket = (int) (microseconds >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest latency in microseconds that is counted in
+	 *         <code>index</code>
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) return index;
+
+		final int shift = index / SUB_BUCKETS - 1;
+		final long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the latencies currently in the window
+	 */
+	public Snapshot getSnapshot() {
+		final long currentEpoch = Math.floorDiv(clock.getAsLong(), slotDuration);
+		final long[] bucketCounts = new long[BUCKET_COUNT];
+		long max = 0;
+
+		for (int slot = 0; slot < slotCount; slot++) {
+			final long epoch = slotEpochs.get(slot);
+
+			if (epoch == NO_EPOCH || epoch <= currentEpoch - slotCount || epoch > currentEpoch) continue;
+
+			final int base = slot * BUCKET_COUNT;
+			for (int i = 0; i < BUCKET_COUNT; i++)
+				bucketCounts[i] += counts.get(base + i);
+
+			max = Math.max(max, maxima.get(slot));
+		}
+
+		return new Snapshot(bucketCounts, max);
+	}
+
+	public static final class Snapshot {
+		private final long[] bucketCounts;
+		private final long count;
+		private final long max;
+
+		private Snapshot(long[] bucketCounts, long max) {
+			this.bucketCounts = bucketCounts;
+			this.max = max;
+
+			long count = 0;
+			for (final long bucketCount : bucketCounts)
+				count += bucketCount;
+			this.count = count;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @param percentile
+		 *            a percentile between 0 and 100
+		 * @return the latency in nanoseconds that <code>percentile</code>
+		 *         percent of the latencies are at or below, rounded up to the
+		 *         latency's bucket, or 0 if nothing was counted
+		 */
+		public long getPercentile(double percentile) {
+			if (count == 0) return 0;
+
+			final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += bucketCounts[i];
+
+				// A bucket's upper bound can be past the largest latency
+				if (seen >= rank) return Math.min(bucketUpperBound(i) * 1000 + 999, max);
+			}
+
+			return max;
+		}
+
+		/**
+		 * @return the largest latency in nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+	}
+}
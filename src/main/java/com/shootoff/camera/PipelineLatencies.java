@@ -0,0 +1,133 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for each stage of one camera's frame pipeline over the
+ * last {@value #WINDOW_SECONDS} seconds. Stages record into their own
+ * histogram, thus a slow stage stands out from the others.
+ */
+public final class PipelineLatencies {
+	public enum Stage {
+		/**
+		 * Time a captured frame waits for the detection stage.
+		 */
+		CAPTURE_HANDOFF("Capture hand-off"),
+		/**
+		 * Warping a frame to undo the projection's perspective.
+		 */
+		UNDISTORT("Undistortion"),
+		/**
+		 * Extracting the projection bounds from a frame.
+		 */
+		SUBMAT("Projection submat"),
+		/**
+		 * Handing the calibrated area to its encoder.
+		 */
+		CALIBRATED_AREA_RECORDING("Calibrated area recording"),
+		/**
+		 * Searching a frame for shots.
+		 */
+		DETECTION("Shot detection"),
+		/**
+		 * Painting excessive motion and brightness onto a frame.
+		 */
+		OVERLAY("Diagnostic overlay"),
+		/**
+		 * The whole detection stage, including the stages above.
+		 */
+		PROCESSING("Detection stage total"),
+		/**
+		 * Handing a frame to the rolling recorder's encoder.
+		 */
+		RECORDING("Shot recording"),
+		/**
+		 * Handing a frame to the recorded stream's encoder.
+		 */
+		STREAM_ENCODING("Stream recording"),
+		/**
+		 * Showing a frame on the camera's view.
+		 */
+		DISPLAY("Display");
+
+		private final String description;
+
+		Stage(String description) {
+			this.description = description;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	public static final int WINDOW_SECONDS = 60;
+	private static final int WINDOW_SLOTS = 6;
+
+	private final String cameraName;
+	private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+	public PipelineLatencies(String cameraName) {
+		this.cameraName = cameraName;
+
+		for (final Stage stage : Stage.values())
+			histograms.put(stage, new LatencyHistogram(TimeUnit.SECONDS.toNanos(WINDOW_SECONDS), WINDOW_SLOTS));
+	}
+
+	/**
+	 * @param latency
+	 *            the time spent in <code>stage</code> in nanoseconds
+	 */
+	public void record(Stage stage, long latency) {
+		histograms.get(stage).record(latency);
+	}
+
+	public LatencyHistogram.Snapshot getSnapshot(Stage stage) {
+		return histograms.get(stage).getSnapshot();
+	}
+
+	/**
+	 * @return a table with the count, p50, p95, p99 and maximum latency of
+	 *         every stage that ran during the window
+	 */
+	public String formatReport() {
+		final StringBuilder report = new StringBuilder();
+
+		report.append(String.format("Camera %s pipeline latencies over the last %d s%n", cameraName,
+				WINDOW_SECONDS));
+		report.append(String.format("%-26s %8s %9s %9s %9s %9s%n", "Stage", "Frames", "p50 ms", "p95 ms", "p99 ms",
+				"Max ms"));
+
+		for (final Stage stage : Stage.values()) {
+			final LatencyHistogram.Snapshot snapshot = getSnapshot(stage);
+
+			if (snapshot.getCount() == 0) continue;
+
+			report.append(String.format("%-26s %8d %9.3f %9.3f %9.3f %9.3f%n", stage.getDescription(),
+					snapshot.getCount(), snapshot.getPercentile(50) / 1e6, snapshot.getPercentile(95) / 1e6,
+					snapshot.getPercentile(99) / 1e6, snapshot.getMax() / 1e6));
+		}
+
+		return report.toString();
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the highest camera resolution at which shot detection keeps up with a
+ * target frame rate on this machine. The camera starts at the highest
+ * resolution. After a warm-up window the average time spent detecting shots
+ * in each frame is compared to the target, and if detection is too slow the
+ * policy steps down to the next lower resolution and measures again.
+ *
+ * Cameras may open at a lower resolution than the one asked for. Thus when a
+ * resolution sustains the target with enough headroom that the next higher
+ * resolution should too, assuming detection time grows with the pixel count,
+ * the policy steps up and measures that resolution. Resolutions that were too
+ * slow are never tried again, thus the policy can't oscillate. Once no step
+ * is left to try, the policy settles and doesn't ask for more changes.
+ */
+public final class ResolutionPolicy {
+	private static final Logger logger = LoggerFactory.getLogger(ResolutionPolicy.class);
+
+	public static final List<Dimension> DEFAULT_RESOLUTIONS = Collections.unmodifiableList(
+			Arrays.asList(new Dimension(1920, 1080), new Dimension(1280, 720), new Dimension(800, 600),
+					new Dimension(CameraManager.DEFAULT_FEED_WIDTH, CameraManager.DEFAULT_FEED_HEIGHT),
+					new Dimension(320, 240)));
+
+	// Length of the window measured at each resolution
+	private static final double WARMUP_SECONDS = 3;
+	private static final int MINIMUM_WARMUP_FRAMES = 30;
+
+	// Frames ignored after a change while the camera and detector settle,
+	// e.g. while the detector's filters initialize
+	private static final int SETTLE_FRAMES = 15;
+
+	private final String cameraName;
+	private final List<Dimension> resolutions;
+	private final double targetFPS;
+	private final int warmupFrames;
+	private final int settleFrames;
+
+	private final Set<Dimension> tooSlowResolutions = new HashSet<>();
+
+	private Dimension measuredResolution = null;
+	private Optional<Dimension> requestedResolution = Optional.empty();
+	private int frameCount = 0;
+	private long totalProcessingTime = 0; // ns
+	private boolean isSettled = false;
+
+	/**
+	 * @param resolutions
+	 *            the resolutions to try, highest first
+	 * @param targetFPS
+	 *            the rate shot detection must sustain
+	 */
+	public ResolutionPolicy(String cameraName, List<Dimension> resolutions, double targetFPS) {
+		this(cameraName, resolutions, targetFPS, Math.max(MINIMUM_WARMUP_FRAMES, (int) (targetFPS * WARMUP_SECONDS)),
+				SETTLE_FRAMES);
+	}
+
+	ResolutionPolicy(String cameraName, List<Dimension> resolutions, double targetFPS, int warmupFrames,
+			int settleFrames) {
+		if (resolutions.isEmpty()) throw new IllegalArgumentException("At least one resolution is required");
+
+		this.cameraName = cameraName;
+		this.resolutions = resolutions;
+		this.targetFPS = targetFPS;
+		this.warmupFrames = warmupFrames;
+		this.settleFrames = settleFrames;
+	}
+
+	/**
+	 * @return the resolution to open the camera at
+	 */
+	public Dimension getStartingResolution() {
+		return resolutions.get(0);
+	}
+
+	/**
+	 * Record how long shot detection took for a frame.
+	 *
+	 * @param width
+	 *            the width of the frame
+	 * @param height
+	 *            the height of the frame
+	 * @param processingTime
+	 *            the time spent on the frame in nanoseconds
+	 * @return the resolution to switch to if detection can't keep up at the
+	 *         current resolution or should keep up at a higher one
+	 */
+	public synchronized Optional<Dimension> recordFrame(int width, int height, long processingTime) {
+		if (isSettled) return Optional.empty();
+
+		if (measuredResolution == null || measuredResolution.width != width || measuredResolution.height != height) {
+			measuredResolution = new Dimension(width, height);
+			requestedResolution = Optional.empty();
+			frameCount = 0;
+			totalProcessingTime = 0;
+		}
+
+		if (++frameCount <= settleFrames) return Optional.empty();
+
+		totalProcessingTime += processingTime;
+
+		final int measuredFrames = frameCount - settleFrames;
+		if (measuredFrames < warmupFrames) return Optional.empty();
+
+		final double sustainableFPS = 1e9 / ((double) totalProcessingTime / measuredFrames);
+
+		frameCount = settleFrames;
+		totalProcessingTime = 0;
+
+		// A resolution was requested but the camera is still delivering
+		// frames at this one
+		if (requestedResolution.isPresent()) {
+			settle(String.format("the camera did not switch to %dx%d", requestedResolution.get().width,
+					requestedResolution.get().height));
+			return Optional.empty();
+		}
+
+		if (sustainableFPS >= targetFPS) {
+			final Optional<Dimension> higherResolution = nextHigherResolution(width, height);
+
+			if (!higherResolution.isPresent() || sustainableFPS * width * height
+					/ ((double) higherResolution.get().width * higherResolution.get().height) < targetFPS) {
+				settle(String.format("detection sustains %.1f FPS", sustainableFPS));
+				return Optional.empty();
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Camera {} sustains {} detection FPS at {}x{}, trying {}x{}", cameraName,
+						String.format("%.1f", sustainableFPS), width, height, higherResolution.get().width,
+						higherResolution.get().height);
+			}
+
+			requestedResolution = higherResolution;
+			return higherResolution;
+		}
+
+		tooSlowResolutions.add(measuredResolution);
+
+		final Optional<Dimension> lowerResolution = nextLowerResolution(width, height);
+
+		if (!lowerResolution.isPresent()) {
+			settle(String.format("detection only sustains %.1f FPS and there is no lower resolution to try",
+					sustainableFPS));
+			return Optional.empty();
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Camera {} only sustains {} detection FPS at {}x{}, trying {}x{}", cameraName,
+					String.format("%.1f", sustainableFPS), width, height, lowerResolution.get().width,
+					lowerResolution.get().height);
+		}
+
+		requestedResolution = lowerResolution;
+		return lowerResolution;
+	}
+
+	// The lowest resolution above the given one, unless it was too slow
+	private Optional<Dimension> nextHigherResolution(int width, int height) {
+		final long pixels = (long) width * height;
+		Optional<Dimension> higherResolution = Optional.empty();
+
+		for (final Dimension resolution : resolutions) {
+			if ((long) resolution.width * resolution.height > pixels) higherResolution = Optional.of(resolution);
+		}
+
+		if (higherResolution.isPresent() && tooSlowResolutions.contains(higherResolution.get()))
+			return Optional.empty();
+
+		return higherResolution;
+	}
+
+	private Optional<Dimension> nextLowerResolution(int width, int height) {
+		final long pixels = (long) width * height;
+
+		for (final Dimension resolution : resolutions) {
+			if ((long) resolution.width * resolution.height < pixels) return Optional.of(resolution);
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * Stop measuring and keep the current resolution, e.g. because the camera
+	 * can't change resolution while it is open.
+	 */
+	public synchronized void settle(String reason) {
+		if (isSettled) return;
+
+		isSettled = true;
+
+		if (logger.isInfoEnabled()) {
+			if (measuredResolution != null) {
+				logger.info("Camera {} settled on {}x{}: {}", cameraName, measuredResolution.width,
+						measuredResolution.height, reason);
+			} else {
+				logger.info("Camera {} settled on its current resolution: {}", cameraName, reason);
+			}
+		}
+	}
+
+	public synchronized boolean isSettled() {
+		return isSettled;
+	}
+
+	public double getTargetFPS() {
+		return targetFPS;
+	}
+}
@@ -53,6 +53,8 @@ public class Shot {
 	private Ellipse marker;
 	private Optional<Shot> mirroredShot = Optional.empty();
 
+	private ShotTrace trace = new ShotTrace();
+
 	public Shot(ShotColor color, double x, double y, long timestamp, int frame, int markerRadius) {
 		this.color = color;
 		this.x = x;
@@ -109,6 +111,18 @@ public class Shot {
 		return marker;
 	}
 
+	public ShotTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Share <code>original</code>'s trace, e.g. for a copy of the shot that is
+	 * shown on the arena.
+	 */
+	public void shareTrace(Shot original) {
+		trace = original.trace;
+	}
+
 	public void setTranslation(int displayWidth, int displayHeight, int feedWidth, int feedHeight) {
 		final double scaleX = (double) displayWidth / (double) feedWidth;
 		final double scaleY = (double) displayHeight / (double) feedHeight;
@@ -0,0 +1,115 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.shootoff.camera.ShotTrace.Hop;
+
+/**
+ * How long shots take to get past each {@link Hop} after their frame was
+ * captured, over the last {@value PipelineLatencies#WINDOW_SECONDS} seconds.
+ * Each camera has its own stats and so does each exercise, thus it shows both
+ * whether a lane is slow and whether an exercise is slow to react to hits.
+ */
+public final class ShotLatencyStats {
+	private static final int WINDOW_SLOTS = 6;
+
+	private static final Map<String, ShotLatencyStats> exerciseStats = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final Map<Hop, LatencyHistogram> histograms = new EnumMap<>(Hop.class);
+
+	public ShotLatencyStats(String name) {
+		this.name = name;
+
+		for (final Hop hop : Hop.values()) {
+			histograms.put(hop, new LatencyHistogram(TimeUnit.SECONDS.toNanos(PipelineLatencies.WINDOW_SECONDS),
+					WINDOW_SLOTS));
+		}
+	}
+
+	/**
+	 * @return the stats shared by every shot taken during the exercise named
+	 *         <code>exerciseName</code>
+	 */
+	public static ShotLatencyStats forExercise(String exerciseName) {
+		return exerciseStats.computeIfAbsent(exerciseName, (n) -> new ShotLatencyStats("Exercise " + n));
+	}
+
+	/**
+	 * @return the stats of every exercise that has been notified of a shot,
+	 *         sorted by name
+	 */
+	public static List<ShotLatencyStats> getExerciseStats() {
+		final List<ShotLatencyStats> stats = new ArrayList<>(exerciseStats.values());
+		Collections.sort(stats, Comparator.comparing(ShotLatencyStats::getName));
+		return stats;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	void record(ShotTrace trace, Hop hop) {
+		// Latencies are measured from the origin, which has none of its own
+		if (hop == Hop.CAPTURED || (hop == Hop.DETECTED && !trace.getTime(Hop.CAPTURED).isPresent())) return;
+
+		final OptionalLong latency = trace.getLatency(hop);
+
+		if (latency.isPresent()) histograms.get(hop).record(latency.getAsLong());
+	}
+
+	public LatencyHistogram.Snapshot getSnapshot(Hop hop) {
+		return histograms.get(hop).getSnapshot();
+	}
+
+	/**
+	 * @return a table with the count, p50, p95, p99 and maximum latency since
+	 *         capture of every hop shots got past during the window
+	 */
+	public String formatReport() {
+		final StringBuilder report = new StringBuilder();
+
+		report.append(String.format("%s shot latencies since frame capture over the last %d s%n", name,
+				PipelineLatencies.WINDOW_SECONDS));
+		report.append(String.format("%-26s %8s %9s %9s %9s %9s%n", "Hop", "Shots", "p50 ms", "p95 ms", "p99 ms",
+				"Max ms"));
+
+		for (final Hop hop : Hop.values()) {
+			final LatencyHistogram.Snapshot snapshot = getSnapshot(hop);
+
+			if (snapshot.getCount() == 0) continue;
+
+			report.append(String.format("%-26s %8d %9.3f %9.3f %9.3f %9.3f%n", hop.getDescription(),
+					snapshot.getCount(), snapshot.getPercentile(50) / 1e6, snapshot.getPercentile(95) / 1e6,
+					snapshot.getPercentile(99) / 1e6, snapshot.getMax() / 1e6));
+		}
+
+		return report.toString();
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Monotonic timestamps of a shot's progress from the frame it was found in to
+ * its marker on the screen. Each {@link Hop} is marked once, when the shot
+ * gets past it. Hops are marked from the detection thread and the JavaFX
+ * thread, hence the synchronization.
+ *
+ * Every hop that gets marked is also recorded by the {@link ShotLatencyStats}
+ * the trace reports to, e.g. those of the shot's camera and exercise.
+ */
+public final class ShotTrace {
+	public enum Hop {
+		/**
+		 * The frame the shot was found in was captured.
+		 */
+		CAPTURED("Frame capture"),
+		/**
+		 * The shot detector found the shot.
+		 */
+		DETECTED("Detection done"),
+		/**
+		 * The shot is not a duplicate of an earlier shot.
+		 */
+		DEDUPLICATED("Deduplication"),
+		/**
+		 * The shot processors (malfunctions, magazine, etc.) accepted the shot.
+		 */
+		PROCESSED("Shot processors"),
+		/**
+		 * The targets were checked for a hit.
+		 */
+		HIT_TESTED("Hit test"),
+		/**
+		 * The current exercise's shot listener returned.
+		 */
+		EXERCISE_NOTIFIED("Exercise callback"),
+		/**
+		 * The JavaFX pulse that draws the shot's marker on its canvas is done.
+		 */
+		RENDERED("Marker rendered");
+
+		private final String description;
+
+		Hop(String description) {
+			this.description = description;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private static final long UNMARKED = Long.MIN_VALUE;
+
+	private final long[] times = new long[Hop.values().length];
+	private final List<ShotLatencyStats> stats = new ArrayList<>(2);
+
+	public ShotTrace() {
+		Arrays.fill(times, UNMARKED);
+	}
+
+	public void mark(Hop hop) {
+		mark(hop, System.nanoTime());
+	}
+
+	/**
+	 * @param time
+	 *            when the shot got past <code>hop</code> in
+	 *            {@link System#nanoTime()} time
+	 */
+	public synchronized void mark(Hop hop, long time) {
+		// A shot that is shown on more than one canvas keeps its first time
+		if (times[hop.ordinal()] != UNMARKED) return;
+
+		times[hop.ordinal()] = time;
+
+		for (final ShotLatencyStats s : stats)
+			s.record(this, hop);
+	}
+
+	/**
+	 * Report this trace's hops to <code>shotLatencyStats</code>, including
+	 * hops that were marked before.
+	 */
+	public synchronized void reportTo(ShotLatencyStats shotLatencyStats) {
+		if (stats.contains(shotLatencyStats)) return;
+
+		stats.add(shotLatencyStats);
+
+		for (final Hop hop : Hop.values()) {
+			if (times[hop.ordinal()] != UNMARKED) shotLatencyStats.record(this, hop);
+		}
+	}
+
+	public synchronized OptionalLong getTime(Hop hop) {
+		final long time = times[hop.ordinal()];
+
+		return time == UNMARKED ? OptionalLong.empty() : OptionalLong.of(time);
+	}
+
+	/**
+	 * @return the hop latencies are measured from: the frame capture if it is
+	 *         known, otherwise the detection
+	 */
+	public synchronized OptionalLong getOrigin() {
+		final OptionalLong captured = getTime(Hop.CAPTURED);
+
+		return captured.isPresent() ? captured : getTime(Hop.DETECTED);
+	}
+
+	/**
+	 * @return the nanoseconds between the origin and <code>hop</code>, or
+	 *         empty if either hasn't been marked
+	 */
+	public synchronized OptionalLong getLatency(Hop hop) {
+		final OptionalLong origin = getOrigin();
+		final OptionalLong time = getTime(hop);
+
+		if (!origin.isPresent() || !time.isPresent()) return OptionalLong.empty();
+
+		return OptionalLong.of(time.getAsLong() - origin.getAsLong());
+	}
+}
@@ -136,6 +136,45 @@ public class AutoCalibrationManager {
 			if (step.enabled()) step.reset();
 	}
 
+	/**
+	 * Adjust a completed calibration to a camera resolution that is
+	 * <code>scaleX</code> times as wide and <code>scaleY</code> times as tall
+	 * as the one it was found at. A calibration that is still in progress is
+	 * restarted instead.
+	 */
+	public void scale(double scaleX, double scaleY) {
+		if (!isCalibrated) {
+			reset();
+			return;
+		}
+
+		final StepFindBounds findBounds = (StepFindBounds) stepFindBounds;
+		if (findBounds.boundsResult != null)
+			findBounds.boundsResult = scaleBounds(findBounds.boundsResult, scaleX, scaleY);
+		if (boundingBox != null) boundingBox = scaleBounds(boundingBox, scaleX, scaleY);
+
+		if (perspMat != null) {
+			// The transform maps old coordinates to old coordinates, thus new
+			// coordinates are scaled back before it is applied:
+			// S * perspMat * S^-1
+			final Mat scale = Mat.eye(3, 3, CvType.CV_64F);
+			scale.put(0, 0, scaleX);
+			scale.put(1, 1, scaleY);
+
+			final Mat scaledPerspMat = new Mat();
+			final Mat scaled = new Mat();
+			Core.gemm(scale, perspMat, 1, new Mat(), 0, scaledPerspMat);
+			Core.gemm(scaledPerspMat, scale.inv(), 1, new Mat(), 0, scaled);
+
+			perspMat = scaled;
+		}
+	}
+
+	private static Bounds scaleBounds(Bounds bounds, double scaleX, double scaleY) {
+		return new BoundingBox(bounds.getMinX() * scaleX, bounds.getMinY() * scaleY, bounds.getWidth() * scaleX,
+				bounds.getHeight() * scaleY);
+	}
+
 	public Mat preProcessFrame(final Mat mat) {
 		if (mat.channels() == 1) return mat.clone();
 
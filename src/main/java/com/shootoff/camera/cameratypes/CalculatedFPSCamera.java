@@ -20,6 +20,11 @@ package com.shootoff.camera.cameratypes;
 
 import java.util.Optional;
 
+import org.opencv.core.Mat;
+
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.FramePool;
+
 public abstract class CalculatedFPSCamera implements Camera {
 	public static final int DEFAULT_FPS = 30;
 	private double webcamFPS = DEFAULT_FPS;
@@ -58,6 +63,39 @@ public abstract class CalculatedFPSCamera implements Camera {
 		return true;
 	}
 
+	/**
+	 * @return a Mat to capture the next frame into, taken from the listener's
+	 *         frame pool when there is one
+	 */
+	protected Mat borrowMat(int rows, int cols, int type) {
+		final Optional<CameraEventListener> listener = cameraEventListener;
+
+		if (listener.isPresent()) return listener.get().getFramePool().borrow(rows, cols, type);
+
+		return new Mat(rows, cols, type);
+	}
+
+	/**
+	 * Return a Mat from {@link #borrowMat(int, int, int)} that did not end up
+	 * in a frame (e.g. because the read failed).
+	 */
+	protected void recycleMat(Mat mat) {
+		final Optional<CameraEventListener> listener = cameraEventListener;
+
+		if (listener.isPresent())
+			listener.get().getFramePool().recycle(mat);
+		else
+			mat.release();
+	}
+
+	protected Frame createFrame(Mat mat, long timestamp) {
+		final Optional<CameraEventListener> listener = cameraEventListener;
+
+		if (listener.isPresent()) return listener.get().getFramePool().createFrame(mat, timestamp);
+
+		return new Frame(mat, timestamp);
+	}
+
 	@Override
 	public CameraState getState() {
 		return cameraState;
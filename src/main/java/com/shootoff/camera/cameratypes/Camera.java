@@ -75,7 +75,9 @@ public interface Camera extends Runnable, Closeable {
 	void resetExposure();
 
 	static BufferedImage matToBufferedImage(Mat matBGR) {
-		final BufferedImage image = new BufferedImage(matBGR.width(), matBGR.height(), BufferedImage.TYPE_3BYTE_BGR);
+		// Monochrome cameras may deliver a single luminance channel
+		final int imageType = matBGR.channels() == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+		final BufferedImage image = new BufferedImage(matBGR.width(), matBGR.height(), imageType);
 		final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
 		matBGR.get(0, 0, targetPixels);
 
@@ -83,9 +85,18 @@ public interface Camera extends Runnable, Closeable {
 	}
 
 	static Mat bufferedImageToMat(BufferedImage frame) {
+		return bufferedImageToMat(frame, new Mat(frame.getHeight(), frame.getWidth(), CvType.CV_8UC3));
+	}
+
+	/**
+	 * Copy <code>frame</code> into <code>mat</code>, which must be a
+	 * <code>CV_8UC3</code> Mat with the same dimensions as the image.
+	 * 
+	 * @return <code>mat</code>
+	 */
+	static Mat bufferedImageToMat(BufferedImage frame, Mat mat) {
 		final BufferedImage transformedFrame = ConverterFactory.convertToType(frame, BufferedImage.TYPE_3BYTE_BGR);
 		final byte[] pixels = ((DataBufferByte) transformedFrame.getRaster().getDataBuffer()).getData();
-		final Mat mat = new Mat(frame.getHeight(), frame.getWidth(), CvType.CV_8UC3);
 		mat.put(0, 0, pixels);
 
 		return mat;
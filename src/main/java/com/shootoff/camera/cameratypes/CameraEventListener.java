@@ -19,6 +19,7 @@
 package com.shootoff.camera.cameratypes;
 
 import com.shootoff.camera.Frame;
+import com.shootoff.camera.FramePool;
 
 public interface CameraEventListener {
 	public void newFrame(Frame frame);
@@ -30,4 +31,10 @@ public interface CameraEventListener {
 	public void cameraClosed();
 
 	public void setFeedResolution(int width, int height);
+
+	/**
+	 * @return the pool cameras should borrow frame buffers from. Frames passed
+	 *         to {@link #newFrame(Frame)} are released by the listener.
+	 */
+	public FramePool getFramePool();
 }
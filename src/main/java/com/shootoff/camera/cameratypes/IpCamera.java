@@ -28,6 +28,8 @@ import java.util.Optional;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +44,7 @@ import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Frame;
 import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.camera.shotdetection.PyramidShotDetector;
 import com.shootoff.camera.shotdetection.ShotDetector;
 
 public class IpCamera extends CalculatedFPSCamera {
@@ -115,7 +118,12 @@ public class IpCamera extends CalculatedFPSCamera {
 
 	@Override
 	public Frame getFrame() {
-		return new Frame(getBufferedImage(), currentFrameTimestamp);
+		final BufferedImage image = getBufferedImage();
+
+		if (image == null) return null;
+
+		final Mat mat = borrowMat(image.getHeight(), image.getWidth(), CvType.CV_8UC3);
+		return createFrame(Camera.bufferedImageToMat(image, mat), currentFrameTimestamp);
 	}
 
 	@Override
@@ -183,7 +191,8 @@ public class IpCamera extends CalculatedFPSCamera {
 			ipcam.setCustomViewSizes(new Dimension[] { size });
 
 			ipcam.setViewSize(size);
-		} catch (final IllegalArgumentException e) {
+		} catch (final IllegalArgumentException | IllegalStateException e) {
+			// IllegalStateException is thrown if the camera is already open
 			logger.error(String.format("Failed to set dimensions for camera: camera.getName() = %s", getName()), e);
 		}
 	}
@@ -195,7 +204,9 @@ public class IpCamera extends CalculatedFPSCamera {
 
 	@Override
 	public ShotDetector getPreferredShotDetector(final CameraManager cameraManager, final CameraView cameraView) {
-		if (JavaShotDetector.isSystemSupported())
+		if (PyramidShotDetector.isSystemSupported())
+			return new PyramidShotDetector(cameraManager, cameraView);
+		else if (JavaShotDetector.isSystemSupported())
 			return new JavaShotDetector(cameraManager, cameraView);
 		else
 			return null;
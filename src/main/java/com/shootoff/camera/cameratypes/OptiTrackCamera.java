@@ -37,6 +37,7 @@ import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Frame;
 import com.shootoff.camera.shotdetection.JavaShotDetector;
 import com.shootoff.camera.shotdetection.NativeShotDetector;
+import com.shootoff.camera.shotdetection.PyramidShotDetector;
 import com.shootoff.camera.shotdetection.OptiTrackShotDetector;
 import com.shootoff.camera.shotdetection.ShotDetector;
 
@@ -174,24 +175,39 @@ public class OptiTrackCamera implements Camera {
 		if (viewWidth == 0) viewWidth = getViewWidth();
 
 		final Mat mat = new Mat(viewHeight, viewWidth, CvType.CV_8UC1);
-		final Mat dst = new Mat(viewHeight, viewWidth, CvType.CV_8UC3);
+		final Optional<CameraEventListener> listener = cameraEventListener;
+		final Mat dst = listener.isPresent()
+				? listener.get().getFramePool().borrow(viewHeight, viewWidth, CvType.CV_8UC3)
+				: new Mat(viewHeight, viewWidth, CvType.CV_8UC3);
 
 		mat.put(0, 0, imageBuffer);
 		Imgproc.cvtColor(mat, dst, Imgproc.COLOR_GRAY2BGR);
+		mat.release();
 		return dst;
 	}
 
+	private Frame createFrame(Mat mat, long timestamp) {
+		final Optional<CameraEventListener> listener = cameraEventListener;
+
+		if (listener.isPresent()) return listener.get().getFramePool().createFrame(mat, timestamp);
+
+		return new Frame(mat, timestamp);
+	}
+
 	@Override
 	public Frame getFrame() {
 		final byte[] frame = getImageNative();
 		final Mat mat = translateCameraArrayToMat(frame);
 		final long currentFrameTimestamp = System.currentTimeMillis();
-		return new Frame(mat, currentFrameTimestamp);
+		return createFrame(mat, currentFrameTimestamp);
 	}
 
 	@Override
 	public BufferedImage getBufferedImage() {
-		return getFrame().getOriginalBufferedImage();
+		final Frame frame = getFrame();
+		final BufferedImage image = frame.getOriginalBufferedImage();
+		frame.release();
+		return image;
 	}
 
 	@Override
@@ -200,6 +216,8 @@ public class OptiTrackCamera implements Camera {
 			return new OptiTrackShotDetector(cameraManager, cameraView);
 		else if (NativeShotDetector.isSystemSupported())
 			return new NativeShotDetector(cameraManager, cameraView);
+		else if (PyramidShotDetector.isSystemSupported())
+			return new PyramidShotDetector(cameraManager, cameraView);
 		else if (JavaShotDetector.isSystemSupported())
 			return new JavaShotDetector(cameraManager, cameraView);
 		else
@@ -228,7 +246,7 @@ public class OptiTrackCamera implements Camera {
 				} catch (InterruptedException e) {}
 
 				if (frameAvailable.compareAndSet(true, false)) {
-					frame = new Frame(translateCameraArrayToMat(frameBytes), frameTS);
+					frame = createFrame(translateCameraArrayToMat(frameBytes), frameTS);
 				}
 			}
 
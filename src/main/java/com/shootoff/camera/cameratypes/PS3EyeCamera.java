@@ -56,6 +56,7 @@ import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Frame;
 import com.shootoff.camera.shotdetection.JavaShotDetector;
 import com.shootoff.camera.shotdetection.NativeShotDetector;
+import com.shootoff.camera.shotdetection.PyramidShotDetector;
 import com.shootoff.camera.shotdetection.ShotDetector;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
@@ -380,7 +381,7 @@ public class PS3EyeCamera extends CalculatedFPSCamera {
 	}
 
 	public Mat translateCameraArrayToMat(byte[] imageBuffer) {
-		final Mat mat = new Mat(getViewHeight(), getViewWidth(), CvType.CV_8UC3);
+		final Mat mat = borrowMat(getViewHeight(), getViewWidth(), CvType.CV_8UC3);
 
 		mat.put(0, 0, imageBuffer);
 		return mat;
@@ -399,18 +400,23 @@ public class PS3EyeCamera extends CalculatedFPSCamera {
 		final long currentFrameTimestamp = System.currentTimeMillis();
 		final Mat mat = translateCameraArrayToMat(frame);
 		frameCount++;
-		return new Frame(mat, currentFrameTimestamp);
+		return createFrame(mat, currentFrameTimestamp);
 	}
 
 	@Override
 	public BufferedImage getBufferedImage() {
-		return getFrame().getOriginalBufferedImage();
+		final Frame frame = getFrame();
+		final BufferedImage image = frame.getOriginalBufferedImage();
+		frame.release();
+		return image;
 	}
 
 	@Override
 	public ShotDetector getPreferredShotDetector(final CameraManager cameraManager, final CameraView cameraView) {
 		if (NativeShotDetector.isSystemSupported()) {
 			return new NativeShotDetector(cameraManager, cameraView);
+		} else if (PyramidShotDetector.isSystemSupported()) {
+			return new PyramidShotDetector(cameraManager, cameraView);
 		} else if (JavaShotDetector.isSystemSupported()) {
 			logger.trace("starting javaShotDetector for PS3Eye");
 			return new JavaShotDetector(cameraManager, cameraView);
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.highgui.Highgui;
 import org.opencv.highgui.VideoCapture;
@@ -37,6 +38,7 @@ import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Frame;
 import com.shootoff.camera.shotdetection.JavaShotDetector;
 import com.shootoff.camera.shotdetection.NativeShotDetector;
+import com.shootoff.camera.shotdetection.PyramidShotDetector;
 import com.shootoff.camera.shotdetection.ShotDetector;
 
 public class SarxosCaptureCamera extends CalculatedFPSCamera {
@@ -49,6 +51,10 @@ public class SarxosCaptureCamera extends CalculatedFPSCamera {
 
 	private final AtomicBoolean closing = new AtomicBoolean(false);
 
+	private int lastFrameRows = 0;
+	private int lastFrameCols = 0;
+	private int lastFrameType = CvType.CV_8UC3;
+
 	// For testing
 	protected SarxosCaptureCamera() {
 		camera = null;
@@ -82,18 +88,32 @@ public class SarxosCaptureCamera extends CalculatedFPSCamera {
 
 	@Override
 	public Frame getFrame() {
-		final Mat frame = new Mat();
+		// read() only reallocates the Mat if the frame size changed, thus
+		// borrowing a Mat shaped like the last frame reuses its buffer
+		final Mat frame = borrowMat(lastFrameRows, lastFrameCols, lastFrameType);
 		try {
-			if (!isOpen() || !camera.read(frame) || frame.size().height == 0 || frame.size().width == 0) return null;
+			// Locked so that the resolution can't change in the middle of a
+			// read
+			synchronized (camera) {
+				if (!isOpen() || !camera.read(frame) || frame.size().height == 0 || frame.size().width == 0) {
+					recycleMat(frame);
+					return null;
+				}
+			}
 		} catch (final Exception e) {
 			// Sometimes there is a race condition on closing the camera vs.
 			// read()
+			recycleMat(frame);
 			return null;
 		}
 
+		lastFrameRows = frame.rows();
+		lastFrameCols = frame.cols();
+		lastFrameType = frame.type();
+
 		final long currentFrameTimestamp = System.currentTimeMillis();
 		frameCount++;
-		return new Frame(frame, currentFrameTimestamp);
+		return createFrame(frame, currentFrameTimestamp);
 	}
 
 	@Override
@@ -103,7 +123,9 @@ public class SarxosCaptureCamera extends CalculatedFPSCamera {
 		if (frame == null) {
 			return null;
 		} else {
-			return frame.getOriginalBufferedImage();
+			final BufferedImage image = frame.getOriginalBufferedImage();
+			frame.release();
+			return image;
 		}
 	}
 
@@ -164,14 +186,18 @@ public class SarxosCaptureCamera extends CalculatedFPSCamera {
 
 	@Override
 	public void setViewSize(final Dimension size) {
-		camera.set(Highgui.CV_CAP_PROP_FRAME_WIDTH, size.getWidth());
-		camera.set(Highgui.CV_CAP_PROP_FRAME_HEIGHT, size.getHeight());
+		synchronized (camera) {
+			camera.set(Highgui.CV_CAP_PROP_FRAME_WIDTH, size.getWidth());
+			camera.set(Highgui.CV_CAP_PROP_FRAME_HEIGHT, size.getHeight());
+		}
 	}
 
 	@Override
 	public Dimension getViewSize() {
-		return new Dimension((int) camera.get(Highgui.CV_CAP_PROP_FRAME_WIDTH),
-				(int) camera.get(Highgui.CV_CAP_PROP_FRAME_HEIGHT));
+		synchronized (camera) {
+			return new Dimension((int) camera.get(Highgui.CV_CAP_PROP_FRAME_WIDTH),
+					(int) camera.get(Highgui.CV_CAP_PROP_FRAME_HEIGHT));
+		}
 	}
 
 	public void launchCameraSettings() {
@@ -182,6 +208,8 @@ public class SarxosCaptureCamera extends CalculatedFPSCamera {
 	public ShotDetector getPreferredShotDetector(final CameraManager cameraManager, final CameraView cameraView) {
 		if (NativeShotDetector.isSystemSupported())
 			return new NativeShotDetector(cameraManager, cameraView);
+		else if (PyramidShotDetector.isSystemSupported())
+			return new PyramidShotDetector(cameraManager, cameraView);
 		else if (JavaShotDetector.isSystemSupported())
 			return new JavaShotDetector(cameraManager, cameraView);
 		else
@@ -48,11 +48,23 @@ public class DeduplicationProcessor implements ShotProcessor {
 		setDistanceThreshold();
 	}
 
-	private void setDistanceThreshold() {
+	/**
+	 * Recompute how close shots must be to count as duplicates from the
+	 * camera's current feed resolution.
+	 */
+	public void setDistanceThreshold() {
 		distanceThreshold = (cameraManager.getFeedWidth() * cameraManager.getFeedHeight())
 				/ DISTANCE_THRESHOLD_DIVISION_FACTOR;
 	}
 
+	/**
+	 * @return the largest distance in feed pixels at which a shot counts as a
+	 *         duplicate of the last shot
+	 */
+	public double getDistanceThreshold() {
+		return distanceThreshold;
+	}
+
 	public Optional<Shot> getLastShot() {
 		return lastShot;
 	}
@@ -0,0 +1,143 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.recorders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import com.shootoff.Closeable;
+import com.shootoff.camera.FrameRing.DropPolicy;
+import com.xuggle.xuggler.video.IConverter;
+
+/**
+ * Encodes a camera's recordings off its frame pipeline. Every output video
+ * gets its own {@link EncodingStream} with a worker thread and a bounded
+ * queue, thus a slow encoder drops its own frames instead of lowering the
+ * rate shots are detected at.
+ */
+public class EncoderService implements Closeable {
+	private final int queueCapacity;
+	private final DropPolicy dropPolicy;
+	private final BiFunction<Integer, Integer, IConverter> converterFactory;
+
+	private final List<EncodingStream> streams = new ArrayList<>();
+
+	// Totals of the streams that were already closed
+	private long closedEncodedCount = 0;
+	private long closedDroppedCount = 0;
+
+	public EncoderService(int queueCapacity, DropPolicy dropPolicy) {
+		this(queueCapacity, dropPolicy, null);
+	}
+
+	/**
+	 * @param converterFactory
+	 *            creates the streams' image converters instead of Xuggler, or
+	 *            <code>null</code> to use Xuggler's
+	 */
+	EncoderService(int queueCapacity, DropPolicy dropPolicy,
+			BiFunction<Integer, Integer, IConverter> converterFactory) {
+		this.queueCapacity = queueCapacity;
+		this.dropPolicy = dropPolicy;
+		this.converterFactory = converterFactory;
+	}
+
+	/**
+	 * Start encoding a new output video with <code>encoder</code>.
+	 * 
+	 * @param name
+	 *            names the stream's worker thread and log messages
+	 */
+	public synchronized EncodingStream open(String name, FrameEncoder encoder) {
+		final EncodingStream stream = converterFactory == null
+				? new EncodingStream(name, queueCapacity, dropPolicy, encoder)
+				: new EncodingStream(name, queueCapacity, dropPolicy, encoder, converterFactory);
+		streams.add(stream);
+		return stream;
+	}
+
+	/**
+	 * Finish encoding <code>stream</code>'s output video, waiting for the
+	 * frames that are still queued.
+	 */
+	public void close(EncodingStream stream) {
+		stream.close();
+
+		synchronized (this) {
+			if (streams.remove(stream)) {
+				closedEncodedCount += stream.getEncodedCount();
+				closedDroppedCount += stream.getDroppedCount();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of frames waiting in every open stream's queue
+	 */
+	public synchronized int getQueueDepth() {
+		int depth = 0;
+
+		for (final EncodingStream stream : streams)
+			depth += stream.getQueueDepth();
+
+		return depth;
+	}
+
+	public synchronized int getStreamCount() {
+		return streams.size();
+	}
+
+	/**
+	 * @return the number of frames every stream of this service has encoded
+	 */
+	public synchronized long getEncodedCount() {
+		long encoded = closedEncodedCount;
+
+		for (final EncodingStream stream : streams)
+			encoded += stream.getEncodedCount();
+
+		return encoded;
+	}
+
+	/**
+	 * @return the number of frames every stream of this service has dropped
+	 *         because its encoder was behind
+	 */
+	public synchronized long getDroppedCount() {
+		long dropped = closedDroppedCount;
+
+		for (final EncodingStream stream : streams)
+			dropped += stream.getDroppedCount();
+
+		return dropped;
+	}
+
+	@Override
+	public void close() {
+		final List<EncodingStream> openStreams;
+
+		synchronized (this) {
+			openStreams = new ArrayList<>(streams);
+		}
+
+		for (final EncodingStream stream : openStreams)
+			close(stream);
+	}
+}
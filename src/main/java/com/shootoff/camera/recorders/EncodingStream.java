@@ -0,0 +1,266 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.recorders;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.Closeable;
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.FrameRing;
+import com.shootoff.camera.FrameRing.DropPolicy;
+import com.shootoff.camera.cameratypes.Camera;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.video.ConverterFactory;
+import com.xuggle.xuggler.video.IConverter;
+
+/**
+ * One output video of an {@link EncoderService}. Frames offered to the stream
+ * wait in a bounded ring until the stream's worker thread converts and
+ * encodes them, thus whoever offers frames never waits for the encoder unless
+ * the ring's policy is {@link DropPolicy#BLOCK}.
+ */
+public final class EncodingStream implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(EncodingStream.class);
+
+	private final String name;
+	private final FrameEncoder encoder;
+	private final FrameRing<EncoderFrame> queue;
+	private final Thread worker;
+	private final long startTime;
+	private final BiFunction<Integer, Integer, IConverter> converterFactory;
+
+	// Only used by the worker. Recordings keep one resolution, thus there is
+	// normally a single converter.
+	private final Map<Long, IConverter> converters = new HashMap<>();
+
+	// Only used by the worker. Encoders are done with an image once it was
+	// converted to a picture, thus BGR frames are copied into the same image
+	// instead of a new one each.
+	private BufferedImage frameImage = null;
+
+	private volatile long encodedCount = 0;
+
+	EncodingStream(String name, int queueCapacity, DropPolicy dropPolicy, FrameEncoder encoder) {
+		this(name, queueCapacity, dropPolicy, encoder, EncodingStream::createConverter);
+	}
+
+	/**
+	 * @param converterFactory
+	 *            creates a converter from BGR images of a width and height to
+	 *            YUV420P pictures
+	 */
+	EncodingStream(String name, int queueCapacity, DropPolicy dropPolicy, FrameEncoder encoder,
+			BiFunction<Integer, Integer, IConverter> converterFactory) {
+		this.name = name;
+		this.encoder = encoder;
+		this.converterFactory = converterFactory;
+
+		queue = new FrameRing<>(queueCapacity, dropPolicy);
+		startTime = System.currentTimeMillis();
+
+		worker = new Thread(this::encodeFrames, name + " Encoder");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queue a frame to be encoded with the current time as its timestamp.
+	 * The stream takes ownership of <code>image</code>, which must not be
+	 * modified afterwards.
+	 * 
+	 * @return <code>false</code> if the frame or an older one was dropped
+	 *         because the encoder is behind
+	 */
+	public boolean offer(BufferedImage image) {
+		return offer(new EncoderFrame(image, null, System.currentTimeMillis() - startTime));
+	}
+
+	/**
+	 * Queue a BGR frame to be encoded with the current time as its timestamp.
+	 * The frame is converted to an image on the encoder thread. The stream
+	 * takes over the caller's reference to <code>frame</code> and releases it
+	 * once the frame was converted or dropped.
+	 * 
+	 * @return <code>false</code> if the frame or an older one was dropped
+	 *         because the encoder is behind
+	 */
+	public boolean offer(Frame frame) {
+		return offer(new EncoderFrame(null, frame, System.currentTimeMillis() - startTime));
+	}
+
+	private boolean offer(EncoderFrame frame) {
+		final EncoderFrame dropped = queue.offer(frame);
+
+		if (dropped == null) return true;
+
+		dropped.release();
+		return false;
+	}
+
+	private void encodeFrames() {
+		try {
+			EncoderFrame frame;
+
+			while ((frame = queue.take()) != null) {
+				encode(frame);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			encoder.close();
+
+			for (final IConverter converter : converters.values())
+				converter.delete();
+			converters.clear();
+
+			if (logger.isDebugEnabled())
+				logger.debug("Stopped encoding {}, encoded = {}, dropped = {}", name, encodedCount,
+						queue.getDroppedCount());
+		}
+	}
+
+	private void encode(EncoderFrame frame) {
+		BufferedImage image;
+
+		try {
+			image = frame.frame != null ? toImage(frame.frame.getOriginalMat()) : frame.image;
+		} finally {
+			frame.release();
+		}
+
+		// Only monochrome cameras deliver frames that aren't already BGR
+		image = ConverterFactory.convertToType(image, BufferedImage.TYPE_3BYTE_BGR);
+
+		final IVideoPicture picture = getConverter(image.getWidth(), image.getHeight()).toPicture(image,
+				frame.timestamp * 1000);
+
+		try {
+			encoder.encode(picture);
+			encodedCount++;
+		} catch (final RuntimeException e) {
+			logger.error("Failed to encode frame for {}, timestamp = {} ms", name, frame.timestamp, e);
+		}
+	}
+
+	private BufferedImage toImage(Mat mat) {
+		if (mat.channels() != 3) return Camera.matToBufferedImage(mat);
+
+		if (frameImage == null || frameImage.getWidth() != mat.cols() || frameImage.getHeight() != mat.rows())
+			frameImage = new BufferedImage(mat.cols(), mat.rows(), BufferedImage.TYPE_3BYTE_BGR);
+
+		mat.get(0, 0, ((DataBufferByte) frameImage.getRaster().getDataBuffer()).getData());
+
+		return frameImage;
+	}
+
+	private IConverter getConverter(int width, int height) {
+		final long resolution = ((long) width << 32) | height;
+
+		IConverter converter = converters.get(resolution);
+
+		if (converter == null) {
+			converter = converterFactory.apply(width, height);
+			converters.put(resolution, converter);
+		}
+
+		return converter;
+	}
+
+	private static IConverter createConverter(int width, int height) {
+		return ConverterFactory.createConverter(ConverterFactory.XUGGLER_BGR_24, IPixelFormat.Type.YUV420P, width,
+				height);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of frames waiting to be encoded
+	 */
+	public int getQueueDepth() {
+		return queue.getDepth();
+	}
+
+	public long getEncodedCount() {
+		return encodedCount;
+	}
+
+	/**
+	 * @return the number of frames dropped because the encoder was behind
+	 */
+	public long getDroppedCount() {
+		return queue.getDroppedCount();
+	}
+
+	public boolean isClosed() {
+		return queue.isClosed();
+	}
+
+	/**
+	 * Encode the frames that are still queued, then finish the output video.
+	 * Returns once the encoder is closed.
+	 */
+	@Override
+	public void close() {
+		try {
+			queue.awaitIdle();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Frames offered after the queue went idle are never encoded
+		for (final EncoderFrame frame : queue.close())
+			frame.release();
+
+		try {
+			worker.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A queued image, or a frame whose image is only created by the worker.
+	 */
+	private static final class EncoderFrame {
+		private final BufferedImage image;
+		private final Frame frame;
+		private final long timestamp; // ms
+
+		private EncoderFrame(BufferedImage image, Frame frame, long timestamp) {
+			this.image = image;
+			this.frame = frame;
+			this.timestamp = timestamp;
+		}
+
+		private void release() {
+			if (frame != null) frame.release();
+		}
+	}
+}
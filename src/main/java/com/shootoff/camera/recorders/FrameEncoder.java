@@ -0,0 +1,39 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.recorders;
+
+import com.xuggle.xuggler.IVideoPicture;
+
+/**
+ * Writes pictures to an output video. An encoder is only called from the
+ * worker thread of the {@link EncodingStream} it was opened with.
+ */
+public interface FrameEncoder {
+	/**
+	 * @param picture
+	 *            a YUV420P picture whose timestamp is in microseconds since
+	 *            the stream was opened
+	 */
+	public void encode(IVideoPicture picture);
+
+	/**
+	 * Finish the output video. Called after the last picture was encoded.
+	 */
+	public void close();
+}
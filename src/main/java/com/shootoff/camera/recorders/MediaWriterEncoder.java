@@ -0,0 +1,49 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.recorders;
+
+import com.xuggle.mediatool.IMediaWriter;
+import com.xuggle.xuggler.IVideoPicture;
+
+/**
+ * Encodes pictures into the first video stream of a media writer, e.g. a
+ * recording of a camera's whole feed.
+ */
+public class MediaWriterEncoder implements FrameEncoder {
+	private final IMediaWriter videoWriter;
+	private boolean isFirstFrame = true;
+
+	public MediaWriterEncoder(IMediaWriter videoWriter) {
+		this.videoWriter = videoWriter;
+	}
+
+	@Override
+	public void encode(IVideoPicture picture) {
+		picture.setKeyFrame(isFirstFrame);
+		picture.setQuality(0);
+		isFirstFrame = false;
+
+		videoWriter.encodeVideo(0, picture);
+	}
+
+	@Override
+	public void close() {
+		videoWriter.close();
+	}
+}
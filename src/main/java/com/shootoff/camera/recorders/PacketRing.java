@@ -0,0 +1,104 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.recorders;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import com.xuggle.xuggler.IPacket;
+
+/**
+ * Keeps the most recently encoded packets of a video stream in memory. The
+ * ring always starts on a key frame and covers at least <code>length</code>
+ * milliseconds before the newest packet once that much has been encoded, thus
+ * a copy of it can be written to a new file as is without decoding anything.
+ * 
+ * Packet timestamps are expected to be in milliseconds.
+ */
+final class PacketRing {
+	private final long length;
+
+	private final Deque<IPacket> packets = new ArrayDeque<>();
+	private final Deque<Long> keyFrameTimestamps = new ArrayDeque<>();
+
+	public PacketRing(long length /* ms */) {
+		this.length = length;
+	}
+
+	/**
+	 * Append <code>packet</code> and drop every group of pictures that is no
+	 * longer needed to cover the ring's length. The ring owns the packet.
+	 */
+	public synchronized void add(IPacket packet) {
+		if (packet.isKey()) {
+			keyFrameTimestamps.addLast(packet.getDts());
+		} else if (keyFrameTimestamps.isEmpty()) {
+			// Nothing before the first key frame can be decoded
+			packet.delete();
+			return;
+		}
+
+		packets.addLast(packet);
+
+		final long windowStart = packet.getDts() - length;
+
+		while (keyFrameTimestamps.size() > 1) {
+			final Iterator<Long> it = keyFrameTimestamps.iterator();
+			it.next();
+
+			// The next group of pictures would have to start the window on
+			// its own
+			if (it.next() > windowStart) break;
+
+			keyFrameTimestamps.removeFirst();
+
+			do {
+				packets.removeFirst().delete();
+			} while (!packets.peekFirst().isKey());
+		}
+	}
+
+	/**
+	 * @return copies of the packets in the ring, oldest first. The copies
+	 *         share the packets' data and belong to the caller.
+	 */
+	public synchronized List<IPacket> copy() {
+		final List<IPacket> copies = new ArrayList<>(packets.size());
+
+		for (final IPacket packet : packets)
+			copies.add(IPacket.make(packet, false));
+
+		return copies;
+	}
+
+	public synchronized int size() {
+		return packets.size();
+	}
+
+	public synchronized void clear() {
+		for (final IPacket packet : packets)
+			packet.delete();
+
+		packets.clear();
+		keyFrameTimestamps.clear();
+	}
+}
@@ -1,306 +1,204 @@
 /*
  * ShootOFF - Software for Laser Dry Fire Training
  * Copyright (C) 2016 phrack
- * 
+ *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
  * the Free Software Foundation, either version 3 of the License, or
  * (at your option) any later version.
- * 
+ *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU General Public License for more details.
- * 
+ *
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
 package com.shootoff.camera.recorders;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.shootoff.Closeable;
 import com.shootoff.camera.CameraManager;
-import com.xuggle.mediatool.IMediaReader;
-import com.xuggle.mediatool.IMediaWriter;
-import com.xuggle.mediatool.MediaListenerAdapter;
-import com.xuggle.mediatool.ToolFactory;
-import com.xuggle.mediatool.event.IVideoPictureEvent;
 import com.xuggle.xuggler.ICodec;
+import com.xuggle.xuggler.IPacket;
 import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IRational;
+import com.xuggle.xuggler.IStreamCoder;
 import com.xuggle.xuggler.IVideoPicture;
-import com.xuggle.xuggler.video.ConverterFactory;
-import com.xuggle.xuggler.video.IConverter;
 
-public class RollingRecorder implements Closeable {
+/**
+ * Encodes a camera's feed once and keeps the last
+ * {@link ShotRecorder#RECORD_LENGTH} ms of encoded packets in memory. When
+ * there is a shot, {@link #fork()} starts a clip with a copy of those packets,
+ * then the clip is extended with the packets of the following frames. Nothing
+ * is decoded or encoded again to make a clip.
+ * 
+ * A rolling recorder is the encoder of an {@link EncodingStream}, which also
+ * writes and finishes its clips. Clips are forked from other threads (e.g. the
+ * detection stage when there is a shot), thus forking only waits for the
+ * pre-roll to be copied, never for a frame to be encoded or written.
+ */
+public class RollingRecorder implements FrameEncoder {
 	private final Logger logger = LoggerFactory.getLogger(RollingRecorder.class);
 
-	private final ICodec.ID codec;
+	// Clips start on the first key frame that leaves at least RECORD_LENGTH
+	// ms of pre-roll, thus this bounds how much longer than that they can be
+	private static final int KEY_FRAME_INTERVAL = 15; // frames
+
 	private final String extension;
 	private final String sessionName;
 	private final String cameraName;
 
-	private long startTime;
-	private long timestamp;
-	private long timeOffset = 0;
-	private File relativeVideoFile;
-	private File videoFile;
-	private IMediaWriter videoWriter;
-	private final Object videoWriterLock = new Object();
-	private boolean isFirstShotFrame = true;
-	private boolean forking = false;
-	private boolean recording = true;
+	private final long startTime;
+	// Only used by the encoder thread
+	private final IStreamCoder encoder;
+	private final List<ShotRecorder> recordingShotRecorders = new ArrayList<>();
 
-	private final List<IVideoPicture> bufferedFrames = new ArrayList<>();
+	// An unopened copy of the encoder that clips' coders are copied from, so
+	// that forking doesn't touch the encoder while it is encoding
+	private final IStreamCoder clipCoder;
 
-	private final int recordWidth;
-	private final int recordHeight;
+	// Guards the pre-roll, the shot recorders, and the clip coder
+	private final Object clipLock = new Object();
+	private final PacketRing preRoll = new PacketRing(ShotRecorder.RECORD_LENGTH);
+	private final List<ShotRecorder> shotRecorders = new ArrayList<>();
+	private volatile boolean recording = true;
 
 	public RollingRecorder(ICodec.ID codec, String extension, String sessionName, String cameraName,
 			CameraManager cameraManager) {
-		this.codec = codec;
 		this.extension = extension;
 		this.sessionName = sessionName;
 		this.cameraName = cameraName;
 
-		recordWidth = cameraManager.getFeedWidth();
-		recordHeight = cameraManager.getFeedHeight();
-
-		startTime = System.currentTimeMillis();
-		relativeVideoFile = new File(
-				sessionName + File.separator + "rolling" + String.valueOf(System.nanoTime()) + extension);
-		videoFile = new File(System.getProperty("shootoff.sessions") + File.separator + relativeVideoFile.getPath());
+		encoder = IStreamCoder.make(IStreamCoder.Direction.ENCODING, codec);
+		encoder.setWidth(cameraManager.getRecordingResolution().width);
+		encoder.setHeight(cameraManager.getRecordingResolution().height);
+		encoder.setPixelType(IPixelFormat.Type.YUV420P);
+		encoder.setTimeBase(IRational.make(1, 1000));
+		encoder.setNumPicturesInGroupOfPictures(KEY_FRAME_INTERVAL);
+		encoder.setFlag(IStreamCoder.Flags.FLAG_QSCALE, true);
+		encoder.setGlobalQuality(0);
 
-		videoWriter = ToolFactory.makeWriter(videoFile.getPath());
-		videoWriter.addVideoStream(0, 0, codec, recordWidth, recordHeight);
-
-		logger.debug("Started recording new rolling video: {}", videoFile.getName());
-	}
-
-	public void recordFrame(BufferedImage frame) {
-		final BufferedImage image = ConverterFactory.convertToType(frame, BufferedImage.TYPE_3BYTE_BGR);
-		final IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
+		if (encoder.open(null, null) < 0) {
+			logger.error("Failed to open {} encoder for rolling video of camera {}", codec, cameraName);
+			recording = false;
+		}
 
-		timestamp = (System.currentTimeMillis() - startTime) + timeOffset;
+		clipCoder = IStreamCoder.make(IStreamCoder.Direction.ENCODING, encoder);
 
-		final IVideoPicture f = converter.toPicture(image, timestamp * 1000);
-		f.setKeyFrame(isFirstShotFrame);
-		f.setQuality(0);
+		// The recorder's stream is opened right after it is created, thus this
+		// is close enough to where the pictures' timestamps start
+		startTime = System.currentTimeMillis();
 
-		if (forking) {
-			synchronized (bufferedFrames) {
-				bufferedFrames.add(f);
-			}
-		} else {
-			isFirstShotFrame = false;
+		logger.debug("Started recording new rolling video for camera {}", cameraName);
+	}
 
-			synchronized (videoWriterLock) {
-				if (recording)
-					videoWriter.encodeVideo(0, f);
-			}
+	/**
+	 * Encode <code>picture</code> into the pre-roll and append it to every
+	 * shot video that isn't complete yet.
+	 */
+	@Override
+	public void encode(IVideoPicture picture) {
+		if (!recording) return;
 
-			if (timestamp >= ShotRecorder.RECORD_LENGTH * 3) {
-				logger.debug("Rolling video file {}, timestamp = {} ms", relativeVideoFile.getPath(), timestamp);
-				fork(false);
-			}
-		}
-	}
+		picture.setQuality(0);
 
-	private ForkContext fork(boolean keepOld) {
-		forking = true;
+		final IPacket packet = IPacket.make();
 
-		synchronized (videoWriterLock) {
-			if (videoWriter.isOpen())
-				videoWriter.close();
+		if (encoder.encodeVideo(packet, picture, 0) < 0) {
+			logger.error("Failed to encode rolling video frame for camera {}, timestamp = {} ms", cameraName,
+					picture.getTimeStamp() / 1000);
+			packet.delete();
+			return;
 		}
 
-		File relativeVideoFile;
-		if (!keepOld) {
-			relativeVideoFile = new File(
-					sessionName + File.separator + "rolling" + String.valueOf(System.nanoTime()) + extension);
-		} else {
-			relativeVideoFile = new File(sessionName + File.separator + String.valueOf(System.nanoTime()) + extension);
+		if (!packet.isComplete()) {
+			packet.delete();
+			return;
 		}
 
-		final File videoFile = new File(
-				System.getProperty("shootoff.sessions") + File.separator + relativeVideoFile.getPath());
-
-		final IMediaReader reader = ToolFactory.makeReader(this.videoFile.getPath());
-		reader.open();
-		final long startCutTimestamp = (reader.getContainer().getDuration() / 1000) - ShotRecorder.RECORD_LENGTH;
-		final Cutter cutter = new Cutter(videoFile, codec, startCutTimestamp, recordWidth, recordHeight);
-		reader.addListener(cutter);
-
-		logger.debug("Forking video file {} to {}, keepOld = {}, start cutting at = {} ms",
-				this.relativeVideoFile.getPath(), relativeVideoFile.getPath(), keepOld, startCutTimestamp);
-
-		while (reader.readPacket() == null)
-			;
-
-		final ForkContext context = new ForkContext(relativeVideoFile, videoFile, cutter.getLastTimestamp(),
-				cutter.getMediaWriter());
-
-		if (keepOld) {
-			// We aren't rolling this file because it got too big,
-			// the video is being forked (probably because there was
-			// a shot)
-			final File rollingRelativeVideoFile = new File(
-					sessionName + File.separator + "rolling" + String.valueOf(System.nanoTime()) + extension);
-			final File rollingVideoFile = new File(
-					System.getProperty("shootoff.sessions") + File.separator + rollingRelativeVideoFile.getPath());
-
-			final IMediaReader r = ToolFactory.makeReader(this.videoFile.getPath());
-			r.open();
-			final Cutter copy = new Cutter(rollingVideoFile, codec, 0, recordWidth, recordHeight);
-			r.addListener(copy);
-			while (r.readPacket() == null)
-				;
-
-			timeOffset = copy.getLastTimestamp();
-
-			if (!this.videoFile.delete()) {
-				logger.warn("Failed to delete expired rolling video file: {}, keepOld = {}", this.videoFile.getPath(),
-						keepOld);
-			}
-
-			synchronized (videoWriterLock) {
-				videoWriter = copy.getMediaWriter();
-			}
-			this.relativeVideoFile = rollingRelativeVideoFile;
-			this.videoFile = rollingVideoFile;
-		} else {
-			// Start adding new frames to the new video as it's the new
-			// canonical video file to peel end frames off of.
-			if (!this.videoFile.delete()) {
-				logger.warn("Failed to delete expired rolling video file: {}, keepOld = {}", this.videoFile.getPath(),
-						keepOld);
-			}
-			this.relativeVideoFile = relativeVideoFile;
-			this.videoFile = videoFile;
-			synchronized (videoWriterLock) {
-				videoWriter = cutter.getMediaWriter();
-			}
-			timeOffset = cutter.getLastTimestamp();
+		// A clip forked before the packet is in the pre-roll gets the packet
+		// from the loop below, a clip forked after gets it with the pre-roll
+		synchronized (clipLock) {
+			preRoll.add(packet);
+			recordingShotRecorders.addAll(shotRecorders);
 		}
 
-		synchronized (bufferedFrames) {
-			final Iterator<IVideoPicture> it = bufferedFrames.iterator();
+		for (final ShotRecorder shotRecorder : recordingShotRecorders) {
+			if (shotRecorder.isCompleteAt(packet.getDts())) {
+				shotRecorder.close();
 
-			while (it.hasNext()) {
-				synchronized (videoWriterLock) {
-					videoWriter.encodeVideo(0, it.next());
+				synchronized (clipLock) {
+					shotRecorders.remove(shotRecorder);
 				}
-				it.remove();
+			} else {
+				shotRecorder.recordPacket(packet);
 			}
 		}
 
-		startTime = System.currentTimeMillis();
-
-		forking = false;
-
-		return context;
+		recordingShotRecorders.clear();
 	}
 
+	/**
+	 * Start a shot video that begins with the current pre-roll.
+	 */
 	public ShotRecorder fork() {
-		final ForkContext context = fork(true);
-		return new ShotRecorder(context.getRelativeVideoFile(), context.getVideoFile(), context.getLastTimestamp(),
-				context.getVideoWriter(), cameraName);
-	}
+		final long shotTimestamp = System.currentTimeMillis() - startTime;
 
-	private static class ForkContext {
-		private final File relativeVideoFile;
-		private final File videoFile;
-		private final long lastTimestamp;
-		private final IMediaWriter videoWriter;
-
-		public ForkContext(File relativeVideoFile, File videoFile, long lastTimestamp, IMediaWriter videoWriter) {
-			this.relativeVideoFile = relativeVideoFile;
-			this.videoFile = videoFile;
-			this.lastTimestamp = lastTimestamp;
-			this.videoWriter = videoWriter;
-		}
+		final File relativeVideoFile = new File(
+				sessionName + File.separator + String.valueOf(System.nanoTime()) + extension);
+		final File videoFile = new File(
+				System.getProperty("shootoff.sessions") + File.separator + relativeVideoFile.getPath());
 
-		public File getRelativeVideoFile() {
-			return relativeVideoFile;
-		}
+		final ShotRecorder shotRecorder;
+		final boolean isRecording;
 
-		public File getVideoFile() {
-			return videoFile;
-		}
+		synchronized (clipLock) {
+			logger.debug("Forking rolling video of camera {} to {}, {} packets of pre-roll", cameraName,
+					relativeVideoFile.getPath(), preRoll.size());
 
-		public long getLastTimestamp() {
-			return lastTimestamp;
-		}
+			shotRecorder = new ShotRecorder(relativeVideoFile, videoFile,
+					IStreamCoder.make(IStreamCoder.Direction.ENCODING, clipCoder), preRoll.copy(),
+					shotTimestamp + ShotRecorder.RECORD_LENGTH, cameraName);
 
-		public IMediaWriter getVideoWriter() {
-			return videoWriter;
+			isRecording = recording;
+			if (isRecording) shotRecorders.add(shotRecorder);
 		}
+
+		if (!isRecording) shotRecorder.close();
+
+		return shotRecorder;
 	}
 
 	/**
-	 * Cut the end of a video off into its own file starting at
-	 * startingTimestamp. For example, if you have a 15 second video and the
-	 * startingTimestamp is at 10 seconds, this will create a new video that has
-	 * the last 5 seconds of the original video.
-	 * 
-	 * @author phrack
+	 * Finish every shot video with what was recorded so far and stop
+	 * encoding.
 	 */
-	private static class Cutter extends MediaListenerAdapter {
-		private final IMediaWriter writer;
-		private final long startingTimestamp;
-		private long startTimestamp = -1;
-		private long lastTimestamp;
-
-		public Cutter(File newVideoFile, ICodec.ID codec, long startingTimestamp /* ms */, int recordWidth,
-				int recordHeight) {
-			this.startingTimestamp = startingTimestamp * 1000;
-			writer = ToolFactory.makeWriter(newVideoFile.getPath());
-			writer.addVideoStream(0, 0, codec, recordWidth, recordHeight);
-		}
-
-		@Override
-		public void onVideoPicture(IVideoPictureEvent event) {
-			// < 0 means the file we are rolling off of has < RECORD_LENGTH
-			// seconds of footage
-			if (event.getTimeStamp() >= startingTimestamp || startingTimestamp < 0) {
-				final IVideoPicture picture = event.getPicture();
-
-				if (startTimestamp == -1) {
-					startTimestamp = picture.getTimeStamp();
-				}
+	@Override
+	public void close() {
+		final boolean wasRecording;
 
-				lastTimestamp = picture.getTimeStamp() - startTimestamp;
-				picture.setTimeStamp(lastTimestamp);
+		synchronized (clipLock) {
+			wasRecording = recording;
+			recording = false;
 
-				writer.encodeVideo(0, picture);
-			}
-		}
+			recordingShotRecorders.addAll(shotRecorders);
+			shotRecorders.clear();
 
-		public IMediaWriter getMediaWriter() {
-			return writer;
+			preRoll.clear();
 		}
 
-		public long getLastTimestamp() {
-			return lastTimestamp / 1000;
-		}
-	}
+		for (final ShotRecorder shotRecorder : recordingShotRecorders)
+			shotRecorder.close();
+		recordingShotRecorders.clear();
 
-	@Override
-	public void close() {
-		recording = false;
-		synchronized (videoWriterLock) {
-			videoWriter.close();
-		}
-		if (!videoFile.delete()) {
-			logger.warn("Failed to delete expired rolling video file on close: {}", videoFile.getPath());
-		}
+		if (wasRecording) encoder.close();
 	}
 }
@@ -1,75 +1,188 @@
 /*
  * ShootOFF - Software for Laser Dry Fire Training
  * Copyright (C) 2016 phrack
- * 
+ *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
  * the Free Software Foundation, either version 3 of the License, or
  * (at your option) any later version.
- * 
+ *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU General Public License for more details.
- * 
+ *
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
 package com.shootoff.camera.recorders;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Iterator;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.shootoff.Closeable;
-import com.xuggle.mediatool.IMediaWriter;
-import com.xuggle.xuggler.IPixelFormat;
-import com.xuggle.xuggler.IVideoPicture;
-import com.xuggle.xuggler.video.ConverterFactory;
-import com.xuggle.xuggler.video.IConverter;
-
+import com.xuggle.xuggler.IContainer;
+import com.xuggle.xuggler.IPacket;
+import com.xuggle.xuggler.IStreamCoder;
+
+/**
+ * Writes the video of one shot by copying the packets a
+ * {@link RollingRecorder} encoded into a new file: first its pre-roll, then
+ * the packets of every frame until {@link #RECORD_LENGTH} ms after the shot.
+ * The file is opened when the first packet after the shot arrives, thus
+ * creating a recorder is cheap wherever the shot is noticed. The rolling
+ * recorder feeds and closes its shot recorders on its encoder thread.
+ */
 public class ShotRecorder implements Closeable {
 	// The number of milliseconds before and after a shot to record
 	public static final long RECORD_LENGTH = 5000; // ms
 
 	private static final Logger logger = LoggerFactory.getLogger(ShotRecorder.class);
 
-	private final long startTime;
-	private final long timeOffset;
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private final long endTimestamp;
 	private final File relativeVideoFile;
 	private final File videoFile;
 	private final String cameraName;
-	private final IMediaWriter videoWriter;
-	private boolean isFirstShotFrame = true;
-
-	public ShotRecorder(File relativeVideoFile, File videoFile, long cutDuration, IMediaWriter videoWriter,
-			String cameraName) {
+	private final IStreamCoder streamCoder;
+	private final List<IPacket> preRoll;
+
+	private IContainer container;
+	private boolean opened = false;
+	private boolean failed = false;
+	private long firstTimestamp = NO_TIMESTAMP;
+	private volatile boolean complete = false;
+
+	/**
+	 * @param streamCoder
+	 *            an unopened copy of the coder that encoded the packets
+	 * @param preRoll
+	 *            the packets to start the video with, which now belong to
+	 *            this recorder
+	 * @param endTimestamp
+	 *            the timestamp of the rolling video, in milliseconds, after
+	 *            which the shot video is complete
+	 */
+	public ShotRecorder(File relativeVideoFile, File videoFile, IStreamCoder streamCoder, List<IPacket> preRoll,
+			long endTimestamp, String cameraName) {
 		this.relativeVideoFile = relativeVideoFile;
 		this.videoFile = videoFile;
-		this.videoWriter = videoWriter;
+		this.streamCoder = streamCoder;
+		this.preRoll = preRoll;
+		this.endTimestamp = endTimestamp;
 		this.cameraName = cameraName;
 
-		startTime = System.currentTimeMillis();
-		timeOffset = cutDuration;
+		logger.debug("Started recording shot video: {}, pre-roll = {} packets", videoFile.getName(), preRoll.size());
+	}
+
+	/**
+	 * Append a packet encoded after the shot. The caller keeps ownership of
+	 * <code>packet</code>.
+	 */
+	public synchronized void recordPacket(IPacket packet) {
+		if (!open()) return;
+
+		writePacket(IPacket.make(packet, false));
+	}
+
+	private boolean open() {
+		if (opened) return true;
+		if (failed) return false;
+
+		if (!openContainer()) {
+			failed = true;
+			deletePreRoll();
+			return false;
+		}
+
+		opened = true;
 
-		logger.debug("Started recording shot video: {}, cut duration = {} ms", videoFile.getName(), cutDuration);
+		final Iterator<IPacket> it = preRoll.iterator();
+
+		while (it.hasNext()) {
+			writePacket(it.next());
+			it.remove();
+		}
+
+		return true;
 	}
 
-	public void recordFrame(BufferedImage frame) {
-		final BufferedImage image = ConverterFactory.convertToType(frame, BufferedImage.TYPE_3BYTE_BGR);
-		final IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
+	private void writePacket(IPacket packet) {
+		// A video has to start on a key frame to be decodable
+		if (firstTimestamp == NO_TIMESTAMP) {
+			if (!packet.isKey()) {
+				packet.delete();
+				return;
+			}
+
+			firstTimestamp = packet.getDts();
+		}
 
-		final long timestamp = (System.currentTimeMillis() - startTime) + timeOffset;
+		packet.setPts(packet.getPts() - firstTimestamp);
+		packet.setDts(packet.getDts() - firstTimestamp);
+		packet.setStreamIndex(0);
 
-		final IVideoPicture f = converter.toPicture(image, timestamp * 1000);
-		f.setKeyFrame(isFirstShotFrame);
-		f.setQuality(0);
-		isFirstShotFrame = false;
+		if (writeContainerPacket(packet) < 0)
+			logger.warn("Failed to write packet to shot video {}, timestamp = {} ms", relativeVideoFile.getPath(),
+					packet.getDts());
 
-		videoWriter.encodeVideo(0, f);
+		packet.delete();
+	}
+
+	/**
+	 * Open the video file and write its header.
+	 * 
+	 * @return <code>true</code> if packets can be written to the file
+	 */
+	boolean openContainer() {
+		container = IContainer.make();
+
+		if (container.open(videoFile.getPath(), IContainer.Type.WRITE, null) < 0) {
+			logger.error("Failed to open shot video for writing: {}", videoFile.getPath());
+			container = null;
+			return false;
+		}
+
+		container.addNewStream(streamCoder);
+
+		if (streamCoder.open(null, null) < 0 || container.writeHeader() < 0) {
+			logger.error("Failed to start shot video: {}", videoFile.getPath());
+			container.close();
+			container = null;
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Write a packet whose timestamps were already rebased to the start of
+	 * the video.
+	 * 
+	 * @return a negative value if the packet couldn't be written
+	 */
+	int writeContainerPacket(IPacket packet) {
+		return container.writePacket(packet);
+	}
+
+	void closeContainer() {
+		container.writeTrailer();
+		streamCoder.close();
+		container.close();
+		container = null;
+	}
+
+	private void deletePreRoll() {
+		for (final IPacket packet : preRoll)
+			packet.delete();
+
+		preRoll.clear();
 	}
 
 	public File getRelativeVideoFile() {
@@ -84,14 +197,36 @@ public class ShotRecorder implements Closeable {
 		return cameraName;
 	}
 
+	/**
+	 * @return <code>true</code> once the video is finished and closed. The
+	 *         rolling recorder closes it when it encodes the first frame
+	 *         more than {@link #RECORD_LENGTH} ms after the shot, see
+	 *         {@link #isCompleteAt(long)}, or when recording stops.
+	 */
 	public boolean isComplete() {
-		return System.currentTimeMillis() - startTime > RECORD_LENGTH;
+		return complete;
+	}
+
+	/**
+	 * @return <code>true</code> if a packet with the rolling video timestamp
+	 *         <code>timestamp</code> is past the end of this shot's video
+	 */
+	boolean isCompleteAt(long timestamp /* ms */) {
+		return timestamp > endTimestamp;
 	}
 
 	@Override
-	public void close() {
-		videoWriter.close();
+	public synchronized void close() {
+		// Still write the pre-roll if no frames came in after the shot
+		if (open()) {
+			closeContainer();
+
+			opened = false;
+			failed = true;
+		}
+
+		complete = true;
 
-		logger.debug("Stopped recording shot video: {}, timeOffset = {}", relativeVideoFile.getPath(), timeOffset);
+		logger.debug("Stopped recording shot video: {}", relativeVideoFile.getPath());
 	}
-}
\ No newline at end of file
+}
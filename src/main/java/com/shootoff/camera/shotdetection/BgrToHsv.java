@@ -0,0 +1,81 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+/**
+ * Converts a single 8-bit BGR pixel to HSV exactly the way OpenCV's
+ * <code>Imgproc.COLOR_BGR2HSV</code> does (H in [0, 180), S and V in [0,
+ * 255]). This lets shot detection convert pixels as it reads them instead of
+ * converting and copying the whole frame first.
+ *
+ * The converted pixel is returned packed into an <code>int</code> to avoid
+ * allocating; use {@link #hue(int)}, {@link #saturation(int)}, and
+ * {@link #value(int)} to unpack it.
+ */
+final class BgrToHsv {
+	// Same fixed point precision and division tables OpenCV uses
+	private static final int HSV_SHIFT = 12;
+	private static final int ROUNDING = 1 << (HSV_SHIFT - 1);
+	private static final int HUE_RANGE = 180;
+
+	private static final int[] SATURATION_DIVISORS = new int[256];
+	private static final int[] HUE_DIVISORS = new int[256];
+
+	static {
+		for (int i = 1; i < 256; i++) {
+			SATURATION_DIVISORS[i] = (int) Math.rint((255 << HSV_SHIFT) / (1. * i));
+			HUE_DIVISORS[i] = (int) Math.rint((HUE_RANGE << HSV_SHIFT) / (6. * i));
+		}
+	}
+
+	private BgrToHsv() {}
+
+	public static int convert(int b, int g, int r) {
+		final int v = Math.max(b, Math.max(g, r));
+		final int diff = v - Math.min(b, Math.min(g, r));
+
+		final int s = (diff * SATURATION_DIVISORS[v] + ROUNDING) >> HSV_SHIFT;
+
+		int h;
+		if (v == r)
+			h = g - b;
+		else if (v == g)
+			h = b - r + 2 * diff;
+		else
+			h = r - g + 4 * diff;
+
+		h = (h * HUE_DIVISORS[diff] + ROUNDING) >> HSV_SHIFT;
+		if (h < 0) h += HUE_RANGE;
+		if (h > 255) h = 255;
+
+		return (h << 16) | (s << 8) | v;
+	}
+
+	public static int hue(int packedHsv) {
+		return packedHsv >>> 16;
+	}
+
+	public static int saturation(int packedHsv) {
+		return (packedHsv >>> 8) & 0xFF;
+	}
+
+	public static int value(int packedHsv) {
+		return packedHsv & 0xFF;
+	}
+}
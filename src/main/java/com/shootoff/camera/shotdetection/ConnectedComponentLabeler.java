@@ -0,0 +1,252 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+
+/**
+ * Groups a set of candidate pixels into 8-connected components in time linear
+ * in the number of candidates. Candidates are joined with a union-find over
+ * their positions in the candidate buffer, using a reusable row-major label
+ * buffer to find neighbors. The bounding box, size, and connectedness-weighted
+ * centroid sums of every component are accumulated while components are
+ * resolved so that clustering never has to rescan the candidates per region.
+ *
+ * Components are numbered in the order their first pixel appears in the
+ * candidate buffer. All buffers are reused between calls to
+ * {@link #label(PackedPixelBuffer)}; instances are not thread safe.
+ */
+final class ConnectedComponentLabeler {
+	private static final int NO_COMPONENT = -1;
+
+	private int width;
+	private int height;
+
+	// Row-major, holds (candidate index + 1) for candidate pixels and 0
+	// everywhere else. Entries are reset after every labeling pass.
+	private int[] labelBuffer;
+
+	// Per candidate pixel
+	private int[] parent = new int[0];
+	private int[] connectedness = new int[0];
+	private int[] componentOfPixel = new int[0];
+
+	// Per union-find root
+	private int[] componentOfRoot = new int[0];
+
+	// Per component
+	private int componentCount = 0;
+	private int[] size = new int[0];
+	private int[] minX = new int[0];
+	private int[] minY = new int[0];
+	private int[] maxX = new int[0];
+	private int[] maxY = new int[0];
+	private double[] weightedSumX = new double[0];
+	private double[] weightedSumY = new double[0];
+	private int[] connectednessSum = new int[0];
+
+	ConnectedComponentLabeler(int width, int height) {
+		updateFrameSize(width, height);
+	}
+
+	void updateFrameSize(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		if (labelBuffer == null || labelBuffer.length < width * height) labelBuffer = new int[width * height];
+	}
+
+	/**
+	 * Label every pixel in <code>pixels</code>. The results are available
+	 * through this object's accessors until the next call.
+	 *
+	 * @return the number of components found
+	 */
+	int label(PackedPixelBuffer pixels) {
+		final int pixelCount = pixels.size();
+
+		ensureCapacity(pixelCount);
+
+		for (int i = 0; i < pixelCount; i++) {
+			labelBuffer[pixels.getY(i) * width + pixels.getX(i)] = i + 1;
+			parent[i] = i;
+		}
+
+		// Join each pixel with its candidate neighbors and count how many of
+		// them it has
+		for (int i = 0; i < pixelCount; i++) {
+			final int x = pixels.getX(i);
+			final int y = pixels.getY(i);
+
+			int pixelConnectedness = 0;
+
+			for (int h = -1; h <= 1; h++) {
+				final int ry = y + h;
+
+				if (ry < 0 || ry >= height) continue;
+
+				for (int w = -1; w <= 1; w++) {
+					if (h == 0 && w == 0) continue;
+
+					final int rx = x + w;
+
+					if (rx < 0 || rx >= width) continue;
+
+					final int neighbor = labelBuffer[ry * width + rx] - 1;
+
+					if (neighbor >= 0) {
+						pixelConnectedness++;
+						union(i, neighbor);
+					}
+				}
+			}
+
+			connectedness[i] = pixelConnectedness;
+		}
+
+		componentCount = 0;
+		Arrays.fill(componentOfRoot, 0, pixelCount, NO_COMPONENT);
+
+		for (int i = 0; i < pixelCount; i++) {
+			final int x = pixels.getX(i);
+			final int y = pixels.getY(i);
+
+			final int root = find(i);
+			int component = componentOfRoot[root];
+
+			if (component == NO_COMPONENT) {
+				component = componentCount++;
+				componentOfRoot[root] = component;
+
+				size[component] = 0;
+				minX[component] = x;
+				minY[component] = y;
+				maxX[component] = x;
+				maxY[component] = y;
+				weightedSumX[component] = 0;
+				weightedSumY[component] = 0;
+				connectednessSum[component] = 0;
+			}
+
+			componentOfPixel[i] = component;
+
+			size[component]++;
+
+			if (x < minX[component]) minX[component] = x;
+			if (x > maxX[component]) maxX[component] = x;
+			if (y < minY[component]) minY[component] = y;
+			if (y > maxY[component]) maxY[component] = y;
+
+			weightedSumX[component] += x * connectedness[i];
+			weightedSumY[component] += y * connectedness[i];
+			connectednessSum[component] += connectedness[i];
+
+			labelBuffer[y * width + x] = 0;
+		}
+
+		return componentCount;
+	}
+
+	private int find(int i) {
+		while (parent[i] != i) {
+			// Path halving
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+
+		return i;
+	}
+
+	private void union(int a, int b) {
+		final int rootA = find(a);
+		final int rootB = find(b);
+
+		if (rootA == rootB) return;
+
+		// Keep the earliest pixel as the root so that roots are stable
+		if (rootA < rootB)
+			parent[rootB] = rootA;
+		else
+			parent[rootA] = rootB;
+	}
+
+	private void ensureCapacity(int pixelCount) {
+		if (pixelCount <= parent.length) return;
+
+		final int capacity = Math.max(pixelCount, parent.length * 2);
+
+		parent = new int[capacity];
+		connectedness = new int[capacity];
+		componentOfPixel = new int[capacity];
+		componentOfRoot = new int[capacity];
+
+		size = new int[capacity];
+		minX = new int[capacity];
+		minY = new int[capacity];
+		maxX = new int[capacity];
+		maxY = new int[capacity];
+		weightedSumX = new double[capacity];
+		weightedSumY = new double[capacity];
+		connectednessSum = new int[capacity];
+	}
+
+	int getComponentCount() {
+		return componentCount;
+	}
+
+	int getComponent(int pixelIndex) {
+		return componentOfPixel[pixelIndex];
+	}
+
+	int getConnectedness(int pixelIndex) {
+		return connectedness[pixelIndex];
+	}
+
+	int getSize(int component) {
+		return size[component];
+	}
+
+	int getMinX(int component) {
+		return minX[component];
+	}
+
+	int getMinY(int component) {
+		return minY[component];
+	}
+
+	int getMaxX(int component) {
+		return maxX[component];
+	}
+
+	int getMaxY(int component) {
+		return maxY[component];
+	}
+
+	double getWeightedSumX(int component) {
+		return weightedSumX[component];
+	}
+
+	double getWeightedSumY(int component) {
+		return weightedSumY[component];
+	}
+
+	int getConnectednessSum(int component) {
+		return connectednessSum[component];
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+
+/**
+ * The set of pixels in a frame that shot detection should examine. The mask is
+ * stored as runs of included pixels for each row so that the detection sieve
+ * can skip everything outside of the mask without testing pixels one by one.
+ *
+ * Masks are immutable once built, thus a new mask can be handed to a running
+ * detector at any time. Use {@link Builder} to create them.
+ */
+public final class DetectionMask {
+	private final int width;
+	private final int height;
+
+	// Spans for row y are at indexes [rowSpanStart[y], rowSpanStart[y + 1])
+	// of spanStartX/spanEndX. Spans cover [start, end) and are sorted.
+	private final int[] rowSpanStart;
+	private final int[] spanStartX;
+	private final int[] spanEndX;
+
+	private final int pixelCount;
+
+	private DetectionMask(int width, int height, int[] rowSpanStart, int[] spanStartX, int[] spanEndX,
+			int pixelCount) {
+		this.width = width;
+		this.height = height;
+		this.rowSpanStart = rowSpanStart;
+		this.spanStartX = spanStartX;
+		this.spanEndX = spanEndX;
+		this.pixelCount = pixelCount;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of pixels included in the mask
+	 */
+	public int getPixelCount() {
+		return pixelCount;
+	}
+
+	public boolean isEmpty() {
+		return pixelCount == 0;
+	}
+
+	/**
+	 * @return the index of the first span in row <code>y</code>
+	 */
+	public int getRowSpanStart(int y) {
+		return rowSpanStart[y];
+	}
+
+	/**
+	 * @return one past the index of the last span in row <code>y</code>
+	 */
+	public int getRowSpanEnd(int y) {
+		return rowSpanStart[y + 1];
+	}
+
+	public int getSpanStartX(int span) {
+		return spanStartX[span];
+	}
+
+	public int getSpanEndX(int span) {
+		return spanEndX[span];
+	}
+
+	public boolean contains(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) return false;
+
+		for (int span = rowSpanStart[y]; span < rowSpanStart[y + 1]; span++) {
+			if (x < spanStartX[span]) return false;
+			if (x < spanEndX[span]) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Builds a mask from the union of rectangles and polygons. Shapes are
+	 * clipped to the mask's dimensions.
+	 */
+	public static final class Builder {
+		private final int width;
+		private final int height;
+		private final boolean[] included;
+
+		public Builder(int width, int height) {
+			this.width = width;
+			this.height = height;
+			included = new boolean[width * height];
+		}
+
+		/**
+		 * Include the pixels in [minX, maxX) x [minY, maxY).
+		 */
+		public Builder addRectangle(int minX, int minY, int maxX, int maxY) {
+			minX = Math.max(minX, 0);
+			minY = Math.max(minY, 0);
+			maxX = Math.min(maxX, width);
+			maxY = Math.min(maxY, height);
+
+			if (minX >= maxX) return this;
+
+			for (int y = minY; y < maxY; y++) {
+				Arrays.fill(included, y * width + minX, y * width + maxX, true);
+			}
+
+			return this;
+		}
+
+		/**
+		 * Include every pixel whose center is inside the polygon with the given
+		 * vertices (even-odd rule).
+		 */
+		public Builder addPolygon(double[] xs, double[] ys) {
+			if (xs.length != ys.length)
+				throw new IllegalArgumentException("Polygon must have the same number of x and y coordinates");
+
+			final int vertexCount = xs.length;
+			if (vertexCount < 3) return this;
+
+			double minPolygonY = Double.MAX_VALUE;
+			double maxPolygonY = -Double.MAX_VALUE;
+			for (final double y : ys) {
+				minPolygonY = Math.min(minPolygonY, y);
+				maxPolygonY = Math.max(maxPolygonY, y);
+			}
+
+			final int startY = Math.max(0, (int) Math.floor(minPolygonY));
+			final int endY = Math.min(height, (int) Math.ceil(maxPolygonY) + 1);
+
+			final double[] crossings = new double[vertexCount];
+
+			for (int y = startY; y < endY; y++) {
+				final double scanY = y + 0.5;
+				int crossingCount = 0;
+
+				for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+					if ((ys[i] <= scanY) != (ys[j] <= scanY)) {
+						crossings[crossingCount++] = xs[i] + (scanY - ys[i]) * (xs[j] - xs[i]) / (ys[j] - ys[i]);
+					}
+				}
+
+				Arrays.sort(crossings, 0, crossingCount);
+
+				for (int c = 0; c + 1 < crossingCount; c += 2) {
+					// Include pixels whose centers are in [left, right)
+					final int startX = Math.max(0, (int) Math.ceil(crossings[c] - 0.5));
+					final int endX = Math.min(width, (int) Math.ceil(crossings[c + 1] - 0.5));
+
+					if (startX < endX) Arrays.fill(included, y * width + startX, y * width + endX, true);
+				}
+			}
+
+			return this;
+		}
+
+		public DetectionMask build() {
+			final int[] rowSpanStart = new int[height + 1];
+
+			int spanCount = 0;
+			for (int y = 0; y < height; y++) {
+				rowSpanStart[y] = spanCount;
+
+				boolean inSpan = false;
+				for (int x = 0; x < width; x++) {
+					final boolean isIncluded = included[y * width + x];
+					if (isIncluded && !inSpan) spanCount++;
+					inSpan = isIncluded;
+				}
+			}
+			rowSpanStart[height] = spanCount;
+
+			final int[] spanStartX = new int[spanCount];
+			final int[] spanEndX = new int[spanCount];
+			int pixelCount = 0;
+
+			int span = 0;
+			for (int y = 0; y < height; y++) {
+				boolean inSpan = false;
+				for (int x = 0; x < width; x++) {
+					final boolean isIncluded = included[y * width + x];
+
+					if (isIncluded && !inSpan) {
+						spanStartX[span] = x;
+					} else if (!isIncluded && inSpan) {
+						spanEndX[span++] = x;
+					}
+
+					if (isIncluded) pixelCount++;
+					inSpan = isIncluded;
+				}
+
+				if (inSpan) spanEndX[span++] = width;
+			}
+
+			return new DetectionMask(width, height, rowSpanStart, spanStartX, spanEndX, pixelCount);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.DetectionWorkerPool;
+
+/**
+ * Splits a frame into horizontal bands of rows and runs an operation over every
+ * band on the camera's share of the {@link DetectionWorkerPool} that all
+ * cameras use. Bands are sized so that the pixels and filter state a band
+ * touches fit in a core's cache, and there are several bands per worker so
+ * that workers that finish early pick up the remaining bands and the pool can
+ * interleave bands from different cameras.
+ *
+ * The user's shot sector grid (see
+ * {@link com.shootoff.camera.CameraManager#isSectorOn(int, int)}) is applied
+ * when the bands are planned: bands never straddle a sector row, each band
+ * stores the column spans of its enabled sectors, and bands whose sectors are
+ * all off are left out. The plan is only rebuilt when the frame size or sector
+ * mask changes.
+ */
+final class DetectionScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(DetectionScheduler.class);
+
+	public interface BandOperation {
+		/**
+		 * Process the pixels in rows [startY, endY) and columns [startX, endX)
+		 * of band <code>band</code>. This may be called more than once for a
+		 * band if it has more than one enabled span of columns, but never
+		 * concurrently for the same band.
+		 */
+		void perform(int band, int startY, int endY, int startX, int endX);
+	}
+
+	// Approximate size of a core's L2 cache
+	private static final int TARGET_BAND_BYTES = 256 * 1024;
+
+	// Bytes touched per pixel by the sieve: the BGR bytes plus the int lum
+	// moving average and color distance filters
+	private static final int BYTES_PER_PIXEL = 3 + 2 * Integer.BYTES;
+
+	private static final int BANDS_PER_WORKER = 4;
+
+	// At most every other sector column can start a new span
+	private static final int MAX_SPANS = (JavaShotDetector.SECTOR_COLUMNS + 1) / 2;
+
+	private final int parallelism;
+	private final DetectionWorkerPool.Workload workload;
+
+	// The current plan
+	private int planWidth = -1;
+	private int planHeight = -1;
+	private int planSectorMask = -1;
+	private int bandCount = 0;
+	private int[] bandStartY = new int[0];
+	private int[] bandEndY = new int[0];
+	private int[] bandSpanCount = new int[0];
+	private int[] bandSpans = new int[0];
+
+	// Reused every frame so that scheduling does not allocate
+	private final DetectionWorkerPool.Task bandTask = this::processBand;
+	private BandOperation operation;
+
+	/**
+	 * @param workload
+	 *            the camera's share of the detection worker pool, or
+	 *            <code>null</code> to process every band on the calling thread
+	 */
+	DetectionScheduler(DetectionWorkerPool.Workload workload) {
+		this.workload = workload;
+
+		// The thread running the detector works on its bands alongside the
+		// pool's workers
+		parallelism = workload == null ? 1 : workload.getPool().getWorkerCount() + 1;
+	}
+
+	/**
+	 * Plan the bands for a frame of the given size. <code>sectorMask</code>
+	 * has bit <code>y * SECTOR_COLUMNS + x</code> set for every enabled
+	 * sector.
+	 *
+	 * @return the number of bands in the plan
+	 */
+	int plan(int width, int height, int sectorMask) {
+		if (width == planWidth && height == planHeight && sectorMask == planSectorMask) return bandCount;
+
+		planWidth = width;
+		planHeight = height;
+		planSectorMask = sectorMask;
+
+		final int rowBytes = Math.max(1, width * BYTES_PER_PIXEL);
+		final int cacheRows = Math.max(1, TARGET_BAND_BYTES / rowBytes);
+		final int balanceRows = Math.max(1,
+				(height + (parallelism * BANDS_PER_WORKER) - 1) / (parallelism * BANDS_PER_WORKER));
+		final int rowsPerBand = Math.min(cacheRows, balanceRows);
+
+		final int maxBands = height / rowsPerBand + JavaShotDetector.SECTOR_ROWS;
+		if (bandStartY.length < maxBands) {
+			bandStartY = new int[maxBands];
+			bandEndY = new int[maxBands];
+			bandSpanCount = new int[maxBands];
+			bandSpans = new int[maxBands * MAX_SPANS * 2];
+		}
+
+		// Column spans covered by each sector row's enabled sectors. Sector
+		// boundaries are rounded so that the sectors cover every pixel even
+		// when the frame size is not divisible by the grid size.
+		final int[] spans = new int[MAX_SPANS * 2];
+
+		bandCount = 0;
+
+		for (int sectorY = 0; sectorY < JavaShotDetector.SECTOR_ROWS; sectorY++) {
+			int spanCount = 0;
+			boolean inSpan = false;
+
+			for (int sectorX = 0; sectorX < JavaShotDetector.SECTOR_COLUMNS; sectorX++) {
+				final boolean isOn = (sectorMask & (1 << (sectorY * JavaShotDetector.SECTOR_COLUMNS + sectorX))) != 0;
+
+				if (isOn && !inSpan) {
+					spans[spanCount * 2] = sectorX * width / JavaShotDetector.SECTOR_COLUMNS;
+					inSpan = true;
+				} else if (!isOn && inSpan) {
+					spans[spanCount * 2 + 1] = sectorX * width / JavaShotDetector.SECTOR_COLUMNS;
+					spanCount++;
+					inSpan = false;
+				}
+			}
+
+			if (inSpan) {
+				spans[spanCount * 2 + 1] = width;
+				spanCount++;
+			}
+
+			if (spanCount == 0) continue;
+
+			final int sectorStartY = sectorY * height / JavaShotDetector.SECTOR_ROWS;
+			final int sectorEndY = (sectorY + 1) * height / JavaShotDetector.SECTOR_ROWS;
+
+			for (int y = sectorStartY; y < sectorEndY; y += rowsPerBand) {
+				bandStartY[bandCount] = y;
+				bandEndY[bandCount] = Math.min(y + rowsPerBand, sectorEndY);
+				bandSpanCount[bandCount] = spanCount;
+				System.arraycopy(spans, 0, bandSpans, bandCount * MAX_SPANS * 2, spanCount * 2);
+				bandCount++;
+			}
+		}
+
+		if (logger.isTraceEnabled()) logger.trace("Planned {} bands of up to {} rows for {}x{} frame, sector mask {}",
+				bandCount, rowsPerBand, width, height, Integer.toBinaryString(sectorMask));
+
+		return bandCount;
+	}
+
+	int getBandCount() {
+		return bandCount;
+	}
+
+	/**
+	 * Run <code>operation</code> over every band in the current plan and wait
+	 * for all bands to finish.
+	 */
+	void run(BandOperation operation) {
+		if (bandCount == 0) return;
+
+		this.operation = operation;
+
+		if (workload == null || bandCount == 1) {
+			for (int band = 0; band < bandCount; band++)
+				processBand(band);
+		} else {
+			workload.run(bandCount, bandTask);
+		}
+	}
+
+	private void processBand(int band) {
+		final int spanOffset = band * MAX_SPANS * 2;
+
+		for (int span = 0; span < bandSpanCount[band]; span++) {
+			operation.perform(band, bandStartY[band], bandEndY[band], bandSpans[spanOffset + span * 2],
+					bandSpans[spanOffset + span * 2 + 1]);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * Colors a set of pixels in a frame to show the user where detection problems
+ * (e.g. excessive motion or brightness) are. Pixels are marked in a byte mask,
+ * which is painted onto the frame with a single masked <code>setTo</code>
+ * instead of writing pixels into the frame one at a time. The mask is reused
+ * between frames.
+ */
+final class DiagnosticOverlay {
+	private static final byte MARKED = (byte) 255;
+
+	private final Scalar bgrColor;
+	private final Scalar greyColor;
+
+	private int width = 0;
+	private int height = 0;
+	private byte[] maskBytes = new byte[0];
+	private Mat mask = null;
+	private boolean isMarked = false;
+
+	/**
+	 * @param bgrColor
+	 *            the color to paint marked pixels in three channel frames
+	 * @param greyColor
+	 *            the color to paint marked pixels in single channel frames
+	 */
+	DiagnosticOverlay(Scalar bgrColor, Scalar greyColor) {
+		this.bgrColor = bgrColor;
+		this.greyColor = greyColor;
+	}
+
+	/**
+	 * Unmark every pixel and set the dimensions of the next frame to paint.
+	 */
+	void reset(int width, int height) {
+		if (this.width != width || this.height != height) {
+			this.width = width;
+			this.height = height;
+
+			// The mask is copied into the Mat whole, thus it must be exactly
+			// the size of the frame
+			maskBytes = new byte[width * height];
+
+			if (mask != null) {
+				mask.release();
+				mask = null;
+			}
+		} else if (isMarked) {
+			Arrays.fill(maskBytes, (byte) 0);
+		}
+
+		isMarked = false;
+	}
+
+	void mark(PackedPixelBuffer pixels) {
+		for (int i = 0; i < pixels.size(); i++) {
+			maskBytes[pixels.getY(i) * width + pixels.getX(i)] = MARKED;
+		}
+
+		isMarked |= !pixels.isEmpty();
+	}
+
+	/**
+	 * Mark each block of <code>blockSize</code> x <code>blockSize</code>
+	 * pixels whose top left corner is at a pixel in <code>blocks</code>
+	 * multiplied by <code>blockSize</code>.
+	 */
+	void markBlocks(PackedPixelBuffer blocks, int blockSize) {
+		for (int i = 0; i < blocks.size(); i++) {
+			final int startX = blocks.getX(i) * blockSize;
+			final int startY = blocks.getY(i) * blockSize;
+			final int endX = Math.min(startX + blockSize, width);
+			final int endY = Math.min(startY + blockSize, height);
+
+			for (int y = startY; y < endY; y++) {
+				if (startX < endX) Arrays.fill(maskBytes, y * width + startX, y * width + endX, MARKED);
+			}
+		}
+
+		isMarked |= !blocks.isEmpty();
+	}
+
+	boolean isMarked() {
+		return isMarked;
+	}
+
+	/**
+	 * Paint the marked pixels onto <code>frame</code>, which must have the
+	 * dimensions passed to the last {@link #reset(int, int)}.
+	 */
+	void paint(Mat frame) {
+		if (!isMarked) return;
+
+		if (mask == null) mask = new Mat(height, width, CvType.CV_8UC1);
+
+		mask.put(0, 0, maskBytes);
+		frame.setTo(frame.channels() == 1 ? greyColor : bgrColor, mask);
+	}
+}
@@ -46,4 +46,39 @@ public abstract class FrameProcessingShotDetector extends ShotDetector {
 	 */
 	public abstract void processFrame(Frame frame, boolean isDetecting);
 
+	/**
+	 * Paint diagnostic information collected by the last call to
+	 * {@link #processFrame(Frame, boolean)} (e.g. pixels with excessive motion
+	 * or brightness) onto that frame. This is only called for frames that will
+	 * be shown to the user, thus detectors should defer any painting to this
+	 * method instead of doing it in <code>processFrame</code>.
+	 */
+	public void paintDiagnosticOverlay() {
+	}
+
+	/**
+	 * Only update the detector's moving averages on every
+	 * <code>interval</code>th frame while still searching every frame for
+	 * shots. This is used to shed load when detection can't keep up with the
+	 * camera. An interval of 1 updates the averages on every frame.
+	 */
+	public void setFilterUpdateInterval(int interval) {
+	}
+
+	/**
+	 * @return the number of pixels that crossed the detection threshold in the
+	 *         last processed frame, or -1 if this detector doesn't count them
+	 */
+	public int getThresholdPixelCount() {
+		return -1;
+	}
+
+	/**
+	 * @return the moving average of the threshold pixel count that motion
+	 *         warnings are based on, or -1 if this detector doesn't keep one
+	 */
+	public int getAverageThresholdPixelCount() {
+		return -1;
+	}
+
 }
\ No newline at end of file
@@ -19,17 +19,14 @@
 package com.shootoff.camera.shotdetection;
 
 import java.io.File;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Set;
 
 import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
 import org.opencv.highgui.Highgui;
 import org.opencv.imgproc.Imgproc;
-import org.openimaj.util.function.Operation;
-import org.openimaj.util.parallel.GlobalExecutorPool;
-import org.openimaj.util.parallel.Parallel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,18 +42,29 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	public static final int SECTOR_COLUMNS = 3;
 	public static final int SECTOR_ROWS = 3;
 
-	// These assume BGR format
-	private static final byte[] BLUE_MAT_PIXEL = { (byte) 255, (byte) 0, (byte) 0 };
-	private static final byte[] RED_MAT_PIXEL = { 0, (byte) 0, (byte) 255 };
+	// Motion is shown in blue and brightness in red, or black and white
+	// respectively for single channel frames
+	private final DiagnosticOverlay motionOverlay = new DiagnosticOverlay(new Scalar(255, 0, 0), new Scalar(0));
+	private final DiagnosticOverlay brightnessOverlay = new DiagnosticOverlay(new Scalar(0, 0, 255),
+			new Scalar(255));
+
+	// The frame the overlays were collected for
+	private Mat overlayFrame = null;
+	private static final int BGR_CHANNELS = 3;
 
 	private final CameraManager cameraManager;
 
 	private boolean filtersInitialized = false;
 
-	private int[][] lumsMovingAverage;
-	private int[][] colorDistanceFromRed;
+	private PixelFilterState filterState;
+
+	// When set, only brightness is used to find shots and every shot is
+	// reported as infrared. Single channel frames are always handled this way.
+	private volatile boolean luminanceOnly;
 
-	private int avgThresholdPixels = -1;
+	// Read by management clients from other threads
+	private volatile int avgThresholdPixels = -1;
+	private volatile int lastThresholdPixelCount = -1;
 
 	private int initialFrameCount = -1;
 
@@ -81,8 +89,41 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 
 	private int MINIMUM_SHOT_DIMENSION;
 
+	// Runs the sieve over bands of rows on the pool shared by all cameras
+	private final DetectionScheduler scheduler;
+	private final DetectionScheduler.BandOperation sieve = this::sieveBand;
+
+	// Each sieve band collects its threshold and bright pixels into its own
+	// buffer so that the workers never contend with each other. The band
+	// buffers are merged into the frame buffers in band order after the sieve
+	// completes. All of these buffers are reused from frame to frame.
+	private PackedPixelBuffer[] bandThresholdPixels = new PackedPixelBuffer[0];
+	private PackedPixelBuffer[] bandBrightPixels = new PackedPixelBuffer[0];
+	private int[] bandDynamicallyThresholded = new int[0];
+
+	// Parameters of the frame currently being sieved
+	private byte[] sieveFrame;
+	private int sieveCols;
+	private int sieveChannels;
+	private int sieveFilterWidth;
+	private boolean sieveDetectShots;
+	private boolean sieveLuminanceOnly;
+	private DetectionMask sieveMask;
+	private int[] sieveLumsMovingAverage;
+	private int[] sieveColorDistanceFromRed;
+	private boolean sieveUpdatesFilter;
+
+	private volatile int filterUpdateInterval = 1;
+	private long filterUpdateFrameCount = 0;
+
+	// The detection mask applied to the last frame, null if the whole frame
+	// was examined
+	private DetectionMask activeMask = null;
+
+	private final PackedPixelBuffer thresholdPixels = new PackedPixelBuffer();
+
 	// This is updated for every bright pixel
-	private final Set<Pixel> brightPixels = Collections.synchronizedSet(new HashSet<Pixel>());
+	private final PackedPixelBuffer brightPixels = new PackedPixelBuffer();
 
 	// The average is then calculated here
 	private int avgBrightPixels = -1;
@@ -95,6 +136,13 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	// red without having complicated math every pixel
 	private boolean shouldShowBrightnessWarningBool = false;
 
+	// The feed's BGR bytes are copied here once per frame for the sieve and
+	// converted to HSV pixel by pixel as they are read. The HSV Mat is only
+	// filled when there are clusters to check for a shot. Both are kept
+	// between frames.
+	private byte[] framePrimitive = new byte[0];
+	private Mat frameHSV = null;
+
 	final PixelClusterManager pixelClusterManager;
 
 	public static boolean isSystemSupported() {
@@ -104,31 +152,33 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	public JavaShotDetector(final CameraManager cameraManager, final CameraView cameraView) {
 		super(cameraManager, cameraView);
 
-		GlobalExecutorPool.getPool().setRejectedExecutionHandler((r, p) -> {
-			if (!p.isShutdown()) {
-				logger.error("Shot detection thread was rejected but GlobalExecutorPool was not shutdown");
-			}
-		});
-
 		this.cameraManager = cameraManager;
+		scheduler = new DetectionScheduler(cameraManager.getDetectionWorkload());
+
+		final Configuration config = Configuration.getConfig();
+		luminanceOnly = config != null && config.isLuminanceOnly(cameraManager.getName());
 
 		setFrameSize(cameraManager.getFeedWidth(), cameraManager.getFeedHeight());
 
 		pixelClusterManager = new PixelClusterManager(cameraManager.getFeedWidth(), cameraManager.getFeedHeight());
 	}
 
+	@Override
+	public void setFilterUpdateInterval(int interval) {
+		filterUpdateInterval = Math.max(1, interval);
+	}
+
 	@Override
 	public void setFrameSize(final int width, final int height) {
 		if (pixelClusterManager != null) pixelClusterManager.updateFrameSize(width, height);
-		
-		lumsMovingAverage = new int[width][height];
-		colorDistanceFromRed = new int[width][height];
 
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				lumsMovingAverage[x][y] = -1;
-			}
-		}
+		if (filterState == null)
+			filterState = new PixelFilterState(width, height);
+		else
+			filterState.resize(width, height);
+
+		final int frameBytes = width * height * BGR_CHANNELS;
+		if (framePrimitive.length != frameBytes) framePrimitive = new byte[frameBytes];
 
 		final double frameSize = width * height;
 
@@ -148,43 +198,85 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 		return cameraManager;
 	}
 
-	private Pixel updateFilter(int currentH, int currentS, int currentV, int x, int y, boolean detectShots) {
-		Pixel result = null;
+	public boolean isLuminanceOnly() {
+		return luminanceOnly;
+	}
+
+	/**
+	 * Set whether to skip color when detecting shots. This is meant for
+	 * infrared and monochrome cameras: only the value channel of each pixel is
+	 * examined and shots are reported as {@link ShotColor#INFRARED}.
+	 */
+	public void setLuminanceOnly(boolean luminanceOnly) {
+		this.luminanceOnly = luminanceOnly;
+	}
+
+	private void updateFilter(int currentH, int currentS, int currentV, int x, int y, int filterIndex,
+			boolean detectShots, int band) {
+		final int[] lumsMovingAverage = sieveLumsMovingAverage;
+		final int[] colorDistanceFromRed = sieveColorDistanceFromRed;
 
 		final int currentLum = (255 - currentS) * currentV;
 
-		if (lumsMovingAverage[x][y] == -1) {
-			lumsMovingAverage[x][y] = currentLum;
-			colorDistanceFromRed[x][y] = (Math.min(currentH, Math.abs(180 - currentH)) * currentS * currentV)
+		if (lumsMovingAverage[filterIndex] == PixelFilterState.UNINITIALIZED) {
+			lumsMovingAverage[filterIndex] = currentLum;
+			colorDistanceFromRed[filterIndex] = (Math.min(currentH, Math.abs(180 - currentH)) * currentS * currentV)
 					- (Math.abs(60 - currentH) * currentS * currentV);
 
-			return result;
+			return;
 		}
 
-		if (detectShots && pixelAboveExcessiveBrightnessThreshold(lumsMovingAverage[x][y])) {
-			brightPixels.add(new Pixel(x, y));
-		} else if (detectShots && pixelAboveThreshold(currentLum, lumsMovingAverage[x][y])) {
-			result = new Pixel(x, y, currentH, currentLum, lumsMovingAverage[x][y], colorDistanceFromRed[x][y]);
-		}
+		if (detectShots) classifyPixel(currentLum, lumsMovingAverage[filterIndex], x, y, band);
+
+		if (!sieveUpdatesFilter) return;
 
 		final int tempColorDistanceFromRed = (Math.min(currentH, Math.abs(180 - currentH)) * currentS * currentV)
 				- (Math.abs(60 - currentH) * currentS * currentV);
 
 		// Update the average brightness
-		lumsMovingAverage[x][y] = ((lumsMovingAverage[x][y] * (movingAveragePeriod - 1)) + currentLum)
+		lumsMovingAverage[filterIndex] = ((lumsMovingAverage[filterIndex] * (movingAveragePeriod - 1)) + currentLum)
 				/ movingAveragePeriod;
 
-		colorDistanceFromRed[x][y] = ((colorDistanceFromRed[x][y] * (movingAveragePeriod - 1))
+		colorDistanceFromRed[filterIndex] = ((colorDistanceFromRed[filterIndex] * (movingAveragePeriod - 1))
 				+ tempColorDistanceFromRed) / movingAveragePeriod;
+	}
+
+	/**
+	 * Update the brightness filter of a pixel whose color is ignored.
+	 * Without color there is no saturation, thus the pixel's luminance is
+	 * entirely determined by its value.
+	 */
+	private void updateLuminanceFilter(int currentV, int x, int y, int filterIndex, boolean detectShots, int band) {
+		final int[] lumsMovingAverage = sieveLumsMovingAverage;
+
+		final int currentLum = 255 * currentV;
 
-		return result;
+		if (lumsMovingAverage[filterIndex] == PixelFilterState.UNINITIALIZED) {
+			lumsMovingAverage[filterIndex] = currentLum;
+			return;
+		}
+
+		if (detectShots) classifyPixel(currentLum, lumsMovingAverage[filterIndex], x, y, band);
+
+		if (!sieveUpdatesFilter) return;
+
+		lumsMovingAverage[filterIndex] = ((lumsMovingAverage[filterIndex] * (movingAveragePeriod - 1)) + currentLum)
+				/ movingAveragePeriod;
+	}
+
+	private void classifyPixel(int currentLum, int lumsMovingAverage, int x, int y, int band) {
+		if (pixelAboveExcessiveBrightnessThreshold(lumsMovingAverage)) {
+			bandBrightPixels[band].add(x, y);
+		} else if (pixelAboveThreshold(currentLum, lumsMovingAverage, band)) {
+			bandThresholdPixels[band].add(x, y);
+		}
 	}
 
 	private boolean pixelAboveExcessiveBrightnessThreshold(int lumsMovingAverage) {
 		return lumsMovingAverage > EXCESSIVE_BRIGHTNESS_THRESHOLD;
 	}
 
-	private boolean pixelAboveThreshold(int currentLum, int lumsMovingAverage) {
+	private boolean pixelAboveThreshold(int currentLum, int lumsMovingAverage, int band) {
 		final int increase = (currentLum - lumsMovingAverage);
 
 		if (increase < MINIMUM_BRIGHTNESS_INCREASE)
@@ -200,7 +292,7 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 
 		if (increase < dynamic_threshold) {
 			if (increase > threshold)
-				dynamicallyThresholded++;
+				bandDynamicallyThresholded[band]++;
 			return false;
 		}
 
@@ -208,8 +300,8 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	}
 
 	/**
-	 * Frame is modified to have red pixels for brightness and blue for motion
-	 * at the conclusion of shot detection
+	 * Red pixels for brightness and blue for motion are collected for
+	 * {@link #paintDiagnosticOverlay()}
 	 * @param frame
 	 *            a Frame object
 	 * @param detectShots
@@ -219,31 +311,27 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	public void processFrame(final Frame frame, final boolean detectShots) {
 		updateMovingAveragePeriod();
 
-		// Must reset before every updateFilter loop
-		brightPixels.clear();
+		final boolean isLuminanceFrame = luminanceOnly || frame.getOriginalMat().channels() == 1;
+		sieveLuminanceOnly = isLuminanceFrame;
 
+		overlayFrame = frame.getOriginalMat();
+		motionOverlay.reset(overlayFrame.cols(), overlayFrame.rows());
+		brightnessOverlay.reset(overlayFrame.cols(), overlayFrame.rows());
 
-		// Create a hue, saturation, value copy of the current frame used to
-		// detect
-		// the shots. The BGR version is just used by this implementation to
-		// show
-		// the user where bright/high motion pixels are
-		final Mat frameHSV = new Mat();
-		Imgproc.cvtColor(frame.getOriginalMat(), frameHSV, Imgproc.COLOR_BGR2HSV);
-
-		final Set<Pixel> thresholdPixels = findThresholdPixelsAndUpdateFilter(frameHSV,
-				(detectShots && filtersInitialized));
+		findThresholdPixelsAndUpdateFilter(frame.getOriginalMat(), (detectShots && filtersInitialized));
 
 		final int thresholdPixelsSize = thresholdPixels.size();
+		lastThresholdPixelCount = thresholdPixelsSize;
 
 		if (logger.isTraceEnabled() && checkIfInitialized()) {
 			if (thresholdPixelsSize >= 1)
 				logger.trace("thresholdPixels {} getMinimumShotDimension {}", thresholdPixelsSize,
 						getMinimumShotDimension());
 
-			for (final Pixel pixel : thresholdPixels) {
-				logger.trace("thresholdPixel {} {} - from array {} from pixel cur {} avg {}", pixel.x, pixel.y,
-						lumsMovingAverage[pixel.x][pixel.y], pixel.getCurrentLum(), pixel.getLumAverage());
+			for (int i = 0; i < thresholdPixelsSize; i++) {
+				final int x = thresholdPixels.getX(i);
+				final int y = thresholdPixels.getY(i);
+				logger.trace("thresholdPixel {} {} - from array {}", x, y, filterState.getLumsMovingAverage(x, y));
 			}
 		}
 
@@ -268,32 +356,49 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 					logger.trace("clusters {}", clusters.size());
 				}
 
-				detectShots(new Frame(frameHSV, frame.getTimestamp()), clusters);
+				if (isLuminanceFrame) {
+					for (final PixelCluster cluster : clusters)
+						super.addShot(ShotColor.INFRARED, cluster.centerPixelX, cluster.centerPixelY,
+								frame.getTimestamp(), true);
+				} else if (!clusters.isEmpty()) {
+					// Create a hue, saturation, value copy of the current frame
+					// used to determine the color of the shots. The BGR version
+					// is just used by this implementation to show the user
+					// where bright/high motion pixels are
+					if (frameHSV == null) frameHSV = new Mat();
+					Imgproc.cvtColor(frame.getOriginalMat(), frameHSV, Imgproc.COLOR_BGR2HSV);
+
+					detectShots(new Frame(frameHSV, frame.getTimestamp()), clusters);
+				}
 			}
 
-			// Moved to after detectShots because otherwise we'll have changed
-			// pixels in the frame that's being checked for shots
+			// The problem pixels are painted by paintDiagnosticOverlay, which
+			// is only called once shot detection is done with the frame
 			else if (isExcessiveMotion(thresholdPixelsSize)) {
 				if (shouldShowMotionWarning(thresholdPixelsSize))
 					cameraManager.showMotionWarning();
 
-				for (final Pixel pixel : thresholdPixels) {
-					frame.getOriginalMat().put(pixel.y, pixel.x, BLUE_MAT_PIXEL);
-				}
+				motionOverlay.mark(thresholdPixels);
 			}
 
 			if (shouldShowBrightnessWarningBool && !brightPixels.isEmpty()) {
 				// Make the feed pixels red so the user can easily see what the
 				// problem pixels are
-				synchronized(brightPixels) {
-					for (final Pixel pixel : brightPixels) {
-						frame.getOriginalMat().put(pixel.y, pixel.x, RED_MAT_PIXEL);
-					}
-				}
+				brightnessOverlay.mark(brightPixels);
 			}
 		}
 	}
 
+	@Override
+	public void paintDiagnosticOverlay() {
+		if (overlayFrame == null) return;
+
+		motionOverlay.paint(overlayFrame);
+		brightnessOverlay.paint(overlayFrame);
+
+		overlayFrame = null;
+	}
+
 	private void updateMovingAveragePeriod() {
 		if (cameraManager.getFrameCount() % 5 == 0)
 			movingAveragePeriod = Math.max((int) (cameraManager.getFPS() / 5.0), INIT_FRAME_COUNT);
@@ -344,65 +449,195 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 		return cameraManager.getFrameCount()-initialFrameCount > INIT_FRAME_COUNT;
 	}
 
-	private Set<Pixel> findThresholdPixelsAndUpdateFilter(final Mat workingFrame, final boolean detectShots) {
+	/**
+	 * Run the sieve over <code>workingFrame</code>, updating the filters and
+	 * collecting this frame's threshold and bright pixels into
+	 * <code>thresholdPixels</code> and <code>brightPixels</code>.
+	 * <code>workingFrame</code> is in BGR and is converted to HSV as the sieve
+	 * reads it, unless only luminance is used. In that case it may also be a
+	 * single channel frame.
+	 */
+	private void findThresholdPixelsAndUpdateFilter(final Mat workingFrame, final boolean detectShots) {
+		// Must reset before every updateFilter loop
 		dynamicallyThresholded = 0;
-
-		final Set<Pixel> thresholdPixels = Collections.synchronizedSet(new HashSet<Pixel>());
+		thresholdPixels.clear();
+		brightPixels.clear();
 
 		if (!cameraManager.isDetecting())
-			return thresholdPixels;
+			return;
 
-		final int subWidth = workingFrame.cols() / SECTOR_COLUMNS;
-		final int subHeight = workingFrame.rows() / SECTOR_ROWS;
+		int sectorMask = 0;
+		for (int sectorY = 0; sectorY < SECTOR_ROWS; sectorY++) {
+			for (int sectorX = 0; sectorX < SECTOR_COLUMNS; sectorX++) {
+				if (cameraManager.isSectorOn(sectorX, sectorY)) sectorMask |= 1 << (sectorY * SECTOR_COLUMNS + sectorX);
+			}
+		}
 
-		final int cols = workingFrame.cols();
-		final int channels = workingFrame.channels();
+		final int bandCount = scheduler.plan(workingFrame.cols(), workingFrame.rows(), sectorMask);
+
+		if (bandCount == 0)
+			return;
+
+		ensureBandBuffers(bandCount);
+
+		for (int i = 0; i < bandCount; i++) {
+			bandThresholdPixels[i].clear();
+			bandBrightPixels[i].clear();
+			bandDynamicallyThresholded[i] = 0;
+		}
 
+		final int channels = workingFrame.channels();
 		final int size = (int) (workingFrame.total() * channels);
-		final byte[] workingFramePrimitive = new byte[size];
-		workingFrame.get(0, 0, workingFramePrimitive);
-
-		// In this loop we accomplish both MovingAverage updates AND threshold
-		// pixel detection
-		Parallel.forIndex(0, (SECTOR_ROWS * SECTOR_COLUMNS), 1, new Operation<Integer>() {
-			@Override
-			public void perform(Integer sector) {
-				final int sectorX = sector.intValue() % SECTOR_COLUMNS;
-				final int sectorY = sector.intValue() / SECTOR_ROWS;
-
-				if (!cameraManager.isSectorOn(sectorX, sectorY))
-					return;
-
-				final int startX = subWidth * sectorX;
-				final int startY = subHeight * sectorY;
-
-				for (int y = startY; y < startY + subHeight; y++) {
-					final int yOffset = y * cols;
-					for (int x = startX; x < startX + subWidth; x++) {
-						// If the thread is interrupted it's likely because the
-						// thread pool
-						// is being shutdown with shutdownNow. Thus cancel
-						// searching
-						// for a shot in the current frame.
-						if (Thread.currentThread().isInterrupted()) {
-							logger.trace("Shot detection sieve interrupted");
-							return;
-						}
-
-						final int currentH = workingFramePrimitive[(yOffset + x) * channels] & 0xFF;
-						final int currentS = workingFramePrimitive[(yOffset + x) * channels + 1] & 0xFF;
-						final int currentV = workingFramePrimitive[(yOffset + x) * channels + 2] & 0xFF;
-
-						final Pixel pixel = updateFilter(currentH, currentS, currentV, x, y, detectShots);
-
-						if (pixel != null)
-							thresholdPixels.add(pixel);
-					}
+		if (framePrimitive.length < size) framePrimitive = new byte[size];
+		workingFrame.get(0, 0, framePrimitive);
+
+		sieveFrame = framePrimitive;
+		sieveCols = workingFrame.cols();
+		sieveChannels = channels;
+		// The working frame may be a submat of the feed (e.g. when detection
+		// is limited to the projection), thus the filter state can be wider
+		// than the frame
+		sieveFilterWidth = filterState.getWidth();
+		sieveDetectShots = detectShots;
+		// The filters are always updated while they are initializing
+		sieveUpdatesFilter = !detectShots || filterUpdateFrameCount++ % filterUpdateInterval == 0;
+		sieveMask = updateDetectionMask(workingFrame);
+		// Fetched here because the color filters are allocated on first use
+		sieveLumsMovingAverage = filterState.lumsMovingAverage();
+		sieveColorDistanceFromRed = sieveLuminanceOnly ? null : filterState.colorDistanceFromRed();
+
+		scheduler.run(sieve);
+
+		for (int i = 0; i < bandCount; i++) {
+			thresholdPixels.addAll(bandThresholdPixels[i]);
+			brightPixels.addAll(bandBrightPixels[i]);
+			dynamicallyThresholded += bandDynamicallyThresholded[i];
+		}
+	}
+
+	private void ensureBandBuffers(int bandCount) {
+		if (bandThresholdPixels.length >= bandCount) return;
+
+		final int oldCount = bandThresholdPixels.length;
+
+		bandThresholdPixels = Arrays.copyOf(bandThresholdPixels, bandCount);
+		bandBrightPixels = Arrays.copyOf(bandBrightPixels, bandCount);
+		bandDynamicallyThresholded = new int[bandCount];
+
+		for (int i = oldCount; i < bandCount; i++) {
+			bandThresholdPixels[i] = new PackedPixelBuffer();
+			bandBrightPixels[i] = new PackedPixelBuffer();
+		}
+	}
+
+	/**
+	 * Get the detection mask to apply to <code>workingFrame</code>. When the
+	 * mask changes, pixels that the previous mask excluded have stale filters,
+	 * thus their filters are reset.
+	 * 
+	 * @return the mask or <code>null</code> to examine the whole frame
+	 */
+	private DetectionMask updateDetectionMask(final Mat workingFrame) {
+		DetectionMask mask = cameraManager.getDetectionMaskManager().getMask().orElse(null);
+
+		if (mask != null && (mask.getWidth() != workingFrame.cols() || mask.getHeight() != workingFrame.rows())) {
+			if (logger.isTraceEnabled()) logger.trace("Ignoring {}x{} detection mask for {}x{} frame",
+					mask.getWidth(), mask.getHeight(), workingFrame.cols(), workingFrame.rows());
+
+			mask = null;
+		}
+
+		if (mask == activeMask) return mask;
+
+		if (activeMask != null) {
+			final int rows = Math.min(activeMask.getHeight(), filterState.getHeight());
+			final int cols = Math.min(activeMask.getWidth(), filterState.getWidth());
+
+			for (int y = 0; y < rows; y++) {
+				int excludedStartX = 0;
+
+				for (int span = activeMask.getRowSpanStart(y); span < activeMask.getRowSpanEnd(y); span++) {
+					final int spanStartX = Math.min(activeMask.getSpanStartX(span), cols);
+					if (excludedStartX < spanStartX) filterState.reset(y, excludedStartX, spanStartX);
+					excludedStartX = activeMask.getSpanEndX(span);
+				}
+
+				if (excludedStartX < cols) filterState.reset(y, excludedStartX, cols);
+			}
+		}
+
+		activeMask = mask;
+
+		return mask;
+	}
+
+	private void sieveBand(int band, int startY, int endY, int startX, int endX) {
+		final DetectionMask mask = sieveMask;
+
+		for (int y = startY; y < endY; y++) {
+			if (mask == null) {
+				sieveRow(band, y, startX, endX);
+				continue;
+			}
+
+			// Only examine the parts of the row that are in the mask
+			for (int span = mask.getRowSpanStart(y); span < mask.getRowSpanEnd(y); span++) {
+				final int spanStartX = Math.max(startX, mask.getSpanStartX(span));
+				final int spanEndX = Math.min(endX, mask.getSpanEndX(span));
+
+				if (spanStartX < spanEndX) sieveRow(band, y, spanStartX, spanEndX);
+			}
+		}
+	}
+
+	// In this loop we accomplish both MovingAverage updates AND threshold
+	// pixel detection
+	private void sieveRow(int band, int y, int startX, int endX) {
+		final byte[] workingFramePrimitive = sieveFrame;
+		final int channels = sieveChannels;
+		final boolean detectShots = sieveDetectShots;
+
+		final int yOffset = y * sieveCols;
+		final int filterOffset = y * sieveFilterWidth;
+
+		if (sieveLuminanceOnly) {
+			if (channels == 1) {
+				for (int x = startX; x < endX; x++) {
+					updateLuminanceFilter(workingFramePrimitive[yOffset + x] & 0xFF, x, y, filterOffset + x,
+							detectShots, band);
+				}
+			} else {
+				for (int x = startX; x < endX; x++) {
+					final int pixelOffset = (yOffset + x) * channels;
+					final int value = Math.max(workingFramePrimitive[pixelOffset] & 0xFF,
+							Math.max(workingFramePrimitive[pixelOffset + 1] & 0xFF,
+									workingFramePrimitive[pixelOffset + 2] & 0xFF));
+
+					updateLuminanceFilter(value, x, y, filterOffset + x, detectShots, band);
 				}
 			}
-		});
 
-		return thresholdPixels;
+			return;
+		}
+
+		for (int x = startX; x < endX; x++) {
+			final int pixelOffset = (yOffset + x) * channels;
+			final int hsv = BgrToHsv.convert(workingFramePrimitive[pixelOffset] & 0xFF,
+					workingFramePrimitive[pixelOffset + 1] & 0xFF, workingFramePrimitive[pixelOffset + 2] & 0xFF);
+
+			updateFilter(BgrToHsv.hue(hsv), BgrToHsv.saturation(hsv), BgrToHsv.value(hsv), x, y, filterOffset + x,
+					detectShots, band);
+		}
+	}
+
+	@Override
+	public int getThresholdPixelCount() {
+		return lastThresholdPixelCount;
+	}
+
+	@Override
+	public int getAverageThresholdPixelCount() {
+		return avgThresholdPixels;
 	}
 
 	private void updateAvgThresholdPixels(final int thresholdPixels) {
@@ -429,7 +664,7 @@ public final class JavaShotDetector extends FrameProcessingShotDetector {
 	}
 
 	private void addShot(Frame workingFrame, PixelCluster pc) {
-		final Optional<ShotColor> color = pc.getColor(workingFrame.getOriginalMat(), colorDistanceFromRed);
+		final Optional<ShotColor> color = pc.getColor(workingFrame.getOriginalMat(), filterState);
 
 		if (!color.isPresent()) {
 			if (logger.isDebugEnabled())
@@ -0,0 +1,106 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of pixel coordinates packed into primitive <code>int</code>s
+ * (x in the high 16 bits, y in the low 16 bits). Buffers are meant to be
+ * cleared and reused every frame so that collecting candidate pixels does not
+ * allocate once the buffer has grown to the working size of the scene.
+ *
+ * Instances are not thread safe. Shot detection gives each sieve worker its
+ * own buffer and merges them once the workers are done.
+ */
+public final class PackedPixelBuffer {
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private int[] pixels;
+	private int size = 0;
+
+	public PackedPixelBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PackedPixelBuffer(int initialCapacity) {
+		pixels = new int[Math.max(initialCapacity, 1)];
+	}
+
+	public static int pack(int x, int y) {
+		return (x << 16) | (y & 0xFFFF);
+	}
+
+	public static int unpackX(int packedPixel) {
+		return packedPixel >>> 16;
+	}
+
+	public static int unpackY(int packedPixel) {
+		return packedPixel & 0xFFFF;
+	}
+
+	public void add(int x, int y) {
+		ensureCapacity(size + 1);
+		pixels[size++] = pack(x, y);
+	}
+
+	/**
+	 * Append every pixel in <code>other</code> to this buffer.
+	 */
+	public void addAll(PackedPixelBuffer other) {
+		if (other.size == 0) return;
+
+		ensureCapacity(size + other.size);
+		System.arraycopy(other.pixels, 0, pixels, size, other.size);
+		size += other.size;
+	}
+
+	public int get(int index) {
+		return pixels[index];
+	}
+
+	public int getX(int index) {
+		return unpackX(pixels[index]);
+	}
+
+	public int getY(int index) {
+		return unpackY(pixels[index]);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Forget all stored pixels without releasing the backing array.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > pixels.length) {
+			pixels = Arrays.copyOf(pixels, Math.max(minCapacity, pixels.length * 2));
+		}
+	}
+}
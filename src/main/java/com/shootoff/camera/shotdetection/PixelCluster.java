@@ -19,10 +19,8 @@
 package com.shootoff.camera.shotdetection;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 
 import org.opencv.core.Mat;
@@ -48,18 +46,79 @@ public class PixelCluster extends HashSet<Pixel> {
 	// We ignore fully connected pixels because they are not on the edges
 	private final static int MAXIMUM_CONNECTEDNESS = 8;
 
+	// The cluster's bounding box plus a one pixel halo is copied out of the
+	// frame with one read. Pixels around the cluster are marked in a bitmap
+	// over that region as they are visited. These buffers are reused by every
+	// cluster classified on the same thread.
+	private static final class ColorSampleBuffers {
+		private byte[] region = new byte[0];
+		private byte[] visited = new byte[0];
+		private int[] visitedIndexes = new int[0];
+
+		private void ensureCapacity(int regionPixels, int channels) {
+			if (region.length < regionPixels * channels) region = new byte[regionPixels * channels];
+
+			if (visited.length < regionPixels) {
+				visited = new byte[regionPixels];
+				visitedIndexes = new int[regionPixels];
+			} else {
+				Arrays.fill(visited, 0, regionPixels, (byte) 0);
+			}
+		}
+	}
+
+	private static final ThreadLocal<ColorSampleBuffers> colorSampleBuffers = ThreadLocal
+			.withInitial(ColorSampleBuffers::new);
+
 	// We collect all the pixels AROUND the detected shot
 	// Usually the pixels in the shot are max brightness which are biased green
 	// So we look around the shot instead
 	@SuppressWarnings("unused")
-	public int getColorDifference(final Mat workingFrame, final int[][] colorDistanceFromRed) {
+	public int getColorDifference(final Mat workingFrame, final PixelFilterState filterState) {
+		if (isEmpty())
+			return 0;
 
 		Mat traceMat = null;
 		if (logger.isTraceEnabled() && debugColorsToFile) {
 			traceMat = Mat.zeros(workingFrame.size(), workingFrame.type());
 		}
 
-		final Map<Pixel, byte[]> visited = new HashMap<>();
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+
+		for (final Pixel pixel : this) {
+			minX = Math.min(minX, pixel.x);
+			minY = Math.min(minY, pixel.y);
+			maxX = Math.max(maxX, pixel.x);
+			maxY = Math.max(maxY, pixel.y);
+		}
+
+		final int regionMinX = Math.max(0, minX - 1);
+		final int regionMinY = Math.max(0, minY - 1);
+		final int regionMaxX = Math.min(workingFrame.cols() - 1, maxX + 1);
+		final int regionMaxY = Math.min(workingFrame.rows() - 1, maxY + 1);
+
+		if (regionMinX > regionMaxX || regionMinY > regionMaxY)
+			return 0;
+
+		final int regionWidth = regionMaxX - regionMinX + 1;
+		final int regionHeight = regionMaxY - regionMinY + 1;
+		final int channels = workingFrame.channels();
+
+		final ColorSampleBuffers buffers = colorSampleBuffers.get();
+		buffers.ensureCapacity(regionWidth * regionHeight, channels);
+
+		final byte[] region = buffers.region;
+		final byte[] visited = buffers.visited;
+		final int[] visitedIndexes = buffers.visitedIndexes;
+
+		final Mat regionMat = workingFrame.submat(regionMinY, regionMaxY + 1, regionMinX, regionMaxX + 1);
+		regionMat.get(0, 0, region);
+		regionMat.release();
+
+		int pixelCount = 0;
 		int avgSaturation = 0;
 		int avgLum = 0;
 
@@ -73,30 +132,29 @@ public class PixelCluster extends HashSet<Pixel> {
 						final int rx = pixel.x + w;
 						final int ry = pixel.y + h;
 
-						if (rx < 0 || ry < 0 || rx >= workingFrame.cols() || ry >= workingFrame.rows())
+						if (rx < regionMinX || ry < regionMinY || rx > regionMaxX || ry > regionMaxY)
 							continue;
 
-						final Pixel nearPoint = new Pixel(rx, ry);
+						final int regionIndex = (ry - regionMinY) * regionWidth + (rx - regionMinX);
 
 						// && !this.contains(nearPoint)
-						if (!visited.containsKey(nearPoint)) {
-							final byte[] np = { 0, 0, 0 };
-							workingFrame.get(ry, rx, np);
+						if (visited[regionIndex] == 0) {
+							visited[regionIndex] = 1;
+							visitedIndexes[pixelCount++] = regionIndex;
+
+							final int offset = regionIndex * channels;
 
-							final int npSaturation = np[1] & 0xFF;
+							final int npSaturation = region[offset + 1] & 0xFF;
 							avgSaturation += npSaturation;
 
-							final int npLum = np[2] & 0xFF;
+							final int npLum = region[offset + 2] & 0xFF;
 							avgLum += npLum;
-
-							visited.put(nearPoint, np);
 						}
 					}
 				}
 			}
 		}
 
-		final int pixelCount = visited.size();
 		if (pixelCount == 0)
 			return 0;
 
@@ -106,26 +164,23 @@ public class PixelCluster extends HashSet<Pixel> {
 		int redSum = 0;
 		int greenSum = 0;
 		int colorDistance = 0;
-		final int colorDistanceFromRedSum = 0;
 		int avgColorDistance = 0;
 		int tempColorDistance = 0;
 
-		for (final Entry<Pixel, byte[]> pixelEntry : visited.entrySet()) {
+		for (int i = 0; i < pixelCount; i++) {
+			final int regionIndex = visitedIndexes[i];
+			final int offset = regionIndex * channels;
 
-			final byte[] np = pixelEntry.getValue();
+			final int npColor = region[offset] & 0xFF;
+			final int npSaturation = region[offset + 1] & 0xFF;
+			final int npLum = region[offset + 2] & 0xFF;
 
 			if (logger.isTraceEnabled() && debugColorsToFile) {
-
 				System.out.println(String.format("x %d y %d pc %d - %d %d %d - %d - %d", (int) centerPixelX,
-						(int) centerPixelY, pixelCount, np[0] & 0xFF, np[1], np[2] & 0xFF, avgSaturation, avgLum));
+						(int) centerPixelY, pixelCount, npColor, region[offset + 1], npLum, avgSaturation, avgLum));
 			}
 
-			final int npSaturation = np[1] & 0xFF;
-			final int npLum = np[2] & 0xFF;
-
 			if (npSaturation > avgSaturation && npLum < avgLum) {
-				final int npColor = np[0] & 0xFF;
-
 				final int thisDFromRed = Math.min(npColor, Math.abs(180 - npColor)) * npLum * npSaturation;
 				final int thisDFromGreen = Math.abs(60 - npColor) * npLum * npSaturation;
 
@@ -134,25 +189,17 @@ public class PixelCluster extends HashSet<Pixel> {
 
 				final int currentCol = thisDFromRed - thisDFromGreen;
 
-				final Pixel pixel = pixelEntry.getKey();
-
-				// logger.trace("red {} green {} diff {} CDFR {}", thisDFromRed,
-				// thisDFromGreen, currentCol,
-				// colorDistanceFromRed[pixel.x][pixel.y]);
+				final int x = regionMinX + (regionIndex % regionWidth);
+				final int y = regionMinY + (regionIndex / regionWidth);
 
-				colorDistance += currentCol
-						- (int) (CURRENT_COLOR_BIAS_MULTIPLIER * colorDistanceFromRed[pixel.x][pixel.y]);
+				colorDistance += currentCol - (int) (CURRENT_COLOR_BIAS_MULTIPLIER
+						* filterState.getColorDistanceFromRed(x, y));
 
 				if (logger.isTraceEnabled() && debugColorsToFile) {
-					traceMat.put(pixelEntry.getKey().y, pixelEntry.getKey().x,
-							workingFrame.get(pixelEntry.getKey().y, pixelEntry.getKey().x));
-
-					// logger.trace("pixel cD {} cC {} cD {}", colorDistance,
-					// currentCol, CURRENT_COLOR_BIAS_MULTIPLIER *
-					// colorDistanceFromRed[pixel.x][pixel.y]);
+					traceMat.put(y, x, workingFrame.get(y, x));
 
 					tempColorDistance += currentCol;
-					avgColorDistance += colorDistanceFromRed[pixel.x][pixel.y];
+					avgColorDistance += filterState.getColorDistanceFromRed(x, y);
 				}
 			}
 		}
@@ -176,8 +223,8 @@ public class PixelCluster extends HashSet<Pixel> {
 		return colorDistance / pixelCount;
 	}
 
-	public Optional<ShotColor> getColor(final Mat workingFrame, final int[][] colorDistanceFromRed) {
-		final int colorDist = getColorDifference(workingFrame, colorDistanceFromRed);
+	public Optional<ShotColor> getColor(final Mat workingFrame, final PixelFilterState filterState) {
+		final int colorDist = getColorDifference(workingFrame, filterState);
 
 		// Sometimes it's better to guess than to return nothing
 		if (colorDist < 1000)
@@ -18,12 +18,8 @@
 
 package com.shootoff.camera.shotdetection;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Stack;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +27,6 @@ import org.slf4j.LoggerFactory;
 public class PixelClusterManager {
 	private static final Logger logger = LoggerFactory.getLogger(PixelClusterManager.class);
 
-	private int feedWidth;
-	private int feedHeight;
-
 	private final static double MINIMUM_CONNECTEDNESS = 3.66f;
 	private final static double MAXIMUM_CONNECTEDNESS_SCALE = 6f;
 
@@ -52,116 +45,42 @@ public class PixelClusterManager {
 	private final static int EXCESSIVE_PIXEL_CUTOFF = 300;
 	private final static int EXCESSIVE_PIXEL_REGION_COUNT = 1;
 
+	// Labels the clusterable pixels into regions in one linear pass and keeps
+	// its buffers between frames
+	private final ConnectedComponentLabeler labeler;
+
 	protected PixelClusterManager(int feedWidth, int feedHeight) {
-		this.feedWidth = feedWidth;
-		this.feedHeight = feedHeight;
+		labeler = new ConnectedComponentLabeler(feedWidth, feedHeight);
 	}
 
 	public void updateFrameSize(int feedWidth, int feedHeight) {
-		this.feedWidth = feedWidth;
-		this.feedHeight = feedHeight;
-	}
-
-	private int preprocessClusterablePixels(Set<Pixel> clusterablePixels, Map<Pixel, Integer> pixelMapping) {
-		final Stack<Pixel> mustExamine = new Stack<>();
-		int numberOfRegions = -1;
-
-		for (final Pixel pixel : clusterablePixels) {
-			if (!pixelMapping.containsKey(pixel)) {
-				numberOfRegions++;
-				mustExamine.add(pixel);
-				pixelMapping.put(pixel, numberOfRegions);
-			}
-
-			if (numberOfRegions > EXCESSIVE_PIXEL_REGION_COUNT && clusterablePixels.size() > EXCESSIVE_PIXEL_CUTOFF)
-				break;
-
-			while (!mustExamine.isEmpty()) {
-				final Pixel thisPoint = mustExamine.pop();
-
-				int connectedness = 0;
-
-				for (int h = -1; h <= 1; h++) {
-					for (int w = -1; w <= 1; w++) {
-						if (h == 0 && w == 0)
-							continue;
-
-						final int rx = thisPoint.x + w;
-						final int ry = thisPoint.y + h;
-
-						if (rx < 0 || ry < 0 || rx >= feedWidth || ry >= feedHeight)
-							continue;
-
-						final Pixel nearPoint = new Pixel(rx, ry);
-						if (clusterablePixels.contains(nearPoint)) {
-							if (!pixelMapping.containsKey(nearPoint)) {
-								mustExamine.push(nearPoint);
-								pixelMapping.put(nearPoint, numberOfRegions);
-							}
-
-							connectedness++;
-						}
-					}
-				}
-
-				thisPoint.setConnectedness(connectedness);
-			}
-		}
-
-		return numberOfRegions;
+		labeler.updateFrameSize(feedWidth, feedHeight);
 	}
 
-	public Set<PixelCluster> clusterPixels(Set<Pixel> clusterablePixels, int minimumShotDimension) {
-		final Map<Pixel, Integer> pixelMapping = new HashMap<>();
-
-		final int numberOfRegions = preprocessClusterablePixels(clusterablePixels, pixelMapping);
-
-		final Set<PixelCluster> clusters = new HashSet<>();
-
-		for (int i = 0; i <= numberOfRegions; i++) {
-			final PixelCluster cluster = new PixelCluster();
-
-			double averageX = 0;
-			double averageY = 0;
-
-			int minX = feedWidth;
-			int minY = feedHeight;
-			int maxX = 0, maxY = 0;
-
-			double avgconnectedness = 0;
-
-			for (final Entry<Pixel, Integer> pixelEntry : pixelMapping.entrySet()) {
-				if (pixelEntry.getValue() == i) {
-					final Pixel nextPixel = pixelEntry.getKey();
-
-					if (nextPixel.x < minX)
-						minX = nextPixel.x;
-					else if (nextPixel.x > maxX)
-						maxX = nextPixel.x;
+	public Set<PixelCluster> clusterPixels(PackedPixelBuffer clusterablePixels, int minimumShotDimension) {
+		final int numberOfRegions = labeler.label(clusterablePixels);
 
-					if (nextPixel.y < minY)
-						minY = nextPixel.y;
-					else if (nextPixel.y > maxY)
-						maxY = nextPixel.y;
+		// If there are an excessive number of clusterable pixels (e.g. the
+		// lights were turned on) only the first few regions are examined
+		final int regionsToExamine;
+		if (clusterablePixels.size() > EXCESSIVE_PIXEL_CUTOFF)
+			regionsToExamine = Math.min(numberOfRegions, EXCESSIVE_PIXEL_REGION_COUNT + 1);
+		else
+			regionsToExamine = numberOfRegions;
 
-					cluster.add(nextPixel);
+		// Indexed by region, only allocated once a region passes the filters
+		PixelCluster[] regionClusters = null;
 
-					final int connectedness = nextPixel.getConnectedness();
-
-					averageX += nextPixel.x * connectedness;
-					averageY += nextPixel.y * connectedness;
-
-					avgconnectedness += connectedness;
-				}
-			}
-
-			final int clustersize = cluster.size();
+		for (int i = 0; i < regionsToExamine; i++) {
+			final int clustersize = labeler.getSize(i);
 
 			if (clustersize < minimumShotDimension)
 				continue;
 
-			averageX /= avgconnectedness;
-			averageY /= avgconnectedness;
+			double avgconnectedness = labeler.getConnectednessSum(i);
+
+			final double averageX = labeler.getWeightedSumX(i) / avgconnectedness;
+			final double averageY = labeler.getWeightedSumY(i) / avgconnectedness;
 
 			avgconnectedness = avgconnectedness / clustersize;
 
@@ -178,6 +97,11 @@ public class PixelClusterManager {
 			if (avgconnectedness < scaled_minimum)
 				continue;
 
+			final int minX = labeler.getMinX(i);
+			final int minY = labeler.getMinY(i);
+			final int maxX = labeler.getMaxX(i);
+			final int maxY = labeler.getMaxY(i);
+
 			final int shotWidth = (maxX - minX) + 1;
 			final int shotHeight = (maxY - minY) + 1;
 			final double shotRatio = (double) shotWidth / (double) shotHeight;
@@ -198,19 +122,40 @@ public class PixelClusterManager {
 
 			if (logger.isTraceEnabled())
 				logger.trace("Cluster {}: density {} {} - {} {} - {}", i, shotWidth, shotHeight, circleArea,
-						cluster.size(), density);
+						clustersize, density);
 
 			if (density < MINIMUM_DENSITY)
 				continue;
 
+			final PixelCluster cluster = new PixelCluster();
 			cluster.centerPixelX = averageX;
 			cluster.centerPixelY = averageY;
 
-			clusters.add(cluster);
+			if (regionClusters == null) regionClusters = new PixelCluster[regionsToExamine];
+			regionClusters[i] = cluster;
+		}
+
+		final Set<PixelCluster> clusters = new HashSet<>();
+
+		if (regionClusters != null) {
+			// Pixel objects are only created for the regions that are shots
+			for (int i = 0; i < clusterablePixels.size(); i++) {
+				final int region = labeler.getComponent(i);
+
+				if (region >= regionsToExamine || regionClusters[region] == null) continue;
+
+				final Pixel pixel = new Pixel(clusterablePixels.getX(i), clusterablePixels.getY(i));
+				pixel.setConnectedness(labeler.getConnectedness(i));
+				regionClusters[region].add(pixel);
+			}
+
+			for (final PixelCluster cluster : regionClusters) {
+				if (cluster != null) clusters.add(cluster);
+			}
 		}
 
 		if (logger.isTraceEnabled())
-			logger.trace("---- Detected {} shots from {} regions ------", clusters.size(), numberOfRegions + 1);
+			logger.trace("---- Detected {} shots from {} regions ------", clusters.size(), numberOfRegions);
 
 		return clusters;
 	}
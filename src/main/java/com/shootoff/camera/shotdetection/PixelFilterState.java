@@ -0,0 +1,108 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel filter state used by shot detection (e.g. the moving average of
+ * each pixel's luminance). All state is stored in flat, row-major arrays so
+ * that walking a row of the frame walks contiguous memory. The arrays are only
+ * reallocated when a frame size needs more room than has been used before,
+ * otherwise they are reused and simply reset.
+ */
+public final class PixelFilterState {
+	// Marks a pixel whose filters have not seen a frame yet
+	public static final int UNINITIALIZED = -1;
+
+	private int width;
+	private int height;
+
+	private int[] lumsMovingAverage = new int[0];
+	private int[] colorDistanceFromRed = new int[0];
+
+	public PixelFilterState(int width, int height) {
+		resize(width, height);
+	}
+
+	/**
+	 * Set the dimensions of the frames this state tracks and reset every
+	 * pixel's filters.
+	 */
+	public void resize(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		final int size = width * height;
+
+		if (size > lumsMovingAverage.length) {
+			lumsMovingAverage = new int[size];
+			if (colorDistanceFromRed.length > 0) colorDistanceFromRed = new int[size];
+		}
+
+		Arrays.fill(lumsMovingAverage, 0, size, UNINITIALIZED);
+		if (colorDistanceFromRed.length > 0) Arrays.fill(colorDistanceFromRed, 0, size, 0);
+	}
+
+	/**
+	 * Reset the filters of the pixels in row <code>y</code> from
+	 * <code>startX</code> up to but not including <code>endX</code>.
+	 */
+	public void reset(int y, int startX, int endX) {
+		Arrays.fill(lumsMovingAverage, index(startX, y), index(endX, y), UNINITIALIZED);
+		if (colorDistanceFromRed.length > 0)
+			Arrays.fill(colorDistanceFromRed, index(startX, y), index(endX, y), 0);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int index(int x, int y) {
+		return y * width + x;
+	}
+
+	public int getLumsMovingAverage(int x, int y) {
+		return lumsMovingAverage[index(x, y)];
+	}
+
+	public int getColorDistanceFromRed(int x, int y) {
+		return colorDistanceFromRed()[index(x, y)];
+	}
+
+	// The raw arrays are exposed within the package so the detection sieve
+	// can index them directly in its inner loop
+	int[] lumsMovingAverage() {
+		return lumsMovingAverage;
+	}
+
+	// Detectors that only use luminance never track color, thus the color
+	// filters are not allocated until they are first needed. The first call
+	// must not race with other threads using this state.
+	int[] colorDistanceFromRed() {
+		if (colorDistanceFromRed.length < lumsMovingAverage.length)
+			colorDistanceFromRed = new int[lumsMovingAverage.length];
+
+		return colorDistanceFromRed;
+	}
+}
@@ -0,0 +1,792 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.shotdetection;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.CameraView;
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.ShotColor;
+import com.shootoff.config.Configuration;
+
+/**
+ * A coarse-to-fine variant of {@link JavaShotDetector} for high resolution
+ * feeds. Every frame is reduced to a luminance plane that is 2x or 4x smaller
+ * in each dimension, where each coarse cell holds the brightest pixel of its
+ * block. The threshold test runs on this plane first. Full resolution pixels
+ * are tested only in small windows around coarse cells that pass the threshold
+ * test: they are tested against their own moving averages, and the pixels
+ * that pass are clustered and have their color classified exactly as in
+ * {@link JavaShotDetector}. Every pixel's brightness filter is still updated,
+ * which is cheap next to the conversion to the coarse plane.
+ *
+ * Using the brightest pixel of a block ensures a laser dot smaller than a
+ * block still raises the cell's luminance instead of being averaged away.
+ * When the camera has a detection mask, only the block's pixels in the mask
+ * are considered and cells without any are skipped.
+ *
+ * Like {@link JavaShotDetector}, single channel frames and cameras set to
+ * luminance only are searched by brightness alone and their shots are reported
+ * as {@link ShotColor#INFRARED}.
+ */
+public final class PyramidShotDetector extends FrameProcessingShotDetector {
+	private static final Logger logger = LoggerFactory.getLogger(PyramidShotDetector.class);
+
+	private final DiagnosticOverlay motionOverlay = new DiagnosticOverlay(new Scalar(255, 0, 0), new Scalar(0));
+	private final DiagnosticOverlay brightnessOverlay = new DiagnosticOverlay(new Scalar(0, 0, 255),
+			new Scalar(255));
+	private Mat overlayFrame = null;
+
+	// Number of coarse cells around a candidate cell whose pixels are
+	// examined at full resolution
+	private static final int WINDOW_MARGIN = 1;
+
+	private final CameraManager cameraManager;
+	private final int downsampleFactor;
+
+	private boolean filtersInitialized = false;
+
+	// When set, only brightness is used to find shots and every shot is
+	// reported as infrared. Single channel frames are always handled this way.
+	private volatile boolean luminanceOnly;
+
+	private volatile int filterUpdateInterval = 1;
+	private long filterUpdateFrameCount = 0;
+
+	// Filters for the coarse plane
+	private PixelFilterState coarseFilterState;
+
+	// Filters for full resolution pixels. Only the color distances of pixels
+	// around found clusters are filled in, from their cells' coarse filters,
+	// so that clusters can be classified with PixelCluster.getColor
+	private PixelFilterState fineFilterState;
+
+	// Each pixel's brightness is held back for a frame before it is added to
+	// its filter, thus windows are tested against the filters as they were
+	// before the frame, like JavaShotDetector tests each pixel before updating
+	// its filter
+	private int[] pendingLums = new int[0];
+
+	private int avgThresholdCells = -1;
+
+	private int initialFrameCount = -1;
+
+	private final static int INIT_FRAME_COUNT = 5;
+	private int movingAveragePeriod = INIT_FRAME_COUNT;
+
+	// Computed from the size of the coarse plane, thus these are in cells
+	private final static int MOTION_WARNING_FRAMECOUNT = 30;
+	private int MOTION_WARNING_AVG_THRESHOLD;
+	private int MOTION_WARNING_THRESHOLD_CELLS;
+	private int MAXIMUM_THRESHOLD_CELLS_FOR_MOTION_AVG;
+
+	private final static int MAXIMUM_LUM_VALUE = 65025;
+	private final static int EXCESSIVE_BRIGHTNESS_THRESHOLD = (int) (.96 * MAXIMUM_LUM_VALUE);
+	private final static int MINIMUM_BRIGHTNESS_INCREASE = (int) (.117 * MAXIMUM_LUM_VALUE);
+
+	private int BRIGHTNESS_WARNING_AVG_THRESHOLD;
+	private final static int BRIGHTNESS_WARNING_FRAMECOUNT = 90;
+
+	private int MAXIMUM_THRESHOLD_CELLS_FOR_AVG;
+
+	// In full resolution pixels
+	private int MINIMUM_SHOT_DIMENSION;
+
+	private final DetectionScheduler scheduler;
+	private final DetectionScheduler.BandOperation coarseSieve = this::sieveCoarseBand;
+
+	private PackedPixelBuffer[] bandThresholdCells = new PackedPixelBuffer[0];
+	private PackedPixelBuffer[] bandBrightCells = new PackedPixelBuffer[0];
+	private int[] bandDynamicallyThresholded = new int[0];
+
+	private final PackedPixelBuffer thresholdCells = new PackedPixelBuffer();
+	private final PackedPixelBuffer brightCells = new PackedPixelBuffer();
+	private final PackedPixelBuffer thresholdPixels = new PackedPixelBuffer();
+
+	private int avgBrightCells = -1;
+	private int dynamicallyThresholded = -1;
+	private volatile int lastThresholdCellCount = -1;
+	private volatile int lastThresholdPixelCount = -1;
+	private boolean shouldShowBrightnessWarningBool = false;
+
+	// Reused between frames
+	private byte[] framePrimitive = new byte[0];
+	private byte[] windowCells = new byte[0];
+	private Mat frameHSV = null;
+
+	// Parameters of the frame currently being sieved
+	private int sieveCols;
+	private int sieveRows;
+	private int sieveChannels;
+	private boolean sieveDetectShots;
+	private boolean sieveUpdatesFilter;
+	private boolean sieveLuminanceOnly;
+	private DetectionMask sieveMask;
+	private int[] sieveLumsMovingAverage;
+	private int[] sieveColorDistanceFromRed;
+	private int sieveFineWidth;
+	private int[] sieveFineLumsMovingAverage;
+
+	// The mask the coarse filters were last updated with
+	private DetectionMask activeMask = null;
+
+	private final PixelClusterManager pixelClusterManager;
+
+	public static boolean isSystemSupported() {
+		final Configuration config = Configuration.getConfig();
+		return config != null && config.getPyramidDownsampleFactor() > 1;
+	}
+
+	public PyramidShotDetector(final CameraManager cameraManager, final CameraView cameraView) {
+		super(cameraManager, cameraView);
+
+		this.cameraManager = cameraManager;
+		scheduler = new DetectionScheduler(cameraManager.getDetectionWorkload());
+		final Configuration config = Configuration.getConfig();
+		downsampleFactor = Math.max(2, config.getPyramidDownsampleFactor());
+		luminanceOnly = config.isLuminanceOnly(cameraManager.getName());
+
+		setFrameSize(cameraManager.getFeedWidth(), cameraManager.getFeedHeight());
+
+		pixelClusterManager = new PixelClusterManager(cameraManager.getFeedWidth(), cameraManager.getFeedHeight());
+	}
+
+	public boolean isLuminanceOnly() {
+		return luminanceOnly;
+	}
+
+	/**
+	 * Set whether to skip color when detecting shots. See
+	 * {@link JavaShotDetector#setLuminanceOnly(boolean)}.
+	 */
+	public void setLuminanceOnly(boolean luminanceOnly) {
+		this.luminanceOnly = luminanceOnly;
+	}
+
+	@Override
+	public void setFilterUpdateInterval(int interval) {
+		filterUpdateInterval = Math.max(1, interval);
+	}
+
+	@Override
+	public void setFrameSize(final int width, final int height) {
+		if (pixelClusterManager != null) pixelClusterManager.updateFrameSize(width, height);
+
+		final int coarseWidth = coarseSize(width);
+		final int coarseHeight = coarseSize(height);
+
+		if (coarseFilterState == null) {
+			coarseFilterState = new PixelFilterState(coarseWidth, coarseHeight);
+			fineFilterState = new PixelFilterState(width, height);
+		} else {
+			coarseFilterState.resize(coarseWidth, coarseHeight);
+			fineFilterState.resize(width, height);
+		}
+
+		windowCells = new byte[coarseWidth * coarseHeight];
+
+		if (pendingLums.length < width * height) pendingLums = new int[width * height];
+		Arrays.fill(pendingLums, PixelFilterState.UNINITIALIZED);
+
+		final double coarseFrameSize = coarseWidth * coarseHeight;
+
+		MOTION_WARNING_AVG_THRESHOLD = (int) (coarseFrameSize * .000395);
+		MOTION_WARNING_THRESHOLD_CELLS = (int) (coarseFrameSize * 0.00195);
+		MAXIMUM_THRESHOLD_CELLS_FOR_MOTION_AVG = (int) (coarseFrameSize * 0.00195);
+
+		BRIGHTNESS_WARNING_AVG_THRESHOLD = (int) (coarseFrameSize * .000325);
+
+		MAXIMUM_THRESHOLD_CELLS_FOR_AVG = Math.max(1, (int) (coarseFrameSize * .000976));
+
+		MINIMUM_SHOT_DIMENSION = (int) (width * height * .000025);
+	}
+
+	private int coarseSize(int fineSize) {
+		return (fineSize + downsampleFactor - 1) / downsampleFactor;
+	}
+
+	@Override
+	public void processFrame(final Frame frame, final boolean detectShots) {
+		updateMovingAveragePeriod();
+
+		final Mat workingFrame = frame.getOriginalMat();
+
+		final boolean isLuminanceFrame = luminanceOnly || workingFrame.channels() == 1;
+		sieveLuminanceOnly = isLuminanceFrame;
+
+		overlayFrame = workingFrame;
+		motionOverlay.reset(workingFrame.cols(), workingFrame.rows());
+		brightnessOverlay.reset(workingFrame.cols(), workingFrame.rows());
+
+		sieveCoarsePlane(workingFrame, detectShots && filtersInitialized);
+
+		final int thresholdCellsSize = thresholdCells.size();
+		lastThresholdCellCount = thresholdCellsSize;
+		lastThresholdPixelCount = 0;
+
+		if (!filtersInitialized) filtersInitialized = checkIfInitialized();
+
+		if (detectShots && filtersInitialized) {
+			updateAvgThresholdCells(thresholdCellsSize);
+			updateAvgBrightCells(brightCells.size());
+
+			if (shouldShowBrightnessWarning()) {
+				cameraManager.showBrightnessWarning();
+			}
+
+			if (thresholdCellsSize > 0 && !isExcessiveMotion(thresholdCellsSize)) {
+				findThresholdPixels(workingFrame);
+				lastThresholdPixelCount = thresholdPixels.size();
+
+				if (logger.isTraceEnabled())
+					logger.trace("thresholdCells {} thresholdPixels {}", thresholdCellsSize, thresholdPixels.size());
+
+				if (thresholdPixels.size() >= getMinimumShotDimension()) {
+					final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(thresholdPixels,
+							getMinimumShotDimension());
+
+					if (isLuminanceFrame) {
+						for (final PixelCluster cluster : clusters)
+							super.addShot(ShotColor.INFRARED, cluster.centerPixelX, cluster.centerPixelY,
+									frame.getTimestamp(), true);
+					} else if (!clusters.isEmpty()) {
+						if (frameHSV == null) frameHSV = new Mat();
+						Imgproc.cvtColor(workingFrame, frameHSV, Imgproc.COLOR_BGR2HSV);
+
+						for (final PixelCluster cluster : clusters)
+							addShot(frameHSV, frame.getTimestamp(), cluster);
+					}
+				}
+			} else if (isExcessiveMotion(thresholdCellsSize)) {
+				if (shouldShowMotionWarning(thresholdCellsSize)) cameraManager.showMotionWarning();
+
+				motionOverlay.markBlocks(thresholdCells, downsampleFactor);
+			}
+
+			if (shouldShowBrightnessWarningBool && !brightCells.isEmpty()) {
+				brightnessOverlay.markBlocks(brightCells, downsampleFactor);
+			}
+		}
+	}
+
+	private void updateMovingAveragePeriod() {
+		if (cameraManager.getFrameCount() % 5 == 0)
+			movingAveragePeriod = Math.max((int) (cameraManager.getFPS() / 5.0), INIT_FRAME_COUNT);
+	}
+
+	/**
+	 * Reduce <code>workingFrame</code> to the coarse plane, updating the coarse
+	 * filters and collecting threshold and bright cells.
+	 */
+	private void sieveCoarsePlane(final Mat workingFrame, final boolean detectShots) {
+		dynamicallyThresholded = 0;
+		thresholdCells.clear();
+		brightCells.clear();
+
+		if (!cameraManager.isDetecting()) return;
+
+		int sectorMask = 0;
+		for (int sectorY = 0; sectorY < JavaShotDetector.SECTOR_ROWS; sectorY++) {
+			for (int sectorX = 0; sectorX < JavaShotDetector.SECTOR_COLUMNS; sectorX++) {
+				if (cameraManager.isSectorOn(sectorX, sectorY))
+					sectorMask |= 1 << (sectorY * JavaShotDetector.SECTOR_COLUMNS + sectorX);
+			}
+		}
+
+		final int bandCount = scheduler.plan(coarseSize(workingFrame.cols()), coarseSize(workingFrame.rows()),
+				sectorMask);
+
+		if (bandCount == 0) return;
+
+		ensureBandBuffers(bandCount);
+
+		for (int i = 0; i < bandCount; i++) {
+			bandThresholdCells[i].clear();
+			bandBrightCells[i].clear();
+			bandDynamicallyThresholded[i] = 0;
+		}
+
+		final int channels = workingFrame.channels();
+		final int size = (int) (workingFrame.total() * channels);
+		if (framePrimitive.length < size) framePrimitive = new byte[size];
+		workingFrame.get(0, 0, framePrimitive);
+
+		sieveCols = workingFrame.cols();
+		sieveRows = workingFrame.rows();
+		sieveChannels = channels;
+		sieveDetectShots = detectShots;
+		// The filters are always updated while they are initializing
+		sieveUpdatesFilter = !detectShots || filterUpdateFrameCount++ % filterUpdateInterval == 0;
+		sieveMask = updateDetectionMask(workingFrame);
+		// Fetched here because the color filters are allocated on first use,
+		// which luminance only frames never need
+		sieveLumsMovingAverage = coarseFilterState.lumsMovingAverage();
+		sieveColorDistanceFromRed = sieveLuminanceOnly ? null : coarseFilterState.colorDistanceFromRed();
+		sieveFineWidth = fineFilterState.getWidth();
+		sieveFineLumsMovingAverage = fineFilterState.lumsMovingAverage();
+
+		scheduler.run(coarseSieve);
+
+		for (int i = 0; i < bandCount; i++) {
+			thresholdCells.addAll(bandThresholdCells[i]);
+			brightCells.addAll(bandBrightCells[i]);
+			dynamicallyThresholded += bandDynamicallyThresholded[i];
+		}
+	}
+
+	private void ensureBandBuffers(int bandCount) {
+		if (bandThresholdCells.length >= bandCount) return;
+
+		final int oldCount = bandThresholdCells.length;
+
+		bandThresholdCells = Arrays.copyOf(bandThresholdCells, bandCount);
+		bandBrightCells = Arrays.copyOf(bandBrightCells, bandCount);
+		bandDynamicallyThresholded = new int[bandCount];
+
+		for (int i = oldCount; i < bandCount; i++) {
+			bandThresholdCells[i] = new PackedPixelBuffer();
+			bandBrightCells[i] = new PackedPixelBuffer();
+		}
+	}
+
+	/**
+	 * Get the detection mask to apply to <code>workingFrame</code>. When the
+	 * mask changes, pixels that the previous mask excluded have stale filters
+	 * and their cells have filters that don't cover their whole block, thus
+	 * both are reset.
+	 * 
+	 * @return the mask or <code>null</code> to examine the whole frame
+	 */
+	private DetectionMask updateDetectionMask(final Mat workingFrame) {
+		DetectionMask mask = cameraManager.getDetectionMaskManager().getMask().orElse(null);
+
+		if (mask != null && (mask.getWidth() != workingFrame.cols() || mask.getHeight() != workingFrame.rows())) {
+			if (logger.isTraceEnabled()) logger.trace("Ignoring {}x{} detection mask for {}x{} frame",
+					mask.getWidth(), mask.getHeight(), workingFrame.cols(), workingFrame.rows());
+
+			mask = null;
+		}
+
+		if (mask == activeMask) return mask;
+
+		if (activeMask != null) {
+			final int rows = Math.min(activeMask.getHeight(), fineFilterState.getHeight());
+			final int cols = Math.min(activeMask.getWidth(), fineFilterState.getWidth());
+
+			for (int y = 0; y < rows; y++) {
+				int excludedStartX = 0;
+
+				for (int span = activeMask.getRowSpanStart(y); span < activeMask.getRowSpanEnd(y); span++) {
+					final int spanStartX = Math.min(activeMask.getSpanStartX(span), cols);
+					if (excludedStartX < spanStartX) resetFilters(y, excludedStartX, spanStartX);
+					excludedStartX = activeMask.getSpanEndX(span);
+				}
+
+				if (excludedStartX < cols) resetFilters(y, excludedStartX, cols);
+			}
+		}
+
+		activeMask = mask;
+
+		return mask;
+	}
+
+	// Reset the filters of pixels startX to endX of row y and of the cells
+	// that contain them
+	private void resetFilters(int y, int startX, int endX) {
+		fineFilterState.reset(y, startX, endX);
+		Arrays.fill(pendingLums, fineFilterState.index(startX, y), fineFilterState.index(endX, y),
+				PixelFilterState.UNINITIALIZED);
+		coarseFilterState.reset(y / downsampleFactor, startX / downsampleFactor, coarseSize(endX));
+	}
+
+	private void sieveCoarseBand(int band, int startCellY, int endCellY, int startCellX, int endCellX) {
+		final DetectionMask mask = sieveMask;
+		final byte[] workingFramePrimitive = framePrimitive;
+		final int cols = sieveCols;
+		final int rows = sieveRows;
+		final int channels = sieveChannels;
+		final boolean isLuminanceFrame = sieveLuminanceOnly;
+		final int coarseWidth = coarseFilterState.getWidth();
+		final int fineWidth = sieveFineWidth;
+
+		for (int cellY = startCellY; cellY < endCellY; cellY++) {
+			final int startY = cellY * downsampleFactor;
+			final int endY = Math.min(startY + downsampleFactor, rows);
+
+			for (int cellX = startCellX; cellX < endCellX; cellX++) {
+				final int startX = cellX * downsampleFactor;
+				final int endX = Math.min(startX + downsampleFactor, cols);
+
+				// The brightest pixel in the block represents the cell
+				int maxLum = -1;
+				int maxHsv = 0;
+
+				for (int y = startY; y < endY; y++) {
+					final int yOffset = y * cols;
+					final int filterOffset = y * fineWidth;
+
+					// Only the parts of the block's row that are in the mask
+					// are examined
+					final int firstSpan = mask == null ? 0 : mask.getRowSpanStart(y);
+					final int endSpan = mask == null ? 1 : mask.getRowSpanEnd(y);
+
+					for (int span = firstSpan; span < endSpan; span++) {
+						final int spanStartX = mask == null ? startX : Math.max(startX, mask.getSpanStartX(span));
+						final int spanEndX = mask == null ? endX : Math.min(endX, mask.getSpanEndX(span));
+
+						for (int x = spanStartX; x < spanEndX; x++) {
+							final int pixelOffset = (yOffset + x) * channels;
+
+							if (isLuminanceFrame) {
+								final int lum = luminanceOnlyLum(workingFramePrimitive, pixelOffset, channels);
+								updateFineFilter(filterOffset + x, lum);
+								if (lum > maxLum) maxLum = lum;
+
+								continue;
+							}
+
+							final int hsv = BgrToHsv.convert(workingFramePrimitive[pixelOffset] & 0xFF,
+									workingFramePrimitive[pixelOffset + 1] & 0xFF,
+									workingFramePrimitive[pixelOffset + 2] & 0xFF);
+
+							final int lum = (255 - BgrToHsv.saturation(hsv)) * BgrToHsv.value(hsv);
+							updateFineFilter(filterOffset + x, lum);
+
+							if (lum > maxLum) {
+								maxLum = lum;
+								maxHsv = hsv;
+							}
+						}
+					}
+				}
+
+				// The mask excludes the whole block, thus the cell is neither
+				// updated nor tested
+				if (maxLum == -1) continue;
+
+				if (isLuminanceFrame) {
+					updateCoarseLuminanceFilter(maxLum, cellX, cellY, cellY * coarseWidth + cellX, band);
+				} else {
+					updateCoarseFilter(BgrToHsv.hue(maxHsv), BgrToHsv.saturation(maxHsv), BgrToHsv.value(maxHsv),
+							maxLum, cellX, cellY, cellY * coarseWidth + cellX, band);
+				}
+			}
+		}
+	}
+
+	// Add the pixel's brightness in the previous frame to its filter and hold
+	// back its brightness in this frame until the next
+	private void updateFineFilter(int filterIndex, int currentLum) {
+		final int pendingLum = pendingLums[filterIndex];
+
+		if (pendingLum != PixelFilterState.UNINITIALIZED) {
+			final int[] lumsMovingAverage = sieveFineLumsMovingAverage;
+
+			if (lumsMovingAverage[filterIndex] == PixelFilterState.UNINITIALIZED) {
+				lumsMovingAverage[filterIndex] = pendingLum;
+			} else {
+				lumsMovingAverage[filterIndex] = ((lumsMovingAverage[filterIndex] * (movingAveragePeriod - 1))
+						+ pendingLum) / movingAveragePeriod;
+			}
+		}
+
+		pendingLums[filterIndex] = sieveUpdatesFilter ? currentLum : PixelFilterState.UNINITIALIZED;
+	}
+
+	private void updateCoarseFilter(int currentH, int currentS, int currentV, int currentLum, int cellX, int cellY,
+			int filterIndex, int band) {
+		final int[] lumsMovingAverage = sieveLumsMovingAverage;
+		final int[] colorDistanceFromRed = sieveColorDistanceFromRed;
+
+		final int tempColorDistanceFromRed = (Math.min(currentH, Math.abs(180 - currentH)) * currentS * currentV)
+				- (Math.abs(60 - currentH) * currentS * currentV);
+
+		if (lumsMovingAverage[filterIndex] == PixelFilterState.UNINITIALIZED) {
+			lumsMovingAverage[filterIndex] = currentLum;
+			colorDistanceFromRed[filterIndex] = tempColorDistanceFromRed;
+
+			return;
+		}
+
+		if (sieveDetectShots) classifyCell(currentLum, lumsMovingAverage[filterIndex], cellX, cellY, band);
+
+		if (!sieveUpdatesFilter) return;
+
+		lumsMovingAverage[filterIndex] = ((lumsMovingAverage[filterIndex] * (movingAveragePeriod - 1)) + currentLum)
+				/ movingAveragePeriod;
+
+		colorDistanceFromRed[filterIndex] = ((colorDistanceFromRed[filterIndex] * (movingAveragePeriod - 1))
+				+ tempColorDistanceFromRed) / movingAveragePeriod;
+	}
+
+	// Only the brightness filter is kept for cells whose color is ignored
+	private void updateCoarseLuminanceFilter(int currentLum, int cellX, int cellY, int filterIndex, int band) {
+		final int[] lumsMovingAverage = sieveLumsMovingAverage;
+
+		if (lumsMovingAverage[filterIndex] == PixelFilterState.UNINITIALIZED) {
+			lumsMovingAverage[filterIndex] = currentLum;
+			return;
+		}
+
+		if (sieveDetectShots) classifyCell(currentLum, lumsMovingAverage[filterIndex], cellX, cellY, band);
+
+		if (!sieveUpdatesFilter) return;
+
+		lumsMovingAverage[filterIndex] = ((lumsMovingAverage[filterIndex] * (movingAveragePeriod - 1)) + currentLum)
+				/ movingAveragePeriod;
+	}
+
+	private void classifyCell(int currentLum, int lumsMovingAverage, int cellX, int cellY, int band) {
+		if (lumsMovingAverage > EXCESSIVE_BRIGHTNESS_THRESHOLD) {
+			bandBrightCells[band].add(cellX, cellY);
+		} else {
+			final int result = testThreshold(currentLum, lumsMovingAverage);
+
+			if (result == ABOVE_THRESHOLD)
+				bandThresholdCells[band].add(cellX, cellY);
+			else if (result == DYNAMICALLY_THRESHOLDED) bandDynamicallyThresholded[band]++;
+		}
+	}
+
+	/**
+	 * Without color there is no saturation, thus a pixel's luminance is
+	 * entirely determined by its value: the single channel of a monochrome
+	 * frame or the brightest channel of a color frame.
+	 */
+	private static int luminanceOnlyLum(byte[] framePrimitive, int pixelOffset, int channels) {
+		if (channels == 1) return 255 * (framePrimitive[pixelOffset] & 0xFF);
+
+		return 255 * Math.max(framePrimitive[pixelOffset] & 0xFF,
+				Math.max(framePrimitive[pixelOffset + 1] & 0xFF, framePrimitive[pixelOffset + 2] & 0xFF));
+	}
+
+	private int pixelLum(int pixelOffset) {
+		if (sieveLuminanceOnly) return luminanceOnlyLum(framePrimitive, pixelOffset, sieveChannels);
+
+		final int hsv = BgrToHsv.convert(framePrimitive[pixelOffset] & 0xFF, framePrimitive[pixelOffset + 1] & 0xFF,
+				framePrimitive[pixelOffset + 2] & 0xFF);
+
+		return (255 - BgrToHsv.saturation(hsv)) * BgrToHsv.value(hsv);
+	}
+
+	private static final int BELOW_THRESHOLD = 0;
+	private static final int DYNAMICALLY_THRESHOLDED = 1;
+	private static final int ABOVE_THRESHOLD = 2;
+
+	// The same test JavaShotDetector applies to each pixel
+	private int testThreshold(int currentLum, int lumsMovingAverage) {
+		final int increase = (currentLum - lumsMovingAverage);
+
+		if (increase < MINIMUM_BRIGHTNESS_INCREASE) return BELOW_THRESHOLD;
+
+		final int threshold = (MAXIMUM_LUM_VALUE - lumsMovingAverage) >> 2;
+
+		final int dynamic_increase = (int) ((MAXIMUM_LUM_VALUE - threshold)
+				* ((double) avgThresholdCells / (double) MAXIMUM_THRESHOLD_CELLS_FOR_AVG));
+
+		final int dynamic_threshold = threshold + dynamic_increase;
+
+		if (increase < dynamic_threshold) return increase > threshold ? DYNAMICALLY_THRESHOLDED : BELOW_THRESHOLD;
+
+		return ABOVE_THRESHOLD;
+	}
+
+	/**
+	 * Test the full resolution pixels in the windows around threshold cells
+	 * against their own moving averages.
+	 */
+	private void findThresholdPixels(final Mat workingFrame) {
+		thresholdPixels.clear();
+
+		final int coarseWidth = coarseSize(sieveCols);
+		final int coarseHeight = coarseSize(sieveRows);
+		final int fineWidth = fineFilterState.getWidth();
+		final int[] lumsMovingAverage = fineFilterState.lumsMovingAverage();
+
+		for (int i = 0; i < thresholdCells.size(); i++) {
+			final int cellX = thresholdCells.getX(i);
+			final int cellY = thresholdCells.getY(i);
+
+			for (int y = Math.max(0, cellY - WINDOW_MARGIN); y <= Math.min(coarseHeight - 1,
+					cellY + WINDOW_MARGIN); y++) {
+				for (int x = Math.max(0, cellX - WINDOW_MARGIN); x <= Math.min(coarseWidth - 1,
+						cellX + WINDOW_MARGIN); x++) {
+					windowCells[y * coarseWidth + x] = 1;
+				}
+			}
+		}
+
+		final DetectionMask mask = sieveMask;
+
+		// Visit window cells in raster order so that each pixel is examined
+		// once even when windows overlap
+		for (int cellY = 0; cellY < coarseHeight; cellY++) {
+			for (int cellX = 0; cellX < coarseWidth; cellX++) {
+				if (windowCells[cellY * coarseWidth + cellX] == 0) continue;
+
+				windowCells[cellY * coarseWidth + cellX] = 0;
+
+				final int endY = Math.min((cellY + 1) * downsampleFactor, sieveRows);
+				final int endX = Math.min((cellX + 1) * downsampleFactor, sieveCols);
+
+				for (int y = cellY * downsampleFactor; y < endY; y++) {
+					for (int x = cellX * downsampleFactor; x < endX; x++) {
+						if (mask != null && !mask.contains(x, y)) continue;
+
+						// Pixels without a filter yet and excessively bright
+						// pixels are never threshold pixels
+						final int lumAverage = lumsMovingAverage[y * fineWidth + x];
+						if (lumAverage == PixelFilterState.UNINITIALIZED || lumAverage > EXCESSIVE_BRIGHTNESS_THRESHOLD)
+							continue;
+
+						final int lum = pixelLum((y * sieveCols + x) * sieveChannels);
+
+						if (testThreshold(lum, lumAverage) == ABOVE_THRESHOLD) thresholdPixels.add(x, y);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of coarse cells that passed the threshold test in the
+	 *         last processed frame
+	 */
+	int getThresholdCellCount() {
+		return lastThresholdCellCount;
+	}
+
+	/**
+	 * @return the number of full resolution pixels confirmed in the windows
+	 *         around threshold cells in the last processed frame
+	 */
+	@Override
+	public int getThresholdPixelCount() {
+		return lastThresholdPixelCount;
+	}
+
+	@Override
+	public void paintDiagnosticOverlay() {
+		if (overlayFrame == null) return;
+
+		motionOverlay.paint(overlayFrame);
+		brightnessOverlay.paint(overlayFrame);
+
+		overlayFrame = null;
+	}
+
+	private boolean isExcessiveMotion(final int thresholdCells) {
+		return thresholdCells > MOTION_WARNING_THRESHOLD_CELLS || avgThresholdCells > MOTION_WARNING_AVG_THRESHOLD;
+	}
+
+	private boolean shouldShowMotionWarning(final int thresholdCells) {
+		final boolean showWarning = avgThresholdCells > MOTION_WARNING_AVG_THRESHOLD
+				&& cameraManager.getFrameCount() - initialFrameCount > MOTION_WARNING_FRAMECOUNT;
+
+		if (showWarning && logger.isTraceEnabled())
+			logger.trace("HIGH MOTION - avgThresholdCells {} thresholdCells {} frameCount {}", avgThresholdCells,
+					thresholdCells, cameraManager.getFrameCount());
+
+		return showWarning;
+	}
+
+	private boolean shouldShowBrightnessWarning() {
+		if (avgBrightCells >= BRIGHTNESS_WARNING_AVG_THRESHOLD
+				&& cameraManager.getFrameCount() - initialFrameCount > BRIGHTNESS_WARNING_FRAMECOUNT) {
+			if (logger.isTraceEnabled()) logger.trace("HIGH BRIGHTNESS - avgBrightCells {}", avgBrightCells);
+
+			shouldShowBrightnessWarningBool = true;
+
+			return true;
+		}
+
+		shouldShowBrightnessWarningBool = false;
+		return false;
+	}
+
+	private boolean checkIfInitialized() {
+		if (initialFrameCount == -1) initialFrameCount = cameraManager.getFrameCount();
+
+		return cameraManager.getFrameCount() - initialFrameCount > INIT_FRAME_COUNT;
+	}
+
+	private void updateAvgThresholdCells(final int thresholdCells) {
+		if (avgThresholdCells == -1)
+			avgThresholdCells = Math.min(thresholdCells + dynamicallyThresholded, MAXIMUM_THRESHOLD_CELLS_FOR_AVG);
+		else {
+			avgThresholdCells = (((movingAveragePeriod - 1) * avgThresholdCells)
+					+ Math.min(thresholdCells + dynamicallyThresholded, MAXIMUM_THRESHOLD_CELLS_FOR_MOTION_AVG))
+					/ movingAveragePeriod;
+		}
+	}
+
+	private void updateAvgBrightCells(final int brightCells) {
+		if (avgBrightCells == -1)
+			avgBrightCells = Math.min(brightCells, MAXIMUM_THRESHOLD_CELLS_FOR_AVG);
+		else
+			avgBrightCells = (((movingAveragePeriod - 1) * avgBrightCells)
+					+ Math.min(brightCells, MAXIMUM_THRESHOLD_CELLS_FOR_AVG)) / movingAveragePeriod;
+	}
+
+	public int getMinimumShotDimension() {
+		return cameraManager.getMinimumShotDimension().isPresent() ? cameraManager.getMinimumShotDimension().get()
+				: MINIMUM_SHOT_DIMENSION;
+	}
+
+	private void addShot(Mat workingFrameHSV, long timestamp, PixelCluster pc) {
+		// Give the pixels around the cluster the color filters of their cells
+		final int[] fineColorDistance = fineFilterState.colorDistanceFromRed();
+		final int[] coarseColorDistance = coarseFilterState.colorDistanceFromRed();
+		final int fineWidth = fineFilterState.getWidth();
+		final int coarseWidth = coarseFilterState.getWidth();
+
+		for (final Pixel pixel : pc) {
+			for (int y = Math.max(0, pixel.y - 1); y <= Math.min(sieveRows - 1, pixel.y + 1); y++) {
+				for (int x = Math.max(0, pixel.x - 1); x <= Math.min(sieveCols - 1, pixel.x + 1); x++) {
+					fineColorDistance[y * fineWidth + x] = coarseColorDistance[(y / downsampleFactor) * coarseWidth
+							+ (x / downsampleFactor)];
+				}
+			}
+		}
+
+		final Optional<ShotColor> color = pc.getColor(workingFrameHSV, fineFilterState);
+
+		if (!color.isPresent()) {
+			if (logger.isDebugEnabled()) logger.debug("Processing Shot: Shot Rejected By Lack Of Color Density");
+			return;
+		}
+
+		super.addShot(color.get(), pc.centerPixelX, pc.centerPixelY, timestamp, true);
+	}
+
+	@Override
+	protected boolean handlesBounds() {
+		return true;
+	}
+}
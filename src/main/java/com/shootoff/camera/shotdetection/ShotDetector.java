@@ -1,5 +1,7 @@
 package com.shootoff.camera.shotdetection;
 
+import java.util.OptionalLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,6 +9,9 @@ import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Shot;
 import com.shootoff.camera.ShotColor;
+import com.shootoff.camera.ShotTrace;
+import com.shootoff.camera.ShotTrace.Hop;
+import com.shootoff.camera.processors.DeduplicationProcessor;
 import com.shootoff.config.Configuration;
 
 import javafx.geometry.Bounds;
@@ -34,6 +39,13 @@ public abstract class ShotDetector {
 	public void reset() {
 	}
 
+	/**
+	 * Release any resources held by this detector (e.g. worker threads). The
+	 * detector will not be used after this is called.
+	 */
+	public void close() {
+	}
+
 	/**
 	 * Notify the shot detector of the dimensions of webcam frames (e.g. the
 	 * webcam's resolution). This method may be called at any time if the
@@ -95,6 +107,12 @@ public abstract class ShotDetector {
 			shot = new Shot(color, x, y, cameraManager.cameraTimeToShotTime(timestamp), cameraManager.getFrameCount(), config.getMarkerRadius());
 		}
 
+		final ShotTrace trace = shot.getTrace();
+		final OptionalLong captureTime = cameraManager.getFrameCaptureTime();
+		if (captureTime.isPresent()) trace.mark(Hop.CAPTURED, captureTime.getAsLong());
+		trace.mark(Hop.DETECTED);
+		trace.reportTo(cameraManager.getShotLatencies());
+
 		// If the shot didn't come from click to shoot (cameFromCanvas) and the
 		// resolution of the display and feed differ, translate shot coordinates
 		if (scaleShot && (config.getDisplayWidth() != cameraManager.getFeedWidth()
@@ -106,6 +124,8 @@ public abstract class ShotDetector {
 		if (!checkDuplicate(shot))
 			return false;
 
+		trace.mark(Hop.DEDUPLICATED);
+
 		submitShot(shot);
 
 		return true;
@@ -120,10 +140,14 @@ public abstract class ShotDetector {
 	}
 
 	protected boolean checkDuplicate(final Shot shot) {
-		if (!cameraManager.getDeduplicationProcessor().processShot(shot)) {
+		final DeduplicationProcessor deduplicationProcessor = cameraManager.getDeduplicationProcessor();
+		final boolean accepted = deduplicationProcessor.processShot(shot);
+
+		cameraManager.recordProcessedShot(deduplicationProcessor, accepted);
+
+		if (!accepted) {
 			if (logger.isDebugEnabled())
-				logger.debug("Processing Shot: Shot Rejected By {}",
-						cameraManager.getDeduplicationProcessor().getClass().getName());
+				logger.debug("Processing Shot: Shot Rejected By {}", deduplicationProcessor.getClass().getName());
 			return false;
 		}
 		return true;
@@ -51,6 +51,7 @@ import org.slf4j.LoggerFactory;
 import com.shootoff.Main;
 import com.shootoff.camera.CameraFactory;
 import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.FrameRing.DropPolicy;
 import com.shootoff.camera.cameratypes.Camera;
 import com.shootoff.camera.cameratypes.IpCamera;
 import com.shootoff.camera.processors.MalfunctionsProcessor;
@@ -99,9 +100,17 @@ public class Configuration {
 	private static final String ARENA_POSITION_Y_PROP = "shootoff.arena.y";
 	private static final String MUTED_CHIME_MESSAGES = "shootoff.diagnosticmessages.chime.muted";
 	private static final String PERSPECTIVE_WEBCAM_DISTANCES = WEBCAMS_PROP + ".distances";
+	private static final String LUMINANCE_ONLY_WEBCAMS_PROP = WEBCAMS_PROP + ".luminanceonly";
 	private static final String CALIBRATED_FEED_BEHAVIOR_PROP = "shootoff.arena.calibrated.behavior";
 	private static final String SHOW_ARENA_SHOT_MARKERS = "shootoff.arena.show.markers";
 	private static final String CALIBRATE_AUTO_ADJUST_EXPOSURE = "shootoff.arena.calibrated.exposure";
+	private static final String PYRAMID_DOWNSAMPLE_FACTOR_PROP = "shootoff.detection.pyramid.factor";
+	private static final String FRAME_QUEUE_CAPACITY_PROP = "shootoff.pipeline.queue.capacity";
+	private static final String FRAME_DROP_POLICY_PROP = "shootoff.pipeline.queue.drop";
+	private static final String DETECTION_WORKERS_PROP = "shootoff.detection.workers";
+	private static final String DETECTION_TARGET_FPS_PROP = "shootoff.detection.targetfps";
+	private static final String ENCODER_QUEUE_CAPACITY_PROP = "shootoff.recording.queue.capacity";
+	private static final String ENCODER_DROP_POLICY_PROP = "shootoff.recording.queue.drop";
 
 	protected static final String MARKER_RADIUS_MESSAGE = "MARKER_RADIUS has an invalid value: %d. Acceptable values are "
 			+ "between 1 and 20.";
@@ -112,6 +121,16 @@ public class Configuration {
 			+ "between 1 and 45.";
 	protected static final String INJECT_MALFUNCTIONS_MESSAGE = "INJECT_MALFUNCTIONS has an invalid value: %f. Acceptable values are "
 			+ "between 0.1 and 99.9.";
+	protected static final String PYRAMID_DOWNSAMPLE_FACTOR_MESSAGE = "PYRAMID_DOWNSAMPLE_FACTOR has an invalid value: %d. "
+			+ "Acceptable values are 1 (disabled), 2, and 4.";
+	protected static final String FRAME_QUEUE_CAPACITY_MESSAGE = "FRAME_QUEUE_CAPACITY has an invalid value: %d. "
+			+ "Acceptable values are between 1 and 60.";
+	protected static final String DETECTION_WORKERS_MESSAGE = "DETECTION_WORKERS has an invalid value: %d. "
+			+ "Acceptable values are between 0 (one per processor) and 64.";
+	protected static final String DETECTION_TARGET_FPS_MESSAGE = "DETECTION_TARGET_FPS has an invalid value: %d. "
+			+ "Acceptable values are between 0 (fixed resolution) and 120.";
+	protected static final String ENCODER_QUEUE_CAPACITY_MESSAGE = "ENCODER_QUEUE_CAPACITY has an invalid value: %d. "
+			+ "Acceptable values are between 1 and 300.";
 
 	private static final String DEFAULT_CONFIG_FILE = "shootoff.properties";
 
@@ -137,6 +156,13 @@ public class Configuration {
 	private int virtualMagazineCapacity = 7;
 	private boolean useMalfunctions = false;
 	private float malfunctionsProbability = (float) 10.0;
+	private int pyramidDownsampleFactor = 1;
+	private int frameQueueCapacity = 3;
+	private DropPolicy frameDropPolicy = DropPolicy.DROP_OLDEST;
+	private int detectionWorkers = 0;
+	private int detectionTargetFPS = 0;
+	private int encoderQueueCapacity = 30;
+	private DropPolicy encoderDropPolicy = DropPolicy.DROP_OLDEST;
 	private boolean debugMode = false;
 	private boolean headless = false;
 	private Set<Camera> recordingCameras = new HashSet<>();
@@ -149,6 +175,7 @@ public class Configuration {
 	private Optional<Point2D> arenaPosition = Optional.empty();
 	private final Map<String, Integer> cameraDistances = new HashMap<>();
 	private final Set<String> messagesChimeMuted = new HashSet<>();
+	private final Set<String> luminanceOnlyCameras = new HashSet<>();
 
 	private int displayWidth = DEFAULT_DISPLAY_WIDTH;
 
@@ -364,6 +391,12 @@ public class Configuration {
 			}
 		}
 
+		if (prop.containsKey(LUMINANCE_ONLY_WEBCAMS_PROP)) {
+			for (final String cameraName : prop.getProperty(LUMINANCE_ONLY_WEBCAMS_PROP).split(",")) {
+				if (!cameraName.isEmpty()) luminanceOnlyCameras.add(cameraName);
+			}
+		}
+
 		if (prop.containsKey(MUTED_CHIME_MESSAGES)) {
 			for (final String message : prop.getProperty(MUTED_CHIME_MESSAGES).split("\\|")) {
 				muteMessageChime(message);
@@ -374,6 +407,34 @@ public class Configuration {
 			setCalibratedFeedBehavior(CalibrationOption.valueOf(prop.getProperty(CALIBRATED_FEED_BEHAVIOR_PROP)));
 		}
 
+		if (prop.containsKey(PYRAMID_DOWNSAMPLE_FACTOR_PROP)) {
+			setPyramidDownsampleFactor(Integer.parseInt(prop.getProperty(PYRAMID_DOWNSAMPLE_FACTOR_PROP)));
+		}
+
+		if (prop.containsKey(FRAME_QUEUE_CAPACITY_PROP)) {
+			setFrameQueueCapacity(Integer.parseInt(prop.getProperty(FRAME_QUEUE_CAPACITY_PROP)));
+		}
+
+		if (prop.containsKey(FRAME_DROP_POLICY_PROP)) {
+			setFrameDropPolicy(DropPolicy.valueOf(prop.getProperty(FRAME_DROP_POLICY_PROP)));
+		}
+
+		if (prop.containsKey(DETECTION_WORKERS_PROP)) {
+			setDetectionWorkers(Integer.parseInt(prop.getProperty(DETECTION_WORKERS_PROP)));
+		}
+
+		if (prop.containsKey(ENCODER_QUEUE_CAPACITY_PROP)) {
+			setEncoderQueueCapacity(Integer.parseInt(prop.getProperty(ENCODER_QUEUE_CAPACITY_PROP)));
+		}
+
+		if (prop.containsKey(ENCODER_DROP_POLICY_PROP)) {
+			setEncoderDropPolicy(DropPolicy.valueOf(prop.getProperty(ENCODER_DROP_POLICY_PROP)));
+		}
+
+		if (prop.containsKey(DETECTION_TARGET_FPS_PROP)) {
+			setDetectionTargetFPS(Integer.parseInt(prop.getProperty(DETECTION_TARGET_FPS_PROP)));
+		}
+
 		if (prop.containsKey(SHOW_ARENA_SHOT_MARKERS)) {
 			setShowArenaShotMarkers(Boolean.parseBoolean(prop.getProperty(SHOW_ARENA_SHOT_MARKERS)));
 		}
@@ -438,6 +499,12 @@ public class Configuration {
 			mutedChimeMessages.append(m);
 		}
 
+		final StringBuilder luminanceOnlyWebcamList = new StringBuilder();
+		for (final String cameraName : luminanceOnlyCameras) {
+			if (luminanceOnlyWebcamList.length() > 0) luminanceOnlyWebcamList.append(",");
+			luminanceOnlyWebcamList.append(cameraName);
+		}
+
 		final StringBuilder cameraDistancesList = new StringBuilder();
 		for (final Entry<String, Integer> distanceEntry : cameraDistances.entrySet()) {
 			if (cameraDistancesList.length() > 0) cameraDistancesList.append(",");
@@ -471,9 +538,17 @@ public class Configuration {
 		}
 
 		prop.setProperty(PERSPECTIVE_WEBCAM_DISTANCES, cameraDistancesList.toString());
+		prop.setProperty(LUMINANCE_ONLY_WEBCAMS_PROP, luminanceOnlyWebcamList.toString());
 		prop.setProperty(CALIBRATED_FEED_BEHAVIOR_PROP, calibratedFeedBehavior.name());
 		prop.setProperty(SHOW_ARENA_SHOT_MARKERS, String.valueOf(showArenaShotMarkers));
 		prop.setProperty(CALIBRATE_AUTO_ADJUST_EXPOSURE, String.valueOf(autoAdjustExposure));
+		prop.setProperty(PYRAMID_DOWNSAMPLE_FACTOR_PROP, String.valueOf(pyramidDownsampleFactor));
+		prop.setProperty(FRAME_QUEUE_CAPACITY_PROP, String.valueOf(frameQueueCapacity));
+		prop.setProperty(FRAME_DROP_POLICY_PROP, frameDropPolicy.name());
+		prop.setProperty(DETECTION_WORKERS_PROP, String.valueOf(detectionWorkers));
+		prop.setProperty(DETECTION_TARGET_FPS_PROP, String.valueOf(detectionTargetFPS));
+		prop.setProperty(ENCODER_QUEUE_CAPACITY_PROP, String.valueOf(encoderQueueCapacity));
+		prop.setProperty(ENCODER_DROP_POLICY_PROP, encoderDropPolicy.name());
 
 		final OutputStream outputStream = new FileOutputStream(configName);
 
@@ -567,6 +642,26 @@ public class Configuration {
 		if (malfunctionsProbability < (float) 0.1 || malfunctionsProbability > (float) 99.9) {
 			throw new ConfigurationException(String.format(INJECT_MALFUNCTIONS_MESSAGE, malfunctionsProbability));
 		}
+
+		if (pyramidDownsampleFactor != 1 && pyramidDownsampleFactor != 2 && pyramidDownsampleFactor != 4) {
+			throw new ConfigurationException(String.format(PYRAMID_DOWNSAMPLE_FACTOR_MESSAGE, pyramidDownsampleFactor));
+		}
+
+		if (frameQueueCapacity < 1 || frameQueueCapacity > 60) {
+			throw new ConfigurationException(String.format(FRAME_QUEUE_CAPACITY_MESSAGE, frameQueueCapacity));
+		}
+
+		if (detectionWorkers < 0 || detectionWorkers > 64) {
+			throw new ConfigurationException(String.format(DETECTION_WORKERS_MESSAGE, detectionWorkers));
+		}
+
+		if (encoderQueueCapacity < 1 || encoderQueueCapacity > 300) {
+			throw new ConfigurationException(String.format(ENCODER_QUEUE_CAPACITY_MESSAGE, encoderQueueCapacity));
+		}
+
+		if (detectionTargetFPS < 0 || detectionTargetFPS > 120) {
+			throw new ConfigurationException(String.format(DETECTION_TARGET_FPS_MESSAGE, detectionTargetFPS));
+		}
 	}
 
 	public int getDisplayWidth() {
@@ -678,6 +773,58 @@ public class Configuration {
 		markerRadius = markRadius;
 	}
 
+	/**
+	 * Set how much each dimension of the frame is reduced by for the coarse
+	 * pass of {@link com.shootoff.camera.shotdetection.PyramidShotDetector}. A
+	 * factor of 1 disables pyramid detection.
+	 */
+	public void setPyramidDownsampleFactor(int pyramidDownsampleFactor) {
+		this.pyramidDownsampleFactor = pyramidDownsampleFactor;
+	}
+
+	/**
+	 * Set how many frames may wait between each stage of a camera's frame
+	 * pipeline (capture, detection, and recording/display) before frames are
+	 * dropped.
+	 */
+	public void setFrameQueueCapacity(int frameQueueCapacity) {
+		this.frameQueueCapacity = frameQueueCapacity;
+	}
+
+	public void setFrameDropPolicy(DropPolicy frameDropPolicy) {
+		this.frameDropPolicy = frameDropPolicy;
+	}
+
+	/**
+	 * Set how many frames may wait for each recording's encoder before frames
+	 * are dropped from the recording.
+	 */
+	public void setEncoderQueueCapacity(int encoderQueueCapacity) {
+		this.encoderQueueCapacity = encoderQueueCapacity;
+	}
+
+	public void setEncoderDropPolicy(DropPolicy encoderDropPolicy) {
+		this.encoderDropPolicy = encoderDropPolicy;
+	}
+
+	/**
+	 * Set the number of threads in the worker pool that every camera's shot
+	 * detection shares. 0 sizes the pool to the number of processors.
+	 */
+	public void setDetectionWorkers(int detectionWorkers) {
+		this.detectionWorkers = detectionWorkers;
+	}
+
+	/**
+	 * Set the frame rate shot detection must sustain. If this is greater than
+	 * 0, cameras start at their highest resolution and step down until
+	 * detection keeps up with this rate. 0 keeps cameras at the default
+	 * resolution.
+	 */
+	public void setDetectionTargetFPS(int detectionTargetFPS) {
+		this.detectionTargetFPS = detectionTargetFPS;
+	}
+
 	public void setIgnoreLaserColor(boolean ignoreLaserColor) {
 		this.ignoreLaserColor = ignoreLaserColor;
 	}
@@ -813,6 +960,18 @@ public class Configuration {
 		messagesChimeMuted.remove(message);
 	}
 
+	/**
+	 * Set whether shot detection for a camera should only use brightness. This
+	 * is meant for infrared and monochrome cameras, where color carries no
+	 * information. Shots from these cameras are reported as infrared.
+	 */
+	public void setLuminanceOnly(String cameraName, boolean luminanceOnly) {
+		if (luminanceOnly)
+			luminanceOnlyCameras.add(cameraName);
+		else
+			luminanceOnlyCameras.remove(cameraName);
+	}
+
 	public void setCalibratedFeedBehavior(CalibrationOption calibrationOption) {
 		calibratedFeedBehavior = calibrationOption;
 	}
@@ -883,6 +1042,34 @@ public class Configuration {
 		return markerRadius;
 	}
 
+	public int getPyramidDownsampleFactor() {
+		return pyramidDownsampleFactor;
+	}
+
+	public int getFrameQueueCapacity() {
+		return frameQueueCapacity;
+	}
+
+	public DropPolicy getFrameDropPolicy() {
+		return frameDropPolicy;
+	}
+
+	public int getDetectionWorkers() {
+		return detectionWorkers;
+	}
+
+	public int getEncoderQueueCapacity() {
+		return encoderQueueCapacity;
+	}
+
+	public DropPolicy getEncoderDropPolicy() {
+		return encoderDropPolicy;
+	}
+
+	public int getDetectionTargetFPS() {
+		return detectionTargetFPS;
+	}
+
 	public boolean ignoreLaserColor() {
 		return ignoreLaserColor;
 	}
@@ -983,6 +1170,10 @@ public class Configuration {
 		return Optional.ofNullable(cameraDistances.get(cameraName));
 	}
 
+	public boolean isLuminanceOnly(String cameraName) {
+		return luminanceOnlyCameras.contains(cameraName);
+	}
+
 	public boolean isChimeMuted(String message) {
 		return messagesChimeMuted.contains(message);
 	}
@@ -0,0 +1,138 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands background frames from the thread that converts them to the FX
+ * thread. Only the newest frame is kept: a frame that arrives before the FX
+ * thread has shown the previous one replaces it, and at most one update is
+ * queued on the FX thread at a time. Two pixel buffers are swapped between the
+ * threads, thus frames of the same size are shown without allocating.
+ */
+final class BackgroundHandoff {
+	interface BackgroundSink {
+		/**
+		 * Show <code>pixels</code>, which hold <code>channels</code> bytes for
+		 * each pixel of a <code>width</code> by <code>height</code> image placed
+		 * at <code>x</code>, <code>y</code>. This is called on the thread
+		 * updates are executed on and must not keep <code>pixels</code>.
+		 */
+		void show(byte[] pixels, int width, int height, int channels, double x, double y);
+	}
+
+	private final Executor updateExecutor;
+	private final BackgroundSink sink;
+
+	private final Object lock = new Object();
+	private final AtomicBoolean isUpdateQueued = new AtomicBoolean(false);
+	private final Runnable showPending = this::showPending;
+
+	private byte[] pending = null;
+	private byte[] spare = null;
+	private int pendingWidth;
+	private int pendingHeight;
+	private int pendingChannels;
+	private double pendingX;
+	private double pendingY;
+
+	BackgroundHandoff(Executor updateExecutor, BackgroundSink sink) {
+		this.updateExecutor = updateExecutor;
+		this.sink = sink;
+	}
+
+	/**
+	 * @return a buffer of <code>length</code> bytes to convert the next frame
+	 *         into, reusing one the FX thread is done with if possible
+	 */
+	byte[] borrowBuffer(int length) {
+		final byte[] buffer;
+
+		synchronized (lock) {
+			buffer = spare;
+			spare = null;
+		}
+
+		if (buffer == null || buffer.length != length) return new byte[length];
+
+		return buffer;
+	}
+
+	/**
+	 * Make <code>pixels</code>, a buffer from {@link #borrowBuffer(int)}, the
+	 * next frame to show and queue an update if none is queued yet.
+	 */
+	void publish(byte[] pixels, int width, int height, int channels, double x, double y) {
+		synchronized (lock) {
+			// The FX thread hasn't shown the previous frame yet, replace it
+			if (pending != null) spare = pending;
+
+			pending = pixels;
+			pendingWidth = width;
+			pendingHeight = height;
+			pendingChannels = channels;
+			pendingX = x;
+			pendingY = y;
+		}
+
+		if (isUpdateQueued.compareAndSet(false, true)) updateExecutor.execute(showPending);
+	}
+
+	/**
+	 * Drop the frame that is waiting to be shown, if any.
+	 */
+	void clear() {
+		synchronized (lock) {
+			pending = null;
+		}
+	}
+
+	private void showPending() {
+		// Clear the flag first so a frame that arrives while we are copying
+		// this one queues another update
+		isUpdateQueued.set(false);
+
+		final byte[] pixels;
+		final int width;
+		final int height;
+		final int channels;
+		final double x;
+		final double y;
+
+		synchronized (lock) {
+			pixels = pending;
+			pending = null;
+			width = pendingWidth;
+			height = pendingHeight;
+			channels = pendingChannels;
+			x = pendingX;
+			y = pendingY;
+		}
+
+		if (pixels == null) return;
+
+		sink.show(pixels, width, height, channels, x, y);
+
+		synchronized (lock) {
+			if (spare == null) spare = pixels;
+		}
+	}
+}
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import com.shootoff.camera.CameraCalibrationListener;
 import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.DetectionWorkerPool;
 import com.shootoff.camera.perspective.PerspectiveManager;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.pane.ProjectorArenaPane;
@@ -84,6 +85,11 @@ public class CalibrationManager implements CameraCalibrationListener {
 
 		arenaPane.setFeedCanvasManager(calibratingCanvasManager);
 		calibratingCameraManager.setCalibrationManager(this);
+
+		// Shots on the arena are the ones the user is waiting to see, thus
+		// serve this camera's detection before the other cameras
+		calibratingCameraManager.setDetectionPriority(DetectionWorkerPool.ARENA_PRIORITY);
+
 		calibratingCameraManager.setOnCloseListener(() -> Platform
 				.runLater(() -> arenaPane.fireEvent(new WindowEvent(null, WindowEvent.WINDOW_CLOSE_REQUEST))));
 	}
@@ -209,6 +215,7 @@ public class CalibrationManager implements CameraCalibrationListener {
 
 	public void arenaClosing() {
 		calibratingCameraManager.setProjectionBounds(null);
+		calibratingCameraManager.setDetectionPriority(DetectionWorkerPool.DEFAULT_PRIORITY);
 	}
 
 	private void createCalibrationTarget(double x, double y, double width, double height) {
@@ -18,12 +18,11 @@
 
 package com.shootoff.gui;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -38,6 +37,9 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +47,10 @@ import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CameraView;
 import com.shootoff.camera.Shot;
 import com.shootoff.camera.ShotColor;
+import com.shootoff.camera.ShotLatencyStats;
+import com.shootoff.camera.ShotTrace;
+import com.shootoff.camera.ShotTrace.Hop;
+import com.shootoff.camera.cameratypes.Camera;
 import com.shootoff.camera.processors.MalfunctionsProcessor;
 import com.shootoff.camera.processors.ShotProcessor;
 import com.shootoff.camera.processors.VirtualMagazineProcessor;
@@ -61,6 +67,7 @@ import com.shootoff.targets.TargetRegion;
 import com.shootoff.targets.io.TargetIO;
 import com.shootoff.targets.io.TargetIO.TargetComponents;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import com.shootoff.util.SwingFXUtils;
@@ -77,6 +84,8 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
@@ -114,6 +123,17 @@ public class CanvasManager implements CameraView {
 	private static final int MINIMUM_FRAME_DELTA = 1000 / MAX_FEED_FPS; // ms
 	private long lastFrameTime = 0;
 
+	private static final PixelFormat<ByteBuffer> GRAY_PIXEL_FORMAT = createGrayPixelFormat();
+
+	// Feed frames are scaled on the thread calling updateBackground and their
+	// bytes are handed to the FX thread, which writes them into the one image
+	// the background shows
+	private final Mat scaledFrame = new Mat();
+	private final Mat displayFrame = new Mat();
+	private final BackgroundHandoff backgroundHandoff = new BackgroundHandoff(Platform::runLater,
+			this::writeBackground);
+	private WritableImage backgroundImage = null;
+
 	private Optional<ProjectorArenaPane> arenaPane = Optional.empty();
 	private Optional<Bounds> projectionBounds = Optional.empty();
 
@@ -294,9 +314,20 @@ public class CanvasManager implements CameraView {
 
 	@Override
 	public void updateBackground(BufferedImage frame, Optional<Bounds> projectionBounds) {
+		showBackground(frame == null ? null : Camera.bufferedImageToMat(frame), projectionBounds);
+	}
+
+	@Override
+	public void updateBackground(Mat frame, Optional<Bounds> projectionBounds) {
+		showBackground(frame, projectionBounds);
+	}
+
+	private void showBackground(Mat frame, Optional<Bounds> projectionBounds) {
 		updateCanvasGroup();
 
 		if (frame == null) {
+			backgroundHandoff.clear();
+
 			background.setX(0);
 			background.setY(0);
 			background.setImage(null);
@@ -312,22 +343,74 @@ public class CanvasManager implements CameraView {
 		else
 			lastFrameTime = System.currentTimeMillis();
 
-		Image img;
+		final int width;
+		final int height;
+		final double x;
+		final double y;
+
 		if (projectionBounds.isPresent()) {
 			final Bounds translatedBounds = translateCameraToCanvas(projectionBounds.get());
-			background.setX(translatedBounds.getMinX());
-			background.setY(translatedBounds.getMinY());
+			x = translatedBounds.getMinX();
+			y = translatedBounds.getMinY();
+			width = (int) translatedBounds.getWidth();
+			height = (int) translatedBounds.getHeight();
+		} else {
+			x = 0;
+			y = 0;
+			width = config.getDisplayWidth();
+			height = config.getDisplayHeight();
+		}
 
-			img = SwingFXUtils.toFXImage(
-					resize(frame, (int) translatedBounds.getWidth(), (int) translatedBounds.getHeight()), null);
+		if (width <= 0 || height <= 0) return;
+
+		Mat scaled = frame;
+		if (frame.cols() != width || frame.rows() != height) {
+			Imgproc.resize(frame, scaledFrame, new Size(width, height), 0, 0, Imgproc.INTER_LINEAR);
+			scaled = scaledFrame;
+		}
+
+		// JavaFX has byte formats for RGB and indexed pixels, but not BGR, thus
+		// color frames have their channels swapped and gray frames are written
+		// through a gray palette as they are
+		final Mat display;
+		if (scaled.channels() == 1) {
+			display = scaled;
+		} else if (scaled == scaledFrame) {
+			Imgproc.cvtColor(scaled, scaled, Imgproc.COLOR_BGR2RGB);
+			display = scaled;
 		} else {
-			background.setX(0);
-			background.setY(0);
+			Imgproc.cvtColor(scaled, displayFrame, Imgproc.COLOR_BGR2RGB);
+			display = displayFrame;
+		}
+
+		final int channels = display.channels();
+		final byte[] buffer = backgroundHandoff.borrowBuffer(width * height * channels);
+		display.get(0, 0, buffer);
+
+		backgroundHandoff.publish(buffer, width, height, channels, x, y);
+	}
+
+	private static PixelFormat<ByteBuffer> createGrayPixelFormat() {
+		final int[] palette = new int[256];
 
-			img = SwingFXUtils.toFXImage(resize(frame, config.getDisplayWidth(), config.getDisplayHeight()), null);
+		for (int i = 0; i < palette.length; i++)
+			palette[i] = 0xFF000000 | (i << 16) | (i << 8) | i;
+
+		return PixelFormat.createByteIndexedInstance(palette);
+	}
+
+	private void writeBackground(byte[] pixels, int width, int height, int channels, double x, double y) {
+		if (backgroundImage == null || (int) backgroundImage.getWidth() != width
+				|| (int) backgroundImage.getHeight() != height) {
+			backgroundImage = new WritableImage(width, height);
 		}
 
-		Platform.runLater(() -> background.setImage(img));
+		final PixelFormat<ByteBuffer> format = channels == 1 ? GRAY_PIXEL_FORMAT : PixelFormat.getByteRgbInstance();
+		backgroundImage.getPixelWriter().setPixels(0, 0, width, height, format, pixels, 0, width * channels);
+
+		background.setX(x);
+		background.setY(y);
+		if (background.getImage() != backgroundImage) background.setImage(backgroundImage);
 	}
 
 	public void updateBackground(Image img) {
@@ -349,18 +432,6 @@ public class CanvasManager implements CameraView {
 		}
 	}
 
-	private BufferedImage resize(BufferedImage source, int width, int height) {
-		if (source.getWidth() == width && source.getHeight() == height) return source;
-
-		final BufferedImage tmp = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-		final Graphics2D g2 = tmp.createGraphics();
-		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g2.drawImage(source, 0, 0, width, height, null);
-		g2.dispose();
-
-		return tmp;
-	}
-
 	public BufferedImage getBufferedImage() {
 		final BufferedImage projectedScene = SwingFXUtils.fromFXImage(canvasGroup.getScene().snapshot(null), null);
 		return projectedScene;
@@ -385,6 +456,7 @@ public class CanvasManager implements CameraView {
 		return new BoundingBox(minX, minY, width, height);
 	}
 
+	@Override
 	public Bounds translateCanvasToCamera(Bounds bounds) {
 		if (config.getDisplayWidth() == cameraManager.getFeedWidth()
 				&& config.getDisplayHeight() == cameraManager.getFeedHeight())
@@ -496,7 +568,11 @@ public class CanvasManager implements CameraView {
 		Optional<ShotProcessor> rejectingProcessor = Optional.empty();
 
 		for (final ShotProcessor processor : config.getShotProcessors()) {
-			if (!processor.processShot(shot)) {
+			final boolean accepted = processor.processShot(shot);
+
+			if (cameraManager != null) cameraManager.recordProcessedShot(processor, accepted);
+
+			if (!accepted) {
 				if (processor instanceof MalfunctionsProcessor) {
 					hadMalfunction = true;
 				} else if (processor instanceof VirtualMagazineProcessor) {
@@ -542,6 +618,7 @@ public class CanvasManager implements CameraView {
 				recordRejectedShot(shot, rejectingProcessor.get());
 				return;
 			} else {
+				shot.getTrace().mark(Hop.PROCESSED);
 				notifyShot(shot);
 			}
 
@@ -604,6 +681,7 @@ public class CanvasManager implements CameraView {
 				final Shot arenaShot = new Shot(shot.getColor(), (shot.getX() - b.getMinX()) * x_scale,
 						(shot.getY() - b.getMinY()) * y_scale, shot.getTimestamp(), shot.getFrame(),
 						config.getMarkerRadius());
+				arenaShot.shareTrace(shot);
 
 				processedShot = arenaPane.get().getCanvasManager().addArenaShot(arenaShot, videoString, isMirroredShot);
 			}
@@ -615,6 +693,7 @@ public class CanvasManager implements CameraView {
 
 		final Optional<TrainingExercise> currentExercise = config.getExercise();
 		final Optional<Hit> hit = checkHit(shot, videoString, isMirroredShot);
+		shot.getTrace().mark(Hop.HIT_TESTED);
 		if (hit.isPresent() && hit.get().getHitRegion().tagExists("command")) executeRegionCommands(hit.get());
 
 		if (currentExercise.isPresent() && !processedShot) {
@@ -624,9 +703,9 @@ public class CanvasManager implements CameraView {
 			// copies and will not be the versions of the targets added
 			// by exercises.
 			if ((this instanceof MirroredCanvasManager) && cameraManager == null) {
-				currentExercise.get().shotListener(shot, hit);
+				notifyExercise(currentExercise.get(), shot, hit);
 			} else if (!(this instanceof MirroredCanvasManager)) {
-				currentExercise.get().shotListener(shot, hit);
+				notifyExercise(currentExercise.get(), shot, hit);
 			}
 		}
 	}
@@ -637,13 +716,14 @@ public class CanvasManager implements CameraView {
 
 		final Optional<TrainingExercise> currentExercise = config.getExercise();
 		final Optional<Hit> hit = checkHit(shot, videoString, isMirroredShot);
+		shot.getTrace().mark(Hop.HIT_TESTED);
 		if (hit.isPresent() && hit.get().getHitRegion().tagExists("command")) {
 			executeRegionCommands(hit.get());
 		}
 
 		if (!isMirroredShot) {
 			if (currentExercise.isPresent()) {
-				currentExercise.get().shotListener(shot, hit);
+				notifyExercise(currentExercise.get(), shot, hit);
 				return true;
 			}
 		}
@@ -651,10 +731,19 @@ public class CanvasManager implements CameraView {
 		return false;
 	}
 
+	private void notifyExercise(TrainingExercise exercise, Shot shot, Optional<Hit> hit) {
+		shot.getTrace().reportTo(ShotLatencyStats.forExercise(exercise.getInfo().getName()));
+
+		exercise.shotListener(shot, hit);
+
+		shot.getTrace().mark(Hop.EXERCISE_NOTIFIED);
+	}
+
 	private void drawShot(Shot shot) {
 		final Runnable drawShotAction = () -> {
 			canvasGroup.getChildren().add(shot.getMarker());
 			shot.getMarker().setVisible(showShots);
+			markRenderedAfterPulse(shot.getTrace());
 		};
 
 		if (Platform.isFxApplicationThread()) {
@@ -664,6 +753,22 @@ public class CanvasManager implements CameraView {
 		}
 	}
 
+	/**
+	 * Mark <code>trace</code> rendered once the next pulse, which lays out the
+	 * shot's new marker and hands it to the render thread, is done. Animation
+	 * timers are run at the start of a pulse and runnables posted during a
+	 * pulse are run after it.
+	 */
+	private static void markRenderedAfterPulse(ShotTrace trace) {
+		new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				stop();
+				Platform.runLater(() -> trace.mark(Hop.RENDERED));
+			}
+		}.start();
+	}
+
 	protected Optional<Hit> checkHit(Shot shot, Optional<String> videoString, boolean isMirroredShot) {
 		// Targets are in order of when they were added, thus we must search in
 		// reverse to ensure shots register for the top target when targets
@@ -877,6 +982,7 @@ public class CanvasManager implements CameraView {
 		}
 	}
 
+	@Override
 	public List<Target> getTargets() {
 		return targets;
 	}
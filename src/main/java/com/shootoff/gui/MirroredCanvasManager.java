@@ -5,6 +5,8 @@ import java.io.File;
 import java.util.Map;
 import java.util.Optional;
 
+import org.opencv.core.Mat;
+
 import com.shootoff.camera.Shot;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.pane.ProjectorArenaPane;
@@ -154,6 +156,16 @@ public class MirroredCanvasManager extends CanvasManager {
 		super.updateBackground(frame, projectionBounds);
 	}
 
+	@Override
+	public void updateBackground(Mat frame, Optional<Bounds> projectionBounds) {
+		mirroredManager.mirrorUpdateBackground(frame, projectionBounds);
+		super.updateBackground(frame, projectionBounds);
+	}
+
+	public void mirrorUpdateBackground(Mat frame, Optional<Bounds> projectionBounds) {
+		super.updateBackground(frame, projectionBounds);
+	}
+
 	@Override
 	public void updateBackground(Image img) {
 		mirroredManager.mirrorUpdateBackground(img);
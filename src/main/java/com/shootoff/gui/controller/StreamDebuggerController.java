@@ -19,29 +19,48 @@
 package com.shootoff.gui.controller;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.shootoff.camera.CameraDebuggerListener;
 import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.ShotLatencyStats;
 
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import com.shootoff.util.SwingFXUtils;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextArea;
 import javafx.scene.image.ImageView;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class StreamDebuggerController implements CameraDebuggerListener {
+	private static final Logger logger = LoggerFactory.getLogger(StreamDebuggerController.class);
+
 	private Stage streamDebuggerStage;
 	@FXML private ImageView thresholdImageView;
 	@FXML private Slider centerBorderSlider;
 	@FXML private Slider minDimSlider;
+	@FXML private TextArea latencyTextArea;
 
 	private String defaultWindowTitle = "";
+	private CameraManager cameraManager;
 
 	public void init(CameraManager cameraManager) {
 		streamDebuggerStage = (Stage) thresholdImageView.getScene().getWindow();
+		this.cameraManager = cameraManager;
 		defaultWindowTitle = streamDebuggerStage.getTitle();
 
 		cameraManager.setThresholdListener(this);
@@ -67,8 +86,42 @@ public class StreamDebuggerController implements CameraDebuggerListener {
 
 	@Override
 	public void updateFeedData(double fps) {
+		final String latencyReport = formatLatencyReport();
+
 		Platform.runLater(() -> {
 			streamDebuggerStage.setTitle(String.format(defaultWindowTitle + " %.2f FPS", fps));
+			latencyTextArea.setText(latencyReport);
 		});
 	}
+
+	@FXML
+	public void saveLatencyReport(ActionEvent event) {
+		final FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Save Latency Report");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files (*.txt)", "*.txt"));
+
+		final File reportFile = fileChooser.showSaveDialog(streamDebuggerStage);
+
+		if (reportFile == null) return;
+
+		// Reports are appended, thus reports taken over time can be compared
+		try (Writer writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			writer.write(String.format("%s%n%s%n", new Date(), formatLatencyReport()));
+		} catch (final IOException e) {
+			logger.error("Failed to save latency report to " + reportFile.getPath(), e);
+		}
+	}
+
+	private String formatLatencyReport() {
+		final StringBuilder report = new StringBuilder();
+
+		report.append(cameraManager.getPipelineLatencies().formatReport());
+		report.append(String.format("%n%s", cameraManager.getShotLatencies().formatReport()));
+
+		for (final ShotLatencyStats exerciseStats : ShotLatencyStats.getExerciseStats())
+			report.append(String.format("%n%s", exerciseStats.formatReport()));
+
+		return report.toString();
+	}
 }
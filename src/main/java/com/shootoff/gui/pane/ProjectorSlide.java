@@ -20,6 +20,8 @@ package com.shootoff.gui.pane;
 
 import java.util.Optional;
 
+import org.opencv.core.Mat;
+
 import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.perspective.PerspectiveManager;
 import com.shootoff.config.Configuration;
@@ -175,7 +177,7 @@ public class ProjectorSlide extends Slide implements CalibrationConfigurator {
 
 			projectorCanvasManager.setMirroredManager(tabCanvasManager);
 			tabCanvasManager.setMirroredManager(projectorCanvasManager);
-			projectorCanvasManager.updateBackground(null, Optional.empty());
+			projectorCanvasManager.updateBackground((Mat) null, Optional.empty());
 			// This camera manager must be set to enable click-to-shoot for
 			// the arena tab
 			tabCanvasManager.setCameraManager(calibratingCameraManager);
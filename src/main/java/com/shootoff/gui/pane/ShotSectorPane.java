@@ -18,19 +18,48 @@
 
 package com.shootoff.gui.pane;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.CameraView;
+import com.shootoff.camera.DetectionMaskManager;
 import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.gui.CanvasManager;
 
+import javafx.collections.FXCollections;
+import javafx.event.EventHandler;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polyline;
+import javafx.util.StringConverter;
 
 public class ShotSectorPane extends BorderPane {
 	private final CheckBox[][] sectors;
 
+	private final CameraManager cameraManager;
+
+	// State for drawing a detection region on the camera's canvas. Points are
+	// in canvas coordinates until the region is finished.
+	private final Polyline regionOutline = new Polyline();
+	private EventHandler<MouseEvent> regionClickFilter = null;
+
 	public ShotSectorPane(Pane parent, CameraManager cameraManager) {
+		this.cameraManager = cameraManager;
+
 		final GridPane checkboxGrid = new GridPane();
 		sectors = new CheckBox[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
 
@@ -51,15 +80,117 @@ public class ShotSectorPane extends BorderPane {
 		final Button doneButton = new Button("Done");
 
 		doneButton.setOnAction((event) -> {
+			stopDrawingRegion();
 			parent.getChildren().remove(this);
 		});
 
 		setTop(checkboxGrid);
-		setLeft(doneButton);
+		setCenter(createDetectionMaskControls());
+		setBottom(doneButton);
 
 		parent.getChildren().add(this);
 	}
 
+	private VBox createDetectionMaskControls() {
+		final DetectionMaskManager maskManager = cameraManager.getDetectionMaskManager();
+
+		final ChoiceBox<DetectionMaskManager.Source> sourceChoiceBox = new ChoiceBox<>(
+				FXCollections.observableArrayList(DetectionMaskManager.Source.values()));
+		sourceChoiceBox.setConverter(new StringConverter<DetectionMaskManager.Source>() {
+			@Override
+			public String toString(DetectionMaskManager.Source source) {
+				switch (source) {
+				case TARGETS:
+					return "Around targets";
+				case REGIONS:
+					return "Drawn regions";
+				case ARENA:
+					return "Projector arena";
+				default:
+					return "Whole frame";
+				}
+			}
+
+			@Override
+			public DetectionMaskManager.Source fromString(String string) {
+				return null;
+			}
+		});
+		sourceChoiceBox.getSelectionModel().select(maskManager.getSource());
+		sourceChoiceBox.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue != null) maskManager.setSource(newValue);
+		});
+
+		final Button drawRegionButton = new Button("Draw Region");
+		drawRegionButton.setOnAction((event) -> {
+			if (regionClickFilter == null) {
+				drawRegionButton.setText("Finish Region");
+				startDrawingRegion();
+			} else {
+				drawRegionButton.setText("Draw Region");
+				finishDrawingRegion();
+			}
+		});
+
+		final Button clearRegionsButton = new Button("Clear Regions");
+		clearRegionsButton.setOnAction((event) -> {
+			maskManager.setRegions(new ArrayList<>());
+		});
+
+		return new VBox(new Label("Detect shots in:"), sourceChoiceBox,
+				new HBox(drawRegionButton, clearRegionsButton));
+	}
+
+	private void startDrawingRegion() {
+		final CameraView cameraView = cameraManager.getCameraView();
+		if (!(cameraView instanceof CanvasManager)) return;
+
+		regionOutline.getPoints().clear();
+		regionOutline.setStroke(Color.YELLOW);
+		cameraView.addChild(regionOutline);
+
+		// Filter clicks so that drawing a region doesn't also select targets
+		regionClickFilter = (event) -> {
+			if (event.getButton() != MouseButton.PRIMARY) return;
+
+			regionOutline.getPoints().addAll(event.getX(), event.getY());
+			event.consume();
+		};
+
+		((CanvasManager) cameraView).getCanvasGroup().addEventFilter(MouseEvent.MOUSE_CLICKED, regionClickFilter);
+	}
+
+	private void finishDrawingRegion() {
+		final List<Double> points = new ArrayList<>(regionOutline.getPoints());
+
+		stopDrawingRegion();
+
+		if (points.size() < 6) return;
+
+		final CameraView cameraView = cameraManager.getCameraView();
+		final List<Point2D> region = new ArrayList<>();
+
+		for (int i = 0; i + 1 < points.size(); i += 2) {
+			final Bounds cameraPoint = cameraView
+					.translateCanvasToCamera(new BoundingBox(points.get(i), points.get(i + 1), 0, 0));
+			region.add(new Point2D(cameraPoint.getMinX(), cameraPoint.getMinY()));
+		}
+
+		final DetectionMaskManager maskManager = cameraManager.getDetectionMaskManager();
+		final List<List<Point2D>> regions = new ArrayList<>(maskManager.getRegions());
+		regions.add(region);
+		maskManager.setRegions(regions);
+	}
+
+	private void stopDrawingRegion() {
+		if (regionClickFilter == null) return;
+
+		final CameraView cameraView = cameraManager.getCameraView();
+		((CanvasManager) cameraView).getCanvasGroup().removeEventFilter(MouseEvent.MOUSE_CLICKED, regionClickFilter);
+		cameraView.removeChild(regionOutline);
+		regionClickFilter = null;
+	}
+
 	private boolean[][] getSectorStatuses() {
 		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
 
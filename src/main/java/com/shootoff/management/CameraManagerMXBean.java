@@ -0,0 +1,103 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.management;
+
+import java.util.Map;
+
+/**
+ * Live performance metrics for one camera's frame pipeline. Latencies are in
+ * milliseconds over the last
+ * {@link com.shootoff.camera.PipelineLatencies#WINDOW_SECONDS} seconds.
+ */
+public interface CameraManagerMXBean {
+	String getName();
+
+	boolean isDetecting();
+
+	double getCurrentFPS();
+
+	double getAverageFPS();
+
+	int getFrameCount();
+
+	long getDroppedFrameCount();
+
+	double getDetectionTimeMedian();
+
+	double getDetectionTime95thPercentile();
+
+	double getDetectionTime99thPercentile();
+
+	double getDetectionTimeMax();
+
+	/**
+	 * @return the share of the shot detection workers' capacity, which every
+	 *         camera shares, used by this camera since it started
+	 */
+	double getDetectionWorkerUtilization();
+
+	/**
+	 * @return the {@link com.shootoff.camera.DetectionLoadController.Level}
+	 *         of work currently shed because detection is falling behind
+	 */
+	String getLoadLevel();
+
+	/**
+	 * @return the number of times the load level has changed in either
+	 *         direction
+	 */
+	long getLoadTransitionCount();
+
+	/**
+	 * @return the number of times each load level has been entered
+	 */
+	Map<String, Long> getLoadLevelEntryCounts();
+
+	/**
+	 * @return the number of pixels over the detection threshold in the last
+	 *         frame, or -1 if the detector doesn't count them
+	 */
+	int getThresholdPixelCount();
+
+	int getAverageThresholdPixelCount();
+
+	long getMotionWarningCount();
+
+	long getBrightnessWarningCount();
+
+	/**
+	 * @return the number of frames waiting for the camera's recording
+	 *         encoders
+	 */
+	int getRecorderQueueDepth();
+
+	long getEncodedFrameCount();
+
+	/**
+	 * @return the number of frames dropped from recordings because an encoder
+	 *         was behind
+	 */
+	long getEncoderDroppedFrameCount();
+
+	int getActiveShotRecorderCount();
+
+	Map<String, Long> getShotsAccepted();
+
+	Map<String, Long> getShotsRejected();
+}
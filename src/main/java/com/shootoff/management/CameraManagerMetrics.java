@@ -0,0 +1,226 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.management;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.DetectionLoadController;
+import com.shootoff.camera.DetectionWorkerPool;
+import com.shootoff.camera.LatencyHistogram;
+import com.shootoff.camera.PipelineLatencies.Stage;
+
+public class CameraManagerMetrics implements CameraManagerMXBean {
+	public static final String TYPE = "CameraManager";
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final CameraManager cameraManager;
+
+	public CameraManagerMetrics(CameraManager cameraManager) {
+		this.cameraManager = cameraManager;
+	}
+
+	// The bean name of each registered manager. Cameras can share a name,
+	// thus later managers get a numbered suffix instead of replacing the bean
+	// of an earlier one.
+	private static final Map<CameraManager, String> beanNames = new IdentityHashMap<>();
+
+	public static void register(CameraManager cameraManager) {
+		final String beanName;
+
+		synchronized (beanNames) {
+			if (beanNames.containsKey(cameraManager)) return;
+
+			beanName = uniqueBeanName(cameraManager.getName());
+			beanNames.put(cameraManager, beanName);
+		}
+
+		ManagementRegistry.register(TYPE, beanName, new CameraManagerMetrics(cameraManager));
+	}
+
+	// Must be called with beanNames locked
+	private static String uniqueBeanName(String cameraName) {
+		String beanName = cameraName;
+
+		for (int suffix = 2; beanNames.containsValue(beanName); suffix++)
+			beanName = String.format("%s (%d)", cameraName, suffix);
+
+		return beanName;
+	}
+
+	/**
+	 * Unregister the bean registered for <code>cameraManager</code>, leaving
+	 * the beans of other managers with the same name alone.
+	 */
+	public static void unregister(CameraManager cameraManager) {
+		final String beanName;
+
+		synchronized (beanNames) {
+			beanName = beanNames.remove(cameraManager);
+		}
+
+		if (beanName != null) ManagementRegistry.unregister(TYPE, beanName);
+	}
+
+	/**
+	 * @return the name <code>cameraManager</code>'s bean is registered under,
+	 *         if it is registered
+	 */
+	public static Optional<String> getBeanName(CameraManager cameraManager) {
+		synchronized (beanNames) {
+			return Optional.ofNullable(beanNames.get(cameraManager));
+		}
+	}
+
+	@Override
+	public String getName() {
+		return cameraManager.getName();
+	}
+
+	@Override
+	public boolean isDetecting() {
+		return cameraManager.isDetecting();
+	}
+
+	@Override
+	public double getCurrentFPS() {
+		return cameraManager.getFPS();
+	}
+
+	@Override
+	public double getAverageFPS() {
+		return cameraManager.getAverageFPS();
+	}
+
+	@Override
+	public int getFrameCount() {
+		return cameraManager.getFrameCount();
+	}
+
+	@Override
+	public long getDroppedFrameCount() {
+		return cameraManager.getDroppedFrameCount();
+	}
+
+	private LatencyHistogram.Snapshot getDetectionTimes() {
+		return cameraManager.getPipelineLatencies().getSnapshot(Stage.DETECTION);
+	}
+
+	@Override
+	public double getDetectionTimeMedian() {
+		return getDetectionTimes().getPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getDetectionTime95thPercentile() {
+		return getDetectionTimes().getPercentile(95) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getDetectionTime99thPercentile() {
+		return getDetectionTimes().getPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getDetectionTimeMax() {
+		return getDetectionTimes().getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getDetectionWorkerUtilization() {
+		final DetectionWorkerPool.Workload workload = cameraManager.getDetectionWorkload();
+
+		return workload != null ? workload.getUtilization() : 0;
+	}
+
+	@Override
+	public String getLoadLevel() {
+		return cameraManager.getLoadController().getLevel().name();
+	}
+
+	@Override
+	public long getLoadTransitionCount() {
+		return cameraManager.getLoadController().getTransitionCount();
+	}
+
+	@Override
+	public Map<String, Long> getLoadLevelEntryCounts() {
+		final DetectionLoadController loadController = cameraManager.getLoadController();
+		final Map<String, Long> entryCounts = new LinkedHashMap<>();
+
+		for (final DetectionLoadController.Level level : DetectionLoadController.Level.values())
+			entryCounts.put(level.name(), loadController.getEntryCount(level));
+
+		return entryCounts;
+	}
+
+	@Override
+	public int getThresholdPixelCount() {
+		return cameraManager.getThresholdPixelCount();
+	}
+
+	@Override
+	public int getAverageThresholdPixelCount() {
+		return cameraManager.getAverageThresholdPixelCount();
+	}
+
+	@Override
+	public long getMotionWarningCount() {
+		return cameraManager.getMotionWarningCount();
+	}
+
+	@Override
+	public long getBrightnessWarningCount() {
+		return cameraManager.getBrightnessWarningCount();
+	}
+
+	@Override
+	public int getRecorderQueueDepth() {
+		return cameraManager.getEncoderService().getQueueDepth();
+	}
+
+	@Override
+	public long getEncodedFrameCount() {
+		return cameraManager.getEncoderService().getEncodedCount();
+	}
+
+	@Override
+	public long getEncoderDroppedFrameCount() {
+		return cameraManager.getEncoderService().getDroppedCount();
+	}
+
+	@Override
+	public int getActiveShotRecorderCount() {
+		return cameraManager.getActiveShotRecorderCount();
+	}
+
+	@Override
+	public Map<String, Long> getShotsAccepted() {
+		return cameraManager.getShotsAccepted();
+	}
+
+	@Override
+	public Map<String, Long> getShotsRejected() {
+		return cameraManager.getShotsRejected();
+	}
+}
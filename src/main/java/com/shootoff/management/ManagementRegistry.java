@@ -0,0 +1,83 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.management;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers ShootOFF's MXBeans with the platform MBean server so that JMX
+ * clients such as JConsole or VisualVM can watch a lane's performance while it
+ * runs, including in headless mode. Every bean is named
+ * <tt>com.shootoff:type=&lt;type&gt;,name=&lt;name&gt;</tt>.
+ *
+ * Failing to register a bean never affects the lane, thus errors are logged
+ * instead of thrown.
+ */
+public final class ManagementRegistry {
+	private static final Logger logger = LoggerFactory.getLogger(ManagementRegistry.class);
+
+	public static final String DOMAIN = "com.shootoff";
+
+	private ManagementRegistry() {}
+
+	public static ObjectName getObjectName(String type, String name) throws MalformedObjectNameException {
+		return new ObjectName(String.format("%s:type=%s,name=%s", DOMAIN, type, ObjectName.quote(name)));
+	}
+
+	/**
+	 * Register <code>bean</code>, replacing any bean that is already
+	 * registered with the same type and name.
+	 */
+	public static void register(String type, String name, Object bean) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			final ObjectName objectName = getObjectName(type, name);
+
+			if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+
+			server.registerMBean(bean, objectName);
+
+			if (logger.isDebugEnabled()) logger.debug("Registered MBean {}", objectName);
+		} catch (final JMException e) {
+			logger.error("Failed to register {} MBean for {}", type, name, e);
+		}
+	}
+
+	public static void unregister(String type, String name) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			server.unregisterMBean(getObjectName(type, name));
+		} catch (final InstanceNotFoundException e) {
+			// Already gone
+		} catch (final JMException e) {
+			logger.error("Failed to unregister {} MBean for {}", type, name, e);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.shootoff.plugins.ExerciseMetadata;
+import com.shootoff.plugins.engine.Plugin;
+import com.shootoff.plugins.engine.PluginEngine;
+
+public class PluginEngineMetrics implements PluginEngineMXBean {
+	public static final String TYPE = "PluginEngine";
+	public static final String NAME = "Plugins";
+
+	private final PluginEngine pluginEngine;
+
+	public PluginEngineMetrics(PluginEngine pluginEngine) {
+		this.pluginEngine = pluginEngine;
+	}
+
+	public static void register(PluginEngine pluginEngine) {
+		ManagementRegistry.register(TYPE, NAME, new PluginEngineMetrics(pluginEngine));
+	}
+
+	@Override
+	public String getPluginDirectory() {
+		return pluginEngine.getPluginDirectory().toString();
+	}
+
+	@Override
+	public boolean isWatching() {
+		return pluginEngine.isWatching();
+	}
+
+	@Override
+	public int getPluginCount() {
+		return pluginEngine.getPlugins().size();
+	}
+
+	@Override
+	public List<String> getPlugins() {
+		final List<String> plugins = new ArrayList<>();
+
+		for (final Plugin plugin : pluginEngine.getPlugins()) {
+			final ExerciseMetadata metadata = plugin.getExercise().getInfo();
+			plugins.add(String.format("%s %s", metadata.getName(), metadata.getVersion()));
+		}
+
+		Collections.sort(plugins);
+
+		return plugins;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2016 phrack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.management;
+
+import java.util.Optional;
+
+import com.shootoff.camera.LatencyHistogram;
+import com.shootoff.camera.ShotLatencyStats;
+import com.shootoff.camera.ShotTrace.Hop;
+import com.shootoff.config.Configuration;
+import com.shootoff.plugins.ExerciseMetadata;
+import com.shootoff.plugins.TrainingExercise;
+
+public class TrainingExerciseMetrics implements TrainingExerciseMXBean {
+	public static final String TYPE = "TrainingExercise";
+	public static final String NAME = "Active";
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	public static void register() {
+		ManagementRegistry.register(TYPE, NAME, new TrainingExerciseMetrics());
+	}
+
+	private Optional<ExerciseMetadata> getActiveExercise() {
+		final Configuration config = Configuration.getConfig();
+
+		if (config == null) return Optional.empty();
+
+		final Optional<TrainingExercise> exercise = config.getExercise();
+
+		if (!exercise.isPresent()) return Optional.empty();
+
+		return Optional.of(exercise.get().getInfo());
+	}
+
+	private Optional<LatencyHistogram.Snapshot> getCallbackLatencies() {
+		final Optional<ExerciseMetadata> exercise = getActiveExercise();
+
+		if (!exercise.isPresent()) return Optional.empty();
+
+		return Optional.of(ShotLatencyStats.forExercise(exercise.get().getName()).getSnapshot(Hop.EXERCISE_NOTIFIED));
+	}
+
+	@Override
+	public boolean isActive() {
+		return getActiveExercise().isPresent();
+	}
+
+	@Override
+	public String getName() {
+		final Optional<ExerciseMetadata> exercise = getActiveExercise();
+		return exercise.isPresent() ? exercise.get().getName() : "";
+	}
+
+	@Override
+	public String getVersion() {
+		final Optional<ExerciseMetadata> exercise = getActiveExercise();
+		return exercise.isPresent() ? exercise.get().getVersion() : "";
+	}
+
+	@Override
+	public String getCreator() {
+		final Optional<ExerciseMetadata> exercise = getActiveExercise();
+		return exercise.isPresent() ? exercise.get().getCreator() : "";
+	}
+
+	@Override
+	public long getShotsNotified() {
+		final Optional<LatencyHistogram.Snapshot> latencies = getCallbackLatencies();
+		return latencies.isPresent() ? latencies.get().getCount() : 0;
+	}
+
+	@Override
+	public double getCallbackLatencyMedian() {
+		final Optional<LatencyHistogram.Snapshot> latencies = getCallbackLatencies();
+		return latencies.isPresent() ? latencies.get().getPercentile(50) / NANOS_PER_MILLI : 0;
+	}
+
+	@Override
+	public double getCallbackLatency95thPercentile() {
+		final Optional<LatencyHistogram.Snapshot> latencies = getCallbackLatencies();
+		return latencies.isPresent() ? latencies.get().getPercentile(95) / NANOS_PER_MILLI : 0;
+	}
+
+	@Override
+	public double getCallbackLatencyMax() {
+		final Optional<LatencyHistogram.Snapshot> latencies = getCallbackLatencies();
+		return latencies.isPresent() ? latencies.get().getMax() / NANOS_PER_MILLI : 0;
+	}
+}
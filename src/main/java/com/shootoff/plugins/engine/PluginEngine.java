@@ -28,15 +28,17 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.shootoff.management.PluginEngineMetrics;
+import com.shootoff.management.TrainingExerciseMetrics;
 import com.shootoff.plugins.BouncingTargets;
 import com.shootoff.plugins.DuelingTree;
 import com.shootoff.plugins.ExerciseMetadata;
@@ -62,7 +64,8 @@ public class PluginEngine implements Runnable {
 	private final PluginListener pluginListener;
 	private final PathMatcher jarMatcher = FileSystems.getDefault().getPathMatcher("glob:*.jar");
 	private final WatchService watcher = FileSystems.getDefault().newWatchService();
-	private final Set<Plugin> plugins = new HashSet<>();
+	// Read by management clients while the watcher changes it
+	private final Set<Plugin> plugins = ConcurrentHashMap.newKeySet();
 
 	private final AtomicBoolean watching = new AtomicBoolean(false);
 
@@ -74,6 +77,9 @@ public class PluginEngine implements Runnable {
 		pluginDir = Paths.get(System.getProperty("shootoff.plugins"));
 		this.pluginListener = pluginListener;
 
+		PluginEngineMetrics.register(this);
+		TrainingExerciseMetrics.register();
+
 		if (!Files.exists(pluginDir) && !pluginDir.toFile().mkdirs()) {
 			logger.error("The path specified by shootoff.plugins doesn't exist and we couldn't create it.");
 			return;
@@ -195,6 +201,14 @@ public class PluginEngine implements Runnable {
 		return Optional.empty();
 	}
 
+	public Path getPluginDirectory() {
+		return pluginDir;
+	}
+
+	public boolean isWatching() {
+		return watching.get();
+	}
+
 	public Set<Plugin> getPlugins() {
 		return plugins;
 	}
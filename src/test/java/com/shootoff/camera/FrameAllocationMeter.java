@@ -0,0 +1,218 @@
+package com.shootoff.camera;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+
+/**
+ * Measures what the frame pipeline allocates per frame. A mock camera delivers
+ * copies of a scene to {@link CameraManager#newFrame(Frame)}, with a laser dot
+ * drawn on some frames so that shots are detected too.
+ *
+ * Heap allocations are summed over the calling thread and every thread named
+ * after the camera (the pipeline stages and the camera's detection workers)
+ * with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long[])}.
+ * Native memory is tracked by counting the Mats that are still alive after a
+ * full collection, because a Mat's native buffer lives as long as the Mat.
+ */
+public class FrameAllocationMeter {
+	// The first frames initialize the detector's filters, thus a laser dot
+	// is only drawn once they are settled
+	private static final int SHOT_INTERVAL = 50;
+	private static final int SHOT_DURATION = 2;
+	private static final int SHOT_RADIUS = 3;
+	private static final long FRAME_INTERVAL = 33; // ms
+
+	private static final String MAT_CLASS_PREFIX = Mat.class.getName();
+
+	private final CameraManager cameraManager;
+	private final MockCamera camera;
+	private final Mat scene;
+
+	private int frameCount = 0;
+
+	/**
+	 * @param scene
+	 *            a BGR image the size of the camera's feed
+	 */
+	public FrameAllocationMeter(CameraManager cameraManager, MockCamera camera, Mat scene) {
+		this.cameraManager = cameraManager;
+		this.camera = camera;
+		this.scene = scene;
+	}
+
+	/**
+	 * @return <code>true</code> if this JVM can measure the heap allocated by
+	 *         a thread
+	 */
+	public static boolean isSupported() {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+		return threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported();
+	}
+
+	/**
+	 * Push <code>warmupFrames</code> frames through the pipeline, then measure
+	 * pushing <code>frames</code> more. Each batch waits until the pipeline is
+	 * idle, thus every frame is fully processed when it is counted.
+	 */
+	public Measurement measure(int warmupFrames, int frames) throws InterruptedException, JMException {
+		pushFrames(warmupFrames);
+
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		final long liveMatsBefore = countLiveMats();
+		final long pooledMatsBefore = cameraManager.getFramePool().getAllocatedCount();
+
+		// The pipeline threads were all started by the warm up
+		final long[] threadIds = getPipelineThreadIds();
+		final long allocatedBefore = sumAllocatedBytes(threadBean, threadIds);
+
+		pushFrames(frames);
+
+		final long allocatedBytes = sumAllocatedBytes(threadBean, threadIds) - allocatedBefore;
+		final long pooledMats = cameraManager.getFramePool().getAllocatedCount() - pooledMatsBefore;
+
+		return new Measurement(frames, allocatedBytes, countLiveMats() - liveMatsBefore, pooledMats);
+	}
+
+	private void pushFrames(int frames) throws InterruptedException {
+		for (int i = 0; i < frames; i++) {
+			camera.deliverFrame(nextFrame());
+		}
+
+		cameraManager.awaitPipelineIdle();
+	}
+
+	private Frame nextFrame() {
+		final Mat mat = cameraManager.getFramePool().borrow(scene.rows(), scene.cols(), scene.type());
+		scene.copyTo(mat);
+
+		if (frameCount % SHOT_INTERVAL >= SHOT_INTERVAL - SHOT_DURATION) {
+			// Move the dot around so the deduplication processor doesn't
+			// merge consecutive shots
+			final int shot = frameCount / SHOT_INTERVAL;
+			final Point center = new Point(scene.cols() / 4 + (shot * 37) % (scene.cols() / 2),
+					scene.rows() / 4 + (shot * 23) % (scene.rows() / 2));
+			Core.circle(mat, center, SHOT_RADIUS, new Scalar(0, 0, 255), -1);
+		}
+
+		frameCount++;
+
+		return cameraManager.getFramePool().createFrame(mat, frameCount * FRAME_INTERVAL);
+	}
+
+	private long[] getPipelineThreadIds() {
+		final List<Long> threadIds = new ArrayList<>();
+		threadIds.add(Thread.currentThread().getId());
+
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread != Thread.currentThread() && thread.getName().contains(cameraManager.getName()))
+				threadIds.add(thread.getId());
+		}
+
+		final long[] ids = new long[threadIds.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = threadIds.get(i);
+
+		return ids;
+	}
+
+	private static long sumAllocatedBytes(com.sun.management.ThreadMXBean threadBean, long[] threadIds) {
+		long allocatedBytes = 0;
+
+		// Threads that have exited report -1
+		for (final long threadAllocatedBytes : threadBean.getThreadAllocatedBytes(threadIds)) {
+			if (threadAllocatedBytes > 0) allocatedBytes += threadAllocatedBytes;
+		}
+
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the number of Mats (including MatOfPoint etc.) that survive a
+	 *         full collection
+	 */
+	private static long countLiveMats() throws JMException {
+		// Mats free their native memory in finalizers, thus a Mat that is no
+		// longer used is only gone once it has been finalized
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+
+		final String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+				new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+				new Object[] { null }, new String[] { String[].class.getName() });
+
+		long liveMats = 0;
+
+		// Lines look like: " 12: 345 6789 org.opencv.core.Mat"
+		for (final String line : histogram.split("\n")) {
+			final String[] fields = line.trim().split("\\s+");
+
+			if (fields.length >= 4 && fields[3].startsWith(MAT_CLASS_PREFIX)) liveMats += Long.parseLong(fields[1]);
+		}
+
+		return liveMats;
+	}
+
+	public static final class Measurement {
+		private final int frames;
+		private final long allocatedBytes;
+		private final long liveMatGrowth;
+		private final long pooledMatAllocations;
+
+		Measurement(int frames, long allocatedBytes, long liveMatGrowth, long pooledMatAllocations) {
+			this.frames = frames;
+			this.allocatedBytes = allocatedBytes;
+			this.liveMatGrowth = liveMatGrowth;
+			this.pooledMatAllocations = pooledMatAllocations;
+		}
+
+		public int getFrames() {
+			return frames;
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		public long getBytesPerFrame() {
+			return allocatedBytes / frames;
+		}
+
+		/**
+		 * @return how many more Mats were alive after the frames were
+		 *         processed than before
+		 */
+		public long getLiveMatGrowth() {
+			return liveMatGrowth;
+		}
+
+		/**
+		 * @return how many Mats the frame pool allocated because none of its
+		 *         Mats were free
+		 */
+		public long getPooledMatAllocations() {
+			return pooledMatAllocations;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d frames, %d bytes/frame, %d live Mats gained, %d pooled Mats allocated", frames,
+					getBytesPerFrame(), liveMatGrowth, pooledMatAllocations);
+		}
+	}
+}
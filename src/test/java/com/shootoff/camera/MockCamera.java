@@ -107,6 +107,17 @@ public class MockCamera extends MediaListenerAdapter implements Camera {
 		
 		frameCount++;
 	}
+
+	/**
+	 * Deliver a frame that didn't come from a video, e.g. one generated by a
+	 * test, the same way decoded frames are delivered.
+	 */
+	public void deliverFrame(Frame frame) {
+		if (cameraEventListener.isPresent()) cameraEventListener.get().newFrame(frame);
+
+		frameCount++;
+	}
+
 	protected void setFPS(double newFPS) {
 		// This just tells us if it's the first FPS estimate
 		if (getFrameCount() > DEFAULT_FPS)
@@ -144,7 +155,7 @@ public class MockCamera extends MediaListenerAdapter implements Camera {
 
 	@Override
 	public void setCameraEventListener(CameraEventListener cameraEventListener) {
-		this.cameraEventListener = Optional.of(cameraEventListener);
+		this.cameraEventListener = Optional.ofNullable(cameraEventListener);
 	}
 
 	@Override
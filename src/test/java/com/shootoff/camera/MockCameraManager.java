@@ -4,6 +4,7 @@ import java.util.Optional;
 
 import javafx.geometry.Bounds;
 
+import com.shootoff.camera.FrameRing.DropPolicy;
 import com.shootoff.camera.autocalibration.AutoCalibrationManager;
 import com.shootoff.camera.cameratypes.CameraEventListener;
 import com.shootoff.gui.CanvasManager;
@@ -18,11 +19,20 @@ public class MockCameraManager extends CameraManager implements CameraEventListe
 	
 	protected MockCameraManager(MockCamera camera, CanvasManager canvas,
 			boolean[][] sectorStatuses, Optional<Bounds> projectionBounds, VideoFinishedListener videoFinishedListener) {
+		this(camera, canvas, null, sectorStatuses, projectionBounds, videoFinishedListener);
+	}
+
+	protected MockCameraManager(MockCamera camera, CameraView view, DetectionWorkerPool detectionWorkerPool,
+			boolean[][] sectorStatuses, Optional<Bounds> projectionBounds, VideoFinishedListener videoFinishedListener) {
 		
-		super(camera, null, canvas);
+		super(camera, null, view, detectionWorkerPool);
 
 		this.cameraView.setCameraManager(this);
 
+		// Videos are read faster than real time, so every frame must be
+		// processed instead of dropping frames the way live cameras do
+		setFrameDropPolicy(DropPolicy.BLOCK);
+
 		setSectorStatuses(sectorStatuses);
 
 		if (projectionBounds.isPresent()) {
@@ -42,6 +52,12 @@ public class MockCameraManager extends CameraManager implements CameraEventListe
 	
 	public void cameraClosed()
 	{
+		try {
+			awaitPipelineIdle();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
 		videoFinishedListener.videoFinished();
 	}
 
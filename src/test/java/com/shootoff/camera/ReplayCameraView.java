@@ -0,0 +1,94 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.opencv.core.Mat;
+
+import com.shootoff.targets.Target;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.paint.Color;
+
+/**
+ * A camera view that only collects shots, thus clips can be replayed without
+ * a display or the JavaFX toolkit.
+ */
+public class ReplayCameraView implements CameraView {
+	private final List<Shot> shots = Collections.synchronizedList(new ArrayList<>());
+
+	public List<Shot> getShots() {
+		synchronized (shots) {
+			return new ArrayList<>(shots);
+		}
+	}
+
+	@Override
+	public boolean addChild(Node c) {
+		return false;
+	}
+
+	@Override
+	public void addShot(Shot shot, boolean isMirroredShot) {
+		if (!isMirroredShot) shots.add(shot);
+	}
+
+	@Override
+	public Optional<Target> addTarget(File targetFile) {
+		return Optional.empty();
+	}
+
+	@Override
+	public Target addTarget(Target newTarget) {
+		return newTarget;
+	}
+
+	@Override
+	public List<Target> getTargets() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Label addDiagnosticMessage(String message, Color backgroundColor) {
+		return null;
+	}
+
+	// Shots are kept when the camera manager resets its view, like
+	// MockCanvasManager keeps them, so every shot in a clip is reported
+	@Override
+	public void clearShots() {}
+
+	@Override
+	public void close() {}
+
+	@Override
+	public boolean removeChild(Node c) {
+		return false;
+	}
+
+	@Override
+	public void removeDiagnosticMessage(Label diagnosticLabel) {}
+
+	@Override
+	public void reset() {}
+
+	@Override
+	public void setCameraManager(CameraManager cameraManager) {}
+
+	@Override
+	public void updateBackground(BufferedImage frame, Optional<Bounds> projectionBounds) {}
+
+	@Override
+	public void updateBackground(Mat frame, Optional<Bounds> projectionBounds) {}
+
+	@Override
+	public Bounds translateCanvasToCamera(Bounds bounds) {
+		return bounds;
+	}
+}
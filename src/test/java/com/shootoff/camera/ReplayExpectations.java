@@ -0,0 +1,311 @@
+package com.shootoff.camera;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+
+import com.shootoff.camera.shotdetection.JavaShotDetector;
+
+/**
+ * The shots a replayed clip should produce, read from a <tt>.shots</tt> file
+ * next to the clip (e.g. <tt>clip.mp4.shots</tt>). A clip that is replayed
+ * under more than one setup has a file per scenario, e.g.
+ * <tt>clip.mp4.limited-bounds.shots</tt>. {@link ReplayHarness} reads them to
+ * score its replays. Each line is one of:
+ *
+ * <pre>
+ * # comment
+ * required &lt;color&gt; &lt;x&gt; &lt;y&gt;
+ * optional &lt;color&gt; &lt;x&gt; &lt;y&gt;
+ * projection &lt;minX&gt; &lt;minY&gt; &lt;width&gt; &lt;height&gt;
+ * disable-sector &lt;row&gt; &lt;column&gt;
+ * </pre>
+ *
+ * Colors are {@link ShotColor} names. A projection limits detection to the
+ * given bounds like a calibrated arena would. Disabled sectors are ignored by
+ * the shot detector, all other sectors are enabled.
+ */
+public final class ReplayExpectations {
+	public static final String EXTENSION = ".shots";
+
+	// Same tolerance as ShotDetectionTestor
+	private static final int ALLOWED_COORD_VARIANCE = 3;
+
+	private final List<Shot> requiredShots;
+	private final List<Shot> optionalShots;
+	private final Optional<Bounds> projectionBounds;
+	private final boolean[][] sectorStatuses;
+	private final Optional<String> scenario;
+
+	private ReplayExpectations(List<Shot> requiredShots, List<Shot> optionalShots, Optional<Bounds> projectionBounds,
+			boolean[][] sectorStatuses, Optional<String> scenario) {
+		this.requiredShots = Collections.unmodifiableList(requiredShots);
+		this.optionalShots = Collections.unmodifiableList(optionalShots);
+		this.projectionBounds = projectionBounds;
+		this.sectorStatuses = sectorStatuses;
+		this.scenario = scenario;
+	}
+
+	/**
+	 * @return the expectations for every scenario of <code>clip</code>, the
+	 *         default scenario first, or an empty list if the clip has no
+	 *         <tt>.shots</tt> file
+	 */
+	public static List<ReplayExpectations> forClip(File clip) throws IOException {
+		final File[] files = clip.getAbsoluteFile().getParentFile().listFiles();
+
+		if (files == null) return Collections.emptyList();
+
+		final String prefix = clip.getName() + ".";
+		final List<File> shotsFiles = new ArrayList<>();
+
+		for (final File file : files) {
+			final String name = file.getName();
+
+			if (file.isFile() && name.startsWith(prefix) && name.endsWith(EXTENSION)) shotsFiles.add(file);
+		}
+
+		final List<ReplayExpectations> expectations = new ArrayList<>();
+
+		for (final File shotsFile : shotsFiles) {
+			try (BufferedReader reader = Files.newBufferedReader(shotsFile.toPath(), StandardCharsets.UTF_8)) {
+				expectations.add(parse(reader, shotsFile.getName(), scenarioName(clip.getName(), shotsFile.getName())));
+			}
+		}
+
+		// The default scenario has no name and sorts first
+		expectations.sort((a, b) -> a.getScenario().orElse("").compareTo(b.getScenario().orElse("")));
+
+		return expectations;
+	}
+
+	private static Optional<String> scenarioName(String clipName, String shotsFileName) {
+		if (shotsFileName.equals(clipName + EXTENSION)) return Optional.empty();
+
+		return Optional.of(shotsFileName.substring(clipName.length() + 1, shotsFileName.length() - EXTENSION.length()));
+	}
+
+	public static ReplayExpectations parse(Reader input, String source) throws IOException {
+		return parse(input, source, Optional.empty());
+	}
+
+	private static ReplayExpectations parse(Reader input, String source, Optional<String> scenario)
+			throws IOException {
+		final BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input
+				: new BufferedReader(input);
+
+		final List<Shot> requiredShots = new ArrayList<>();
+		final List<Shot> optionalShots = new ArrayList<>();
+		Optional<Bounds> projectionBounds = Optional.empty();
+
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+		for (final boolean[] row : sectorStatuses)
+			Arrays.fill(row, true);
+
+		String line;
+		int lineNumber = 0;
+
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+
+			if (line.isEmpty() || line.startsWith("#")) continue;
+
+			final String[] fields = line.split("\\s+");
+
+			try {
+				switch (fields[0]) {
+				case "required":
+					requiredShots.add(parseShot(fields));
+					break;
+
+				case "optional":
+					optionalShots.add(parseShot(fields));
+					break;
+
+				case "projection":
+					checkFieldCount(fields, 5);
+					projectionBounds = Optional.of(new BoundingBox(Double.parseDouble(fields[1]),
+							Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+							Double.parseDouble(fields[4])));
+					break;
+
+				case "disable-sector":
+					checkFieldCount(fields, 3);
+					final int row = parseIndex(fields[1], JavaShotDetector.SECTOR_ROWS, "row");
+					final int column = parseIndex(fields[2], JavaShotDetector.SECTOR_COLUMNS, "column");
+					sectorStatuses[row][column] = false;
+					break;
+
+				default:
+					throw new IllegalArgumentException("unknown entry " + fields[0]);
+				}
+			} catch (final IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+						String.format("%s:%d: %s: %s", source, lineNumber, e.getMessage(), line), e);
+			}
+		}
+
+		return new ReplayExpectations(requiredShots, optionalShots, projectionBounds, sectorStatuses, scenario);
+	}
+
+	private static Shot parseShot(String[] fields) {
+		checkFieldCount(fields, 4);
+
+		return new Shot(ShotColor.valueOf(fields[1]), Double.parseDouble(fields[2]), Double.parseDouble(fields[3]), 0,
+				2);
+	}
+
+	private static int parseIndex(String field, int count, String name) {
+		final int index = Integer.parseInt(field);
+
+		if (index < 0 || index >= count)
+			throw new IllegalArgumentException(String.format("%s must be between 0 and %d", name, count - 1));
+
+		return index;
+	}
+
+	private static void checkFieldCount(String[] fields, int count) {
+		if (fields.length != count)
+			throw new IllegalArgumentException(String.format("expected %d fields, found %d", count, fields.length));
+	}
+
+	public List<Shot> getRequiredShots() {
+		return requiredShots;
+	}
+
+	public List<Shot> getOptionalShots() {
+		return optionalShots;
+	}
+
+	public Optional<Bounds> getProjectionBounds() {
+		return projectionBounds;
+	}
+
+	/**
+	 * @return a new copy of which sectors the shot detector should check,
+	 *         indexed by row then column
+	 */
+	public boolean[][] getSectorStatuses() {
+		final boolean[][] copy = new boolean[sectorStatuses.length][];
+
+		for (int y = 0; y < sectorStatuses.length; y++)
+			copy[y] = sectorStatuses[y].clone();
+
+		return copy;
+	}
+
+	/**
+	 * @return the name of the setup these expectations are for, or
+	 *         <code>Optional.empty()</code> for the clip's default setup
+	 */
+	public Optional<String> getScenario() {
+		return scenario;
+	}
+
+	/**
+	 * Match detected shots to the expected shots the same way
+	 * ShotDetectionTestor does. Detected shots that match neither a required
+	 * nor an optional shot are false positives.
+	 */
+	public Score score(List<Shot> detectedShots) {
+		final List<Shot> unmatchedShots = new ArrayList<>(detectedShots);
+
+		int foundRequired = 0;
+		int wrongColor = 0;
+
+		for (final Shot shot : requiredShots) {
+			final Optional<Shot> match = findMatch(unmatchedShots, shot);
+
+			if (match.isPresent()) {
+				foundRequired++;
+				if (!match.get().getColor().equals(shot.getColor())) wrongColor++;
+				unmatchedShots.remove(match.get());
+			}
+		}
+
+		int foundOptional = 0;
+
+		for (final Shot shot : optionalShots) {
+			final Optional<Shot> match = findMatch(unmatchedShots, shot);
+
+			if (match.isPresent()) {
+				foundOptional++;
+				if (!match.get().getColor().equals(shot.getColor())) wrongColor++;
+				unmatchedShots.remove(match.get());
+			}
+		}
+
+		return new Score(requiredShots.size(), foundRequired, foundOptional, unmatchedShots.size(), wrongColor);
+	}
+
+	private static Optional<Shot> findMatch(List<Shot> detectedShots, Shot expectedShot) {
+		for (final Shot shot : detectedShots) {
+			if (Math.abs(shot.getX() - expectedShot.getX()) <= ALLOWED_COORD_VARIANCE
+					&& Math.abs(shot.getY() - expectedShot.getY()) <= ALLOWED_COORD_VARIANCE) {
+				return Optional.of(shot);
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	public static final class Score {
+		private final int requiredShots;
+		private final int foundRequired;
+		private final int foundOptional;
+		private final int falsePositives;
+		private final int wrongColor;
+
+		Score(int requiredShots, int foundRequired, int foundOptional, int falsePositives, int wrongColor) {
+			this.requiredShots = requiredShots;
+			this.foundRequired = foundRequired;
+			this.foundOptional = foundOptional;
+			this.falsePositives = falsePositives;
+			this.wrongColor = wrongColor;
+		}
+
+		public int getRequiredShots() {
+			return requiredShots;
+		}
+
+		public int getFoundRequired() {
+			return foundRequired;
+		}
+
+		public int getMissedRequired() {
+			return requiredShots - foundRequired;
+		}
+
+		public int getFoundOptional() {
+			return foundOptional;
+		}
+
+		public int getFalsePositives() {
+			return falsePositives;
+		}
+
+		/**
+		 * @return how many matched shots were detected with a different color
+		 *         than expected
+		 */
+		public int getWrongColor() {
+			return wrongColor;
+		}
+
+		public boolean isAccurate() {
+			return getMissedRequired() == 0 && falsePositives == 0;
+		}
+	}
+}
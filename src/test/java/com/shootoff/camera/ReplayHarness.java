@@ -0,0 +1,497 @@
+package com.shootoff.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.ReplayExpectations.Score;
+import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.camera.shotdetection.PyramidShotDetector;
+import com.shootoff.camera.shotdetection.ShotDetector;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.plugins.TrainingExerciseBase;
+
+import ch.qos.logback.classic.Logger;
+import javafx.geometry.Bounds;
+
+/**
+ * Replays every clip in the <tt>shotsearcher</tt> and <tt>arenamask</tt> test
+ * resources, plus any directories given on the command line, through
+ * {@link CameraManager} and its shot detector as fast as frames can be decoded
+ * and detected. Clips are replayed in parallel and share one detection worker
+ * pool, like cameras do. The report has each clip's throughput, detection
+ * latency per frame, and the detected shots scored against the clip's
+ * {@link ReplayExpectations}. A clip with several scenarios is replayed once
+ * per scenario with that scenario's projection and sectors.
+ *
+ * <pre>
+ * ReplayHarness [--parallel &lt;clips&gt;] [--pyramid &lt;factor&gt;] [--report &lt;file&gt;] [directory...]
+ * </pre>
+ *
+ * Clips are replayed with {@link JavaShotDetector} unless <tt>--pyramid</tt>
+ * gives a downsample factor of 2 or 4, which replays them with
+ * {@link PyramidShotDetector} instead. Its accuracy should be compared to
+ * {@link JavaShotDetector}'s before a camera prefers it.
+ *
+ * FPS is measured while clips compete for cores, use <tt>--parallel 1</tt> to
+ * measure clips on their own. The exit status is 1 if any clip missed a
+ * required shot, detected a false positive, or failed to replay.
+ */
+public final class ReplayHarness {
+	private static final String[] RESOURCE_DIRECTORIES = { "/shotsearcher", "/arenamask" };
+	private static final List<String> CLIP_EXTENSIONS = Arrays.asList(".mp4", ".avi", ".mkv", ".mov");
+
+	// A clip that takes longer than this has hung
+	private static final long CLIP_TIMEOUT_MINUTES = 10;
+
+	private final int parallelism;
+	private final DetectionWorkerPool detectionWorkerPool;
+
+	public ReplayHarness(int parallelism) {
+		this.parallelism = parallelism;
+		detectionWorkerPool = new DetectionWorkerPool("Replay Shot Detection",
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	public static void main(String[] args) throws Exception {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int pyramidDownsampleFactor = 1;
+		Optional<File> reportFile = Optional.empty();
+		final List<File> directories = new ArrayList<>();
+
+		for (int i = 0; i < args.length; i++) {
+			if ("--parallel".equals(args[i]) && i + 1 < args.length) {
+				parallelism = Integer.parseInt(args[++i]);
+			} else if ("--pyramid".equals(args[i]) && i + 1 < args.length) {
+				pyramidDownsampleFactor = Integer.parseInt(args[++i]);
+			} else if ("--report".equals(args[i]) && i + 1 < args.length) {
+				reportFile = Optional.of(new File(args[++i]));
+			} else {
+				directories.add(new File(args[i]));
+			}
+		}
+
+		setUpEnvironment(pyramidDownsampleFactor);
+
+		final List<File> clips = new ArrayList<>();
+		for (final String resourceDirectory : RESOURCE_DIRECTORIES)
+			clips.addAll(findClips(resourceDirectory(resourceDirectory)));
+		for (final File directory : directories)
+			clips.addAll(findClips(directory));
+
+		final ReplayHarness harness = new ReplayHarness(parallelism);
+		final long start = System.nanoTime();
+		final List<ClipResult> results = harness.replay(clips);
+		final long elapsed = System.nanoTime() - start;
+
+		final String report = formatReport(results, elapsed, parallelism);
+		System.out.print(report);
+
+		if (reportFile.isPresent()) {
+			final File parent = reportFile.get().getAbsoluteFile().getParentFile();
+			if (parent != null) parent.mkdirs();
+
+			try (PrintWriter writer = new PrintWriter(
+					Files.newBufferedWriter(reportFile.get().toPath(), StandardCharsets.UTF_8))) {
+				writer.print(report);
+			}
+		}
+
+		final boolean passed = results.stream().allMatch(ClipResult::isAccurate);
+
+		// Timers started by camera managers would keep the JVM alive
+		System.exit(passed ? 0 : 1);
+	}
+
+	private static void setUpEnvironment(int pyramidDownsampleFactor) throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+		TrainingExerciseBase.silence(true);
+
+		nu.pattern.OpenCV.loadShared();
+
+		// Thousands of log lines per clip would slow the replay down
+		final Logger rootLogger = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		rootLogger.detachAndStopAllAppenders();
+
+		// Headless camera managers don't display frames or diagnostics
+		final Configuration config = new Configuration(new String[] { "--headless" });
+		config.setDebugMode(false);
+		config.setPyramidDownsampleFactor(pyramidDownsampleFactor);
+	}
+
+	private static File resourceDirectory(String resource) throws URISyntaxException {
+		final URL url = ReplayHarness.class.getResource(resource);
+
+		if (url == null) throw new IllegalStateException("Missing test resource directory " + resource);
+
+		return new File(url.toURI());
+	}
+
+	static List<File> findClips(File directory) {
+		final File[] files = directory.listFiles();
+
+		if (files == null) throw new IllegalArgumentException("Not a directory: " + directory);
+
+		final List<File> clips = new ArrayList<>();
+
+		for (final File file : files) {
+			final String name = file.getName().toLowerCase(Locale.ENGLISH);
+
+			if (file.isFile() && CLIP_EXTENSIONS.stream().anyMatch(name::endsWith)) clips.add(file);
+		}
+
+		clips.sort((a, b) -> a.getName().compareTo(b.getName()));
+
+		return clips;
+	}
+
+	/**
+	 * Replay <code>clips</code>, at most <code>parallelism</code> at a time.
+	 *
+	 * @return the result of each clip, in the same order as <code>clips</code>
+	 */
+	public List<ClipResult> replay(List<File> clips) throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+
+		try {
+			final List<Future<ClipResult>> futures = new ArrayList<>();
+
+			for (final File clip : clips) {
+				final List<ReplayExpectations> scenarios;
+
+				try {
+					scenarios = ReplayExpectations.forClip(clip);
+				} catch (final IOException | IllegalArgumentException e) {
+					futures.add(CompletableFuture.completedFuture(ClipResult.failed(clip, Optional.empty(), e)));
+					continue;
+				}
+
+				// A clip without a .shots file is still replayed for its
+				// throughput
+				if (scenarios.isEmpty()) futures.add(executor.submit(replayTask(clip, Optional.empty())));
+
+				for (final ReplayExpectations expectations : scenarios)
+					futures.add(executor.submit(replayTask(clip, Optional.of(expectations))));
+			}
+
+			final List<ClipResult> results = new ArrayList<>();
+
+			for (final Future<ClipResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (final ExecutionException e) {
+					throw new IllegalStateException("Replay failed unexpectedly", e.getCause());
+				}
+			}
+
+			return results;
+		} finally {
+			executor.shutdownNow();
+			detectionWorkerPool.shutdown();
+		}
+	}
+
+	private Callable<ClipResult> replayTask(File clip, Optional<ReplayExpectations> expectations) {
+		return () -> {
+			try {
+				return replay(clip, expectations);
+			} catch (final RuntimeException e) {
+				return ClipResult.failed(clip, getScenario(expectations), e);
+			}
+		};
+	}
+
+	private static Optional<String> getScenario(Optional<ReplayExpectations> expectations) {
+		return expectations.isPresent() ? expectations.get().getScenario() : Optional.empty();
+	}
+
+	private ClipResult replay(File clip, Optional<ReplayExpectations> expectations) throws InterruptedException {
+		final Optional<String> scenario = getScenario(expectations);
+		final Optional<Bounds> projectionBounds = expectations.isPresent()
+				? expectations.get().getProjectionBounds() : Optional.empty();
+
+		final boolean[][] sectorStatuses;
+
+		if (expectations.isPresent()) {
+			sectorStatuses = expectations.get().getSectorStatuses();
+		} else {
+			sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+			for (final boolean[] row : sectorStatuses)
+				Arrays.fill(row, true);
+		}
+
+		final ReplayCamera camera = new ReplayCamera(clip);
+		final ReplayCameraView view = new ReplayCameraView();
+		final CountDownLatch finished = new CountDownLatch(1);
+		final ReplayCameraManager cameraManager = new ReplayCameraManager(camera, view, detectionWorkerPool,
+				sectorStatuses, projectionBounds, finished::countDown);
+
+		final long start = System.nanoTime();
+
+		try {
+			cameraManager.start();
+
+			if (!finished.await(CLIP_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+				return ClipResult.failed(clip, scenario,
+						new IllegalStateException("Timed out after " + CLIP_TIMEOUT_MINUTES + " minutes"));
+			}
+		} finally {
+			cameraManager.close();
+		}
+
+		final long elapsed = System.nanoTime() - start;
+
+		if (camera.getFailure().isPresent()) return ClipResult.failed(clip, scenario, camera.getFailure().get());
+
+		final Optional<Score> score = expectations.isPresent()
+				? Optional.of(expectations.get().score(view.getShots())) : Optional.empty();
+
+		return new ClipResult(clip, scenario, cameraManager.getFrameLatencies(), elapsed, view.getShots().size(),
+				score, Optional.empty());
+	}
+
+	static String formatReport(List<ClipResult> results, long elapsed, int parallelism) {
+		final StringBuilder report = new StringBuilder();
+		final String rowFormat = "%-52s %7s %7s %8s %8s %6s %8s %6s %6s %8s %6s %6s%n";
+
+		report.append(String.format(rowFormat, "Clip", "Frames", "FPS", "p50 ms", "p99 ms", "Shots", "Required",
+				"Found", "Missed", "Optional", "False+", "Color"));
+
+		int frames = 0;
+		int detectedShots = 0;
+		int requiredShots = 0;
+		int foundRequired = 0;
+		int foundOptional = 0;
+		int falsePositives = 0;
+		int wrongColor = 0;
+		final List<Long> allLatencies = new ArrayList<>();
+
+		for (final ClipResult result : results) {
+			if (result.getError().isPresent()) {
+				report.append(String.format("%-52s FAILED: %s%n", result.getName(), result.getError().get()));
+				continue;
+			}
+
+			frames += result.getFrameCount();
+			detectedShots += result.getDetectedShots();
+			allLatencies.addAll(result.getFrameLatencies());
+
+			final String[] accuracy;
+
+			if (result.getScore().isPresent()) {
+				final Score score = result.getScore().get();
+
+				requiredShots += score.getRequiredShots();
+				foundRequired += score.getFoundRequired();
+				foundOptional += score.getFoundOptional();
+				falsePositives += score.getFalsePositives();
+				wrongColor += score.getWrongColor();
+
+				accuracy = new String[] { Integer.toString(score.getRequiredShots()),
+						Integer.toString(score.getFoundRequired()), Integer.toString(score.getMissedRequired()),
+						Integer.toString(score.getFoundOptional()), Integer.toString(score.getFalsePositives()),
+						Integer.toString(score.getWrongColor()) };
+			} else {
+				// The clip has no .shots file
+				accuracy = new String[] { "-", "-", "-", "-", "-", "-" };
+			}
+
+			report.append(String.format(rowFormat, result.getName(), result.getFrameCount(),
+					String.format("%.1f", result.getFPS()), formatMillis(percentile(result.getFrameLatencies(), 50)),
+					formatMillis(percentile(result.getFrameLatencies(), 99)), result.getDetectedShots(), accuracy[0],
+					accuracy[1], accuracy[2], accuracy[3], accuracy[4], accuracy[5]));
+		}
+
+		allLatencies.sort(null);
+
+		report.append(String.format(rowFormat, "Total", frames,
+				String.format("%.1f", frames / (elapsed / 1e9)), formatMillis(percentile(allLatencies, 50)),
+				formatMillis(percentile(allLatencies, 99)), detectedShots, requiredShots, foundRequired,
+				requiredShots - foundRequired, foundOptional, falsePositives, wrongColor));
+
+		report.append(String.format("%n%d clips replayed with %s in %.1f s, %d at a time%n", results.size(),
+				detectorName(), elapsed / 1e9, parallelism));
+
+		return report.toString();
+	}
+
+	private static String detectorName() {
+		if (!PyramidShotDetector.isSystemSupported()) return JavaShotDetector.class.getSimpleName();
+
+		return String.format("%s (%dx)", PyramidShotDetector.class.getSimpleName(),
+				Configuration.getConfig().getPyramidDownsampleFactor());
+	}
+
+	/**
+	 * @param sortedValues
+	 *            values sorted in ascending order
+	 * @return the nearest-rank percentile of <code>sortedValues</code>, or -1
+	 *         if there are no values
+	 */
+	static long percentile(List<Long> sortedValues, int percentile) {
+		if (sortedValues.isEmpty()) return -1;
+
+		final int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+
+		return sortedValues.get(Math.max(rank, 1) - 1);
+	}
+
+	private static String formatMillis(long nanoseconds) {
+		if (nanoseconds < 0) return "-";
+
+		return String.format("%.2f", nanoseconds / 1e6);
+	}
+
+	public static final class ClipResult {
+		private final File clip;
+		private final Optional<String> scenario;
+		private final List<Long> frameLatencies;
+		private final long elapsed;
+		private final int detectedShots;
+		private final Optional<Score> score;
+		private final Optional<String> error;
+
+		ClipResult(File clip, Optional<String> scenario, List<Long> frameLatencies, long elapsed, int detectedShots,
+				Optional<Score> score, Optional<String> error) {
+			this.clip = clip;
+			this.scenario = scenario;
+			this.frameLatencies = new ArrayList<>(frameLatencies);
+			this.frameLatencies.sort(null);
+			this.elapsed = elapsed;
+			this.detectedShots = detectedShots;
+			this.score = score;
+			this.error = error;
+		}
+
+		static ClipResult failed(File clip, Optional<String> scenario, Throwable cause) {
+			return new ClipResult(clip, scenario, new ArrayList<>(), 0, 0, Optional.empty(),
+					Optional.of(cause.toString()));
+		}
+
+		public String getName() {
+			final String name = clip.getParentFile().getName() + "/" + clip.getName();
+
+			return scenario.isPresent() ? String.format("%s (%s)", name, scenario.get()) : name;
+		}
+
+		public int getFrameCount() {
+			return frameLatencies.size();
+		}
+
+		/**
+		 * @return the time spent detecting shots in each frame in
+		 *         nanoseconds, in ascending order
+		 */
+		public List<Long> getFrameLatencies() {
+			return frameLatencies;
+		}
+
+		public double getFPS() {
+			return elapsed > 0 ? frameLatencies.size() / (elapsed / 1e9) : 0;
+		}
+
+		public int getDetectedShots() {
+			return detectedShots;
+		}
+
+		public Optional<Score> getScore() {
+			return score;
+		}
+
+		public Optional<String> getError() {
+			return error;
+		}
+
+		public boolean isAccurate() {
+			return !error.isPresent() && (!score.isPresent() || score.get().isAccurate());
+		}
+	}
+
+	/**
+	 * Finishes the replay if the clip can't be decoded instead of leaving the
+	 * harness waiting for the clip to end.
+	 */
+	private static final class ReplayCamera extends MockCamera {
+		private volatile Optional<Throwable> failure = Optional.empty();
+
+		ReplayCamera(File clip) {
+			super(clip);
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} catch (final RuntimeException e) {
+				failure = Optional.of(e);
+				if (cameraEventListener.isPresent()) cameraEventListener.get().cameraClosed();
+			}
+		}
+
+		Optional<Throwable> getFailure() {
+			return failure;
+		}
+
+		@Override
+		public ShotDetector getPreferredShotDetector(CameraManager cameraManager, CameraView cameraView) {
+			if (PyramidShotDetector.isSystemSupported()) return new PyramidShotDetector(cameraManager, cameraView);
+
+			return super.getPreferredShotDetector(cameraManager, cameraView);
+		}
+	}
+
+	/**
+	 * Times how long the detection stage spends on each frame. Frames wait in
+	 * the detection queue because clips are decoded faster than they are
+	 * detected, thus the wait isn't part of the latency.
+	 */
+	private static final class ReplayCameraManager extends MockCameraManager {
+		private final List<Long> frameLatencies = new ArrayList<>();
+
+		ReplayCameraManager(MockCamera camera, CameraView view, DetectionWorkerPool detectionWorkerPool,
+				boolean[][] sectorStatuses, Optional<Bounds> projectionBounds,
+				VideoFinishedListener videoFinishedListener) {
+			super(camera, view, detectionWorkerPool, sectorStatuses, projectionBounds, videoFinishedListener);
+		}
+
+		@Override
+		protected Frame processFrame(Frame currentFrame, boolean shouldDedistort) {
+			final long start = System.nanoTime();
+			final Frame processedFrame = super.processFrame(currentFrame, shouldDedistort);
+			final long latency = System.nanoTime() - start;
+
+			synchronized (frameLatencies) {
+				frameLatencies.add(latency);
+			}
+
+			return processedFrame;
+		}
+
+		List<Long> getFrameLatencies() {
+			synchronized (frameLatencies) {
+				return new ArrayList<>(frameLatencies);
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+import javax.management.JMException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.FrameAllocationMeter.Measurement;
+import com.shootoff.camera.autocalibration.AutoCalibrationManager;
+import com.shootoff.camera.cameratypes.Camera;
+import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.plugins.TrainingExerciseBase;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import javafx.geometry.Bounds;
+
+/**
+ * Fails when the per-frame path allocates more than its budget in
+ * <tt>allocation-budgets.properties</tt>. A budget can be overridden with a
+ * system property of the same name prefixed with
+ * <tt>shootoff.allocation.</tt>, e.g.
+ * <tt>-Dshootoff.allocation.headless.bytesPerFrame=4096</tt>.
+ */
+public class TestAllocationBudgets {
+	private static final String BUDGETS_RESOURCE = "/allocation-budgets.properties";
+	private static final String BUDGET_PROPERTY_PREFIX = "shootoff.allocation.";
+	private static final String SCENE_RESOURCE = "/autocalibration/calibrate-projection.png";
+
+	private static final int WARMUP_FRAMES = 300;
+	private static final int MEASURED_FRAMES = 500;
+
+	// Loggers used on the measured threads. Logging would allocate.
+	private static final String[] QUIETED_LOGGERS = { "com.shootoff.camera", "com.xuggle" };
+	private static final Map<String, Level> quietedLoggerLevels = new HashMap<>();
+
+	private static Properties budgets;
+	private static BufferedImage sceneImage;
+
+	private MockCamera camera;
+	private MockCameraManager cameraManager;
+	private File recordingFile;
+
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		assumeTrue(FrameAllocationMeter.isSupported());
+
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+		TrainingExerciseBase.silence(true);
+
+		nu.pattern.OpenCV.loadShared();
+
+		for (final String name : QUIETED_LOGGERS) {
+			final Logger logger = (Logger) LoggerFactory.getLogger(name);
+			quietedLoggerLevels.put(name, logger.getLevel());
+			logger.setLevel(Level.ERROR);
+		}
+
+		budgets = new Properties();
+		try (InputStream budgetsStream = TestAllocationBudgets.class.getResourceAsStream(BUDGETS_RESOURCE)) {
+			budgets.load(budgetsStream);
+		}
+
+		sceneImage = ImageIO.read(TestAllocationBudgets.class.getResourceAsStream(SCENE_RESOURCE));
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		for (final Map.Entry<String, Level> quietedLogger : quietedLoggerLevels.entrySet())
+			((Logger) LoggerFactory.getLogger(quietedLogger.getKey())).setLevel(quietedLogger.getValue());
+
+		quietedLoggerLevels.clear();
+	}
+
+	@After
+	public void tearDown() {
+		if (cameraManager != null) {
+			if (recordingFile != null) {
+				cameraManager.stopRecordingStream();
+				if (!recordingFile.delete()) recordingFile.deleteOnExit();
+			}
+
+			cameraManager.close();
+		}
+	}
+
+	private void createCameraManager(String... args) throws ConfigurationException {
+		new Configuration(args);
+
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+
+		for (int x = 0; x < JavaShotDetector.SECTOR_COLUMNS; x++) {
+			for (int y = 0; y < JavaShotDetector.SECTOR_ROWS; y++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+
+		camera = new MockCamera();
+		camera.setViewSize(new Dimension(sceneImage.getWidth(), sceneImage.getHeight()));
+
+		cameraManager = new MockCameraManager(camera, new ReplayCameraView(), null, sectorStatuses,
+				Optional.empty(), null);
+		cameraManager.setFeedResolution(sceneImage.getWidth(), sceneImage.getHeight());
+		cameraManager.start();
+	}
+
+	private void checkBudget(String mode) throws InterruptedException, JMException {
+		final Mat scene = Camera.bufferedImageToMat(sceneImage);
+
+		final Measurement measurement = new FrameAllocationMeter(cameraManager, camera, scene)
+				.measure(WARMUP_FRAMES, MEASURED_FRAMES);
+
+		final long bytesPerFrame = getBudget(mode + ".bytesPerFrame");
+		assertTrue(String.format("%s allocated %d bytes per frame, budget is %d (%s)", mode,
+				measurement.getBytesPerFrame(), bytesPerFrame, measurement),
+				measurement.getBytesPerFrame() <= bytesPerFrame);
+
+		final long liveMatGrowth = getBudget(mode + ".liveMatGrowth");
+		assertTrue(String.format("%s leaked %d Mats, budget is %d (%s)", mode, measurement.getLiveMatGrowth(),
+				liveMatGrowth, measurement), measurement.getLiveMatGrowth() <= liveMatGrowth);
+
+		final long pooledMatAllocations = getBudget(mode + ".pooledMatAllocations");
+		assertTrue(
+				String.format("%s allocated %d pooled Mats, budget is %d (%s)", mode,
+						measurement.getPooledMatAllocations(), pooledMatAllocations, measurement),
+				measurement.getPooledMatAllocations() <= pooledMatAllocations);
+	}
+
+	private static long getBudget(String key) {
+		final String budget = System.getProperty(BUDGET_PROPERTY_PREFIX + key, budgets.getProperty(key));
+
+		if (budget == null) throw new IllegalArgumentException("No allocation budget for " + key);
+
+		return Long.parseLong(budget.trim());
+	}
+
+	@Test
+	public void testDetecting() throws Exception {
+		createCameraManager();
+
+		checkBudget("detecting");
+	}
+
+	@Test
+	public void testHeadless() throws Exception {
+		createCameraManager("--headless");
+
+		checkBudget("headless");
+	}
+
+	@Test
+	public void testRecording() throws Exception {
+		createCameraManager();
+
+		// Xuggler writes to the working directory
+		recordingFile = new File("allocation-budget-recording.mp4");
+
+		try {
+			cameraManager.startRecordingStream(recordingFile);
+		} catch (final UnsatisfiedLinkError | RuntimeException e) {
+			recordingFile = null;
+			assumeNoException("Xuggler can't encode on this platform", e);
+		}
+
+		checkBudget("recording");
+	}
+
+	@Test
+	public void testCalibratedWithWarp() throws Exception {
+		createCameraManager();
+
+		final AutoCalibrationManager acm = new AutoCalibrationManager(cameraManager, camera, false);
+
+		final Mat mat = acm.prepTestFrame(sceneImage);
+		final Optional<MatOfPoint2f> boardCorners = acm.findChessboard(mat);
+		assertTrue(boardCorners.isPresent());
+
+		final Optional<Bounds> calibrationBounds = acm.calibrateFrame(boardCorners.get(), mat);
+		assertTrue(calibrationBounds.isPresent());
+
+		cameraManager.acm = acm;
+		cameraManager.cameraAutoCalibrated = true;
+		cameraManager.setProjectionBounds(calibrationBounds.get());
+
+		checkBudget("calibratedWithWarp");
+	}
+}
@@ -0,0 +1,143 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+
+import com.shootoff.camera.FrameRing.DropPolicy;
+import com.shootoff.camera.shotdetection.JavaShotDetector;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+
+/**
+ * Switches the feed resolution while frames are flowing through the pipeline,
+ * the way a camera's capture thread does, and checks that everything sized to
+ * the feed switches together with the first frame at the new resolution.
+ */
+public class TestCameraManagerResolution {
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 480;
+	private static final long FRAME_INTERVAL = 33; // ms
+
+	// Enough frames to initialize the detector's filters
+	private static final int SETTLE_FRAMES = 10;
+
+	private static final Scalar BACKGROUND = new Scalar(30, 30, 30);
+
+	private MockCamera camera;
+	private ReplayCameraView cameraView;
+	private MockCameraManager cameraManager;
+	private long timestamp = 0;
+
+	@Before
+	public void setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+
+		nu.pattern.OpenCV.loadShared();
+
+		new Configuration(new String[] { "--headless" });
+
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+		for (final boolean[] row : sectorStatuses)
+			Arrays.fill(row, true);
+
+		camera = new MockCamera();
+		camera.setViewSize(new Dimension(WIDTH, HEIGHT));
+
+		cameraView = new ReplayCameraView();
+		cameraManager = new MockCameraManager(camera, cameraView, null, sectorStatuses, Optional.empty(), null);
+		cameraManager.setFrameDropPolicy(DropPolicy.BLOCK);
+		cameraManager.setFeedResolution(WIDTH, HEIGHT);
+		cameraManager.setProjectionBounds(new BoundingBox(100, 50, 200, 150));
+		cameraManager.start();
+	}
+
+	@After
+	public void tearDown() {
+		cameraManager.close();
+	}
+
+	private void deliverFrames(int width, int height, int count, Optional<Point> dot) throws InterruptedException {
+		for (int i = 0; i < count; i++) {
+			final Mat mat = new Mat(height, width, CvType.CV_8UC3, BACKGROUND);
+
+			// Shots must cover more pixels at higher resolutions
+			if (dot.isPresent()) {
+				final int radius = width / 160;
+				Core.circle(mat, dot.get(), radius + 2, new Scalar(0, 0, 255), -1);
+				Core.circle(mat, dot.get(), radius, new Scalar(255, 255, 255), -1);
+			}
+
+			timestamp += FRAME_INTERVAL;
+			camera.deliverFrame(new Frame(mat, timestamp));
+		}
+
+		cameraManager.awaitPipelineIdle();
+	}
+
+	private void assertBounds(double minX, double minY, double width, double height) {
+		final Bounds bounds = cameraManager.getProjectionBounds().get();
+
+		assertEquals(minX, bounds.getMinX(), 0.001);
+		assertEquals(minY, bounds.getMinY(), 0.001);
+		assertEquals(width, bounds.getWidth(), 0.001);
+		assertEquals(height, bounds.getHeight(), 0.001);
+	}
+
+	@Test
+	public void testSwitchMidStream() throws InterruptedException {
+		deliverFrames(WIDTH, HEIGHT, SETTLE_FRAMES, Optional.empty());
+		deliverFrames(WIDTH, HEIGHT, 1, Optional.of(new Point(500, 400)));
+
+		assertEquals(1, cameraView.getShots().size());
+
+		final double distanceThreshold = cameraManager.getDeduplicationProcessor().getDistanceThreshold();
+
+		// Called from this thread, which is delivering frames like a capture
+		// thread, thus nothing changes until a frame at the new resolution
+		// reaches the detection stage
+		cameraManager.setFeedResolution(WIDTH * 2, HEIGHT * 2);
+
+		assertEquals(WIDTH, cameraManager.getFeedWidth());
+		assertEquals(HEIGHT, cameraManager.getFeedHeight());
+		assertBounds(100, 50, 200, 150);
+
+		// Frames already captured at the old resolution are still processed
+		deliverFrames(WIDTH, HEIGHT, 1, Optional.empty());
+		assertEquals(WIDTH, cameraManager.getFeedWidth());
+		assertEquals(distanceThreshold, cameraManager.getDeduplicationProcessor().getDistanceThreshold(), 0.001);
+
+		deliverFrames(WIDTH * 2, HEIGHT * 2, SETTLE_FRAMES, Optional.empty());
+
+		assertEquals(WIDTH * 2, cameraManager.getFeedWidth());
+		assertEquals(HEIGHT * 2, cameraManager.getFeedHeight());
+		assertEquals(distanceThreshold * 4, cameraManager.getDeduplicationProcessor().getDistanceThreshold(),
+				0.001);
+		assertBounds(200, 100, 400, 300);
+
+		// A dot outside the old frame can only be found by a detector that
+		// was resized, and is reported in display coordinates
+		deliverFrames(WIDTH * 2, HEIGHT * 2, 1, Optional.of(new Point(1100, 900)));
+
+		final List<Shot> shots = cameraView.getShots();
+		assertEquals(2, shots.size());
+		assertEquals(1100 / 2, shots.get(1).getX(), 1.0);
+		assertEquals(900 / 2, shots.get(1).getY(), 1.0);
+	}
+}
@@ -0,0 +1,127 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.DetectionLoadController.Level;
+
+public class TestDetectionLoadController {
+	private static final double FPS = 30;
+	private static final long SLOW_FRAME = 50_000_000; // ns
+	private static final long FAST_FRAME = 5_000_000; // ns
+
+	private DetectionLoadController controller;
+
+	@Before
+	public void setUp() {
+		controller = new DetectionLoadController("Test");
+	}
+
+	private int recordFrames(int count, long processingTime) {
+		int changes = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (controller.recordFrame(processingTime, FPS)) changes++;
+		}
+
+		return changes;
+	}
+
+	@Test
+	public void testShedsAfterSustainedSlowFrames() {
+		assertEquals(0, recordFrames(9, SLOW_FRAME));
+		assertEquals(Level.NORMAL, controller.getLevel());
+
+		assertEquals(1, recordFrames(1, SLOW_FRAME));
+		assertEquals(Level.SKIP_DISPLAY, controller.getLevel());
+
+		recordFrames(20, SLOW_FRAME);
+		assertEquals(Level.LIMIT_REGION, controller.getLevel());
+
+		recordFrames(100, SLOW_FRAME);
+		assertEquals(Level.SKIP_FILTER_UPDATES, controller.getLevel());
+	}
+
+	@Test
+	public void testRestoresOneLevelAtATime() {
+		recordFrames(20, SLOW_FRAME);
+		assertEquals(Level.SKIP_OVERLAY, controller.getLevel());
+
+		// The smoothed time has to fall under the restore threshold first
+		recordFrames(60, FAST_FRAME);
+		assertEquals(Level.SKIP_OVERLAY, controller.getLevel());
+
+		recordFrames(60, FAST_FRAME);
+		assertEquals(Level.SKIP_DISPLAY, controller.getLevel());
+
+		recordFrames(60, FAST_FRAME);
+		assertEquals(Level.NORMAL, controller.getLevel());
+
+		assertEquals(0, recordFrames(200, FAST_FRAME));
+	}
+
+	@Test
+	public void testShedsForSlowOutput() {
+		for (int i = 0; i < 10; i++) {
+			controller.recordOutputTime(SLOW_FRAME);
+			controller.recordFrame(FAST_FRAME, FPS);
+		}
+
+		assertEquals(Level.SKIP_DISPLAY, controller.getLevel());
+		assertEquals(SLOW_FRAME, controller.getOutputTime(), 1);
+
+		// Once the display is shed the output keeps up again
+		for (int i = 0; i < 120; i++) {
+			controller.recordOutputTime(FAST_FRAME);
+			controller.recordFrame(FAST_FRAME, FPS);
+		}
+
+		assertEquals(Level.NORMAL, controller.getLevel());
+	}
+
+	@Test
+	public void testSheddingIncludesLowerLevels() {
+		recordFrames(30, SLOW_FRAME);
+		assertEquals(Level.LIMIT_REGION, controller.getLevel());
+
+		assertFalse(controller.isShedding(Level.NORMAL));
+		assertTrue(controller.isShedding(Level.SKIP_DISPLAY));
+		assertTrue(controller.isShedding(Level.SKIP_OVERLAY));
+		assertTrue(controller.isShedding(Level.LIMIT_REGION));
+		assertFalse(controller.isShedding(Level.SKIP_FILTER_UPDATES));
+	}
+
+	@Test
+	public void testReset() {
+		assertFalse(controller.reset());
+
+		recordFrames(10, SLOW_FRAME);
+		assertTrue(controller.reset());
+		assertEquals(Level.NORMAL, controller.getLevel());
+		assertEquals(0, controller.getProcessingTime(), 0);
+		assertEquals(0, controller.getOutputTime(), 0);
+	}
+
+	@Test
+	public void testUnknownFPSIsIgnored() {
+		for (int i = 0; i < 100; i++)
+			assertFalse(controller.recordFrame(SLOW_FRAME, 0));
+
+		assertEquals(Level.NORMAL, controller.getLevel());
+		assertEquals(0, controller.getProcessingTime(), 0);
+	}
+
+	@Test
+	public void testTransitionsAreCounted() {
+		recordFrames(20, SLOW_FRAME);
+		recordFrames(120, FAST_FRAME);
+
+		assertEquals(3, controller.getTransitionCount());
+		// Entered once on the way up and once on the way down
+		assertEquals(2, controller.getEntryCount(Level.SKIP_DISPLAY));
+		assertEquals(1, controller.getEntryCount(Level.SKIP_OVERLAY));
+		assertEquals(0, controller.getEntryCount(Level.LIMIT_REGION));
+	}
+}
@@ -0,0 +1,210 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.DetectionMaskManager.Source;
+import com.shootoff.camera.shotdetection.DetectionMask;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.targets.Target;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+
+public class TestDetectionMaskManager {
+	// Must match DetectionMaskManager's margin around targets
+	private static final int TARGET_MARGIN = 16;
+
+	private final List<Target> targets = new ArrayList<>();
+
+	private CameraManager cameraManager;
+	private DetectionMaskManager maskManager;
+
+	@Before
+	public void setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+
+		nu.pattern.OpenCV.loadShared();
+
+		new Configuration(new String[] { "--headless" });
+
+		final ReplayCameraView cameraView = new ReplayCameraView() {
+			@Override
+			public List<Target> getTargets() {
+				return Collections.unmodifiableList(targets);
+			}
+		};
+
+		cameraManager = new CameraManager(new MockCamera(), null, cameraView);
+		maskManager = cameraManager.getDetectionMaskManager();
+	}
+
+	@After
+	public void tearDown() {
+		cameraManager.close();
+	}
+
+	// Only the methods the mask manager uses are implemented
+	private static Target createTarget(Bounds bounds, boolean isVisible) {
+		return (Target) Proxy.newProxyInstance(Target.class.getClassLoader(), new Class<?>[] { Target.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getBoundsInParent":
+						return bounds;
+					case "isVisible":
+						return isVisible;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private DetectionMask getMask() {
+		assertTrue(maskManager.getMask().isPresent());
+		return maskManager.getMask().get();
+	}
+
+	@Test
+	public void testNoSource() {
+		assertEquals(Source.NONE, maskManager.getSource());
+		assertFalse(maskManager.getMask().isPresent());
+	}
+
+	@Test
+	public void testTargets() {
+		targets.add(createTarget(new BoundingBox(100, 100, 50, 40), true));
+		targets.add(createTarget(new BoundingBox(400, 300, 50, 40), false));
+
+		maskManager.setSource(Source.TARGETS);
+		maskManager.updateTargetBounds();
+
+		final DetectionMask mask = getMask();
+		assertEquals(cameraManager.getFeedWidth(), mask.getWidth());
+		assertEquals(cameraManager.getFeedHeight(), mask.getHeight());
+
+		// The target plus its margin
+		assertTrue(mask.contains(100 - TARGET_MARGIN, 100 - TARGET_MARGIN));
+		assertTrue(mask.contains(150 + TARGET_MARGIN - 1, 140 + TARGET_MARGIN - 1));
+		assertFalse(mask.contains(100 - TARGET_MARGIN - 1, 120));
+		assertFalse(mask.contains(150 + TARGET_MARGIN, 120));
+
+		// Invisible targets aren't shot at
+		assertFalse(mask.contains(425, 320));
+
+		// Moving a target moves the mask
+		targets.set(0, createTarget(new BoundingBox(300, 100, 50, 40), true));
+		maskManager.updateTargetBounds();
+
+		assertNotSame(mask, getMask());
+		assertFalse(getMask().contains(125, 120));
+		assertTrue(getMask().contains(325, 120));
+	}
+
+	@Test
+	public void testUnchangedTargetsKeepMask() {
+		targets.add(createTarget(new BoundingBox(100, 100, 50, 40), true));
+
+		maskManager.setSource(Source.TARGETS);
+		maskManager.updateTargetBounds();
+		final DetectionMask mask = getMask();
+
+		maskManager.updateTargetBounds();
+
+		assertSame(mask, getMask());
+	}
+
+	@Test
+	public void testRegions() {
+		maskManager.setRegions(Arrays.asList(Arrays.asList(new Point2D(10, 10), new Point2D(110, 10),
+				new Point2D(110, 60), new Point2D(10, 60))));
+
+		// Regions only apply once they are the source
+		assertFalse(maskManager.getMask().isPresent());
+
+		maskManager.setSource(Source.REGIONS);
+
+		final DetectionMask mask = getMask();
+		assertTrue(mask.contains(50, 30));
+		assertFalse(mask.contains(5, 30));
+		assertFalse(mask.contains(50, 70));
+	}
+
+	@Test
+	public void testArena() {
+		maskManager.setSource(Source.ARENA);
+
+		// Not calibrated yet
+		assertFalse(maskManager.getMask().isPresent());
+
+		cameraManager.setProjectionBounds(new BoundingBox(100, 50, 200, 150));
+
+		final DetectionMask mask = getMask();
+		assertEquals(200 * 150, mask.getPixelCount());
+		assertTrue(mask.contains(100, 50));
+		assertTrue(mask.contains(299, 199));
+		assertFalse(mask.contains(99, 50));
+		assertFalse(mask.contains(300, 199));
+	}
+
+	@Test
+	public void testArenaWhenCroppedToProjection() {
+		cameraManager.setProjectionBounds(new BoundingBox(100, 50, 200, 150));
+		cameraManager.setLimitDetectProjection(true);
+		maskManager.setSource(Source.ARENA);
+
+		// Cropped frames are only the arena, so the mask covers all of them
+		final DetectionMask mask = getMask();
+		assertEquals(200, mask.getWidth());
+		assertEquals(150, mask.getHeight());
+		assertEquals(200 * 150, mask.getPixelCount());
+	}
+
+	@Test
+	public void testLimitingToArena() {
+		cameraManager.setProjectionBounds(new BoundingBox(100, 50, 200, 150));
+
+		maskManager.setLimitingToArena(true);
+		assertEquals(200 * 150, getMask().getPixelCount());
+
+		// A source chosen by the user wins over shedding load
+		maskManager.setRegions(Arrays.asList(Arrays.asList(new Point2D(10, 10), new Point2D(110, 10),
+				new Point2D(110, 60), new Point2D(10, 60))));
+		maskManager.setSource(Source.REGIONS);
+		assertFalse(getMask().contains(150, 100));
+
+		maskManager.setSource(Source.NONE);
+		maskManager.setLimitingToArena(false);
+		assertFalse(maskManager.getMask().isPresent());
+	}
+
+	@Test
+	public void testRefreshOnResolutionChange() {
+		cameraManager.setProjectionBounds(new BoundingBox(100, 50, 200, 150));
+		maskManager.setSource(Source.ARENA);
+
+		final int width = cameraManager.getFeedWidth();
+		final int height = cameraManager.getFeedHeight();
+
+		cameraManager.setFeedResolution(width * 2, height * 2);
+
+		// The mask is resized and the arena was scaled with the resolution
+		final DetectionMask mask = getMask();
+		assertEquals(width * 2, mask.getWidth());
+		assertEquals(height * 2, mask.getHeight());
+		assertEquals(400 * 300, mask.getPixelCount());
+		assertTrue(mask.contains(200, 100));
+		assertFalse(mask.contains(199, 100));
+	}
+}
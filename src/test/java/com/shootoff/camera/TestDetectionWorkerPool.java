@@ -0,0 +1,246 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDetectionWorkerPool {
+	private DetectionWorkerPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new DetectionWorkerPool("Test", 2);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test(timeout = 5000)
+	public void testEveryTaskPerformedOnce() {
+		final DetectionWorkerPool.Workload workload = pool.register("Lane 1", DetectionWorkerPool.DEFAULT_PRIORITY);
+		final AtomicIntegerArray performed = new AtomicIntegerArray(100);
+
+		for (int batch = 0; batch < 10; batch++)
+			workload.run(performed.length(), (index) -> performed.incrementAndGet(index));
+
+		for (int i = 0; i < performed.length(); i++)
+			assertEquals(10, performed.get(i));
+
+		assertEquals(10, workload.getBatchCount());
+		assertEquals(1000, workload.getTasksPerformed());
+	}
+
+	@Test(timeout = 5000)
+	public void testCamerasShareWorkers() throws InterruptedException {
+		final int cameraCount = 4;
+		final List<Thread> cameras = new ArrayList<>();
+		final AtomicIntegerArray performed = new AtomicIntegerArray(cameraCount);
+
+		for (int i = 0; i < cameraCount; i++) {
+			final int camera = i;
+			final DetectionWorkerPool.Workload workload = pool.register("Lane " + camera, camera);
+
+			cameras.add(new Thread(() -> {
+				for (int batch = 0; batch < 50; batch++)
+					workload.run(8, (index) -> performed.incrementAndGet(camera));
+			}));
+		}
+
+		for (final Thread camera : cameras)
+			camera.start();
+		for (final Thread camera : cameras)
+			camera.join();
+
+		for (int i = 0; i < cameraCount; i++)
+			assertEquals(50 * 8, performed.get(i));
+
+		assertEquals(cameraCount, pool.getWorkloads().size());
+	}
+
+	private static boolean isWorker() {
+		return Thread.currentThread().getName().startsWith("Single Worker");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testHigherPriorityServedFirst() throws InterruptedException {
+		final DetectionWorkerPool single = new DetectionWorkerPool("Single", 1);
+
+		final CountDownLatch busy = new CountDownLatch(2);
+		final CountDownLatch releaseWorker = new CountDownLatch(1);
+		final CountDownLatch callersStarted = new CountDownLatch(2);
+		final CountDownLatch releaseCallers = new CountDownLatch(1);
+		final List<String> workerOrder = new ArrayList<>();
+
+		try {
+			// Occupy the only worker and the blocker's own thread
+			final DetectionWorkerPool.Workload blocker = single.register("Blocker",
+					DetectionWorkerPool.DEFAULT_PRIORITY);
+			final Thread blockerThread = new Thread(() -> blocker.run(2, (index) -> {
+				busy.countDown();
+				await(releaseWorker);
+			}));
+			blockerThread.start();
+			busy.await();
+
+			// Each camera's own thread gets stuck on its first task, leaving
+			// the rest of its batch for the worker
+			final List<Thread> cameras = new ArrayList<>();
+			for (final int priority : new int[] { DetectionWorkerPool.DEFAULT_PRIORITY,
+					DetectionWorkerPool.ARENA_PRIORITY }) {
+				final DetectionWorkerPool.Workload workload = single.register("Priority " + priority, priority);
+				final Thread camera = new Thread(() -> workload.run(3, (index) -> {
+					if (isWorker()) {
+						synchronized (workerOrder) {
+							workerOrder.add(workload.getCameraName());
+						}
+					} else {
+						callersStarted.countDown();
+						await(releaseCallers);
+					}
+				}));
+				cameras.add(camera);
+				camera.start();
+			}
+
+			callersStarted.await();
+			releaseWorker.countDown();
+			blockerThread.join();
+
+			// The worker drains both batches while the callers are stuck
+			while (true) {
+				synchronized (workerOrder) {
+					if (workerOrder.size() == 4) break;
+				}
+				Thread.sleep(1);
+			}
+
+			releaseCallers.countDown();
+			for (final Thread camera : cameras)
+				camera.join();
+
+			final String arena = "Priority " + DetectionWorkerPool.ARENA_PRIORITY;
+			final String other = "Priority " + DetectionWorkerPool.DEFAULT_PRIORITY;
+
+			synchronized (workerOrder) {
+				assertEquals(arena, workerOrder.get(0));
+				assertEquals(arena, workerOrder.get(1));
+				assertEquals(other, workerOrder.get(2));
+				assertEquals(other, workerOrder.get(3));
+			}
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testInterruptedCallerWaitsForClaimedTasks() throws InterruptedException {
+		final DetectionWorkerPool single = new DetectionWorkerPool("Single", 1);
+
+		final CountDownLatch workerInside = new CountDownLatch(1);
+		final CountDownLatch releaseWorker = new CountDownLatch(1);
+		final AtomicBoolean workerFinished = new AtomicBoolean(false);
+		final AtomicBoolean finishedBeforeReturn = new AtomicBoolean(false);
+		final AtomicBoolean interruptedOnReturn = new AtomicBoolean(false);
+
+		try {
+			final DetectionWorkerPool.Workload workload = single.register("Lane 1",
+					DetectionWorkerPool.DEFAULT_PRIORITY);
+
+			// The caller holds its own task until the worker has claimed the
+			// other one so that the worker is inside a task when the caller
+			// starts waiting
+			final Thread caller = new Thread(() -> {
+				workload.run(2, (index) -> {
+					if (isWorker()) {
+						workerInside.countDown();
+
+						try {
+							releaseWorker.await();
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+
+						workerFinished.set(true);
+					} else {
+						await(workerInside);
+					}
+				});
+
+				finishedBeforeReturn.set(workerFinished.get());
+				interruptedOnReturn.set(Thread.currentThread().isInterrupted());
+			});
+			caller.start();
+
+			workerInside.await();
+			caller.interrupt();
+
+			// The caller keeps waiting for the worker's task
+			caller.join(100);
+			assertTrue(caller.isAlive());
+
+			releaseWorker.countDown();
+			caller.join();
+
+			assertTrue(finishedBeforeReturn.get());
+			assertTrue(interruptedOnReturn.get());
+
+			// A completion from the interrupted batch must not leak into the
+			// next one
+			final AtomicIntegerArray performed = new AtomicIntegerArray(8);
+			workload.run(performed.length(), (index) -> performed.incrementAndGet(index));
+
+			for (int i = 0; i < performed.length(); i++)
+				assertEquals(1, performed.get(i));
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testRunsWithoutWorkersAfterShutdown() {
+		final DetectionWorkerPool.Workload workload = pool.register("Lane 1", DetectionWorkerPool.DEFAULT_PRIORITY);
+		pool.shutdown();
+
+		final AtomicIntegerArray performed = new AtomicIntegerArray(16);
+		workload.run(performed.length(), (index) -> performed.incrementAndGet(index));
+
+		for (int i = 0; i < performed.length(); i++)
+			assertEquals(1, performed.get(i));
+	}
+
+	@Test(timeout = 5000)
+	public void testUtilizationReported() {
+		final DetectionWorkerPool.Workload workload = pool.register("Lane 1", DetectionWorkerPool.DEFAULT_PRIORITY);
+
+		workload.run(4, (index) -> {
+			final long end = System.nanoTime() + 2_000_000;
+			while (System.nanoTime() < end)
+				;
+		});
+
+		assertTrue(workload.getBusyTime() >= 8_000_000);
+		assertTrue(workload.sampleUtilization() > 0);
+		assertEquals(4, workload.getTasksPerformed());
+
+		pool.unregister(workload);
+		assertTrue(pool.getWorkloads().isEmpty());
+	}
+}
@@ -0,0 +1,99 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+public class TestFramePool {
+	private FramePool pool;
+
+	@Before
+	public void setUp() {
+		nu.pattern.OpenCV.loadShared();
+
+		pool = new FramePool(2);
+	}
+
+	@Test
+	public void testReleasedFrameIsReused() {
+		final Mat mat = pool.borrow(4, 6, CvType.CV_8UC3);
+		final Frame frame = pool.createFrame(mat, 0);
+
+		frame.release();
+		assertEquals(1, pool.getFreeCount());
+
+		assertSame(mat, pool.borrow(4, 6, CvType.CV_8UC3));
+		assertEquals(1, pool.getAllocatedCount());
+		assertEquals(1, pool.getReusedCount());
+		assertEquals(0, pool.getFreeCount());
+	}
+
+	@Test
+	public void testRetainedFrameIsNotRecycled() {
+		final Frame frame = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 0);
+
+		frame.retain();
+		assertEquals(2, frame.getReferenceCount());
+
+		frame.release();
+		assertEquals(0, pool.getFreeCount());
+
+		frame.release();
+		assertEquals(1, pool.getFreeCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOverReleaseThrows() {
+		final Frame frame = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 0);
+
+		frame.release();
+		frame.release();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRetainAfterReleaseThrows() {
+		final Frame frame = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 0);
+
+		frame.release();
+		frame.retain();
+	}
+
+	@Test
+	public void testGeometryChangeFreesOldMats() {
+		pool.recycle(pool.borrow(4, 6, CvType.CV_8UC3));
+		assertEquals(1, pool.getFreeCount());
+
+		final Mat mat = pool.borrow(8, 12, CvType.CV_8UC3);
+		assertEquals(0, pool.getFreeCount());
+		assertEquals(2, pool.getAllocatedCount());
+
+		// A Mat from before the change doesn't fit the pool anymore
+		pool.recycle(new Mat(4, 6, CvType.CV_8UC3));
+		assertEquals(0, pool.getFreeCount());
+
+		pool.recycle(mat);
+		assertEquals(1, pool.getFreeCount());
+	}
+
+	@Test
+	public void testPoolHoldsAtMostMaximumFreeMats() {
+		final Mat first = pool.borrow(4, 6, CvType.CV_8UC3);
+		final Mat second = pool.borrow(4, 6, CvType.CV_8UC3);
+		final Mat third = pool.borrow(4, 6, CvType.CV_8UC3);
+
+		pool.recycle(first);
+		pool.recycle(second);
+		pool.recycle(third);
+
+		assertEquals(2, pool.getFreeCount());
+
+		pool.close();
+		assertEquals(0, pool.getFreeCount());
+
+		pool.recycle(pool.borrow(4, 6, CvType.CV_8UC3));
+		assertEquals(0, pool.getFreeCount());
+	}
+}
@@ -0,0 +1,136 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.shootoff.camera.FrameRing.DropPolicy;
+
+public class TestFrameRing {
+	@Test
+	public void testFirstInFirstOut() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(3, DropPolicy.DROP_OLDEST);
+
+		assertNull(ring.offer(1));
+		assertNull(ring.offer(2));
+		assertEquals(2, ring.getDepth());
+
+		assertEquals(1, (int) ring.take());
+		assertNull(ring.offer(3));
+		assertNull(ring.offer(4));
+
+		assertEquals(2, (int) ring.take());
+		assertEquals(3, (int) ring.take());
+		assertEquals(4, (int) ring.take());
+		assertEquals(0, ring.getDepth());
+		assertEquals(0, ring.getDroppedCount());
+		assertEquals(4, ring.getOfferedCount());
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(2, DropPolicy.DROP_OLDEST);
+
+		ring.offer(1);
+		ring.offer(2);
+		assertEquals(1, (int) ring.offer(3));
+		assertEquals(2, (int) ring.offer(4));
+
+		assertEquals(2, ring.getDroppedCount());
+		assertEquals(4, ring.getOfferedCount());
+		assertEquals(3, (int) ring.take());
+		assertEquals(4, (int) ring.take());
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(2, DropPolicy.DROP_NEWEST);
+
+		ring.offer(1);
+		ring.offer(2);
+		assertEquals(3, (int) ring.offer(3));
+
+		assertEquals(1, ring.getDroppedCount());
+		assertEquals(1, (int) ring.take());
+		assertEquals(2, (int) ring.take());
+	}
+
+	@Test(timeout = 5000)
+	public void testBlockAndAwaitIdle() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(1, DropPolicy.BLOCK);
+		final List<Integer> consumed = new ArrayList<>();
+
+		final Thread consumer = new Thread(() -> {
+			try {
+				Integer item;
+				while ((item = ring.take()) != null) {
+					Thread.sleep(5);
+					synchronized (consumed) {
+						consumed.add(item);
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		consumer.start();
+
+		for (int i = 0; i < 20; i++)
+			assertNull(ring.offer(i));
+
+		ring.awaitIdle();
+
+		synchronized (consumed) {
+			assertEquals(20, consumed.size());
+			for (int i = 0; i < 20; i++)
+				assertEquals(i, (int) consumed.get(i));
+		}
+
+		assertEquals(0, ring.getDroppedCount());
+
+		ring.close();
+		consumer.join();
+	}
+
+	@Test(timeout = 5000)
+	public void testCloseReleasesConsumer() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(2, DropPolicy.DROP_OLDEST);
+
+		final Thread consumer = new Thread(() -> {
+			try {
+				assertNull(ring.take());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		consumer.start();
+
+		ring.close();
+		consumer.join();
+
+		assertTrue(ring.isClosed());
+		assertEquals(5, (int) ring.offer(5));
+		assertEquals(0, ring.getDepth());
+	}
+
+	@Test
+	public void testCloseReturnsQueuedItems() throws InterruptedException {
+		final FrameRing<Integer> ring = new FrameRing<>(3, DropPolicy.DROP_OLDEST);
+
+		for (int i = 1; i <= 4; i++)
+			ring.offer(i);
+
+		assertEquals(2, (int) ring.take());
+
+		final List<Integer> remaining = ring.close();
+
+		assertEquals(2, remaining.size());
+		assertEquals(3, (int) remaining.get(0));
+		assertEquals(4, (int) remaining.get(1));
+		assertEquals(0, ring.getDepth());
+		assertTrue(ring.close().isEmpty());
+	}
+}
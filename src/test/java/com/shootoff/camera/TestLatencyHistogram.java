@@ -0,0 +1,99 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.LatencyHistogram.Snapshot;
+
+public class TestLatencyHistogram {
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(60);
+	private static final int SLOTS = 6;
+
+	private final AtomicLong clock = new AtomicLong();
+	private LatencyHistogram histogram;
+
+	@Before
+	public void setUp() {
+		clock.set(TimeUnit.SECONDS.toNanos(1000));
+		histogram = new LatencyHistogram(WINDOW, SLOTS, clock::get);
+	}
+
+	private static long millis(double ms) {
+		return (long) (ms * 1e6);
+	}
+
+	@Test
+	public void testEmpty() {
+		final Snapshot snapshot = histogram.getSnapshot();
+
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(99));
+		assertEquals(0, snapshot.getMax());
+	}
+
+	@Test
+	public void testPercentiles() {
+		for (int i = 1; i <= 100; i++)
+			histogram.record(millis(i));
+
+		final Snapshot snapshot = histogram.getSnapshot();
+
+		assertEquals(100, snapshot.getCount());
+		assertEquals(millis(100), snapshot.getMax());
+
+		// Buckets are at most 1/8th of their value wide and percentiles are
+		// rounded up to the end of their bucket
+		assertEquals(millis(50), snapshot.getPercentile(50), millis(50) / 8.0);
+		assertTrue(snapshot.getPercentile(50) >= millis(50));
+		assertEquals(millis(95), snapshot.getPercentile(95), millis(95) / 8.0);
+		assertEquals(millis(99), snapshot.getPercentile(99), millis(99) / 8.0);
+		assertTrue(snapshot.getPercentile(99) <= snapshot.getMax());
+	}
+
+	@Test
+	public void testBuckets() {
+		for (long microseconds = 0; microseconds < 1 << 20; microseconds = microseconds * 3 / 2 + 1) {
+			final int index = LatencyHistogram.bucketIndex(microseconds);
+
+			assertTrue(index >= 0 && index < LatencyHistogram.BUCKET_COUNT);
+			assertTrue(LatencyHistogram.bucketUpperBound(index) >= microseconds);
+			if (index > 0) assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < microseconds);
+		}
+
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE / 1000));
+	}
+
+	@Test
+	public void testOldLatenciesLeaveWindow() {
+		histogram.record(millis(200));
+
+		clock.addAndGet(WINDOW / 2);
+		histogram.record(millis(10));
+
+		assertEquals(2, histogram.getSnapshot().getCount());
+		assertEquals(millis(200), histogram.getSnapshot().getMax());
+
+		clock.addAndGet(WINDOW / 2);
+
+		final Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(1, snapshot.getCount());
+		assertEquals(millis(10), snapshot.getMax());
+	}
+
+	@Test
+	public void testReusedSlotIsCleared() {
+		histogram.record(millis(200));
+
+		clock.addAndGet(WINDOW);
+		histogram.record(millis(10));
+
+		final Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(1, snapshot.getCount());
+		assertEquals(millis(10), snapshot.getMax());
+	}
+}
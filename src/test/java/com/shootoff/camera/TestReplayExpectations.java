@@ -0,0 +1,147 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.shootoff.camera.ReplayExpectations.Score;
+
+public class TestReplayExpectations {
+	private static final String SHOTS = "# Test clip\n" + "required GREEN 100.0 200.0\n" + "\n"
+			+ "required RED 300 50.5\n" + "optional GREEN 10 10\n" + "projection 5 6 300 200\n";
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private ReplayExpectations parse(String shots) throws IOException {
+		return ReplayExpectations.parse(new StringReader(shots), "test.mp4.shots");
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		final ReplayExpectations expectations = parse(SHOTS);
+
+		assertEquals(2, expectations.getRequiredShots().size());
+		assertEquals(ShotColor.RED, expectations.getRequiredShots().get(1).getColor());
+		assertEquals(300, expectations.getRequiredShots().get(1).getX(), 0.001);
+		assertEquals(50.5, expectations.getRequiredShots().get(1).getY(), 0.001);
+
+		assertEquals(1, expectations.getOptionalShots().size());
+
+		assertTrue(expectations.getProjectionBounds().isPresent());
+		assertEquals(5, expectations.getProjectionBounds().get().getMinX(), 0.001);
+		assertEquals(200, expectations.getProjectionBounds().get().getHeight(), 0.001);
+	}
+
+	@Test
+	public void testMalformedLineNamesFileAndLine() throws IOException {
+		try {
+			parse("required GREEN 1\n");
+			fail("Malformed line was accepted");
+		} catch (final IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("test.mp4.shots:1:"));
+		}
+
+		try {
+			parse("# Comment\nrequired BLUE 1 2\n");
+			fail("Unknown color was accepted");
+		} catch (final IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("test.mp4.shots:2:"));
+		}
+	}
+
+	@Test
+	public void testScore() throws IOException {
+		final ReplayExpectations expectations = parse(SHOTS);
+
+		final Score score = expectations.score(Arrays.asList(new Shot(ShotColor.GREEN, 102, 198, 0, 2),
+				new Shot(ShotColor.GREEN, 11, 9, 0, 2), new Shot(ShotColor.RED, 400, 400, 0, 2)));
+
+		assertEquals(2, score.getRequiredShots());
+		assertEquals(1, score.getFoundRequired());
+		assertEquals(1, score.getMissedRequired());
+		assertEquals(1, score.getFoundOptional());
+		assertEquals(1, score.getFalsePositives());
+		assertEquals(0, score.getWrongColor());
+		assertFalse(score.isAccurate());
+	}
+
+	@Test
+	public void testScoreWrongColor() throws IOException {
+		final ReplayExpectations expectations = parse("required GREEN 100 200\n");
+
+		final Score score = expectations.score(Arrays.asList(new Shot(ShotColor.RED, 100, 200, 0, 2)));
+
+		assertEquals(1, score.getFoundRequired());
+		assertEquals(1, score.getWrongColor());
+		assertTrue(score.isAccurate());
+	}
+
+	@Test
+	public void testSectorsEnabledByDefault() throws IOException {
+		for (final boolean[] row : parse(SHOTS).getSectorStatuses()) {
+			for (final boolean enabled : row)
+				assertTrue(enabled);
+		}
+	}
+
+	@Test
+	public void testDisableSector() throws IOException {
+		final ReplayExpectations expectations = parse("disable-sector 0 1\ndisable-sector 2 2\n");
+		final boolean[][] sectorStatuses = expectations.getSectorStatuses();
+
+		assertFalse(sectorStatuses[0][1]);
+		assertFalse(sectorStatuses[2][2]);
+		assertTrue(sectorStatuses[0][0]);
+		assertTrue(sectorStatuses[1][1]);
+
+		// Callers get their own copy
+		sectorStatuses[0][0] = false;
+		assertTrue(expectations.getSectorStatuses()[0][0]);
+	}
+
+	@Test
+	public void testDisableSectorOutOfRange() throws IOException {
+		try {
+			parse("disable-sector 3 0\n");
+			fail("Sector row outside the grid was accepted");
+		} catch (final IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("test.mp4.shots:1:"));
+		}
+	}
+
+	@Test
+	public void testForClipLoadsEveryScenario() throws IOException {
+		final File clip = folder.newFile("clip.mp4");
+		Files.write(new File(folder.getRoot(), "clip.mp4.shots").toPath(),
+				"required RED 1 2\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(folder.getRoot(), "clip.mp4.limited-bounds.shots").toPath(),
+				"projection 1 2 3 4\ndisable-sector 0 0\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(folder.getRoot(), "other.mp4.shots").toPath(),
+				"required RED 5 6\n".getBytes(StandardCharsets.UTF_8));
+
+		final List<ReplayExpectations> scenarios = ReplayExpectations.forClip(clip);
+
+		assertEquals(2, scenarios.size());
+		assertFalse(scenarios.get(0).getScenario().isPresent());
+		assertEquals(1, scenarios.get(0).getRequiredShots().size());
+		assertEquals(Optional.of("limited-bounds"), scenarios.get(1).getScenario());
+		assertTrue(scenarios.get(1).getProjectionBounds().isPresent());
+		assertFalse(scenarios.get(1).getSectorStatuses()[0][0]);
+	}
+
+	@Test
+	public void testForClipWithoutShotsFile() throws IOException {
+		assertTrue(ReplayExpectations.forClip(folder.newFile("clip.mp4")).isEmpty());
+	}
+}
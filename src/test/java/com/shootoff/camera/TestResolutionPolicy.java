@@ -0,0 +1,129 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResolutionPolicy {
+	private static final Dimension HIGH = new Dimension(1280, 720);
+	private static final Dimension MEDIUM = new Dimension(640, 480);
+	private static final Dimension LOW = new Dimension(320, 240);
+	private static final List<Dimension> RESOLUTIONS = Arrays.asList(HIGH, MEDIUM, LOW);
+
+	private static final int WARMUP_FRAMES = 10;
+	private static final int SETTLE_FRAMES = 5;
+
+	// 30 FPS target
+	private static final long VERY_FAST_FRAME = 5_000_000; // ns
+	private static final long FAST_FRAME = 10_000_000; // ns
+	private static final long MODERATE_FRAME = 20_000_000; // ns
+	private static final long SLOW_FRAME = 50_000_000; // ns
+
+	private ResolutionPolicy policy;
+
+	@Before
+	public void setUp() {
+		policy = new ResolutionPolicy("Test", RESOLUTIONS, 30, WARMUP_FRAMES, SETTLE_FRAMES);
+	}
+
+	private Optional<Dimension> recordFrames(Dimension resolution, int count, long processingTime) {
+		Optional<Dimension> change = Optional.empty();
+
+		for (int i = 0; i < count && !change.isPresent(); i++) {
+			change = policy.recordFrame(resolution.width, resolution.height, processingTime);
+		}
+
+		return change;
+	}
+
+	@Test
+	public void testSettlesWhenTargetIsSustained() {
+		assertEquals(HIGH, policy.getStartingResolution());
+
+		assertFalse(recordFrames(HIGH, SETTLE_FRAMES + WARMUP_FRAMES, FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testStepsDownUntilTargetIsSustained() {
+		assertEquals(Optional.of(MEDIUM), recordFrames(HIGH, SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME));
+		assertFalse(policy.isSettled());
+
+		assertEquals(Optional.of(LOW), recordFrames(MEDIUM, SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME));
+
+		assertFalse(recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testSlowFramesWhileSettlingAreIgnored() {
+		assertFalse(recordFrames(HIGH, SETTLE_FRAMES, SLOW_FRAME * 10).isPresent());
+
+		assertFalse(recordFrames(HIGH, WARMUP_FRAMES, FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testSettlesAtLowestResolution() {
+		assertFalse(recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testSettlesIfCameraDoesNotSwitch() {
+		assertEquals(Optional.of(MEDIUM), recordFrames(HIGH, SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME));
+
+		// Frames keep arriving at the old resolution
+		assertFalse(recordFrames(HIGH, WARMUP_FRAMES, SLOW_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testUnlistedResolutionStepsToNextLower() {
+		// E.g. a camera that opened at a resolution it picked itself
+		assertEquals(Optional.of(MEDIUM),
+				recordFrames(new Dimension(800, 600), SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME));
+	}
+
+	@Test
+	public void testStepsUpWithHeadroom() {
+		// A camera that opened below the resolution asked for, with detection
+		// fast enough for four times the pixels
+		assertEquals(Optional.of(MEDIUM), recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, VERY_FAST_FRAME));
+		assertFalse(policy.isSettled());
+
+		// 50 FPS here would only be about 17 FPS at the higher resolution
+		assertFalse(recordFrames(MEDIUM, SETTLE_FRAMES + WARMUP_FRAMES, MODERATE_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testNoStepUpWithoutHeadroom() {
+		// 100 FPS, but only 25 FPS at four times the pixels
+		assertFalse(recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testNoStepUpToResolutionThatWasTooSlow() {
+		assertEquals(Optional.of(LOW), recordFrames(MEDIUM, SETTLE_FRAMES + WARMUP_FRAMES, SLOW_FRAME));
+
+		// Plenty of headroom, but the higher resolution was already too slow
+		assertFalse(recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, VERY_FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+
+	@Test
+	public void testSettlesIfCameraDoesNotStepUp() {
+		assertEquals(Optional.of(MEDIUM), recordFrames(LOW, SETTLE_FRAMES + WARMUP_FRAMES, VERY_FAST_FRAME));
+
+		assertFalse(recordFrames(LOW, WARMUP_FRAMES, VERY_FAST_FRAME).isPresent());
+		assertTrue(policy.isSettled());
+	}
+}
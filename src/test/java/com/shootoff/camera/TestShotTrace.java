@@ -0,0 +1,69 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.shootoff.camera.ShotTrace.Hop;
+
+public class TestShotTrace {
+	private static final long MS = 1000000;
+
+	@Test
+	public void testLatenciesAreMeasuredFromCapture() {
+		final ShotTrace trace = new ShotTrace();
+		trace.mark(Hop.CAPTURED, 100 * MS);
+		trace.mark(Hop.DETECTED, 130 * MS);
+		trace.mark(Hop.RENDERED, 180 * MS);
+
+		assertEquals(30 * MS, trace.getLatency(Hop.DETECTED).getAsLong());
+		assertEquals(80 * MS, trace.getLatency(Hop.RENDERED).getAsLong());
+		assertFalse(trace.getLatency(Hop.HIT_TESTED).isPresent());
+	}
+
+	@Test
+	public void testLatenciesFallBackToDetection() {
+		final ShotTrace trace = new ShotTrace();
+		trace.mark(Hop.DETECTED, 130 * MS);
+		trace.mark(Hop.PROCESSED, 135 * MS);
+
+		assertEquals(5 * MS, trace.getLatency(Hop.PROCESSED).getAsLong());
+	}
+
+	@Test
+	public void testFirstMarkWins() {
+		final ShotTrace trace = new ShotTrace();
+		trace.mark(Hop.RENDERED, 10 * MS);
+		trace.mark(Hop.RENDERED, 20 * MS);
+
+		assertEquals(10 * MS, trace.getTime(Hop.RENDERED).getAsLong());
+	}
+
+	@Test
+	public void testStatsRecordMarkedHops() {
+		final ShotLatencyStats cameraStats = new ShotLatencyStats("Camera");
+		final ShotLatencyStats exerciseStats = new ShotLatencyStats("Exercise");
+
+		final ShotTrace trace = new ShotTrace();
+		trace.mark(Hop.CAPTURED, 100 * MS);
+		trace.reportTo(cameraStats);
+		trace.mark(Hop.DETECTED, 120 * MS);
+		trace.mark(Hop.HIT_TESTED, 125 * MS);
+
+		// Hops marked before the exercise got the shot are reported too
+		trace.reportTo(exerciseStats);
+		trace.mark(Hop.EXERCISE_NOTIFIED, 140 * MS);
+
+		for (final ShotLatencyStats stats : new ShotLatencyStats[] { cameraStats, exerciseStats }) {
+			assertEquals(0, stats.getSnapshot(Hop.CAPTURED).getCount());
+			assertEquals(1, stats.getSnapshot(Hop.DETECTED).getCount());
+			assertEquals(20 * MS, stats.getSnapshot(Hop.DETECTED).getMax());
+			assertEquals(1, stats.getSnapshot(Hop.EXERCISE_NOTIFIED).getCount());
+			assertEquals(40 * MS, stats.getSnapshot(Hop.EXERCISE_NOTIFIED).getMax());
+			assertEquals(0, stats.getSnapshot(Hop.RENDERED).getCount());
+		}
+
+		assertTrue(cameraStats.formatReport().contains(Hop.HIT_TESTED.getDescription()));
+		assertFalse(cameraStats.formatReport().contains(Hop.RENDERED.getDescription()));
+	}
+}
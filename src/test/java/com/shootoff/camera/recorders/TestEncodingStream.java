@@ -0,0 +1,298 @@
+package com.shootoff.camera.recorders;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.FramePool;
+import com.shootoff.camera.FrameRing.DropPolicy;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.video.IConverter;
+
+public class TestEncodingStream {
+	private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+	private final List<BufferedImage> convertedImages = Collections.synchronizedList(new ArrayList<>());
+	private final List<FakeConverter> converters = Collections.synchronizedList(new ArrayList<>());
+
+	private final CountDownLatch encoding = new CountDownLatch(1);
+	private final CountDownLatch encoderReleased = new CountDownLatch(1);
+
+	private EncoderService encoderService;
+
+	/**
+	 * Records the images it converts instead of creating Xuggler pictures.
+	 */
+	private class FakeConverter implements IConverter {
+		private final int width;
+		private final int height;
+		private volatile boolean deleted = false;
+
+		FakeConverter(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public String getDescriptor() {
+			return "fake";
+		}
+
+		@Override
+		public IPixelFormat.Type getPictureType() {
+			return IPixelFormat.Type.YUV420P;
+		}
+
+		@Override
+		public int getImageType() {
+			return BufferedImage.TYPE_3BYTE_BGR;
+		}
+
+		@Override
+		public boolean willResample() {
+			return false;
+		}
+
+		@Override
+		public IVideoPicture toPicture(BufferedImage image, long timestamp) {
+			assertFalse(deleted);
+			assertEquals(width, image.getWidth());
+			assertEquals(height, image.getHeight());
+
+			convertedImages.add(image);
+			return null;
+		}
+
+		@Override
+		public BufferedImage toImage(IVideoPicture picture) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void delete() {
+			deleted = true;
+		}
+	}
+
+	/**
+	 * Holds the first picture until {@link #encoderReleased} is counted down
+	 * so that frames queue up behind it.
+	 */
+	private class BlockingEncoder implements FrameEncoder {
+		private final boolean isBlocking;
+
+		BlockingEncoder(boolean isBlocking) {
+			this.isBlocking = isBlocking;
+		}
+
+		@Override
+		public void encode(IVideoPicture picture) {
+			events.add("encode");
+
+			if (isBlocking) {
+				encoding.countDown();
+
+				try {
+					encoderReleased.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			events.add("close");
+		}
+	}
+
+	private EncoderService createService(int queueCapacity, DropPolicy dropPolicy) {
+		encoderService = new EncoderService(queueCapacity, dropPolicy, (width, height) -> {
+			final FakeConverter converter = new FakeConverter(width, height);
+			converters.add(converter);
+			return converter;
+		});
+
+		return encoderService;
+	}
+
+	@After
+	public void tearDown() {
+		encoderReleased.countDown();
+		if (encoderService != null) encoderService.close();
+	}
+
+	private static BufferedImage makeImage(int width, int height) {
+		return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+	}
+
+	private List<BufferedImage> offerWhileEncoderIsBlocked(DropPolicy dropPolicy, List<Boolean> accepted)
+			throws InterruptedException {
+		final EncodingStream stream = createService(2, dropPolicy).open("Test", new BlockingEncoder(true));
+		final List<BufferedImage> images = Arrays.asList(makeImage(4, 4), makeImage(4, 4), makeImage(4, 4),
+				makeImage(4, 4));
+
+		accepted.add(stream.offer(images.get(0)));
+		assertTrue(encoding.await(10, TimeUnit.SECONDS));
+
+		for (final BufferedImage image : images.subList(1, images.size()))
+			accepted.add(stream.offer(image));
+
+		assertEquals(1, stream.getDroppedCount());
+		assertEquals(2, stream.getQueueDepth());
+
+		encoderReleased.countDown();
+		encoderService.close(stream);
+
+		assertEquals(3, stream.getEncodedCount());
+
+		return images;
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		final List<Boolean> accepted = new ArrayList<>();
+		final List<BufferedImage> images = offerWhileEncoderIsBlocked(DropPolicy.DROP_OLDEST, accepted);
+
+		assertEquals(Arrays.asList(true, true, true, false), accepted);
+		assertEquals(Arrays.asList(images.get(0), images.get(2), images.get(3)), convertedImages);
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+		final List<Boolean> accepted = new ArrayList<>();
+		final List<BufferedImage> images = offerWhileEncoderIsBlocked(DropPolicy.DROP_NEWEST, accepted);
+
+		assertEquals(Arrays.asList(true, true, true, false), accepted);
+		assertEquals(images.subList(0, 3), convertedImages);
+	}
+
+	@Test
+	public void testOneConverterPerResolution() {
+		final EncodingStream stream = createService(10, DropPolicy.BLOCK).open("Test", new BlockingEncoder(false));
+
+		stream.offer(makeImage(4, 4));
+		stream.offer(makeImage(4, 4));
+		stream.offer(makeImage(8, 4));
+		stream.offer(makeImage(4, 4));
+		stream.offer(makeImage(8, 4));
+
+		encoderService.close(stream);
+
+		assertEquals(5, stream.getEncodedCount());
+		assertEquals(2, converters.size());
+		assertEquals(4, converters.get(0).width);
+		assertEquals(8, converters.get(1).width);
+
+		// The stream deletes its converters when it closes
+		for (final FakeConverter converter : converters)
+			assertTrue(converter.deleted);
+	}
+
+	@Test
+	public void testCloseDrainsQueue() throws InterruptedException {
+		final EncodingStream stream = createService(10, DropPolicy.DROP_OLDEST).open("Test",
+				new BlockingEncoder(true));
+
+		for (int i = 0; i < 5; i++)
+			assertTrue(stream.offer(makeImage(4, 4)));
+
+		assertTrue(encoding.await(10, TimeUnit.SECONDS));
+
+		final Thread closer = new Thread(() -> encoderService.close(stream));
+		closer.start();
+
+		// Closing waits for the queued frames
+		closer.join(100);
+		assertTrue(closer.isAlive());
+		assertFalse(events.contains("close"));
+
+		encoderReleased.countDown();
+		closer.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(closer.isAlive());
+
+		assertEquals(Arrays.asList("encode", "encode", "encode", "encode", "encode", "close"), events);
+		assertEquals(5, stream.getEncodedCount());
+		assertEquals(0, stream.getDroppedCount());
+		assertTrue(stream.isClosed());
+		assertTrue(converters.get(0).deleted);
+
+		// Frames offered after closing are not encoded
+		assertFalse(stream.offer(makeImage(4, 4)));
+		assertEquals(5, stream.getEncodedCount());
+	}
+
+	@Test
+	public void testFramesAreReleased() throws InterruptedException {
+		nu.pattern.OpenCV.loadShared();
+
+		final FramePool pool = new FramePool(3);
+		final EncodingStream stream = createService(1, DropPolicy.DROP_OLDEST).open("Test",
+				new BlockingEncoder(true));
+
+		final Frame encoded = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 0);
+		final Frame dropped = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 1);
+		final Frame queued = pool.createFrame(pool.borrow(4, 6, CvType.CV_8UC3), 2);
+
+		assertTrue(stream.offer(encoded));
+		assertTrue(encoding.await(10, TimeUnit.SECONDS));
+
+		// The worker converted the frame before encoding it
+		assertEquals(0, encoded.getReferenceCount());
+
+		assertTrue(stream.offer(dropped));
+		assertFalse(stream.offer(queued));
+		assertEquals(0, dropped.getReferenceCount());
+		assertEquals(1, queued.getReferenceCount());
+
+		encoderReleased.countDown();
+		encoderService.close(stream);
+
+		assertEquals(0, queued.getReferenceCount());
+		assertEquals(3, pool.getFreeCount());
+		assertEquals(2, convertedImages.size());
+		assertEquals(6, convertedImages.get(0).getWidth());
+		assertEquals(4, convertedImages.get(0).getHeight());
+
+		pool.close();
+	}
+
+	@Test
+	public void testServiceTotals() {
+		createService(10, DropPolicy.BLOCK);
+
+		final EncodingStream first = encoderService.open("First", new BlockingEncoder(false));
+		final EncodingStream second = encoderService.open("Second", new BlockingEncoder(false));
+		assertEquals(2, encoderService.getStreamCount());
+
+		first.offer(makeImage(4, 4));
+		first.offer(makeImage(4, 4));
+		second.offer(makeImage(4, 4));
+
+		encoderService.close(first);
+		assertEquals(1, encoderService.getStreamCount());
+		assertTrue(first.isClosed());
+		assertFalse(second.isClosed());
+
+		encoderService.close();
+		assertEquals(0, encoderService.getStreamCount());
+		assertTrue(second.isClosed());
+
+		// Closed streams still count towards the totals
+		assertEquals(3, encoderService.getEncodedCount());
+		assertEquals(0, encoderService.getDroppedCount());
+		assertEquals(0, encoderService.getQueueDepth());
+	}
+}
@@ -0,0 +1,123 @@
+package com.shootoff.camera.recorders;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xuggle.xuggler.IPacket;
+
+public class TestPacketRing {
+	private static final long LENGTH = 1000; // ms
+	private static final long FRAME_INTERVAL = 100; // ms
+	private static final int KEY_FRAME_INTERVAL = 5; // frames
+
+	static IPacket makePacket(long timestamp, boolean isKey) {
+		final IPacket packet = IPacket.make();
+		packet.setKeyPacket(isKey);
+		packet.setPts(timestamp);
+		packet.setDts(timestamp);
+		return packet;
+	}
+
+	private static void delete(List<IPacket> packets) {
+		for (final IPacket packet : packets)
+			packet.delete();
+	}
+
+	@Test
+	public void testWindowIsTrimmedToWholeGroupsOfPictures() {
+		final PacketRing ring = new PacketRing(LENGTH);
+
+		for (int frame = 0; frame <= 50; frame++) {
+			final long timestamp = frame * FRAME_INTERVAL;
+			ring.add(makePacket(timestamp, frame % KEY_FRAME_INTERVAL == 0));
+
+			final List<IPacket> packets = ring.copy();
+			final long oldest = packets.get(0).getDts();
+
+			assertTrue(packets.get(0).isKey());
+			assertEquals(timestamp, packets.get(packets.size() - 1).getDts());
+
+			if (timestamp >= LENGTH) {
+				// The window covers the ring's length...
+				assertTrue(String.format("%d ms of pre-roll at %d ms", timestamp - oldest, timestamp),
+						timestamp - oldest >= LENGTH);
+
+				// ...but not another whole group of pictures
+				assertTrue(String.format("%d ms of pre-roll at %d ms", timestamp - oldest, timestamp),
+						timestamp - (oldest + KEY_FRAME_INTERVAL * FRAME_INTERVAL) < LENGTH);
+			} else {
+				assertEquals(0, oldest);
+			}
+
+			assertEquals(packets.size(), ring.size());
+
+			delete(packets);
+		}
+	}
+
+	@Test
+	public void testPacketsBeforeFirstKeyFrameAreDropped() {
+		final PacketRing ring = new PacketRing(LENGTH);
+
+		ring.add(makePacket(0, false));
+		ring.add(makePacket(100, false));
+		assertEquals(0, ring.size());
+
+		ring.add(makePacket(200, true));
+		ring.add(makePacket(300, false));
+		assertEquals(2, ring.size());
+
+		final List<IPacket> packets = ring.copy();
+		assertEquals(200, packets.get(0).getDts());
+		delete(packets);
+	}
+
+	@Test
+	public void testForkedCopyStartsOnKeyFrame() {
+		final PacketRing ring = new PacketRing(LENGTH);
+
+		// Stop in the middle of a group of pictures
+		for (int frame = 0; frame <= 32; frame++)
+			ring.add(makePacket(frame * FRAME_INTERVAL, frame % KEY_FRAME_INTERVAL == 0));
+
+		final List<IPacket> fork = ring.copy();
+
+		assertTrue(fork.get(0).isKey());
+		assertEquals(0, fork.get(0).getDts() % (KEY_FRAME_INTERVAL * FRAME_INTERVAL));
+		assertEquals(3200, fork.get(fork.size() - 1).getDts());
+
+		for (int i = 1; i < fork.size(); i++)
+			assertEquals(fork.get(i - 1).getDts() + FRAME_INTERVAL, fork.get(i).getDts());
+
+		// Trimming the ring afterwards leaves the copy alone
+		final long forkStart = fork.get(0).getDts();
+		final int forkSize = fork.size();
+
+		for (int frame = 33; frame <= 60; frame++)
+			ring.add(makePacket(frame * FRAME_INTERVAL, frame % KEY_FRAME_INTERVAL == 0));
+
+		assertEquals(forkStart, fork.get(0).getDts());
+		assertEquals(forkSize, fork.size());
+
+		delete(fork);
+	}
+
+	@Test
+	public void testClear() {
+		final PacketRing ring = new PacketRing(LENGTH);
+
+		ring.add(makePacket(0, true));
+		ring.add(makePacket(100, false));
+		ring.clear();
+
+		assertEquals(0, ring.size());
+		assertTrue(ring.copy().isEmpty());
+
+		// The ring waits for a key frame again
+		ring.add(makePacket(200, false));
+		assertEquals(0, ring.size());
+	}
+}
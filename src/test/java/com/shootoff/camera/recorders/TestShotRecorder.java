@@ -0,0 +1,131 @@
+package com.shootoff.camera.recorders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xuggle.xuggler.IPacket;
+
+public class TestShotRecorder {
+	private static final long FRAME_INTERVAL = 33; // ms
+	private static final int KEY_FRAME_INTERVAL = 15; // frames
+
+	/**
+	 * Keeps the timestamps of the packets that would have been written to the
+	 * shot video instead of writing a file.
+	 */
+	private static class CapturingShotRecorder extends ShotRecorder {
+		private final List<Long> writtenTimestamps = new ArrayList<>();
+		private boolean firstPacketKey = false;
+		private boolean containerClosed = false;
+
+		CapturingShotRecorder(List<IPacket> preRoll, long endTimestamp) {
+			super(new File("shot.mp4"), new File("shot.mp4"), null, preRoll, endTimestamp, "Test Camera");
+		}
+
+		@Override
+		boolean openContainer() {
+			return true;
+		}
+
+		@Override
+		int writeContainerPacket(IPacket packet) {
+			if (writtenTimestamps.isEmpty()) firstPacketKey = packet.isKey();
+			writtenTimestamps.add(packet.getDts());
+			return 0;
+		}
+
+		@Override
+		void closeContainer() {
+			containerClosed = true;
+		}
+	}
+
+	private static IPacket makeFrame(int frame) {
+		return TestPacketRing.makePacket(frame * FRAME_INTERVAL, frame % KEY_FRAME_INTERVAL == 0);
+	}
+
+	@Test
+	public void testTimestampsSpanPreRollAndRecordLength() {
+		final PacketRing ring = new PacketRing(ShotRecorder.RECORD_LENGTH);
+
+		// The shot happens in the middle of a group of pictures
+		final int shotFrame = 310;
+		for (int frame = 0; frame <= shotFrame; frame++)
+			ring.add(makeFrame(frame));
+
+		final long shotTimestamp = shotFrame * FRAME_INTERVAL;
+		final List<IPacket> preRoll = ring.copy();
+		final long firstTimestamp = preRoll.get(0).getDts();
+
+		final CapturingShotRecorder recorder = new CapturingShotRecorder(preRoll,
+				shotTimestamp + ShotRecorder.RECORD_LENGTH);
+
+		// Feed the recorder the way RollingRecorder does
+		int frame = shotFrame + 1;
+		while (true) {
+			final IPacket packet = makeFrame(frame++);
+
+			if (recorder.isCompleteAt(packet.getDts())) {
+				packet.delete();
+				break;
+			}
+
+			recorder.recordPacket(packet);
+			packet.delete();
+		}
+
+		assertFalse(recorder.isComplete());
+		recorder.close();
+		assertTrue(recorder.isComplete());
+		assertTrue(recorder.containerClosed);
+
+		final List<Long> written = recorder.writtenTimestamps;
+
+		assertTrue(recorder.firstPacketKey);
+		assertEquals(0, (long) written.get(0));
+
+		// Every frame from the start of the pre-roll is there once
+		for (int i = 1; i < written.size(); i++)
+			assertEquals(written.get(i - 1) + FRAME_INTERVAL, (long) written.get(i));
+
+		// The pre-roll covers RECORD_LENGTH before the shot
+		final long shotOffset = shotTimestamp - firstTimestamp;
+		assertTrue(shotOffset >= ShotRecorder.RECORD_LENGTH);
+
+		// The video ends RECORD_LENGTH after the shot, to within a frame
+		final long lastTimestamp = written.get(written.size() - 1);
+		assertTrue(String.format("Video ends at %d ms, shot at %d ms", lastTimestamp, shotOffset),
+				lastTimestamp <= shotOffset + ShotRecorder.RECORD_LENGTH);
+		assertTrue(String.format("Video ends at %d ms, shot at %d ms", lastTimestamp, shotOffset),
+				lastTimestamp > shotOffset + ShotRecorder.RECORD_LENGTH - FRAME_INTERVAL);
+	}
+
+	@Test
+	public void testCloseWritesPreRollWithoutLaterFrames() {
+		final PacketRing ring = new PacketRing(ShotRecorder.RECORD_LENGTH);
+
+		for (int frame = 0; frame < 20; frame++)
+			ring.add(makeFrame(frame));
+
+		final CapturingShotRecorder recorder = new CapturingShotRecorder(ring.copy(),
+				19 * FRAME_INTERVAL + ShotRecorder.RECORD_LENGTH);
+
+		recorder.close();
+
+		assertTrue(recorder.isComplete());
+		assertEquals(20, recorder.writtenTimestamps.size());
+		assertEquals(0, (long) recorder.writtenTimestamps.get(0));
+
+		// Nothing is written after the video is closed
+		final IPacket packet = makeFrame(20);
+		recorder.recordPacket(packet);
+		packet.delete();
+
+		assertEquals(20, recorder.writtenTimestamps.size());
+	}
+}
@@ -0,0 +1,50 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+public class TestBgrToHsv {
+	@Test
+	public void testMatchesOpenCV() {
+		nu.pattern.OpenCV.loadShared();
+
+		// Every 3rd value of each channel plus the extremes of the range
+		final int step = 3;
+		final int valuesPerChannel = (255 / step) + 2;
+		final int pixelCount = valuesPerChannel * valuesPerChannel * valuesPerChannel;
+
+		final byte[] bgr = new byte[pixelCount * 3];
+		int i = 0;
+
+		for (int b = 0; b < valuesPerChannel; b++) {
+			for (int g = 0; g < valuesPerChannel; g++) {
+				for (int r = 0; r < valuesPerChannel; r++) {
+					bgr[i++] = (byte) Math.min(b * step, 255);
+					bgr[i++] = (byte) Math.min(g * step, 255);
+					bgr[i++] = (byte) Math.min(r * step, 255);
+				}
+			}
+		}
+
+		final Mat bgrMat = new Mat(1, pixelCount, CvType.CV_8UC3);
+		bgrMat.put(0, 0, bgr);
+
+		final Mat hsvMat = new Mat();
+		Imgproc.cvtColor(bgrMat, hsvMat, Imgproc.COLOR_BGR2HSV);
+
+		final byte[] hsv = new byte[bgr.length];
+		hsvMat.get(0, 0, hsv);
+
+		for (int p = 0; p < bgr.length; p += 3) {
+			final int converted = BgrToHsv.convert(bgr[p] & 0xFF, bgr[p + 1] & 0xFF, bgr[p + 2] & 0xFF);
+
+			assertEquals(hsv[p] & 0xFF, BgrToHsv.hue(converted));
+			assertEquals(hsv[p + 1] & 0xFF, BgrToHsv.saturation(converted));
+			assertEquals(hsv[p + 2] & 0xFF, BgrToHsv.value(converted));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestDetectionMask {
+	@Test
+	public void testEmpty() {
+		final DetectionMask mask = new DetectionMask.Builder(10, 10).build();
+
+		assertTrue(mask.isEmpty());
+		assertEquals(0, mask.getPixelCount());
+
+		for (int y = 0; y < 10; y++)
+			assertEquals(mask.getRowSpanStart(y), mask.getRowSpanEnd(y));
+	}
+
+	@Test
+	public void testRectangleClipped() {
+		final DetectionMask mask = new DetectionMask.Builder(20, 10).addRectangle(-5, 2, 4, 20).build();
+
+		assertEquals(4 * 8, mask.getPixelCount());
+
+		assertTrue(mask.contains(0, 2));
+		assertTrue(mask.contains(3, 9));
+		assertFalse(mask.contains(4, 5));
+		assertFalse(mask.contains(0, 1));
+		assertFalse(mask.contains(-1, 5));
+		assertFalse(mask.contains(0, 10));
+
+		assertEquals(1, mask.getRowSpanEnd(5) - mask.getRowSpanStart(5));
+		assertEquals(0, mask.getSpanStartX(mask.getRowSpanStart(5)));
+		assertEquals(4, mask.getSpanEndX(mask.getRowSpanStart(5)));
+	}
+
+	@Test
+	public void testOverlappingRectanglesMerge() {
+		final DetectionMask mask = new DetectionMask.Builder(30, 10).addRectangle(0, 0, 10, 5)
+				.addRectangle(5, 0, 15, 5).addRectangle(20, 0, 25, 5).build();
+
+		assertEquals(20 * 5, mask.getPixelCount());
+
+		final int firstSpan = mask.getRowSpanStart(0);
+		assertEquals(2, mask.getRowSpanEnd(0) - firstSpan);
+		assertEquals(0, mask.getSpanStartX(firstSpan));
+		assertEquals(15, mask.getSpanEndX(firstSpan));
+		assertEquals(20, mask.getSpanStartX(firstSpan + 1));
+		assertEquals(25, mask.getSpanEndX(firstSpan + 1));
+	}
+
+	@Test
+	public void testPolygonSquare() {
+		final DetectionMask mask = new DetectionMask.Builder(20, 20)
+				.addPolygon(new double[] { 2, 8, 8, 2 }, new double[] { 3, 3, 9, 9 }).build();
+
+		// Pixel centers inside [2, 8) x [3, 9)
+		assertEquals(6 * 6, mask.getPixelCount());
+		assertTrue(mask.contains(2, 3));
+		assertTrue(mask.contains(7, 8));
+		assertFalse(mask.contains(8, 8));
+		assertFalse(mask.contains(7, 9));
+	}
+
+	@Test
+	public void testPolygonTriangle() {
+		final DetectionMask mask = new DetectionMask.Builder(20, 20)
+				.addPolygon(new double[] { 0, 10, 0 }, new double[] { 0, 0, 10 }).build();
+
+		assertTrue(mask.contains(0, 0));
+		assertTrue(mask.contains(1, 1));
+		assertFalse(mask.contains(9, 9));
+		assertFalse(mask.contains(15, 2));
+
+		for (int y = 0; y < 20; y++) {
+			for (int x = 0; x < 20; x++) {
+				final boolean inside = (x + 0.5) + (y + 0.5) < 10;
+				assertEquals(String.format("pixel %d %d", x, y), inside, mask.contains(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.DetectionWorkerPool;
+
+public class TestDetectionScheduler {
+	private static final int ALL_SECTORS = (1 << (JavaShotDetector.SECTOR_ROWS * JavaShotDetector.SECTOR_COLUMNS))
+			- 1;
+
+	private DetectionWorkerPool pool;
+	private DetectionScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		pool = new DetectionWorkerPool("Test", 3);
+		scheduler = new DetectionScheduler(pool.register("Test", DetectionWorkerPool.DEFAULT_PRIORITY));
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	private AtomicIntegerArray countVisits(int width, int height, int sectorMask) {
+		final AtomicIntegerArray visits = new AtomicIntegerArray(width * height);
+
+		scheduler.plan(width, height, sectorMask);
+		scheduler.run((band, startY, endY, startX, endX) -> {
+			for (int y = startY; y < endY; y++) {
+				for (int x = startX; x < endX; x++) {
+					visits.incrementAndGet(y * width + x);
+				}
+			}
+		});
+
+		return visits;
+	}
+
+	@Test
+	public void testEveryPixelVisitedOnce() {
+		// Neither dimension is divisible by the sector grid
+		final int width = 641;
+		final int height = 481;
+
+		final AtomicIntegerArray visits = countVisits(width, height, ALL_SECTORS);
+
+		for (int i = 0; i < visits.length(); i++)
+			assertEquals(1, visits.get(i));
+	}
+
+	// The sector containing coordinate i when length pixels are split into
+	// count sectors
+	private int sectorOf(int i, int length, int count) {
+		int sector = 0;
+		while (sector + 1 < count && (sector + 1) * length / count <= i)
+			sector++;
+		return sector;
+	}
+
+	@Test
+	public void testEveryPixelVisitedOnceWithoutPool() {
+		scheduler = new DetectionScheduler(null);
+
+		final AtomicIntegerArray visits = countVisits(641, 481, ALL_SECTORS);
+
+		for (int i = 0; i < visits.length(); i++)
+			assertEquals(1, visits.get(i));
+	}
+
+	@Test
+	public void testDisabledSectorsSkipped() {
+		final int width = 100;
+		final int height = 50;
+
+		// Turn off the middle sector and the whole bottom row of sectors
+		int sectorMask = ALL_SECTORS;
+		sectorMask &= ~(1 << (1 * JavaShotDetector.SECTOR_COLUMNS + 1));
+		for (int x = 0; x < JavaShotDetector.SECTOR_COLUMNS; x++)
+			sectorMask &= ~(1 << (2 * JavaShotDetector.SECTOR_COLUMNS + x));
+
+		final AtomicIntegerArray visits = countVisits(width, height, sectorMask);
+
+		for (int y = 0; y < height; y++) {
+			final int sectorY = sectorOf(y, height, JavaShotDetector.SECTOR_ROWS);
+
+			for (int x = 0; x < width; x++) {
+				final int sectorX = sectorOf(x, width, JavaShotDetector.SECTOR_COLUMNS);
+				final boolean isOn = (sectorMask & (1 << (sectorY * JavaShotDetector.SECTOR_COLUMNS + sectorX))) != 0;
+
+				assertEquals(String.format("pixel %d %d", x, y), isOn ? 1 : 0, visits.get(y * width + x));
+			}
+		}
+	}
+
+	@Test
+	public void testNoSectors() {
+		assertEquals(0, scheduler.plan(640, 480, 0));
+
+		final AtomicIntegerArray visits = countVisits(640, 480, 0);
+
+		for (int i = 0; i < visits.length(); i++)
+			assertEquals(0, visits.get(i));
+	}
+
+	@Test
+	public void testReplanOnChange() {
+		final int bands = scheduler.plan(640, 480, ALL_SECTORS);
+
+		assertTrue(bands >= JavaShotDetector.SECTOR_ROWS);
+		assertEquals(bands, scheduler.plan(640, 480, ALL_SECTORS));
+		assertTrue(scheduler.plan(1280, 720, ALL_SECTORS) > 0);
+
+		final AtomicIntegerArray visits = countVisits(1280, 720, ALL_SECTORS);
+
+		for (int i = 0; i < visits.length(); i++)
+			assertEquals(1, visits.get(i));
+	}
+}
@@ -0,0 +1,113 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+public class TestDiagnosticOverlay {
+	private static final int WIDTH = 8;
+	private static final int HEIGHT = 6;
+
+	private DiagnosticOverlay overlay;
+
+	@Before
+	public void setUp() {
+		nu.pattern.OpenCV.loadShared();
+
+		overlay = new DiagnosticOverlay(new Scalar(255, 0, 0), new Scalar(128));
+	}
+
+	private byte[] pixel(Mat mat, int x, int y) {
+		final byte[] pixel = new byte[mat.channels()];
+		mat.get(y, x, pixel);
+		return pixel;
+	}
+
+	@Test
+	public void testPaintMarkedPixels() {
+		final Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC3);
+
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		pixels.add(1, 2);
+		pixels.add(7, 5);
+
+		overlay.reset(WIDTH, HEIGHT);
+		overlay.mark(pixels);
+		assertTrue(overlay.isMarked());
+		overlay.paint(frame);
+
+		assertArrayEquals(new byte[] { (byte) 255, 0, 0 }, pixel(frame, 1, 2));
+		assertArrayEquals(new byte[] { (byte) 255, 0, 0 }, pixel(frame, 7, 5));
+		assertArrayEquals(new byte[] { 0, 0, 0 }, pixel(frame, 2, 1));
+	}
+
+	@Test
+	public void testResetUnmarks() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		pixels.add(3, 3);
+
+		overlay.reset(WIDTH, HEIGHT);
+		overlay.mark(pixels);
+		overlay.reset(WIDTH, HEIGHT);
+		assertFalse(overlay.isMarked());
+
+		pixels.clear();
+		pixels.add(4, 4);
+		overlay.mark(pixels);
+
+		final Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC3);
+		overlay.paint(frame);
+
+		assertArrayEquals(new byte[] { 0, 0, 0 }, pixel(frame, 3, 3));
+		assertArrayEquals(new byte[] { (byte) 255, 0, 0 }, pixel(frame, 4, 4));
+	}
+
+	@Test
+	public void testPaintBlocksOnGreyFrame() {
+		final Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC1);
+
+		final PackedPixelBuffer blocks = new PackedPixelBuffer();
+		blocks.add(3, 2);
+
+		overlay.reset(WIDTH, HEIGHT);
+		overlay.markBlocks(blocks, 2);
+		overlay.paint(frame);
+
+		// The block is clipped to the frame
+		assertArrayEquals(new byte[] { (byte) 128 }, pixel(frame, 6, 4));
+		assertArrayEquals(new byte[] { (byte) 128 }, pixel(frame, 7, 5));
+		assertArrayEquals(new byte[] { 0 }, pixel(frame, 5, 4));
+		assertArrayEquals(new byte[] { 0 }, pixel(frame, 6, 3));
+	}
+
+	@Test
+	public void testPaintSubmat() {
+		final Mat feed = Mat.zeros(HEIGHT + 2, WIDTH + 2, CvType.CV_8UC3);
+		final Mat frame = feed.submat(1, HEIGHT + 1, 1, WIDTH + 1);
+
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		pixels.add(0, 0);
+
+		overlay.reset(WIDTH, HEIGHT);
+		overlay.mark(pixels);
+		overlay.paint(frame);
+
+		assertArrayEquals(new byte[] { (byte) 255, 0, 0 }, pixel(feed, 1, 1));
+		assertArrayEquals(new byte[] { 0, 0, 0 }, pixel(feed, 0, 0));
+	}
+
+	@Test
+	public void testUnmarkedLeavesFrameAlone() {
+		final Mat frame = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC3);
+
+		overlay.reset(WIDTH, HEIGHT);
+		overlay.paint(frame);
+
+		assertEquals(0, Core.countNonZero(frame.reshape(1)));
+	}
+}
@@ -0,0 +1,125 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.MockCamera;
+import com.shootoff.camera.ReplayCameraView;
+import com.shootoff.camera.Shot;
+import com.shootoff.camera.ShotColor;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestJavaShotDetector {
+	private static final long FRAME_INTERVAL = 33; // ms
+
+	// Enough frames to initialize the detector's filters
+	private static final int SETTLE_FRAMES = 10;
+
+	private static final Point DOT_CENTER = new Point(301, 203);
+	private static final int DOT_RADIUS = 4;
+
+	private int frameCount = 0;
+
+	private CameraManager cameraManager;
+	private ReplayCameraView cameraView;
+	private JavaShotDetector detector;
+
+	@Before
+	public void setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+
+		nu.pattern.OpenCV.loadShared();
+
+		new Configuration(new String[] { "--headless" });
+
+		// The detector decides when its filters are initialized from the
+		// camera's frame count, which is advanced by each frame fed below
+		final MockCamera camera = new MockCamera() {
+			@Override
+			public int getFrameCount() {
+				return frameCount;
+			}
+		};
+
+		cameraView = new ReplayCameraView();
+		cameraManager = new CameraManager(camera, null, cameraView);
+
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+		for (final boolean[] row : sectorStatuses)
+			Arrays.fill(row, true);
+		cameraManager.setSectorStatuses(sectorStatuses);
+
+		detector = new JavaShotDetector(cameraManager, cameraView);
+	}
+
+	@After
+	public void tearDown() {
+		detector.close();
+		cameraManager.close();
+	}
+
+	private void process(Mat mat) {
+		frameCount++;
+		detector.processFrame(new Frame(mat, frameCount * FRAME_INTERVAL), true);
+	}
+
+	private Mat background(int type, Scalar color) {
+		return new Mat(cameraManager.getFeedHeight(), cameraManager.getFeedWidth(), type, color);
+	}
+
+	private void assertDetectedAsInfrared() {
+		final List<Shot> shots = cameraView.getShots();
+
+		assertEquals(1, shots.size());
+		assertEquals(ShotColor.INFRARED, shots.get(0).getColor());
+		assertEquals(DOT_CENTER.x, shots.get(0).getX(), 1.0);
+		assertEquals(DOT_CENTER.y, shots.get(0).getY(), 1.0);
+	}
+
+	@Test
+	public void testSingleChannelFrames() {
+		// A monochrome camera delivers one channel without luminance only
+		// mode being turned on
+		assertFalse(detector.isLuminanceOnly());
+
+		for (int i = 0; i < SETTLE_FRAMES; i++)
+			process(background(CvType.CV_8UC1, new Scalar(30)));
+
+		final Mat frame = background(CvType.CV_8UC1, new Scalar(30));
+		Core.circle(frame, DOT_CENTER, DOT_RADIUS, new Scalar(255), -1);
+		process(frame);
+
+		assertDetectedAsInfrared();
+	}
+
+	@Test
+	public void testLuminanceOnlyColorFrames() {
+		detector.setLuminanceOnly(true);
+
+		for (int i = 0; i < SETTLE_FRAMES; i++)
+			process(background(CvType.CV_8UC3, new Scalar(30, 30, 30)));
+
+		// Saturation is ignored, thus a bright red dot is as bright as a
+		// white one
+		final Mat frame = background(CvType.CV_8UC3, new Scalar(30, 30, 30));
+		Core.circle(frame, DOT_CENTER, DOT_RADIUS, new Scalar(0, 0, 255), -1);
+		process(frame);
+
+		assertDetectedAsInfrared();
+	}
+}
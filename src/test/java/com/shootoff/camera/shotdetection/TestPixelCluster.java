@@ -0,0 +1,96 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import com.shootoff.camera.ShotColor;
+
+public class TestPixelCluster {
+	private static final int WIDTH = 20;
+	private static final int HEIGHT = 16;
+
+	private PixelFilterState filterState;
+
+	@Before
+	public void setUp() {
+		nu.pattern.OpenCV.loadShared();
+
+		filterState = new PixelFilterState(WIDTH, HEIGHT);
+	}
+
+	// Alternate saturated pixels of the given hue with dull, bright pixels so
+	// that the saturated pixels are the ones used to classify the color
+	private Mat createHSVFrame(int hue) {
+		final Mat frame = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if ((x + y) % 2 == 0)
+					frame.put(y, x, new byte[] { (byte) hue, (byte) 200, (byte) 100 });
+				else
+					frame.put(y, x, new byte[] { 0, (byte) 50, (byte) 250 });
+			}
+		}
+
+		return frame;
+	}
+
+	private PixelCluster createCluster(int minX, int minY, int size) {
+		final PixelCluster cluster = new PixelCluster();
+
+		for (int y = minY; y < minY + size; y++) {
+			for (int x = minX; x < minX + size; x++) {
+				final Pixel pixel = new Pixel(x, y);
+
+				final boolean isInterior = x > minX && x < minX + size - 1 && y > minY && y < minY + size - 1;
+				pixel.setConnectedness(isInterior ? 8 : 3);
+
+				cluster.add(pixel);
+			}
+		}
+
+		return cluster;
+	}
+
+	@Test
+	public void testRedCluster() {
+		final PixelCluster cluster = createCluster(8, 6, 3);
+
+		assertEquals(ShotColor.RED, cluster.getColor(createHSVFrame(0), filterState).get());
+	}
+
+	@Test
+	public void testGreenCluster() {
+		final PixelCluster cluster = createCluster(8, 6, 3);
+
+		assertEquals(ShotColor.GREEN, cluster.getColor(createHSVFrame(60), filterState).get());
+	}
+
+	@Test
+	public void testClusterInCorner() {
+		// The pixels around the cluster are clipped to the frame
+		final PixelCluster cluster = createCluster(WIDTH - 3, HEIGHT - 3, 3);
+
+		assertEquals(ShotColor.GREEN, cluster.getColor(createHSVFrame(60), filterState).get());
+	}
+
+	@Test
+	public void testClusterInSubmat() {
+		final Mat frame = createHSVFrame(60);
+		final PixelCluster cluster = createCluster(2, 2, 3);
+
+		// The frame the cluster was found in is only part of the feed
+		final Mat submat = frame.submat(4, HEIGHT, 5, WIDTH);
+
+		assertEquals(ShotColor.GREEN, cluster.getColor(submat, filterState).get());
+	}
+
+	@Test
+	public void testEmptyCluster() {
+		assertEquals(0, new PixelCluster().getColorDifference(createHSVFrame(60), filterState));
+	}
+}
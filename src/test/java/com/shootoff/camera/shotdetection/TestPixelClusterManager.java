@@ -0,0 +1,185 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPixelClusterManager {
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+	private static final int MINIMUM_SHOT_DIMENSION = 7;
+
+	private PixelClusterManager pixelClusterManager;
+
+	@Before
+	public void setUp() {
+		pixelClusterManager = new PixelClusterManager(WIDTH, HEIGHT);
+	}
+
+	private void addDisc(PackedPixelBuffer pixels, int centerX, int centerY, int radius) {
+		for (int y = centerY - radius; y <= centerY + radius; y++) {
+			for (int x = centerX - radius; x <= centerX + radius; x++) {
+				final int dx = x - centerX;
+				final int dy = y - centerY;
+
+				if (dx * dx + dy * dy <= radius * radius) pixels.add(x, y);
+			}
+		}
+	}
+
+	@Test
+	public void testNoPixels() {
+		assertTrue(pixelClusterManager.clusterPixels(new PackedPixelBuffer(), MINIMUM_SHOT_DIMENSION).isEmpty());
+	}
+
+	@Test
+	public void testSingleDisc() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		addDisc(pixels, 20, 15, 3);
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(1, clusters.size());
+
+		final PixelCluster cluster = clusters.iterator().next();
+		assertEquals(pixels.size(), cluster.size());
+		assertEquals(20, cluster.centerPixelX, 0.001);
+		assertEquals(15, cluster.centerPixelY, 0.001);
+
+		for (final Pixel pixel : cluster) {
+			if (pixel.x == 20 && pixel.y == 15) assertEquals(8, pixel.getConnectedness());
+		}
+	}
+
+	@Test
+	public void testSeparateDiscs() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		addDisc(pixels, 10, 10, 3);
+		addDisc(pixels, 40, 30, 3);
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(2, clusters.size());
+
+		boolean foundFirst = false;
+		boolean foundSecond = false;
+
+		for (final PixelCluster cluster : clusters) {
+			if (Math.round(cluster.centerPixelX) == 10 && Math.round(cluster.centerPixelY) == 10) foundFirst = true;
+			if (Math.round(cluster.centerPixelX) == 40 && Math.round(cluster.centerPixelY) == 30) foundSecond = true;
+		}
+
+		assertTrue(foundFirst);
+		assertTrue(foundSecond);
+	}
+
+	@Test
+	public void testUnorderedPixelsJoinOneCluster() {
+		// Pixels arrive in sector order rather than raster order, so a
+		// region's pixels are interleaved with other rows
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+
+		for (int x = 30; x >= 26; x--) {
+			for (int y = 24; y >= 20; y--) {
+				pixels.add(x, y);
+			}
+		}
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(1, clusters.size());
+		assertEquals(25, clusters.iterator().next().size());
+	}
+
+	@Test
+	public void testFirstPixelSetsBothBounds() {
+		// The square's first pixel is its bottom-right corner, thus it is a
+		// new minimum and a new maximum at once. Updating only the minimum
+		// would leave the maximum unset and the square's ratio wrong.
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		pixels.add(34, 24);
+
+		for (int y = 20; y <= 24; y++) {
+			for (int x = 30; x <= 34; x++) {
+				if (x != 34 || y != 24) pixels.add(x, y);
+			}
+		}
+
+		final ConnectedComponentLabeler labeler = new ConnectedComponentLabeler(WIDTH, HEIGHT);
+
+		assertEquals(1, labeler.label(pixels));
+		assertEquals(30, labeler.getMinX(0));
+		assertEquals(20, labeler.getMinY(0));
+		assertEquals(34, labeler.getMaxX(0));
+		assertEquals(24, labeler.getMaxY(0));
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(1, clusters.size());
+		assertEquals(32, clusters.iterator().next().centerPixelX, 0.001);
+		assertEquals(22, clusters.iterator().next().centerPixelY, 0.001);
+	}
+
+	@Test
+	public void testSparseNoiseIsNotAShot() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+
+		for (int y = 0; y < HEIGHT; y += 2) {
+			for (int x = 0; x < WIDTH; x += 2) {
+				pixels.add(x, y);
+			}
+		}
+
+		assertTrue(pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION).isEmpty());
+	}
+
+	@Test
+	public void testLineIsNotAShot() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+
+		for (int x = 5; x < 45; x++) {
+			pixels.add(x, 20);
+			pixels.add(x, 21);
+		}
+
+		assertTrue(pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION).isEmpty());
+	}
+
+	@Test
+	public void testFrameEdges() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+
+		for (int y = HEIGHT - 5; y < HEIGHT; y++) {
+			for (int x = WIDTH - 5; x < WIDTH; x++) {
+				pixels.add(x, y);
+			}
+		}
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(1, clusters.size());
+		assertEquals(WIDTH - 3, clusters.iterator().next().centerPixelX, 0.5);
+	}
+
+	@Test
+	public void testReuseAcrossFramesAndResize() {
+		final PackedPixelBuffer pixels = new PackedPixelBuffer();
+		addDisc(pixels, 20, 15, 3);
+
+		assertEquals(1, pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION).size());
+		assertEquals(1, pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION).size());
+
+		pixelClusterManager.updateFrameSize(WIDTH * 2, HEIGHT * 2);
+
+		pixels.clear();
+		addDisc(pixels, 100, 80, 3);
+
+		final Set<PixelCluster> clusters = pixelClusterManager.clusterPixels(pixels, MINIMUM_SHOT_DIMENSION);
+
+		assertEquals(1, clusters.size());
+		assertEquals(100, clusters.iterator().next().centerPixelX, 0.001);
+	}
+}
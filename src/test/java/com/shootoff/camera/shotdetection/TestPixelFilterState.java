@@ -0,0 +1,163 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestPixelFilterState {
+	// Neither dimension is divisible by the sector grid
+	private static final int WIDTH = 641;
+	private static final int HEIGHT = 481;
+
+	private static void fill(PixelFilterState state, int lum, int colorDistance) {
+		final int size = state.getWidth() * state.getHeight();
+		Arrays.fill(state.lumsMovingAverage(), 0, size, lum);
+		Arrays.fill(state.colorDistanceFromRed(), 0, size, colorDistance);
+	}
+
+	private static void assertUninitialized(PixelFilterState state) {
+		for (int y = 0; y < state.getHeight(); y++) {
+			for (int x = 0; x < state.getWidth(); x++) {
+				assertEquals(PixelFilterState.UNINITIALIZED, state.getLumsMovingAverage(x, y));
+				assertEquals(0, state.getColorDistanceFromRed(x, y));
+			}
+		}
+	}
+
+	// The first column of sector x when width pixels are split like the
+	// detection scheduler splits them
+	private static int sectorStart(int x, int width) {
+		return x * width / JavaShotDetector.SECTOR_COLUMNS;
+	}
+
+	@Test
+	public void testIndexIsRowMajor() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+
+		assertEquals(0, state.index(0, 0));
+		assertEquals(WIDTH - 1, state.index(WIDTH - 1, 0));
+		assertEquals(WIDTH, state.index(0, 1));
+		assertEquals(WIDTH * HEIGHT - 1, state.index(WIDTH - 1, HEIGHT - 1));
+
+		// Every pixel has its own slot
+		final int[] lums = state.lumsMovingAverage();
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				lums[state.index(x, y)] = y * WIDTH + x;
+			}
+		}
+
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				assertEquals(y * WIDTH + x, state.getLumsMovingAverage(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testNewStateUninitialized() {
+		assertUninitialized(new PixelFilterState(WIDTH, HEIGHT));
+	}
+
+	@Test
+	public void testResizeResetsFilters() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+		fill(state, 1000, 50);
+
+		state.resize(WIDTH, HEIGHT);
+
+		assertUninitialized(state);
+	}
+
+	@Test
+	public void testShrinkReusesArrays() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+		fill(state, 1000, 50);
+
+		final int[] lums = state.lumsMovingAverage();
+		final int[] colorDistances = state.colorDistanceFromRed();
+
+		state.resize(WIDTH / 2, HEIGHT / 2);
+
+		assertEquals(WIDTH / 2, state.getWidth());
+		assertEquals(HEIGHT / 2, state.getHeight());
+		assertSame(lums, state.lumsMovingAverage());
+		assertSame(colorDistances, state.colorDistanceFromRed());
+
+		// Indexes follow the new width
+		assertEquals(WIDTH / 2, state.index(0, 1));
+
+		assertUninitialized(state);
+	}
+
+	@Test
+	public void testGrowAfterShrink() {
+		final PixelFilterState state = new PixelFilterState(WIDTH / 2, HEIGHT / 2);
+		fill(state, 1000, 50);
+
+		state.resize(WIDTH, HEIGHT);
+
+		assertTrue(state.lumsMovingAverage().length >= WIDTH * HEIGHT);
+		assertTrue(state.colorDistanceFromRed().length >= WIDTH * HEIGHT);
+		assertUninitialized(state);
+	}
+
+	@Test
+	public void testColorFiltersAllocatedOnFirstUse() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+
+		// Resizing before the color filters are used leaves them unallocated
+		state.resize(WIDTH * 2, HEIGHT * 2);
+
+		final int[] colorDistances = state.colorDistanceFromRed();
+		assertEquals(state.lumsMovingAverage().length, colorDistances.length);
+		assertSame(colorDistances, state.colorDistanceFromRed());
+	}
+
+	@Test
+	public void testResetSectorSpans() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+		fill(state, 1000, 50);
+
+		// Reset the middle sector's span of the last row, whose ends fall
+		// between multiples of the sector grid
+		final int y = HEIGHT - 1;
+		final int startX = sectorStart(1, WIDTH);
+		final int endX = sectorStart(2, WIDTH);
+		state.reset(y, startX, endX);
+
+		for (int x = 0; x < WIDTH; x++) {
+			final boolean isReset = x >= startX && x < endX;
+
+			assertEquals(isReset ? PixelFilterState.UNINITIALIZED : 1000, state.getLumsMovingAverage(x, y));
+			assertEquals(isReset ? 0 : 50, state.getColorDistanceFromRed(x, y));
+
+			// The row above is untouched
+			assertEquals(1000, state.getLumsMovingAverage(x, y - 1));
+		}
+
+		// The last sector runs to the end of the row, which ends the array
+		state.reset(y, sectorStart(2, WIDTH), WIDTH);
+		assertEquals(PixelFilterState.UNINITIALIZED, state.getLumsMovingAverage(WIDTH - 1, y));
+		assertEquals(1000, state.getLumsMovingAverage(startX - 1, y));
+	}
+
+	@Test
+	public void testResetAfterShrinkUsesNewWidth() {
+		final PixelFilterState state = new PixelFilterState(WIDTH, HEIGHT);
+
+		final int width = 319;
+		final int height = 241;
+		state.resize(width, height);
+		fill(state, 1000, 50);
+
+		state.reset(1, 0, sectorStart(1, width));
+
+		assertEquals(1000, state.getLumsMovingAverage(width - 1, 0));
+		assertEquals(PixelFilterState.UNINITIALIZED, state.getLumsMovingAverage(0, 1));
+		assertEquals(PixelFilterState.UNINITIALIZED, state.getLumsMovingAverage(sectorStart(1, width) - 1, 1));
+		assertEquals(1000, state.getLumsMovingAverage(sectorStart(1, width), 1));
+	}
+}
@@ -0,0 +1,238 @@
+package com.shootoff.camera.shotdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.DetectionMaskManager.Source;
+import com.shootoff.camera.Frame;
+import com.shootoff.camera.MockCamera;
+import com.shootoff.camera.ReplayCameraView;
+import com.shootoff.camera.Shot;
+import com.shootoff.camera.ShotColor;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+import javafx.geometry.Point2D;
+
+public class TestPyramidShotDetector {
+	private static final int DOWNSAMPLE_FACTOR = 2;
+	private static final long FRAME_INTERVAL = 33; // ms
+
+	// Enough frames to initialize the detector's filters
+	private static final int SETTLE_FRAMES = 10;
+
+	private static final Scalar BACKGROUND = new Scalar(30, 30, 30);
+
+	private int frameCount = 0;
+
+	private CameraManager cameraManager;
+	private ReplayCameraView cameraView;
+	private PyramidShotDetector detector;
+
+	@Before
+	public void setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+
+		nu.pattern.OpenCV.loadShared();
+
+		final Configuration config = new Configuration(new String[] { "--headless" });
+		config.setPyramidDownsampleFactor(DOWNSAMPLE_FACTOR);
+
+		// The detector decides when its filters are initialized from the
+		// camera's frame count, which is advanced by each frame fed below
+		final MockCamera camera = new MockCamera() {
+			@Override
+			public int getFrameCount() {
+				return frameCount;
+			}
+		};
+
+		cameraView = new ReplayCameraView();
+		cameraManager = new CameraManager(camera, null, cameraView);
+		cameraManager.setSectorStatuses(allSectors());
+
+		detector = new PyramidShotDetector(cameraManager, cameraView);
+	}
+
+	@After
+	public void tearDown() {
+		detector.close();
+		cameraManager.close();
+	}
+
+	private static boolean[][] allSectors() {
+		final boolean[][] sectorStatuses = new boolean[JavaShotDetector.SECTOR_ROWS][JavaShotDetector.SECTOR_COLUMNS];
+
+		for (int y = 0; y < JavaShotDetector.SECTOR_ROWS; y++) {
+			for (int x = 0; x < JavaShotDetector.SECTOR_COLUMNS; x++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+
+		return sectorStatuses;
+	}
+
+	private Mat background() {
+		return new Mat(cameraManager.getFeedHeight(), cameraManager.getFeedWidth(), CvType.CV_8UC3, BACKGROUND);
+	}
+
+	private void process(Mat mat) {
+		frameCount++;
+		detector.processFrame(new Frame(mat, frameCount * FRAME_INTERVAL), true);
+	}
+
+	private void settle() {
+		for (int i = 0; i < SETTLE_FRAMES; i++)
+			process(background());
+	}
+
+	@Test
+	public void testLaserDetectedAtFullResolution() {
+		settle();
+
+		// An odd position, thus the dot's center isn't on a coarse cell's
+		// boundary and has to be found at full resolution
+		final Point center = new Point(301, 203);
+
+		// An overexposed core with a red halo, like a laser dot on a webcam
+		final Mat frame = background();
+		Core.circle(frame, center, 5, new Scalar(0, 0, 255), -1);
+		Core.circle(frame, center, 3, new Scalar(255, 255, 255), -1);
+		process(frame);
+
+		final List<Shot> shots = cameraView.getShots();
+
+		assertEquals(1, shots.size());
+		assertEquals(center.x, shots.get(0).getX(), 1.0);
+		assertEquals(center.y, shots.get(0).getY(), 1.0);
+	}
+
+	@Test
+	public void testCoarseOnlySpotRejected() {
+		settle();
+
+		// A speck that is brighter than anything around it raises its
+		// coarse cell above the threshold, but it is only a few pixels at
+		// full resolution, far fewer than a shot needs
+		final Mat frame = background();
+		final Mat speck = frame.submat(200, 200 + DOWNSAMPLE_FACTOR, 300, 300 + DOWNSAMPLE_FACTOR);
+		speck.setTo(new Scalar(255, 255, 255));
+		process(frame);
+
+		// The coarse cell was flagged, because only windows around flagged
+		// cells are examined at full resolution
+		assertEquals(DOWNSAMPLE_FACTOR * DOWNSAMPLE_FACTOR, detector.getThresholdPixelCount());
+		assertTrue(detector.getThresholdPixelCount() < detector.getMinimumShotDimension());
+
+		assertTrue(cameraView.getShots().isEmpty());
+	}
+
+	@Test
+	public void testNoShotsWhileInitializing() {
+		final Mat frame = background();
+		Core.circle(frame, new Point(301, 203), 5, new Scalar(255, 255, 255), -1);
+		process(frame);
+
+		assertTrue(cameraView.getShots().isEmpty());
+	}
+
+	private Mat background(int type, Scalar color) {
+		return new Mat(cameraManager.getFeedHeight(), cameraManager.getFeedWidth(), type, color);
+	}
+
+	private void assertDetectedAsInfrared(Point center) {
+		final List<Shot> shots = cameraView.getShots();
+
+		assertEquals(1, shots.size());
+		assertEquals(ShotColor.INFRARED, shots.get(0).getColor());
+		assertEquals(center.x, shots.get(0).getX(), 1.0);
+		assertEquals(center.y, shots.get(0).getY(), 1.0);
+	}
+
+	@Test
+	public void testSingleChannelFrames() {
+		// A monochrome camera delivers one channel without luminance only
+		// mode being turned on
+		assertFalse(detector.isLuminanceOnly());
+
+		for (int i = 0; i < SETTLE_FRAMES; i++)
+			process(background(CvType.CV_8UC1, new Scalar(30)));
+
+		final Point center = new Point(301, 203);
+		final Mat frame = background(CvType.CV_8UC1, new Scalar(30));
+		Core.circle(frame, center, 4, new Scalar(255), -1);
+		process(frame);
+
+		assertDetectedAsInfrared(center);
+	}
+
+	@Test
+	public void testLuminanceOnlyColorFrames() {
+		detector.setLuminanceOnly(true);
+		settle();
+
+		// Saturation is ignored, thus a bright red dot is as bright as a
+		// white one
+		final Point center = new Point(301, 203);
+		final Mat frame = background();
+		Core.circle(frame, center, 4, new Scalar(0, 0, 255), -1);
+		process(frame);
+
+		assertDetectedAsInfrared(center);
+	}
+
+	private void limitToRegion(int minX, int minY, int maxX, int maxY) {
+		cameraManager.getDetectionMaskManager().setRegions(Arrays.asList(Arrays.asList(new Point2D(minX, minY),
+				new Point2D(maxX, minY), new Point2D(maxX, maxY), new Point2D(minX, maxY))));
+		cameraManager.getDetectionMaskManager().setSource(Source.REGIONS);
+	}
+
+	@Test
+	public void testMotionOutsideMaskIgnored() {
+		limitToRegion(0, 0, 200, 200);
+		settle();
+
+		final Mat frame = background();
+		Core.circle(frame, new Point(301, 203), 5, new Scalar(0, 0, 255), -1);
+		Core.circle(frame, new Point(301, 203), 3, new Scalar(255, 255, 255), -1);
+		process(frame);
+
+		assertEquals(0, detector.getThresholdCellCount());
+		assertTrue(cameraView.getShots().isEmpty());
+	}
+
+	@Test
+	public void testExcessiveMotionOutsideMaskIgnored() {
+		limitToRegion(0, 0, 200, 200);
+		settle();
+
+		// A flash outside the mask that would otherwise be excessive motion
+		// and hide the shot
+		final Mat frame = background();
+		frame.submat(0, 400, 300, 600).setTo(new Scalar(255, 255, 255));
+
+		final Point center = new Point(101, 103);
+		Core.circle(frame, center, 5, new Scalar(0, 0, 255), -1);
+		Core.circle(frame, center, 3, new Scalar(255, 255, 255), -1);
+		process(frame);
+
+		final List<Shot> shots = cameraView.getShots();
+
+		assertEquals(1, shots.size());
+		assertEquals(center.x, shots.get(0).getX(), 1.0);
+		assertEquals(center.y, shots.get(0).getY(), 1.0);
+	}
+}
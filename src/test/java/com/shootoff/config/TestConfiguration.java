@@ -46,6 +46,9 @@ public class TestConfiguration {
 		assertEquals(false, defaultConfig.inDebugMode());
 		assertFalse(defaultConfig.getArenaPosition().isPresent());
 		assertFalse(defaultConfig.isChimeMuted("Rare and worth hearing"));
+		assertEquals(1, defaultConfig.getPyramidDownsampleFactor());
+		assertEquals(0, defaultConfig.getDetectionWorkers());
+		assertEquals(0, defaultConfig.getDetectionTargetFPS());
 	}
 
 	@Test(expected = ConfigurationException.class)
@@ -187,6 +190,86 @@ public class TestConfiguration {
 		}
 	}
 
+	@Test(expected = ConfigurationException.class)
+	public void testPyramidDownsampleFactorInvalid() throws ConfigurationException {
+		defaultConfig.setPyramidDownsampleFactor(3);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test
+	public void testPyramidDownsampleFactorValid() {
+		try {
+			defaultConfig.setPyramidDownsampleFactor(1);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setPyramidDownsampleFactor(2);
+			defaultConfig.validateConfiguration();
+			defaultConfig.setPyramidDownsampleFactor(4);
+			defaultConfig.validateConfiguration();
+		} catch (ConfigurationException e) {
+			fail("Pyramid downsample factors are valid but got ConfigurationException");
+		}
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testFrameQueueCapacityBelowRange() throws ConfigurationException {
+		defaultConfig.setFrameQueueCapacity(0);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testFrameQueueCapacityAboveRange() throws ConfigurationException {
+		defaultConfig.setFrameQueueCapacity(61);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testEncoderQueueCapacityBelowRange() throws ConfigurationException {
+		defaultConfig.setEncoderQueueCapacity(0);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testEncoderQueueCapacityAboveRange() throws ConfigurationException {
+		defaultConfig.setEncoderQueueCapacity(301);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testDetectionWorkersBelowRange() throws ConfigurationException {
+		defaultConfig.setDetectionWorkers(-1);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testDetectionWorkersAboveRange() throws ConfigurationException {
+		defaultConfig.setDetectionWorkers(65);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testDetectionTargetFPSBelowRange() throws ConfigurationException {
+		defaultConfig.setDetectionTargetFPS(-1);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testDetectionTargetFPSAboveRange() throws ConfigurationException {
+		defaultConfig.setDetectionTargetFPS(121);
+		defaultConfig.validateConfiguration();
+	}
+
+	@Test
+	public void testLuminanceOnlyCameras() {
+		assertFalse(defaultConfig.isLuminanceOnly("IR Lane"));
+
+		defaultConfig.setLuminanceOnly("IR Lane", true);
+		assertTrue(defaultConfig.isLuminanceOnly("IR Lane"));
+		assertFalse(defaultConfig.isLuminanceOnly("Color Lane"));
+
+		defaultConfig.setLuminanceOnly("IR Lane", false);
+		assertFalse(defaultConfig.isLuminanceOnly("IR Lane"));
+	}
+
 	@Test
 	public void testReadConfigFile() throws IOException, ConfigurationException {
 		Configuration config = new Configuration(TestConfiguration.class.getResourceAsStream("/test.properties"),
@@ -0,0 +1,113 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBackgroundHandoff {
+	private static final int WIDTH = 4;
+	private static final int HEIGHT = 2;
+	private static final int CHANNELS = 3;
+	private static final int LENGTH = WIDTH * HEIGHT * CHANNELS;
+
+	// Stands in for the FX thread: updates run when the test says so
+	private final List<Runnable> queuedUpdates = new ArrayList<>();
+	private final List<byte[]> shown = new ArrayList<>();
+
+	private BackgroundHandoff handoff;
+
+	@Before
+	public void setUp() {
+		handoff = new BackgroundHandoff(queuedUpdates::add, (pixels, width, height, channels, x, y) -> {
+			assertEquals(WIDTH, width);
+			assertEquals(HEIGHT, height);
+			assertEquals(CHANNELS, channels);
+			shown.add(pixels);
+		});
+	}
+
+	private byte[] publishFrame(int id) {
+		final byte[] buffer = handoff.borrowBuffer(LENGTH);
+		buffer[0] = (byte) id;
+		handoff.publish(buffer, WIDTH, HEIGHT, CHANNELS, 0, 0);
+		return buffer;
+	}
+
+	private void runQueuedUpdates() {
+		final List<Runnable> updates = new ArrayList<>(queuedUpdates);
+		queuedUpdates.clear();
+
+		for (final Runnable update : updates)
+			update.run();
+	}
+
+	@Test
+	public void testOneUpdateQueuedAtATime() {
+		publishFrame(1);
+		publishFrame(2);
+		publishFrame(3);
+
+		assertEquals(1, queuedUpdates.size());
+
+		runQueuedUpdates();
+
+		// Only the newest frame is shown
+		assertEquals(1, shown.size());
+		assertEquals(3, shown.get(0)[0]);
+
+		// The update ran, thus the next frame queues another one
+		publishFrame(4);
+		assertEquals(1, queuedUpdates.size());
+	}
+
+	@Test
+	public void testReplacedFrameBecomesSpare() {
+		final byte[] first = publishFrame(1);
+		final byte[] second = publishFrame(2);
+
+		// The first frame was never shown, thus its buffer is reused
+		assertSame(first, handoff.borrowBuffer(LENGTH));
+
+		runQueuedUpdates();
+		assertSame(second, shown.get(0));
+	}
+
+	@Test
+	public void testBuffersSwappedWithoutAllocating() {
+		final byte[] first = publishFrame(1);
+		runQueuedUpdates();
+
+		// The shown buffer is returned for the next frame
+		final byte[] second = publishFrame(2);
+		assertSame(first, second);
+		runQueuedUpdates();
+
+		assertEquals(2, shown.size());
+		assertSame(first, shown.get(1));
+	}
+
+	@Test
+	public void testSpareOfWrongSizeNotReused() {
+		final byte[] first = publishFrame(1);
+		runQueuedUpdates();
+
+		assertNotSame(first, handoff.borrowBuffer(LENGTH * 2));
+	}
+
+	@Test
+	public void testClearDropsPendingFrame() {
+		publishFrame(1);
+		handoff.clear();
+
+		runQueuedUpdates();
+
+		assertTrue(shown.isEmpty());
+
+		publishFrame(2);
+		assertEquals(1, queuedUpdates.size());
+	}
+}
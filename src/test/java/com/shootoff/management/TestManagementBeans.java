@@ -0,0 +1,179 @@
+package com.shootoff.management;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.CamerasSupervisor;
+import com.shootoff.camera.DetectionLoadController;
+import com.shootoff.camera.MockCamera;
+import com.shootoff.camera.ReplayCameraView;
+import com.shootoff.camera.Shot;
+import com.shootoff.camera.processors.DeduplicationProcessor;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+import com.shootoff.plugins.ExerciseMetadata;
+import com.shootoff.plugins.TrainingExercise;
+import com.shootoff.targets.Hit;
+import com.shootoff.targets.Target;
+
+public class TestManagementBeans {
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private Configuration config;
+	private CamerasSupervisor camerasSupervisor;
+
+	@Before
+	public void setUp() throws ConfigurationException {
+		System.setProperty("shootoff.home", System.getProperty("user.dir"));
+		Configuration.disableErrorReporting();
+
+		nu.pattern.OpenCV.loadShared();
+
+		config = new Configuration(new String[] { "--headless" });
+		camerasSupervisor = new CamerasSupervisor(config);
+	}
+
+	@After
+	public void tearDown() {
+		camerasSupervisor.closeAll();
+		config.setExercise(null);
+		ManagementRegistry.unregister(TrainingExerciseMetrics.TYPE, TrainingExerciseMetrics.NAME);
+	}
+
+	@Test
+	public void testCameraManagerBean() throws Exception {
+		final CameraManager cameraManager = camerasSupervisor.addCameraManager(new MockCamera(), null,
+				new ReplayCameraView());
+		final ObjectName name = ManagementRegistry.getObjectName(CameraManagerMetrics.TYPE,
+				cameraManager.getName());
+
+		assertTrue(server.isRegistered(name));
+		assertEquals(cameraManager.getName(), server.getAttribute(name, "Name"));
+		assertEquals(0L, server.getAttribute(name, "DroppedFrameCount"));
+		assertEquals(0.0, (double) server.getAttribute(name, "DetectionTimeMedian"), 0.0);
+		assertTrue((double) server.getAttribute(name, "DetectionWorkerUtilization") >= 0);
+
+		cameraManager.showMotionWarning();
+		assertEquals(1L, server.getAttribute(name, "MotionWarningCount"));
+
+		assertEquals(DetectionLoadController.Level.NORMAL.name(), server.getAttribute(name, "LoadLevel"));
+		assertEquals(0L, server.getAttribute(name, "LoadTransitionCount"));
+
+		// Frames that take a second at 30 FPS shed the first level
+		final DetectionLoadController loadController = cameraManager.getLoadController();
+		while (loadController.getLevel() == DetectionLoadController.Level.NORMAL)
+			loadController.recordFrame(1000000000L, 30);
+
+		final String loadLevel = loadController.getLevel().name();
+		assertEquals(loadLevel, server.getAttribute(name, "LoadLevel"));
+		assertEquals(1L, server.getAttribute(name, "LoadTransitionCount"));
+
+		final TabularData entryCounts = (TabularData) server.getAttribute(name, "LoadLevelEntryCounts");
+		assertEquals(DetectionLoadController.Level.values().length, entryCounts.size());
+		assertEquals(1L, entryCounts.get(new Object[] { loadLevel }).get("value"));
+		assertEquals(0L,
+				entryCounts.get(new Object[] { DetectionLoadController.Level.NORMAL.name() }).get("value"));
+
+		final DeduplicationProcessor processor = cameraManager.getDeduplicationProcessor();
+		cameraManager.recordProcessedShot(processor, true);
+		cameraManager.recordProcessedShot(processor, false);
+		cameraManager.recordProcessedShot(processor, false);
+
+		final TabularData rejected = (TabularData) server.getAttribute(name, "ShotsRejected");
+		final CompositeData row = rejected.get(new Object[] { DeduplicationProcessor.class.getSimpleName() });
+		assertEquals(2L, row.get("value"));
+
+		camerasSupervisor.clearManager(cameraManager);
+
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testCameraManagersWithSameName() throws Exception {
+		final CameraManager first = camerasSupervisor.addCameraManager(new MockCamera(), null,
+				new ReplayCameraView());
+		final CameraManager second = camerasSupervisor.addCameraManager(new MockCamera(), null,
+				new ReplayCameraView());
+
+		assertEquals(first.getName(), second.getName());
+
+		final ObjectName firstName = ManagementRegistry.getObjectName(CameraManagerMetrics.TYPE,
+				CameraManagerMetrics.getBeanName(first).get());
+		final ObjectName secondName = ManagementRegistry.getObjectName(CameraManagerMetrics.TYPE,
+				CameraManagerMetrics.getBeanName(second).get());
+
+		assertNotEquals(firstName, secondName);
+		assertTrue(server.isRegistered(firstName));
+		assertTrue(server.isRegistered(secondName));
+
+		// Closing either manager leaves the other's bean registered
+		camerasSupervisor.clearManager(first);
+
+		assertFalse(server.isRegistered(firstName));
+		assertTrue(server.isRegistered(secondName));
+		assertFalse(CameraManagerMetrics.getBeanName(first).isPresent());
+
+		camerasSupervisor.clearManager(second);
+
+		assertFalse(server.isRegistered(secondName));
+	}
+
+	@Test
+	public void testTrainingExerciseBean() throws Exception {
+		TrainingExerciseMetrics.register();
+		final ObjectName name = ManagementRegistry.getObjectName(TrainingExerciseMetrics.TYPE,
+				TrainingExerciseMetrics.NAME);
+
+		assertFalse((boolean) server.getAttribute(name, "Active"));
+		assertEquals("", server.getAttribute(name, "Name"));
+
+		config.setExercise(new TrainingExercise() {
+			@Override
+			public void init() {}
+
+			@Override
+			public void targetUpdate(Target target, TargetChange change) {}
+
+			@Override
+			public ExerciseMetadata getInfo() {
+				return new ExerciseMetadata("Management Test", "1.0", "phrack", "");
+			}
+
+			@Override
+			public void shotListener(Shot shot, Optional<Hit> hit) {}
+
+			@Override
+			public void reset(List<Target> targets) {}
+
+			@Override
+			public void destroy() {}
+		});
+
+		assertTrue((boolean) server.getAttribute(name, "Active"));
+		assertEquals("Management Test", server.getAttribute(name, "Name"));
+		assertEquals("1.0", server.getAttribute(name, "Version"));
+		assertEquals(0L, server.getAttribute(name, "ShotsNotified"));
+	}
+
+	@Test
+	public void testRegisterReplacesExistingBean() throws Exception {
+		TrainingExerciseMetrics.register();
+		TrainingExerciseMetrics.register();
+
+		assertTrue(server.isRegistered(
+				ManagementRegistry.getObjectName(TrainingExerciseMetrics.TYPE, TrainingExerciseMetrics.NAME)));
+	}
+}